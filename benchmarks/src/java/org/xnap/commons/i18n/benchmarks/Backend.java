@@ -0,0 +1,48 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.xnap.commons.i18n.I18n;
+
+/**
+ * A storage format for catalogs that is compared by
+ * {@link BackendComparison}.
+ */
+public interface Backend {
+
+	/**
+	 * Returns the name that selects the backend on the command line.
+	 */
+	String getName();
+
+	/**
+	 * Stores <code>catalog</code> in <code>directory</code>. This step is
+	 * not measured.
+	 */
+	void write(Catalog catalog, File directory) throws IOException;
+
+	/**
+	 * Loads the catalog that has been stored in <code>directory</code>
+	 * without using any cached state.
+	 */
+	I18n load(File directory) throws IOException;
+
+}
@@ -0,0 +1,353 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.xnap.commons.i18n.I18n;
+
+/**
+ * Compares the catalog backends. For every catalog size and backend a
+ * synthetic catalog is stored in a temporary directory and then loaded
+ * through {@link I18n} several times. The harness reports
+ * <ul>
+ * <li>the median load time,</li>
+ * <li>the average heap retained by a loaded catalog,</li>
+ * <li>latency percentiles of a mix of lookups, including the overhead of
+ * <code>System.nanoTime()</code>,</li>
+ * <li>the bytes allocated per lookup and the collections during the
+ * lookups.</li>
+ * </ul>
+ * The harness does not need JMH or network access:
+ * 
+ * <pre>
+ * java -cp target/benchmarks.jar org.xnap.commons.i18n.benchmarks.BackendComparison -sizes 1000,500000
+ * </pre>
+ * 
+ * Heap figures are approximations based on the used heap after a full
+ * collection. Run with a fixed heap size and the G1 collector, the default
+ * since Java 9, for stable results, e.g.
+ * <code>-Xms2g -Xmx2g -XX:+UseG1GC</code>.
+ */
+public class BackendComparison {
+
+	private static final int SAMPLE_SIZE = 4096;
+
+	private int[] sizes = { 1000, 10000, 100000, 500000 };
+
+	private double pluralRatio = 0.2;
+
+	private double contextRatio = 0.1;
+
+	private double missRatio = 0.1;
+
+	private int lookups = 1000000;
+
+	private int loads = 5;
+
+	private List<Backend> backends = new ArrayList<Backend>();
+
+	private volatile int sink;
+
+	public static void main(String[] args) throws IOException
+	{
+		BackendComparison comparison = new BackendComparison();
+		try {
+			comparison.parse(args);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("usage: BackendComparison [-sizes n,...] [-plural ratio] [-context ratio] "
+					+ "[-miss ratio] [-lookups n] [-loads n] [-backends name,...]");
+			System.exit(1);
+		}
+		comparison.run();
+	}
+
+	/**
+	 * Returns the backends that can be selected on the command line.
+	 */
+	public static Backend[] getAvailableBackends()
+	{
+		return new Backend[] { new PropertiesBackend(), new MsgfmtBackend(), new CompactBackend(false),
+				new CompactBackend(true), new MappedBackend() };
+	}
+
+	void parse(String[] args)
+	{
+		String backendNames = null;
+		for (int i = 0; i < args.length; i += 2) {
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value: " + args[i]);
+			}
+			String value = args[i + 1];
+			if ("-sizes".equals(args[i])) {
+				String[] values = value.split(",");
+				sizes = new int[values.length];
+				for (int j = 0; j < values.length; j++) {
+					sizes[j] = Integer.parseInt(values[j].trim());
+				}
+			}
+			else if ("-plural".equals(args[i])) {
+				pluralRatio = Double.parseDouble(value);
+			}
+			else if ("-context".equals(args[i])) {
+				contextRatio = Double.parseDouble(value);
+			}
+			else if ("-miss".equals(args[i])) {
+				missRatio = Double.parseDouble(value);
+			}
+			else if ("-lookups".equals(args[i])) {
+				lookups = Integer.parseInt(value);
+			}
+			else if ("-loads".equals(args[i])) {
+				loads = Integer.parseInt(value);
+			}
+			else if ("-backends".equals(args[i])) {
+				backendNames = value;
+			}
+			else {
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+
+		Backend[] available = getAvailableBackends();
+		for (int i = 0; i < available.length; i++) {
+			if (backendNames == null || Arrays.asList(backendNames.split(",")).contains(available[i].getName())) {
+				backends.add(available[i]);
+			}
+		}
+		if (backends.isEmpty()) {
+			throw new IllegalArgumentException("Unknown backends: " + backendNames);
+		}
+	}
+
+	void run() throws IOException
+	{
+		System.out.println("plural=" + pluralRatio + " context=" + contextRatio + " miss=" + missRatio + " lookups="
+				+ lookups + " loads=" + loads);
+		System.out.println(String.format("%-14s %8s %9s %10s %8s %8s %8s %9s %8s %5s %7s", "backend", "size",
+				"load ms", "heap KB", "p50 ns", "p90 ns", "p99 ns", "p99.9 ns", "B/op", "gcs", "gc ms"));
+		for (int i = 0; i < sizes.length; i++) {
+			Catalog catalog = Catalog.generate(sizes[i], pluralRatio, contextRatio);
+			Lookup[] sample = createSample(catalog);
+			for (Backend backend : backends) {
+				File directory = Files.createTempDirectory("gettext-commons-backend").toFile();
+				try {
+					backend.write(catalog, directory);
+					Result result = measure(backend, directory, sample);
+					System.out.println(String.format("%-14s %8d %9.2f %10d %8d %8d %8d %9d %8.1f %5d %7d",
+							backend.getName(), sizes[i], result.loadTime / 1e6, result.retainedHeap / 1024,
+							result.percentile(0.5), result.percentile(0.9), result.percentile(0.99),
+							result.percentile(0.999), result.allocatedBytes / (double)lookups,
+							result.collections, result.collectionTime));
+				}
+				finally {
+					delete(directory);
+				}
+			}
+		}
+	}
+
+	private Lookup[] createSample(Catalog catalog)
+	{
+		Random random = new Random(catalog.size());
+		List<PoFile.Entry> entries = catalog.getEntries();
+		Lookup[] sample = new Lookup[SAMPLE_SIZE];
+		for (int i = 0; i < sample.length; i++) {
+			PoFile.Entry entry = (random.nextDouble() < missRatio) ? null : entries.get(random.nextInt(entries
+					.size()));
+			sample[i] = new Lookup(entry, "missing message #" + i, (i % 3 == 0) ? 1 : i % 7);
+		}
+		return sample;
+	}
+
+	private Result measure(Backend backend, File directory, Lookup[] sample) throws IOException
+	{
+		Result result = new Result();
+
+		long[] loadTimes = new long[loads];
+		for (int i = 0; i < loads; i++) {
+			long start = System.nanoTime();
+			sink += backend.load(directory).hashCode();
+			loadTimes[i] = System.nanoTime() - start;
+		}
+		Arrays.sort(loadTimes);
+		result.loadTime = loadTimes[loadTimes.length / 2];
+
+		// hold several copies to average out the inaccuracy of the heap usage
+		I18n[] copies = new I18n[loads];
+		long before = getUsedHeap();
+		for (int i = 0; i < copies.length; i++) {
+			copies[i] = backend.load(directory);
+		}
+		result.retainedHeap = (getUsedHeap() - before) / copies.length;
+		I18n i18n = copies[0];
+		copies = null;
+
+		// warm up
+		for (int i = 0; i < lookups; i++) {
+			sink += sample[i & (SAMPLE_SIZE - 1)].perform(i18n).length();
+		}
+
+		long[] latencies = new long[lookups];
+		long collections = getCollectionCount();
+		long collectionTime = getCollectionTime();
+		long allocated = getAllocatedBytes();
+		for (int i = 0; i < lookups; i++) {
+			Lookup lookup = sample[i & (SAMPLE_SIZE - 1)];
+			long start = System.nanoTime();
+			String translation = lookup.perform(i18n);
+			latencies[i] = System.nanoTime() - start;
+			sink += translation.length();
+		}
+		result.allocatedBytes = getAllocatedBytes() - allocated;
+		result.collections = getCollectionCount() - collections;
+		result.collectionTime = getCollectionTime() - collectionTime;
+		Arrays.sort(latencies);
+		result.latencies = latencies;
+		return result;
+	}
+
+	/**
+	 * Returns the used heap after collecting garbage until the usage does
+	 * not decrease anymore.
+	 */
+	private static long getUsedHeap()
+	{
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			long current = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+			if (current >= used) {
+				break;
+			}
+			used = current;
+		}
+		return used;
+	}
+
+	private static long getCollectionCount()
+	{
+		long count = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, bean.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long getCollectionTime()
+	{
+		long time = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, bean.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread, or 0 if
+	 * the JVM does not support allocation accounting.
+	 */
+	private static long getAllocatedBytes()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	private static void delete(File file)
+	{
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; i++) {
+				delete(files[i]);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * A lookup of a message with the method that matches the kind of
+	 * message.
+	 */
+	private static class Lookup {
+
+		private final PoFile.Entry entry;
+
+		private final String missing;
+
+		private final long n;
+
+		public Lookup(PoFile.Entry entry, String missing, long n)
+		{
+			this.entry = entry;
+			this.missing = missing;
+			this.n = n;
+		}
+
+		public String perform(I18n i18n)
+		{
+			if (entry == null) {
+				return i18n.tr(missing);
+			}
+			else if (entry.getContext() != null) {
+				return entry.isPlural() ? i18n.trnc(entry.getContext(), entry.getId(), entry.getIdPlural(), n) : i18n
+						.trc(entry.getContext(), entry.getId());
+			}
+			else if (entry.isPlural()) {
+				return i18n.trn(entry.getId(), entry.getIdPlural(), n);
+			}
+			return i18n.tr(entry.getId());
+		}
+
+	}
+
+	private static class Result {
+
+		long loadTime;
+
+		long retainedHeap;
+
+		long[] latencies;
+
+		long allocatedBytes;
+
+		long collections;
+
+		long collectionTime;
+
+		long percentile(double p)
+		{
+			return latencies[Math.min(latencies.length - 1, (int)(p * latencies.length))];
+		}
+
+	}
+
+}
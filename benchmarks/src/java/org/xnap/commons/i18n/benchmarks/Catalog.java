@@ -0,0 +1,343 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.PropertyResourceBundle;
+import java.util.Random;
+import java.util.ResourceBundle;
+
+import org.xnap.commons.i18n.CompactResourceBundle;
+import org.xnap.commons.i18n.MappedCatalogWriter;
+import org.xnap.commons.i18n.MappedResourceBundle;
+
+/**
+ * A synthetic catalog of a given size that is derived from the translated
+ * entries of a PO file. The template entries are repeated and numbered
+ * until the catalog has the requested size, so the mix of simple, plural,
+ * context and formatted messages matches the template.
+ */
+public class Catalog {
+
+	/**
+	 * The backend that loads the catalog as a
+	 * <code>PropertyResourceBundle</code>.
+	 */
+	public static final String PROPERTIES = "properties";
+
+	/**
+	 * The backend that loads the catalog as a bundle generated by
+	 * <code>msgfmt --java2</code>.
+	 */
+	public static final String MSGFMT = "msgfmt";
+
+	/**
+	 * The backend that loads the catalog as a
+	 * <code>CompactResourceBundle</code> on the heap.
+	 */
+	public static final String COMPACT = "compact";
+
+	/**
+	 * The backend that loads the catalog as a
+	 * <code>CompactResourceBundle</code> outside of the heap.
+	 */
+	public static final String COMPACT_DIRECT = "compact-direct";
+
+	/**
+	 * The backend that memory-maps the catalog as a
+	 * <code>MappedResourceBundle</code>.
+	 */
+	public static final String MAPPED = "mapped";
+
+	/**
+	 * The separator of context and message id that is used by
+	 * <code>msgfmt</code> and <code>I18n</code>.
+	 */
+	public static final String CONTEXT_GLUE = "\u0004";
+
+	/**
+	 * The PO file the catalogs are derived from by default.
+	 */
+	public static final String DEFAULT_TEMPLATE = "de.po";
+
+	private final List<PoFile.Entry> entries;
+
+	private final Locale locale;
+
+	public Catalog(List<PoFile.Entry> entries, Locale locale)
+	{
+		this.entries = Collections.unmodifiableList(entries);
+		this.locale = locale;
+	}
+
+	/**
+	 * Generates a German catalog with <code>size</code> entries from
+	 * {@link #DEFAULT_TEMPLATE}.
+	 */
+	public static Catalog generate(int size) throws IOException
+	{
+		return generate(PoFile.load(DEFAULT_TEMPLATE).getEntries(), size, Locale.GERMAN);
+	}
+
+	/**
+	 * Generates a catalog with <code>size</code> entries by repeating the
+	 * translated entries of <code>templates</code>. Each generated message
+	 * id carries a sequence number to make it unique.
+	 */
+	public static Catalog generate(List<PoFile.Entry> templates, int size, Locale locale)
+	{
+		List<PoFile.Entry> translated = new ArrayList<PoFile.Entry>();
+		for (PoFile.Entry entry : templates) {
+			if (entry.getId().length() > 0 && entry.isTranslated()) {
+				translated.add(entry);
+			}
+		}
+		if (translated.isEmpty()) {
+			throw new IllegalArgumentException("templates do not contain any translations");
+		}
+
+		List<PoFile.Entry> entries = new ArrayList<PoFile.Entry>(size);
+		for (int i = 0; i < size; i++) {
+			PoFile.Entry template = translated.get(i % translated.size());
+			entries.add(number(template, template.getContext(), i));
+		}
+		return new Catalog(entries, locale);
+	}
+
+	/**
+	 * Generates a catalog with <code>size</code> entries from the translated
+	 * entries of {@link #DEFAULT_TEMPLATE} with a given mix of messages. The
+	 * mix is random but reproducible for a given size.
+	 * 
+	 * @param pluralRatio
+	 *            the fraction of plural messages
+	 * @param contextRatio
+	 *            the fraction of messages that have a context, independent
+	 *            of whether they are plural messages
+	 */
+	public static Catalog generate(int size, double pluralRatio, double contextRatio) throws IOException
+	{
+		List<PoFile.Entry> singular = new ArrayList<PoFile.Entry>();
+		List<PoFile.Entry> plural = new ArrayList<PoFile.Entry>();
+		for (PoFile.Entry entry : PoFile.load(DEFAULT_TEMPLATE).getEntries()) {
+			if (entry.getId().length() > 0 && entry.isTranslated() && entry.getContext() == null) {
+				(entry.isPlural() ? plural : singular).add(entry);
+			}
+		}
+
+		Random random = new Random(size);
+		List<PoFile.Entry> entries = new ArrayList<PoFile.Entry>(size);
+		for (int i = 0; i < size; i++) {
+			List<PoFile.Entry> templates = (random.nextDouble() < pluralRatio) ? plural : singular;
+			PoFile.Entry template = templates.get(random.nextInt(templates.size()));
+			String context = (random.nextDouble() < contextRatio) ? "context " + random.nextInt(8) : null;
+			entries.add(number(template, context, i));
+		}
+		return new Catalog(entries, Locale.GERMAN);
+	}
+
+	/**
+	 * Returns a copy of <code>template</code> with the sequence number
+	 * <code>i</code> appended to the message ids and translations.
+	 */
+	private static PoFile.Entry number(PoFile.Entry template, String context, int i)
+	{
+		String suffix = " #" + i;
+		String[] strings = new String[template.getStrings().length];
+		for (int j = 0; j < strings.length; j++) {
+			strings[j] = template.getStrings()[j] + suffix;
+		}
+		return new PoFile.Entry(context, template.getId() + suffix,
+				template.isPlural() ? template.getIdPlural() + suffix : null, strings);
+	}
+
+	public List<PoFile.Entry> getEntries()
+	{
+		return entries;
+	}
+
+	public Locale getLocale()
+	{
+		return locale;
+	}
+
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Returns the key of <code>entry</code> in a bundle.
+	 */
+	public static String getKey(PoFile.Entry entry)
+	{
+		return (entry.getContext() != null) ? entry.getContext() + CONTEXT_GLUE + entry.getId() : entry.getId();
+	}
+
+	/**
+	 * Returns the entries that match the given criteria.
+	 * 
+	 * @param context
+	 *            whether entries with or without context are returned
+	 * @param plural
+	 *            whether plural or singular entries are returned
+	 * @param formatted
+	 *            if true, only entries that contain a placeholder are
+	 *            returned
+	 */
+	public List<PoFile.Entry> select(boolean context, boolean plural, boolean formatted)
+	{
+		List<PoFile.Entry> selected = new ArrayList<PoFile.Entry>();
+		for (PoFile.Entry entry : entries) {
+			if ((entry.getContext() != null) == context && entry.isPlural() == plural
+					&& (!formatted || isFormatted(entry))) {
+				selected.add(entry);
+			}
+		}
+		return selected;
+	}
+
+	private static boolean isFormatted(PoFile.Entry entry)
+	{
+		return entry.getId().indexOf('{') != -1
+				|| (entry.isPlural() && entry.getIdPlural().indexOf('{') != -1);
+	}
+
+	/**
+	 * Returns <code>count</code> entries that are evenly spread across
+	 * <code>entries</code>. If there are fewer entries, they are repeated.
+	 */
+	public static PoFile.Entry[] sample(List<PoFile.Entry> entries, int count)
+	{
+		if (entries.isEmpty()) {
+			throw new IllegalArgumentException("entries must not be empty");
+		}
+		PoFile.Entry[] sample = new PoFile.Entry[count];
+		int step = Math.max(1, entries.size() / count);
+		for (int i = 0; i < count; i++) {
+			sample[i] = entries.get((i * step) % entries.size());
+		}
+		return sample;
+	}
+
+	/**
+	 * Creates a bundle that contains the catalog.
+	 * 
+	 * @param backend
+	 *            {@link #PROPERTIES}, {@link #MSGFMT}, {@link #COMPACT},
+	 *            {@link #COMPACT_DIRECT} or {@link #MAPPED}
+	 */
+	public ResourceBundle createBundle(String backend)
+	{
+		if (PROPERTIES.equals(backend)) {
+			return createPropertiesBundle();
+		}
+		else if (MSGFMT.equals(backend)) {
+			return createMsgfmtBundle();
+		}
+		else if (COMPACT.equals(backend)) {
+			return CompactResourceBundle.compact(createMsgfmtBundle(), false);
+		}
+		else if (COMPACT_DIRECT.equals(backend)) {
+			return CompactResourceBundle.compact(createMsgfmtBundle(), true);
+		}
+		else if (MAPPED.equals(backend)) {
+			return createMappedBundle();
+		}
+		throw new IllegalArgumentException("Unknown backend: " + backend);
+	}
+
+	/**
+	 * Creates a bundle the way {@link ResourceBundle#getBundle(String)}
+	 * loads a properties file. Properties do not support plural forms, only
+	 * the singular translation is stored.
+	 */
+	public ResourceBundle createPropertiesBundle()
+	{
+		try {
+			return new PropertyResourceBundle(new ByteArrayInputStream(toProperties()));
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the catalog in the format of a properties file.
+	 */
+	public byte[] toProperties() throws IOException
+	{
+		Properties properties = new Properties();
+		for (PoFile.Entry entry : entries) {
+			properties.setProperty(getKey(entry), entry.getStrings()[0]);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		properties.store(out, null);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Creates a bundle with the same contents as the class that
+	 * <code>msgfmt --java2</code> generates for the catalog.
+	 */
+	public ResourceBundle createMsgfmtBundle()
+	{
+		return new MsgfmtBundle(toTable(), locale, null);
+	}
+
+	/**
+	 * Writes the catalog to a temporary file and maps it into memory. The
+	 * file is deleted when the JVM exits.
+	 */
+	public ResourceBundle createMappedBundle()
+	{
+		try {
+			File file = File.createTempFile("gettext-commons", ".catalog");
+			file.deleteOnExit();
+			MappedCatalogWriter.write(toTable(), locale, file);
+			return MappedResourceBundle.open(file);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the catalog as a table that maps keys to translations or to
+	 * arrays of plural forms.
+	 */
+	public Hashtable<String, Object> toTable()
+	{
+		Hashtable<String, Object> table = new Hashtable<String, Object>();
+		for (PoFile.Entry entry : entries) {
+			table.put(getKey(entry), entry.isPlural() ? entry.getStrings().clone() : entry.getStrings()[0]);
+		}
+		return table;
+	}
+
+}
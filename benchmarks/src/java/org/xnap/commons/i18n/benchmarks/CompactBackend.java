@@ -0,0 +1,50 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.xnap.commons.i18n.CompactResourceBundle;
+import org.xnap.commons.i18n.I18n;
+
+/**
+ * Loads a catalog stored by {@link MsgfmtBackend} and converts it into a
+ * {@link CompactResourceBundle}. The intermediate bundle is garbage once
+ * the catalog has been loaded.
+ */
+public class CompactBackend extends MsgfmtBackend {
+
+	private final boolean direct;
+
+	public CompactBackend(boolean direct)
+	{
+		this.direct = direct;
+	}
+
+	public String getName()
+	{
+		return direct ? Catalog.COMPACT_DIRECT : Catalog.COMPACT;
+	}
+
+	public I18n load(File directory) throws IOException
+	{
+		return new I18n(CompactResourceBundle.compact(super.load(directory).getResources(), direct));
+	}
+
+}
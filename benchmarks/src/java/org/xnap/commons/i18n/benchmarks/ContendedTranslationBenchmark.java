@@ -0,0 +1,147 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.IOException;
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nManager;
+import org.xnap.commons.i18n.I18nStatistics;
+
+/**
+ * Measures the <code>tr*()</code> methods of an {@link I18n} object that is
+ * shared by all threads, optionally while the bundle is replaced
+ * concurrently or with the statistics monitor installed.
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar ContendedTranslationBenchmark -t 8
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContendedTranslationBenchmark {
+
+	@Param({ "10000" })
+	public int size;
+
+	@Param({ Catalog.PROPERTIES, Catalog.MSGFMT })
+	public String backend;
+
+	/**
+	 * <code>none</code> or <code>statistics</code> to install an
+	 * {@link I18nStatistics} monitor.
+	 */
+	@Param({ "none", "statistics" })
+	public String monitor;
+
+	private I18n i18n;
+
+	private ResourceBundle[] bundles;
+
+	private PoFile.Entry[] simple;
+
+	private PoFile.Entry[] plural;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		Catalog catalog = Catalog.generate(size);
+		bundles = new ResourceBundle[] { catalog.createBundle(backend), catalog.createBundle(backend) };
+		i18n = new I18n(bundles[0]);
+		simple = Catalog.sample(catalog.select(false, false, false), TranslationBenchmark.SAMPLE_SIZE);
+		plural = Catalog.sample(catalog.select(false, true, false), TranslationBenchmark.SAMPLE_SIZE);
+		if ("statistics".equals(monitor)) {
+			I18nManager.getInstance().setMonitor(new I18nStatistics());
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		I18nManager.getInstance().setMonitor(null);
+	}
+
+	/**
+	 * The position of a thread in the sample.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+
+		private int index;
+
+		public int next()
+		{
+			index = (index + 1) & (TranslationBenchmark.SAMPLE_SIZE - 1);
+			return index;
+		}
+
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public String tr(Cursor cursor)
+	{
+		return i18n.tr(simple[cursor.next()].getId());
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public String trn(Cursor cursor)
+	{
+		PoFile.Entry entry = plural[cursor.next()];
+		return i18n.trn(entry.getId(), entry.getIdPlural(), 5);
+	}
+
+	@Benchmark
+	@Group("replace")
+	@GroupThreads(7)
+	public String replaceTr(Cursor cursor)
+	{
+		return i18n.tr(simple[cursor.next()].getId());
+	}
+
+	@Benchmark
+	@Group("replace")
+	@GroupThreads(1)
+	public void replaceSetResources(Cursor cursor)
+	{
+		i18n.setResources(bundles[cursor.next() & 1]);
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+/**
+ * Measures the resolution of {@link I18n} objects by {@link I18nFactory}
+ * for classes in package hierarchies of different depths.
+ * <p>
+ * The <code>properties</code> lookup resolves the bundle through an
+ * <code>i18n.properties</code> file at the top of the hierarchy, the
+ * <code>basename</code> lookup probes for a bundle on every level. Cold
+ * resolutions use a new class loader for every invocation and include the
+ * first translation. The allocation per call is reported by the GC
+ * profiler:
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar FactoryBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FactoryBenchmark {
+
+	public static final String PROPERTIES = "properties";
+
+	public static final String BASENAME = "basename";
+
+	@Param({ "1", "8", "16" })
+	public int depth;
+
+	@Param({ PROPERTIES, BASENAME })
+	public String lookup;
+
+	@Param({ "1", "50" })
+	public int localeCount;
+
+	private ResolutionFixture fixture;
+
+	private ClassLoader loader;
+
+	private Class<?> clazz;
+
+	private Locale[] locales;
+
+	private int index;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		fixture = ResolutionFixture.create(depth, localeCount, PROPERTIES.equals(lookup));
+		loader = fixture.createClassLoader();
+		clazz = fixture.loadClass(loader);
+		locales = fixture.getLocales();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		fixture.delete();
+	}
+
+	private Locale nextLocale()
+	{
+		index = (index + 1) % locales.length;
+		return locales[index];
+	}
+
+	private I18n resolve(Class<?> clazz, Locale locale, int flags)
+	{
+		if (PROPERTIES.equals(lookup)) {
+			return I18nFactory.getI18n(clazz, locale, I18nFactory.READ_PROPERTIES | flags);
+		}
+		else {
+			return I18nFactory.getI18n(clazz, ResolutionFixture.BUNDLE_NAME, locale, flags);
+		}
+	}
+
+	/**
+	 * Resolves a cached instance.
+	 */
+	@Benchmark
+	public I18n warm()
+	{
+		return resolve(clazz, nextLocale(), I18nFactory.DEFAULT);
+	}
+
+	/**
+	 * Resolves an instance with empty caches and translates a message.
+	 */
+	@Benchmark
+	public String cold()
+	{
+		ClassLoader loader = fixture.createClassLoader();
+		return resolve(fixture.loadClass(loader), nextLocale(), I18nFactory.DEFAULT).tr(fixture.getMessage());
+	}
+
+	/**
+	 * Resolves an instance without the cache of the factory, the bundles
+	 * are still cached by <code>ResourceBundle</code>.
+	 */
+	@Benchmark
+	public I18n noCache()
+	{
+		return resolve(clazz, nextLocale(), I18nFactory.NO_CACHE);
+	}
+
+	/**
+	 * Resolves a bundle that does not exist and falls back to the empty
+	 * bundle.
+	 */
+	@Benchmark
+	public I18n fallback()
+	{
+		return I18nFactory.getI18n(fixture.getClassName(), "Missing", loader, nextLocale(), I18nFactory.FALLBACK);
+	}
+
+}
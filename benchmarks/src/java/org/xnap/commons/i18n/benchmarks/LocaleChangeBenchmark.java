@@ -0,0 +1,101 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nManager;
+
+/**
+ * Measures {@link I18nManager#setDefaultLocale(Locale)} with a number of
+ * managed {@link I18n} objects. The default locale alternates between two
+ * locales whose bundles are already cached by <code>ResourceBundle</code>.
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar LocaleChangeBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocaleChangeBenchmark {
+
+	@Param({ "100", "500" })
+	public int instances;
+
+	private ResolutionFixture fixture;
+
+	private I18n[] i18ns;
+
+	private Locale[] locales;
+
+	private Locale defaultLocale;
+
+	private int index;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		defaultLocale = Locale.getDefault();
+		fixture = ResolutionFixture.create(0, 2, false);
+		locales = fixture.getLocales();
+		ClassLoader loader = fixture.createClassLoader();
+		String baseName = ResolutionFixture.PACKAGE + "." + ResolutionFixture.BUNDLE_NAME;
+		i18ns = new I18n[instances];
+		for (int i = 0; i < i18ns.length; i++) {
+			i18ns[i] = new I18n(baseName, locales[0], loader);
+			I18nManager.getInstance().add(i18ns[i]);
+		}
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		for (int i = 0; i < i18ns.length; i++) {
+			I18nManager.getInstance().remove(i18ns[i]);
+		}
+		Locale.setDefault(defaultLocale);
+		fixture.delete();
+	}
+
+	@Benchmark
+	public void setDefaultLocale()
+	{
+		index ^= 1;
+		I18nManager.getInstance().setDefaultLocale(locales[index]);
+	}
+
+}
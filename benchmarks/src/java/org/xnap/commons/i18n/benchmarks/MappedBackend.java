@@ -0,0 +1,51 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.MappedCatalogWriter;
+import org.xnap.commons.i18n.MappedResourceBundle;
+
+/**
+ * Stores a catalog in the format of {@link MappedCatalogWriter} and
+ * memory-maps it. The heap figures do not include the mapped file, which
+ * is shared by all processes that open it.
+ */
+public class MappedBackend implements Backend {
+
+	private static final String FILENAME = "Messages.catalog";
+
+	public String getName()
+	{
+		return Catalog.MAPPED;
+	}
+
+	public void write(Catalog catalog, File directory) throws IOException
+	{
+		MappedCatalogWriter.write(catalog.toTable(), catalog.getLocale(), new File(directory, FILENAME));
+	}
+
+	public I18n load(File directory) throws IOException
+	{
+		return new I18n(MappedResourceBundle.open(new File(directory, FILENAME)));
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Locale;
+
+import org.xnap.commons.i18n.I18n;
+
+/**
+ * Stores a catalog in the form of a {@link MsgfmtBundle}. Generating real
+ * classes would require <code>msgfmt</code> and a Java compiler, so the
+ * strings are written to a data file instead and loading fills the
+ * <code>Hashtable</code> the way the static initializer of a generated
+ * class does.
+ */
+public class MsgfmtBackend implements Backend {
+
+	private static final String FILENAME = "Messages.dat";
+
+	private Locale locale;
+
+	public String getName()
+	{
+		return Catalog.MSGFMT;
+	}
+
+	public void write(Catalog catalog, File directory) throws IOException
+	{
+		locale = catalog.getLocale();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(
+				directory, FILENAME))));
+		try {
+			out.writeInt(catalog.size());
+			for (PoFile.Entry entry : catalog.getEntries()) {
+				out.writeUTF(Catalog.getKey(entry));
+				String[] strings = entry.isPlural() ? entry.getStrings() : new String[] { entry.getStrings()[0] };
+				out.writeInt(entry.isPlural() ? strings.length : 0);
+				for (int i = 0; i < strings.length; i++) {
+					out.writeUTF(strings[i]);
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	public I18n load(File directory) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(directory,
+				FILENAME))));
+		try {
+			int size = in.readInt();
+			Hashtable<String, Object> table = new Hashtable<String, Object>();
+			for (int i = 0; i < size; i++) {
+				String key = in.readUTF();
+				int forms = in.readInt();
+				if (forms == 0) {
+					table.put(key, in.readUTF());
+				}
+				else {
+					String[] strings = new String[forms];
+					for (int j = 0; j < forms; j++) {
+						strings[j] = in.readUTF();
+					}
+					table.put(key, strings);
+				}
+			}
+			return new I18n(new MsgfmtBundle(table, locale, null));
+		}
+		finally {
+			in.close();
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * A bundle that behaves like the classes generated by
+ * <code>msgfmt --java2</code>: the translations are kept in a
+ * <code>Hashtable</code> and plural forms are exposed through the public
+ * <code>lookup()</code> and <code>pluralEval()</code> methods that
+ * {@link org.xnap.commons.i18n.I18n} discovers by reflection.
+ * <p>
+ * The plural expression is the one of the Germanic languages,
+ * <code>n != 1</code>.
+ */
+public class MsgfmtBundle extends ResourceBundle {
+
+	private final Hashtable<String, Object> table;
+
+	private final Locale locale;
+
+	public MsgfmtBundle(Hashtable<String, Object> table, Locale locale, ResourceBundle parent)
+	{
+		this.table = table;
+		this.locale = locale;
+		setParent(parent);
+	}
+
+	@Override
+	public Object handleGetObject(String msgid)
+	{
+		Object value = table.get(msgid);
+		return (value instanceof String[]) ? ((String[])value)[0] : value;
+	}
+
+	public Object lookup(String msgid)
+	{
+		return table.get(msgid);
+	}
+
+	public static long pluralEval(long n)
+	{
+		return (n != 1) ? 1 : 0;
+	}
+
+	@Override
+	public Enumeration<String> getKeys()
+	{
+		return table.keys();
+	}
+
+	public ResourceBundle getParent()
+	{
+		return parent;
+	}
+
+	@Override
+	public Locale getLocale()
+	{
+		return locale;
+	}
+
+}
@@ -0,0 +1,277 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A minimal reader for gettext PO files. Comments and obsolete entries are
+ * skipped, the header entry is returned like any other entry.
+ */
+public class PoFile {
+
+	private final List<Entry> entries;
+
+	private PoFile(List<Entry> entries)
+	{
+		this.entries = Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * Returns the entries in the order of the file.
+	 */
+	public List<Entry> getEntries()
+	{
+		return entries;
+	}
+
+	/**
+	 * Reads a UTF-8 encoded PO file from the class path.
+	 * 
+	 * @param name
+	 *            the resource name, e.g. <code>de.po</code>
+	 */
+	public static PoFile load(String name) throws IOException
+	{
+		InputStream in = PoFile.class.getClassLoader().getResourceAsStream(name);
+		if (in == null) {
+			throw new IOException("Resource not found: " + name);
+		}
+		try {
+			return read(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a UTF-8 encoded PO file.
+	 */
+	public static PoFile read(InputStream in) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		List<Entry> entries = new ArrayList<Entry>();
+		Builder builder = new Builder();
+		String keyword = null;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0) {
+				builder.flush(entries);
+				keyword = null;
+			}
+			else if (line.startsWith("#")) {
+				continue;
+			}
+			else if (line.startsWith("\"")) {
+				if (keyword != null) {
+					builder.append(keyword, unquote(line));
+				}
+			}
+			else {
+				int space = line.indexOf(' ');
+				if (space == -1) {
+					throw new IOException("Invalid line: " + line);
+				}
+				keyword = line.substring(0, space);
+				if (("msgid".equals(keyword) || "msgctxt".equals(keyword)) && builder.id != null) {
+					builder.flush(entries);
+				}
+				builder.set(keyword, unquote(line.substring(space + 1).trim()));
+			}
+		}
+		builder.flush(entries);
+		return new PoFile(entries);
+	}
+
+	static String unquote(String s) throws IOException
+	{
+		if (s.length() < 2 || s.charAt(0) != '"' || s.charAt(s.length() - 1) != '"') {
+			throw new IOException("Invalid string: " + s);
+		}
+		StringBuilder sb = new StringBuilder(s.length());
+		for (int i = 1; i < s.length() - 1; i++) {
+			char c = s.charAt(i);
+			if (c == '\\' && i < s.length() - 2) {
+				c = s.charAt(++i);
+				switch (c) {
+				case 'n':
+					c = '\n';
+					break;
+				case 't':
+					c = '\t';
+					break;
+				case 'r':
+					c = '\r';
+					break;
+				}
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A message of a catalog.
+	 */
+	public static class Entry {
+
+		private final String context;
+
+		private final String id;
+
+		private final String idPlural;
+
+		private final String[] strings;
+
+		public Entry(String context, String id, String idPlural, String[] strings)
+		{
+			this.context = context;
+			this.id = id;
+			this.idPlural = idPlural;
+			this.strings = strings;
+		}
+
+		/**
+		 * Returns the context or <code>null</code>.
+		 */
+		public String getContext()
+		{
+			return context;
+		}
+
+		public String getId()
+		{
+			return id;
+		}
+
+		/**
+		 * Returns the plural form of the id or <code>null</code>.
+		 */
+		public String getIdPlural()
+		{
+			return idPlural;
+		}
+
+		/**
+		 * Returns the translations, one for each plural form.
+		 */
+		public String[] getStrings()
+		{
+			return strings;
+		}
+
+		public boolean isPlural()
+		{
+			return idPlural != null;
+		}
+
+		/**
+		 * Returns true, if all forms have been translated.
+		 */
+		public boolean isTranslated()
+		{
+			for (int i = 0; i < strings.length; i++) {
+				if (strings[i].length() == 0) {
+					return false;
+				}
+			}
+			return strings.length > 0;
+		}
+
+	}
+
+	private static class Builder {
+
+		String context;
+
+		String id;
+
+		String idPlural;
+
+		List<String> strings = new ArrayList<String>();
+
+		void set(String keyword, String value) throws IOException
+		{
+			if ("msgctxt".equals(keyword)) {
+				context = value;
+			}
+			else if ("msgid".equals(keyword)) {
+				id = value;
+			}
+			else if ("msgid_plural".equals(keyword)) {
+				idPlural = value;
+			}
+			else if ("msgstr".equals(keyword)) {
+				strings.add(value);
+			}
+			else if (keyword.startsWith("msgstr[") && keyword.endsWith("]")) {
+				int index = Integer.parseInt(keyword.substring(7, keyword.length() - 1));
+				while (strings.size() <= index) {
+					strings.add("");
+				}
+				strings.set(index, value);
+			}
+			else {
+				throw new IOException("Unknown keyword: " + keyword);
+			}
+		}
+
+		void append(String keyword, String value)
+		{
+			if ("msgctxt".equals(keyword)) {
+				context += value;
+			}
+			else if ("msgid".equals(keyword)) {
+				id += value;
+			}
+			else if ("msgid_plural".equals(keyword)) {
+				idPlural += value;
+			}
+			else if ("msgstr".equals(keyword)) {
+				int last = strings.size() - 1;
+				strings.set(last, strings.get(last) + value);
+			}
+			else {
+				int index = Integer.parseInt(keyword.substring(7, keyword.length() - 1));
+				strings.set(index, strings.get(index) + value);
+			}
+		}
+
+		void flush(List<Entry> entries)
+		{
+			if (id != null) {
+				entries.add(new Entry(context, id, idPlural, strings.toArray(new String[strings.size()])));
+			}
+			context = null;
+			id = null;
+			idPlural = null;
+			strings.clear();
+		}
+
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import org.xnap.commons.i18n.I18n;
+
+/**
+ * Stores a catalog as a properties file that is loaded by
+ * <code>ResourceBundle.getBundle()</code> through a new class loader. The
+ * loaded bundles are removed from the cache of <code>ResourceBundle</code>
+ * so they are only retained by the returned object.
+ */
+public class PropertiesBackend implements Backend {
+
+	private Locale locale;
+
+	public String getName()
+	{
+		return Catalog.PROPERTIES;
+	}
+
+	public void write(Catalog catalog, File directory) throws IOException
+	{
+		locale = catalog.getLocale();
+		OutputStream out = new FileOutputStream(new File(directory, "Messages_" + locale + ".properties"));
+		try {
+			out.write(catalog.toProperties());
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	public I18n load(File directory) throws IOException
+	{
+		ClassLoader loader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, null);
+		I18n i18n = new I18n("Messages", locale, loader);
+		ResourceBundle.clearCache(loader);
+		return i18n;
+	}
+
+}
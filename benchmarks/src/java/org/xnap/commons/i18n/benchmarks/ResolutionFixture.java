@@ -0,0 +1,236 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+/**
+ * A class path directory for the resolution benchmarks. It contains a class
+ * at the bottom of a package hierarchy of a given depth and a properties
+ * bundle for a number of locales at the top of the hierarchy, optionally
+ * referenced by an <code>i18n.properties</code> file.
+ * <p>
+ * Every class loader returned by {@link #createClassLoader()} starts with
+ * empty caches, which makes it possible to measure cold resolutions without
+ * forking a JVM for each of them.
+ */
+public class ResolutionFixture {
+
+	/**
+	 * The top level package of the hierarchy.
+	 */
+	public static final String PACKAGE = "bench";
+
+	/**
+	 * The simple name of the bundle and of its properties files.
+	 */
+	public static final String BUNDLE_NAME = "Messages";
+
+	private final File directory;
+
+	private final URL url;
+
+	private final String className;
+
+	private final Locale[] locales;
+
+	private final String message;
+
+	private final byte[] classFile;
+
+	private ResolutionFixture(File directory, String className, Locale[] locales, String message)
+			throws MalformedURLException
+	{
+		this.directory = directory;
+		this.url = directory.toURI().toURL();
+		this.className = className;
+		this.locales = locales;
+		this.message = message;
+		this.classFile = createClassFile(className);
+	}
+
+	/**
+	 * Creates a fixture in a new temporary directory.
+	 * 
+	 * @param depth
+	 *            the number of packages below {@link #PACKAGE} that contain
+	 *            the class
+	 * @param localeCount
+	 *            the number of locales a bundle is created for, in addition
+	 *            to the root bundle
+	 * @param properties
+	 *            if true, an <code>i18n.properties</code> file that
+	 *            specifies the bundle is placed into {@link #PACKAGE}
+	 */
+	public static ResolutionFixture create(int depth, int localeCount, boolean properties) throws IOException
+	{
+		File directory = Files.createTempDirectory("gettext-commons-benchmarks").toFile();
+		File top = new File(directory, PACKAGE);
+		StringBuilder className = new StringBuilder(PACKAGE);
+		for (int i = 0; i < depth; i++) {
+			className.append(".p").append(i);
+		}
+		className.append(".Target");
+
+		Catalog catalog = Catalog.generate(100);
+		byte[] content = catalog.toProperties();
+		write(new File(top, BUNDLE_NAME + ".properties"), content);
+		String[] languages = Locale.getISOLanguages();
+		Locale[] locales = new Locale[Math.min(localeCount, languages.length)];
+		for (int i = 0; i < locales.length; i++) {
+			locales[i] = new Locale(languages[i]);
+			write(new File(top, BUNDLE_NAME + "_" + locales[i] + ".properties"), content);
+		}
+		if (properties) {
+			write(new File(top, "i18n.properties"), ("basename=" + PACKAGE + "." + BUNDLE_NAME + "\n")
+					.getBytes(StandardCharsets.ISO_8859_1));
+		}
+		return new ResolutionFixture(directory, className.toString(), locales, catalog.getEntries().get(0).getId());
+	}
+
+	private static void write(File file, byte[] content) throws IOException
+	{
+		file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the bytes of an empty public class named <code>name</code>.
+	 * The class has no constructor, it is only used to determine the
+	 * package and the class loader.
+	 */
+	static byte[] createClassFile(String name)
+	{
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0); // minor version
+			out.writeShort(49); // major version, Java 5
+			out.writeShort(5); // constant pool count
+			out.writeByte(7); // #1 class
+			out.writeShort(2);
+			out.writeByte(1); // #2 utf8
+			out.writeUTF(name.replace('.', '/'));
+			out.writeByte(7); // #3 class
+			out.writeShort(4);
+			out.writeByte(1); // #4 utf8
+			out.writeUTF("java/lang/Object");
+			out.writeShort(0x0021); // public super
+			out.writeShort(1); // this class
+			out.writeShort(3); // super class
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+			out.writeShort(0); // methods
+			out.writeShort(0); // attributes
+			out.flush();
+			return bytes.toByteArray();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns a new class loader for the directory that defines the class
+	 * of the fixture.
+	 */
+	public ClassLoader createClassLoader()
+	{
+		return new URLClassLoader(new URL[] { url }, ResolutionFixture.class.getClassLoader()) {
+
+			@Override
+			protected Class<?> findClass(String name) throws ClassNotFoundException
+			{
+				if (name.equals(className)) {
+					return defineClass(name, classFile, 0, classFile.length);
+				}
+				return super.findClass(name);
+			}
+
+		};
+	}
+
+	/**
+	 * Returns the class of the fixture loaded by <code>loader</code>.
+	 */
+	public Class<?> loadClass(ClassLoader loader)
+	{
+		try {
+			return loader.loadClass(className);
+		}
+		catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public String getClassName()
+	{
+		return className;
+	}
+
+	public Locale[] getLocales()
+	{
+		return locales;
+	}
+
+	/**
+	 * Returns a message id that is translated by all bundles.
+	 */
+	public String getMessage()
+	{
+		return message;
+	}
+
+	/**
+	 * Removes the directory of the fixture.
+	 */
+	public void delete()
+	{
+		delete(directory);
+	}
+
+	private static void delete(File file)
+	{
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; i++) {
+				delete(files[i]);
+			}
+		}
+		file.delete();
+	}
+
+}
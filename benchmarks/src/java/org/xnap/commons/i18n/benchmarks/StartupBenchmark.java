@@ -0,0 +1,77 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnap.commons.i18n.I18nFactory;
+
+/**
+ * Measures the time to the first translation in a new JVM: the library
+ * classes are loaded and initialized, an {@link org.xnap.commons.i18n.I18n}
+ * object is resolved through <code>i18n.properties</code> and a message is
+ * translated. Every fork measures a single invocation.
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar StartupBenchmark -f 20
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Thread)
+public class StartupBenchmark {
+
+	private ResolutionFixture fixture;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		fixture = ResolutionFixture.create(4, 1, true);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		fixture.delete();
+	}
+
+	@Benchmark
+	public String firstTranslation()
+	{
+		ClassLoader loader = fixture.createClassLoader();
+		Locale locale = fixture.getLocales()[0];
+		return I18nFactory.getI18n(fixture.loadClass(loader), locale).tr(fixture.getMessage());
+	}
+
+}
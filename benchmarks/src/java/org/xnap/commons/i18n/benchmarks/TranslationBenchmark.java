@@ -0,0 +1,192 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnap.commons.i18n.I18n;
+
+/**
+ * Measures the single threaded cost of the <code>tr*()</code> methods of
+ * {@link I18n} for catalogs of different sizes and backends.
+ * <p>
+ * Every invocation looks up a different message of a sample of the catalog
+ * to keep the lookups from being folded by the JIT.
+ * 
+ * <pre>
+ * java -jar target/benchmarks.jar TranslationBenchmark -p size=10000
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TranslationBenchmark {
+
+	/**
+	 * The number of messages that are looked up in turn, must be a power of
+	 * two.
+	 */
+	static final int SAMPLE_SIZE = 1024;
+
+	@Param({ "100", "10000", "100000" })
+	public int size;
+
+	@Param({ Catalog.PROPERTIES, Catalog.MSGFMT, Catalog.COMPACT, Catalog.COMPACT_DIRECT, Catalog.MAPPED })
+	public String backend;
+
+	private I18n i18n;
+
+	private PoFile.Entry[] simple;
+
+	private PoFile.Entry[] formatted;
+
+	private PoFile.Entry[] plural;
+
+	private PoFile.Entry[] pluralFormatted;
+
+	private PoFile.Entry[] context;
+
+	private String[] missing;
+
+	private Object[] arguments;
+
+	private int index;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		Catalog catalog = Catalog.generate(size);
+		i18n = new I18n(catalog.createBundle(backend));
+		// the samples use more distinct patterns than the default holds
+		i18n.setMaximumFormatCacheSize(2 * SAMPLE_SIZE);
+		simple = Catalog.sample(catalog.select(false, false, false), SAMPLE_SIZE);
+		formatted = Catalog.sample(catalog.select(false, false, true), SAMPLE_SIZE);
+		plural = Catalog.sample(catalog.select(false, true, false), SAMPLE_SIZE);
+		pluralFormatted = Catalog.sample(catalog.select(false, true, true), SAMPLE_SIZE);
+		context = Catalog.sample(catalog.select(true, false, false), SAMPLE_SIZE);
+		missing = new String[SAMPLE_SIZE];
+		for (int i = 0; i < missing.length; i++) {
+			missing[i] = "missing message #" + i;
+		}
+		arguments = new Object[] { new Integer(1), "two", new Integer(3), "four" };
+	}
+
+	private int next()
+	{
+		index = (index + 1) & (SAMPLE_SIZE - 1);
+		return index;
+	}
+
+	@Benchmark
+	public String trHit()
+	{
+		return i18n.tr(simple[next()].getId());
+	}
+
+	@Benchmark
+	public String trMiss()
+	{
+		return i18n.tr(missing[next()]);
+	}
+
+	@Benchmark
+	public String trnSingular()
+	{
+		PoFile.Entry entry = plural[next()];
+		return i18n.trn(entry.getId(), entry.getIdPlural(), 1);
+	}
+
+	@Benchmark
+	public String trnPlural()
+	{
+		PoFile.Entry entry = plural[next()];
+		return i18n.trn(entry.getId(), entry.getIdPlural(), 5);
+	}
+
+	@Benchmark
+	public String trnMiss()
+	{
+		String text = missing[next()];
+		return i18n.trn(text, text, 5);
+	}
+
+	@Benchmark
+	public String trcHit()
+	{
+		PoFile.Entry entry = context[next()];
+		return i18n.trc(entry.getContext(), entry.getId());
+	}
+
+	@Benchmark
+	public String trcMiss()
+	{
+		return i18n.trc("missing", missing[next()]);
+	}
+
+	/**
+	 * The template has no plural messages with context, the lookup of the
+	 * context key hits a singular message.
+	 */
+	@Benchmark
+	public String trnc()
+	{
+		PoFile.Entry entry = context[next()];
+		return i18n.trnc(entry.getContext(), entry.getId(), entry.getId(), 5);
+	}
+
+	@Benchmark
+	public String trFormat1()
+	{
+		return i18n.tr(formatted[next()].getId(), arguments[0]);
+	}
+
+	@Benchmark
+	public String trFormat4()
+	{
+		return i18n.tr(formatted[next()].getId(), arguments[0], arguments[1], arguments[2], arguments[3]);
+	}
+
+	@Benchmark
+	public String trFormatArray()
+	{
+		return i18n.tr(formatted[next()].getId(), arguments);
+	}
+
+	@Benchmark
+	public String trnFormat()
+	{
+		PoFile.Entry entry = pluralFormatted[next()];
+		return i18n.trn(entry.getId(), entry.getIdPlural(), 5, arguments[0], arguments[1]);
+	}
+
+}
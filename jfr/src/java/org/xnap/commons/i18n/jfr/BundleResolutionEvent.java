@@ -0,0 +1,51 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans the resolution of an I18n object for a class or package by
+ * {@link org.xnap.commons.i18n.I18nFactory}.
+ */
+@Name("org.xnap.commons.i18n.BundleResolution")
+@Label("Bundle Resolution")
+@Category("Gettext Commons")
+@Description("I18nFactory resolved the resource bundle of a class or package")
+@StackTrace(false)
+final class BundleResolutionEvent extends jdk.jfr.Event {
+
+	@Label("Path")
+	String path;
+
+	@Label("Locale")
+	String locale;
+
+	@Label("Base Name")
+	@Description("The base name of the resolved bundle, null if none was found")
+	String baseName;
+
+	@Label("Probes")
+	@Description("The number of bundle names that were probed, 0 if the result was cached")
+	int probes;
+
+}
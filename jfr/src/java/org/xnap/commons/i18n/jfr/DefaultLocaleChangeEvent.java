@@ -0,0 +1,41 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Spans the change of the locale of all managed I18n objects by
+ * {@link org.xnap.commons.i18n.I18nManager#setDefaultLocale(java.util.Locale)}.
+ */
+@Name("org.xnap.commons.i18n.DefaultLocaleChange")
+@Label("Default Locale Change")
+@Category("Gettext Commons")
+@Description("I18nManager changed the locale of all managed I18n objects")
+final class DefaultLocaleChangeEvent extends jdk.jfr.Event {
+
+	@Label("Locale")
+	String locale;
+
+	@Label("Updated Objects")
+	int count;
+
+}
@@ -0,0 +1,265 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.jfr;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import jdk.jfr.Event;
+
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nManager;
+import org.xnap.commons.i18n.I18nMonitor;
+
+/**
+ * A monitor that emits Java Flight Recorder events for bundle resolution,
+ * bundle loading, i18n.properties lookups and changes of the default
+ * locale. Optionally a sample of the lookups of the tr*() methods is
+ * recorded as well.
+ * <p>
+ * The events are enabled in a recording like any other event, e.g. through
+ * <code>-XX:StartFlightRecording</code>. The events span the operation
+ * they describe, they are begun before and committed after it. Sampled
+ * lookups carry their duration in a dedicated field.
+ * 
+ * <pre>
+ * JfrMonitor.install(0);
+ * </pre>
+ */
+public class JfrMonitor implements I18nMonitor {
+
+	private final I18nMonitor delegate;
+
+	private final int translationSampleRate;
+
+	/**
+	 * Constructs a monitor that does not record lookups.
+	 */
+	public JfrMonitor()
+	{
+		this(null, 0);
+	}
+
+	/**
+	 * Constructs a monitor.
+	 * 
+	 * @param delegate
+	 *            a monitor that is notified as well, may be <code>null</code>
+	 * @param translationSampleRate
+	 *            on average one out of <code>translationSampleRate</code>
+	 *            lookups is recorded, 0 to disable recording of lookups
+	 */
+	public JfrMonitor(I18nMonitor delegate, int translationSampleRate)
+	{
+		if (translationSampleRate < 0) {
+			throw new IllegalArgumentException("translationSampleRate must not be negative");
+		}
+		this.delegate = delegate;
+		this.translationSampleRate = translationSampleRate;
+	}
+
+	/**
+	 * Installs a new monitor that delegates to the currently installed
+	 * monitor, if any.
+	 * 
+	 * @param translationSampleRate
+	 *            see {@link #JfrMonitor(I18nMonitor, int)}
+	 * @return the installed monitor
+	 */
+	public static JfrMonitor install(int translationSampleRate)
+	{
+		I18nManager manager = I18nManager.getInstance();
+		JfrMonitor monitor = new JfrMonitor(manager.getMonitor(), translationSampleRate);
+		manager.setMonitor(monitor);
+		return monitor;
+	}
+
+	@Override
+	public void translated(I18n i18n, String key, boolean found, long duration)
+	{
+		if (delegate != null) {
+			delegate.translated(i18n, key, found, duration);
+		}
+		if (translationSampleRate > 0 && ThreadLocalRandom.current().nextInt(translationSampleRate) == 0) {
+			TranslationEvent event = new TranslationEvent();
+			if (event.isEnabled()) {
+				event.baseName = i18n.getBaseName();
+				event.locale = toString(i18n.getLocale());
+				event.key = key;
+				event.found = found;
+				event.lookupTime = duration;
+				event.commit();
+			}
+		}
+	}
+
+	@Override
+	public void formatted(I18n i18n, String pattern)
+	{
+		if (delegate != null) {
+			delegate.formatted(i18n, pattern);
+		}
+	}
+
+	@Override
+	public Object bundleLoading(String baseName, Locale locale)
+	{
+		Object context = (delegate != null) ? delegate.bundleLoading(baseName, locale) : null;
+		return begin(new BundleLoadEvent(), context);
+	}
+
+	@Override
+	public void bundleLoaded(String baseName, Locale locale, boolean found, long duration, Object context)
+	{
+		BundleLoadEvent event = (BundleLoadEvent)end(context);
+		if (event != null) {
+			event.baseName = baseName;
+			event.locale = toString(locale);
+			event.found = found;
+			event.commit();
+		}
+		if (delegate != null) {
+			delegate.bundleLoaded(baseName, locale, found, duration, getDelegateContext(context));
+		}
+	}
+
+	@Override
+	public Object resolving(String path, Locale locale)
+	{
+		Object context = (delegate != null) ? delegate.resolving(path, locale) : null;
+		return begin(new BundleResolutionEvent(), context);
+	}
+
+	@Override
+	public void resolved(String path, Locale locale, I18n i18n, int probes, long duration, Object context)
+	{
+		BundleResolutionEvent event = (BundleResolutionEvent)end(context);
+		if (event != null) {
+			event.path = path;
+			event.locale = toString(locale);
+			event.baseName = (i18n != null) ? i18n.getBaseName() : null;
+			event.probes = probes;
+			event.commit();
+		}
+		if (delegate != null) {
+			delegate.resolved(path, locale, i18n, probes, duration, getDelegateContext(context));
+		}
+	}
+
+	@Override
+	public Object propertiesReading(String path)
+	{
+		Object context = (delegate != null) ? delegate.propertiesReading(path) : null;
+		return begin(new PropertiesReadEvent(), context);
+	}
+
+	@Override
+	public void propertiesRead(String path, String baseName, long duration, Object context)
+	{
+		PropertiesReadEvent event = (PropertiesReadEvent)end(context);
+		if (event != null) {
+			event.path = path;
+			event.baseName = baseName;
+			event.commit();
+		}
+		if (delegate != null) {
+			delegate.propertiesRead(path, baseName, duration, getDelegateContext(context));
+		}
+	}
+
+	@Override
+	public Object defaultLocaleChanging(Locale locale)
+	{
+		Object context = (delegate != null) ? delegate.defaultLocaleChanging(locale) : null;
+		return begin(new DefaultLocaleChangeEvent(), context);
+	}
+
+	@Override
+	public void defaultLocaleChanged(Locale locale, int count, long duration, Object context)
+	{
+		DefaultLocaleChangeEvent event = (DefaultLocaleChangeEvent)end(context);
+		if (event != null) {
+			event.locale = toString(locale);
+			event.count = count;
+			event.commit();
+		}
+		if (delegate != null) {
+			delegate.defaultLocaleChanged(locale, count, duration, getDelegateContext(context));
+		}
+	}
+
+	/**
+	 * Starts <code>event</code>, if it is enabled.
+	 * 
+	 * @return the context of the operation, <code>null</code> if neither
+	 *         the event nor the delegate need one
+	 */
+	private static Object begin(Event event, Object delegateContext)
+	{
+		if (!event.isEnabled()) {
+			return (delegateContext != null) ? new Context(null, delegateContext) : null;
+		}
+		event.begin();
+		return new Context(event, delegateContext);
+	}
+
+	/**
+	 * Ends the event of <code>context</code>.
+	 * 
+	 * @return the event, if it should be committed, <code>null</code>
+	 *         otherwise
+	 */
+	private static Event end(Object context)
+	{
+		Event event = (context != null) ? ((Context)context).event : null;
+		if (event == null) {
+			return null;
+		}
+		event.end();
+		return event.shouldCommit() ? event : null;
+	}
+
+	private static Object getDelegateContext(Object context)
+	{
+		return (context != null) ? ((Context)context).delegateContext : null;
+	}
+
+	private static String toString(Locale locale)
+	{
+		return (locale != null) ? locale.toString() : null;
+	}
+
+	/**
+	 * The context of an operation: the event that spans it and the context
+	 * of the delegate.
+	 */
+	private static final class Context {
+
+		final Event event;
+
+		final Object delegateContext;
+
+		Context(Event event, Object delegateContext)
+		{
+			this.event = event;
+			this.delegateContext = delegateContext;
+		}
+
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted for a sample of the lookups of the tr*() methods. The event is
+ * emitted once the lookup has finished, its duration is carried in a
+ * dedicated field.
+ */
+@Name("org.xnap.commons.i18n.Translation")
+@Label("Translation")
+@Category("Gettext Commons")
+@Description("A sampled lookup of a message by one of the tr*() methods")
+final class TranslationEvent extends jdk.jfr.Event {
+
+	@Label("Base Name")
+	String baseName;
+
+	@Label("Locale")
+	String locale;
+
+	@Label("Key")
+	String key;
+
+	@Label("Found")
+	boolean found;
+
+	@Label("Lookup Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long lookupTime;
+
+}
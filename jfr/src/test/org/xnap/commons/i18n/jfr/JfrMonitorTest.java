@@ -0,0 +1,128 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n.jfr;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import junit.framework.TestCase;
+
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+import org.xnap.commons.i18n.I18nManager;
+import org.xnap.commons.i18n.I18nStatistics;
+
+public class JfrMonitorTest extends TestCase {
+
+	private Path file;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		file = Files.createTempFile("i18n", ".jfr");
+		JfrMonitor.install(1);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		I18nManager.getInstance().setMonitor(null);
+		Files.deleteIfExists(file);
+	}
+
+	public void testEvents() throws Exception
+	{
+		try (Recording recording = new Recording()) {
+			recording.enable("org.xnap.commons.i18n.BundleResolution");
+			recording.enable("org.xnap.commons.i18n.BundleLoad");
+			recording.enable("org.xnap.commons.i18n.Translation");
+			recording.start();
+			I18n i18n = I18nFactory.getI18n(getClass(), "Missing", Locale.GERMAN, I18nFactory.FALLBACK
+					| I18nFactory.NO_CACHE);
+			i18n.tr("house");
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		assertEquals(1, count(events, "org.xnap.commons.i18n.BundleResolution"));
+		assertTrue(count(events, "org.xnap.commons.i18n.BundleLoad") > 0);
+		assertEquals(1, count(events, "org.xnap.commons.i18n.Translation"));
+
+		// the resolution spans the bundle loads it probed
+		RecordedEvent resolution = find(events, "org.xnap.commons.i18n.BundleResolution");
+		assertFalse(resolution.getDuration().isZero());
+		for (RecordedEvent event : events) {
+			if ("org.xnap.commons.i18n.BundleLoad".equals(event.getEventType().getName())) {
+				assertFalse(event.getStartTime().isBefore(resolution.getStartTime()));
+				assertFalse(event.getEndTime().isAfter(resolution.getEndTime()));
+			}
+		}
+	}
+
+	public void testDelegateContext()
+	{
+		final Object token = new Object();
+		final Object[] received = new Object[1];
+		I18nStatistics statistics = new I18nStatistics() {
+			@Override
+			public Object resolving(String path, Locale locale)
+			{
+				return token;
+			}
+
+			@Override
+			public void resolved(String path, Locale locale, I18n i18n, int probes, long duration, Object context)
+			{
+				super.resolved(path, locale, i18n, probes, duration, context);
+				received[0] = context;
+			}
+		};
+		I18nManager.getInstance().setMonitor(new JfrMonitor(statistics, 0));
+		I18nFactory.getI18n(getClass(), "Missing", Locale.GERMAN, I18nFactory.FALLBACK | I18nFactory.NO_CACHE);
+		assertSame(token, received[0]);
+		assertEquals(1, statistics.getResolutionCount());
+	}
+
+	private static RecordedEvent find(List<RecordedEvent> events, String name)
+	{
+		for (RecordedEvent event : events) {
+			if (name.equals(event.getEventType().getName())) {
+				return event;
+			}
+		}
+		return null;
+	}
+
+	private static int count(List<RecordedEvent> events, String name)
+	{
+		int count = 0;
+		for (RecordedEvent event : events) {
+			if (name.equals(event.getEventType().getName())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of changed translations that is applied to a live {@link I18n}
+ * object by {@link I18n#applyPatch(CatalogPatch)}.
+ *
+ * <pre>
+ * CatalogPatch patch = new CatalogPatch();
+ * patch.put(&quot;house&quot;, &quot;Villa&quot;);
+ * patch.putPlural(&quot;File&quot;, new String[] { &quot;Dokument&quot;, &quot;{0} Dokumente&quot; });
+ * i18n.applyPatch(patch);
+ * </pre>
+ *
+ * @since 0.9.9
+ */
+public class CatalogPatch {
+
+	/**
+	 * Map<String, Object>, the values are strings or string arrays.
+	 */
+	private final Map translations = new HashMap();
+
+	private final Set removals = new HashSet();
+
+	/**
+	 * Constructs an empty patch.
+	 */
+	public CatalogPatch()
+	{
+	}
+
+	/**
+	 * Changes the translation of <code>text</code>.
+	 */
+	public void put(String text, String translation)
+	{
+		set(text, translation);
+	}
+
+	/**
+	 * Changes the translation of <code>text</code> in <code>context</code>.
+	 */
+	public void put(String context, String text, String translation)
+	{
+		set(OverlayResourceBundle.getKey(context, text), translation);
+	}
+
+	/**
+	 * Changes the plural forms of the translation of <code>text</code>.
+	 */
+	public void putPlural(String text, String[] translations)
+	{
+		set(text, translations.clone());
+	}
+
+	/**
+	 * Changes the plural forms of the translation of <code>text</code> in
+	 * <code>context</code>.
+	 */
+	public void putPlural(String context, String text, String[] translations)
+	{
+		set(OverlayResourceBundle.getKey(context, text), translations.clone());
+	}
+
+	private void set(String key, Object value)
+	{
+		if (key == null || value == null) {
+			throw new NullPointerException();
+		}
+		translations.put(key, value);
+		removals.remove(key);
+	}
+
+	/**
+	 * Reverts a translation that has been changed by a previous patch to the
+	 * translation of the underlying bundle.
+	 */
+	public void remove(String text)
+	{
+		translations.remove(text);
+		removals.add(text);
+	}
+
+	/**
+	 * Reverts a translation of <code>text</code> in <code>context</code> that
+	 * has been changed by a previous patch.
+	 */
+	public void remove(String context, String text)
+	{
+		remove(OverlayResourceBundle.getKey(context, text));
+	}
+
+	/**
+	 * Returns the number of changes.
+	 */
+	public int size()
+	{
+		return translations.size() + removals.size();
+	}
+
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the changed translations by key.
+	 */
+	Map getTranslations()
+	{
+		return translations;
+	}
+
+	/**
+	 * Returns the keys of the reverted translations.
+	 */
+	Set getRemovals()
+	{
+		return removals;
+	}
+
+	/**
+	 * Returns the keys of all changed translations.
+	 */
+	Set getKeys()
+	{
+		Set keys = new HashSet(translations.keySet());
+		keys.addAll(removals);
+		return keys;
+	}
+
+}
@@ -0,0 +1,645 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Reloads resource bundles that are backed by properties files when the
+ * files are modified.
+ * <p>
+ * The reloader checks the modification time of the properties files of the
+ * bundles of all {@link I18n} objects that have loaded a bundle by base
+ * name, whether they are managed by {@link I18nManager} or not, either when
+ * {@link #reload()} is invoked or periodically after {@link #start(long)} has
+ * been called. The state of the files is recorded when a bundle is loaded,
+ * so modifications made before the first check are noticed. The files of
+ * all locales of a base name are checked, so changes to the catalogs of
+ * fallback locales are noticed as well, and the files are looked up again
+ * on every check, so catalogs that are created for the locale of an
+ * object later on are noticed too. If a file has changed, every
+ * <code>I18n</code> object that uses the base name loads its bundle again,
+ * the way {@link I18n#setLocale(Locale)} does. The locale
+ * fallback, compact and string pool settings of each object are retained,
+ * and later calls to <code>setLocale()</code> see the modified files as
+ * well. Translations never block on a reload: they either see the old or
+ * the new bundle.
+ * <p>
+ * Only properties files in the file system are checked. Bundles that have
+ * been compiled to classes, e.g. by <code>msgfmt</code>, are left
+ * untouched.
+ * <p>
+ * Before the bundles are loaded again, the bundles that
+ * {@link ResourceBundle} has cached for the class loader of the modified
+ * files are discarded. This affects all base names of that class loader,
+ * including bundles that are not translation catalogs, which are loaded
+ * again from their files the next time they are requested. Discarding the
+ * cache requires Java 6 or later, bundles loaded through a
+ * {@link LocaleFallback} can be reloaded on any version.
+ *
+ * @since 0.9.9
+ */
+public class CatalogReloader {
+
+	private static final Locale ROOT_LOCALE = new Locale("", "");
+
+	/**
+	 * <code>ResourceBundle.clearCache(ClassLoader)</code>, <code>null</code>
+	 * before Java 6.
+	 */
+	private static final Method CLEAR_CACHE = getClearCacheMethod();
+
+	/**
+	 * Map<ClassLoader, Map<String, Catalog>>, the inner map is keyed by
+	 * base name. Shared by all reloaders since it records the state of the
+	 * files when the bundles were loaded, also guards the catalogs.
+	 */
+	private static final Map catalogsByLoader = new WeakHashMap();
+
+	/**
+	 * Set when the first reloader is constructed, the state of the files is
+	 * only recorded from then on.
+	 */
+	private static volatile boolean watching;
+
+	/**
+	 * Serializes reloads.
+	 */
+	private final Object lock = new Object();
+
+	private volatile Thread thread;
+
+	private volatile long interval;
+
+	private volatile int reloadCount;
+
+	private volatile int failureCount;
+
+	private volatile Exception lastFailure;
+
+	private volatile long lastReloadDuration;
+
+	/**
+	 * Constructs a reloader. Bundles are only checked for modifications when
+	 * {@link #reload()} is invoked, unless {@link #start(long)} is called.
+	 * Modifications are noticed from the time the bundles are loaded, or
+	 * from the construction of the first reloader for bundles that have
+	 * been loaded before.
+	 */
+	public CatalogReloader()
+	{
+		if (!watching) {
+			watching = true;
+			I18n[] i18ns = I18nManager.getInstance().getLoadedI18ns();
+			for (int i = 0; i < i18ns.length; i++) {
+				synchronized (i18ns[i]) {
+					loaded(i18ns[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts a daemon thread that invokes {@link #reload()} every
+	 * <code>interval</code> milliseconds. If the thread is already running
+	 * it is restarted with the new interval.
+	 *
+	 * @param interval
+	 *            the number of milliseconds between checks
+	 * @throws IllegalArgumentException
+	 *             if <code>interval</code> is not positive
+	 */
+	public synchronized void start(long interval)
+	{
+		if (interval <= 0) {
+			throw new IllegalArgumentException("interval must be positive");
+		}
+		stop();
+		this.interval = interval;
+		Thread thread = new Thread(new Runnable() {
+			public void run()
+			{
+				poll();
+			}
+		}, "CatalogReloader");
+		thread.setDaemon(true);
+		this.thread = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stops the thread started by {@link #start(long)}.
+	 */
+	public synchronized void stop()
+	{
+		Thread thread = this.thread;
+		this.thread = null;
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Returns true, if the reloader periodically checks for modifications.
+	 */
+	public boolean isRunning()
+	{
+		return thread != null;
+	}
+
+	private void poll()
+	{
+		Thread current = Thread.currentThread();
+		while (thread == current) {
+			try {
+				Thread.sleep(interval);
+			}
+			catch (InterruptedException e) {
+				continue;
+			}
+			if (thread == current) {
+				reload();
+			}
+		}
+	}
+
+	/**
+	 * Checks the files of the bundles of all <code>I18n</code> objects for
+	 * modifications and reloads the bundles of modified files. A modified
+	 * file that can not be read or parsed is recorded as a failure, which
+	 * can be queried through {@link #getFailureCount()} and
+	 * {@link #getLastFailure()}, the previous bundle remains in use in that
+	 * case and the file is checked again on the next invocation. A deleted
+	 * file is recorded as a failure once.
+	 *
+	 * @return the number of base names whose bundles were reloaded
+	 */
+	public int reload()
+	{
+		I18n[] i18ns = I18nManager.getInstance().getLoadedI18ns();
+		synchronized (lock) {
+			long start = System.currentTimeMillis();
+			Catalog[] catalogs = new Catalog[i18ns.length];
+			// Map<Catalog, Set<String>>, the bundle names to check
+			Map namesByCatalog = new HashMap();
+			// Map<Catalog, ClassLoader>
+			Map loaders = new HashMap();
+			for (int i = 0; i < i18ns.length; i++) {
+				String baseName;
+				ClassLoader loader;
+				Locale locale;
+				synchronized (i18ns[i]) {
+					baseName = i18ns[i].getBaseName();
+					loader = i18ns[i].getClassLoader();
+					locale = i18ns[i].getLocale();
+				}
+				if (baseName == null || loader == null) {
+					continue;
+				}
+
+				catalogs[i] = getCatalog(baseName, loader);
+				Set names = (Set)namesByCatalog.get(catalogs[i]);
+				if (names == null) {
+					names = new HashSet();
+					namesByCatalog.put(catalogs[i], names);
+					loaders.put(catalogs[i], loader);
+					addBundleNames(names, baseName, loader, null);
+				}
+				addCandidateNames(names, baseName, locale);
+			}
+
+			Set modified = new HashSet();
+			synchronized (catalogsByLoader) {
+				for (Iterator it = namesByCatalog.entrySet().iterator(); it.hasNext();) {
+					Map.Entry entry = (Map.Entry)it.next();
+					Catalog catalog = (Catalog)entry.getKey();
+					Set names = (Set)entry.getValue();
+					ClassLoader loader = (ClassLoader)loaders.get(catalog);
+					if (catalog.isModified(names, loader)) {
+						try {
+							catalog.check(names, loader);
+							modified.add(catalog);
+						}
+						catch (IOException e) {
+							failed(e);
+						}
+						catch (RuntimeException e) {
+							failed(e);
+						}
+					}
+					catalog.watch(names, loader);
+				}
+			}
+			if (modified.isEmpty()) {
+				return 0;
+			}
+
+			List stale = new ArrayList();
+			for (int i = 0; i < i18ns.length; i++) {
+				if (modified.contains(catalogs[i])) {
+					stale.add(i18ns[i]);
+				}
+			}
+			// discard the cached bundles before any object loads its bundle
+			Set cleared = new HashSet();
+			for (Iterator it = stale.iterator(); it.hasNext();) {
+				I18n i18n = (I18n)it.next();
+				ClassLoader loader = i18n.getClassLoader();
+				if (cleared.add(loader)) {
+					clearCache(loader);
+				}
+				LocaleFallback fallback = i18n.getLocaleFallback();
+				if (fallback != null) {
+					fallback.clear(loader);
+				}
+			}
+			for (Iterator it = stale.iterator(); it.hasNext();) {
+				try {
+					((I18n)it.next()).reload();
+				}
+				catch (MissingResourceException e) {
+					failed(e);
+				}
+			}
+			int count = modified.size();
+			reloadCount += count;
+			lastReloadDuration = System.currentTimeMillis() - start;
+			return count;
+		}
+	}
+
+	/**
+	 * Records the state of the files of the bundle <code>i18n</code> has
+	 * just loaded, so modifications made before the next check are
+	 * noticed. Invoked by {@link I18nManager#addLoaded(I18n)}, does nothing
+	 * until a reloader has been constructed.
+	 */
+	static void loaded(I18n i18n)
+	{
+		if (!watching) {
+			return;
+		}
+		String baseName = i18n.getBaseName();
+		ClassLoader loader = i18n.getClassLoader();
+		if (baseName == null || loader == null) {
+			return;
+		}
+		Set names = new HashSet();
+		addBundleNames(names, baseName, loader, i18n.getLocale());
+		Catalog catalog = getCatalog(baseName, loader);
+		synchronized (catalogsByLoader) {
+			catalog.watch(names, loader);
+		}
+	}
+
+	/**
+	 * Adds the names of the bundles of all available locales of
+	 * <code>baseName</code> and of the bundles <code>ResourceBundle</code>
+	 * consults for <code>locale</code>, whether they exist or not.
+	 */
+	private static void addBundleNames(Set names, String baseName, ClassLoader loader, Locale locale)
+	{
+		names.add(getBundleName(baseName, ROOT_LOCALE));
+		Locale[] locales = I18nFactory.getAvailableLocales(baseName, loader);
+		for (int i = 0; i < locales.length; i++) {
+			names.add(getBundleName(baseName, locales[i]));
+		}
+		addCandidateNames(names, baseName, locale);
+	}
+
+	private static void addCandidateNames(Set names, String baseName, Locale locale)
+	{
+		Locale[] locales = getCandidateLocales(Locale.getDefault());
+		for (int i = 0; i < locales.length; i++) {
+			names.add(getBundleName(baseName, locales[i]));
+		}
+		if (locale != null) {
+			locales = getCandidateLocales(locale);
+			for (int i = 0; i < locales.length; i++) {
+				names.add(getBundleName(baseName, locales[i]));
+			}
+		}
+	}
+
+	private void failed(Exception e)
+	{
+		lastFailure = e;
+		failureCount++;
+	}
+
+	/**
+	 * Returns the number of times the bundles of a base name have been
+	 * reloaded.
+	 */
+	public int getReloadCount()
+	{
+		return reloadCount;
+	}
+
+	/**
+	 * Returns the number of modified files and bundles that could not be
+	 * reloaded.
+	 */
+	public int getFailureCount()
+	{
+		return failureCount;
+	}
+
+	/**
+	 * Returns the exception of the most recent failed reload.
+	 *
+	 * @return the exception or <code>null</code>, if no reload has failed
+	 */
+	public Exception getLastFailure()
+	{
+		return lastFailure;
+	}
+
+	/**
+	 * Returns the number of milliseconds the most recent reload of modified
+	 * bundles took.
+	 */
+	public long getLastReloadDuration()
+	{
+		return lastReloadDuration;
+	}
+
+	private static Catalog getCatalog(String baseName, ClassLoader loader)
+	{
+		synchronized (catalogsByLoader) {
+			Map catalogs = (Map)catalogsByLoader.get(loader);
+			if (catalogs == null) {
+				catalogs = new HashMap();
+				catalogsByLoader.put(loader, catalogs);
+			}
+			Catalog catalog = (Catalog)catalogs.get(baseName);
+			if (catalog == null) {
+				catalog = new Catalog();
+				catalogs.put(baseName, catalog);
+			}
+			return catalog;
+		}
+	}
+
+	/**
+	 * Discards all bundles that {@link ResourceBundle} has cached for
+	 * <code>loader</code>, whatever their base name, if the runtime supports
+	 * it.
+	 */
+	static void clearCache(ClassLoader loader)
+	{
+		if (CLEAR_CACHE == null) {
+			return;
+		}
+		try {
+			CLEAR_CACHE.invoke(null, new Object[] { loader });
+		}
+		catch (IllegalAccessException e) {
+			// the method is public
+		}
+		catch (InvocationTargetException e) {
+			// the cache is left as it is
+		}
+	}
+
+	private static Method getClearCacheMethod()
+	{
+		try {
+			return ResourceBundle.class.getMethod("clearCache", new Class[] { ClassLoader.class });
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the name of the bundle for <code>locale</code> the way
+	 * {@link ResourceBundle#getBundle(String, Locale, ClassLoader)} constructs
+	 * it.
+	 */
+	static String getBundleName(String baseName, Locale locale)
+	{
+		String suffix = locale.toString();
+		return (suffix.length() == 0) ? baseName : baseName + "_" + suffix;
+	}
+
+	/**
+	 * Returns the locales of the bundles that form the chain of a bundle for
+	 * <code>locale</code>, starting with the root locale.
+	 */
+	static Locale[] getCandidateLocales(Locale locale)
+	{
+		String language = locale.getLanguage();
+		String country = locale.getCountry();
+		String variant = locale.getVariant();
+		if (variant.length() > 0) {
+			return new Locale[] { ROOT_LOCALE, new Locale(language, ""), new Locale(language, country), locale };
+		}
+		else if (country.length() > 0) {
+			return new Locale[] { ROOT_LOCALE, new Locale(language, ""), locale };
+		}
+		else if (language.length() > 0) {
+			return new Locale[] { ROOT_LOCALE, locale };
+		}
+		return new Locale[] { locale };
+	}
+
+	static File toFile(URL url)
+	{
+		if (!"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(new URI(url.toExternalForm()));
+		}
+		catch (URISyntaxException e) {
+			return new File(url.getFile());
+		}
+		catch (IllegalArgumentException e) {
+			return new File(url.getFile());
+		}
+	}
+
+	/**
+	 * The state of the properties files of the bundles of a base name.
+	 */
+	private static class Catalog {
+
+		/**
+		 * Map<String, FileState>, keyed by bundle name. Never modified once
+		 * it has been assigned.
+		 */
+		private Map states = Collections.EMPTY_MAP;
+
+		/**
+		 * Records the state of the files of the bundles in
+		 * <code>names</code> that are not watched yet.
+		 */
+		public void watch(Set names, ClassLoader loader)
+		{
+			Map states = null;
+			for (Iterator it = names.iterator(); it.hasNext();) {
+				String name = (String)it.next();
+				if (!this.states.containsKey(name)) {
+					if (states == null) {
+						states = new HashMap(this.states);
+					}
+					states.put(name, new FileState(getFile(name, loader)));
+				}
+			}
+			if (states != null) {
+				this.states = states;
+			}
+		}
+
+		/**
+		 * Returns true, if a watched file in <code>names</code> has been
+		 * modified, created or deleted.
+		 */
+		public boolean isModified(Set names, ClassLoader loader)
+		{
+			for (Iterator it = names.iterator(); it.hasNext();) {
+				String name = (String)it.next();
+				FileState state = (FileState)states.get(name);
+				if (state != null && !state.equals(new FileState(getFile(name, loader)))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Parses the modified files and records their state.
+		 * {@link ResourceBundle} skips files it can not read without
+		 * notice, so they are checked in advance. Deleted files are
+		 * reported once, the other modifications are checked again on the
+		 * next invocation in that case.
+		 */
+		public void check(Set names, ClassLoader loader) throws IOException
+		{
+			Map states = new HashMap(this.states);
+			Map deleted = new HashMap();
+			FileNotFoundException failure = null;
+			for (Iterator it = names.iterator(); it.hasNext();) {
+				String name = (String)it.next();
+				FileState previous = (FileState)states.get(name);
+				if (previous == null) {
+					continue;
+				}
+				FileState state = new FileState(getFile(name, loader));
+				if (state.equals(previous)) {
+					continue;
+				}
+				if (state.file == null) {
+					deleted.put(name, state);
+					failure = new FileNotFoundException(previous.file.getPath());
+					continue;
+				}
+				InputStream in = new FileInputStream(state.file);
+				try {
+					new Properties().load(in);
+				}
+				finally {
+					try {
+						in.close();
+					}
+					catch (IOException e) {
+						// this exception is lost
+					}
+				}
+				states.put(name, state);
+			}
+			if (failure != null) {
+				states = new HashMap(this.states);
+				states.putAll(deleted);
+				this.states = states;
+				throw failure;
+			}
+			this.states = states;
+		}
+
+		private static File getFile(String name, ClassLoader loader)
+		{
+			URL url = loader.getResource(name.replace('.', '/') + ".properties");
+			return (url != null) ? toFile(url) : null;
+		}
+
+	}
+
+	/**
+	 * The modification time and length of a properties file.
+	 */
+	private static class FileState {
+
+		/**
+		 * The file or <code>null</code>, if the bundle is not backed by a
+		 * properties file in the file system.
+		 */
+		final File file;
+
+		final long lastModified;
+
+		final long length;
+
+		FileState(File file)
+		{
+			this.file = file;
+			this.lastModified = (file != null) ? file.lastModified() : 0;
+			this.length = (file != null) ? file.length() : 0;
+		}
+
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof FileState)) {
+				return false;
+			}
+			FileState other = (FileState)o;
+			return ((file != null) ? file.equals(other.file) : other.file == null)
+					&& lastModified == other.lastModified && length == other.length;
+		}
+
+		public int hashCode()
+		{
+			return (int)(lastModified ^ length);
+		}
+
+	}
+
+}
@@ -0,0 +1,297 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Vector;
+
+/**
+ * An immutable bundle that holds a flattened catalog, i.e. a map of
+ * translations. Bundles follow the conventions of the bundles generated by
+ * <code>msgfmt</code>. Plural forms are selected by the expression of the
+ * <code>Plural-Forms</code> field of the catalog header, the translation of
+ * the empty string, or by the rule of the Germanic languages
+ * (<code>n != 1</code>) if the catalog has no valid expression.
+ */
+class CatalogResourceBundle extends ResourceBundle {
+
+	/**
+	 * Map<String, Object>, the values are strings or string arrays.
+	 */
+	private final Map entries;
+
+	private final Locale locale;
+
+	private final PluralExpression plural;
+
+	/**
+	 * @param translations
+	 *            maps keys to strings or to string arrays of plural forms,
+	 *            the map is copied
+	 * @throws IllegalArgumentException
+	 *             if a value is neither a string nor a string array
+	 */
+	public CatalogResourceBundle(Map translations, Locale locale)
+	{
+		this(translations, locale, true);
+	}
+
+	/**
+	 * @param copy
+	 *            if false, <code>translations</code> is used as it is and
+	 *            must map keys to strings or to non-empty string arrays; it
+	 *            must not be modified afterwards
+	 */
+	CatalogResourceBundle(Map translations, Locale locale, boolean copy)
+	{
+		this.entries = copy ? copy(translations) : translations;
+		this.locale = locale;
+		Object header = entries.get("");
+		this.plural = PluralExpression.forHeader((header instanceof String) ? (String)header : null);
+	}
+
+	private CatalogResourceBundle(CatalogResourceBundle catalog, ResourceBundle parent)
+	{
+		this.entries = catalog.entries;
+		this.locale = catalog.locale;
+		this.plural = catalog.plural;
+		setParent(parent);
+	}
+
+	/**
+	 * Returns a bundle that shares the translations of this bundle and
+	 * continues lookups in <code>parent</code>.
+	 */
+	CatalogResourceBundle withParent(ResourceBundle parent)
+	{
+		return new CatalogResourceBundle(this, parent);
+	}
+
+	private static Map copy(Map translations)
+	{
+		Map entries = new HashMap((int)(translations.size() / 0.75f) + 1);
+		for (Iterator it = translations.entrySet().iterator(); it.hasNext();) {
+			Map.Entry entry = (Map.Entry)it.next();
+			Object value = entry.getValue();
+			if (value instanceof String[] && ((String[])value).length > 0) {
+				value = ((String[])value).clone();
+			}
+			else if (!(value instanceof String)) {
+				throw new IllegalArgumentException("Invalid translation for " + entry.getKey() + ": " + value);
+			}
+			entries.put((String)entry.getKey(), value);
+		}
+		return entries;
+	}
+
+	/**
+	 * Returns the translations by key. The map must not be modified.
+	 */
+	Map getEntries()
+	{
+		return entries;
+	}
+
+	/**
+	 * Reads a catalog written by {@link #write(DataOutput)}.
+	 */
+	public static CatalogResourceBundle read(DataInput in, Locale locale) throws IOException
+	{
+		int size = in.readInt();
+		Map translations = new HashMap((int)(size / 0.75f) + 1);
+		for (int i = 0; i < size; i++) {
+			String key = in.readUTF();
+			int count = in.readInt();
+			if (count < 0) {
+				translations.put(key, in.readUTF());
+			}
+			else {
+				String[] forms = new String[count];
+				for (int j = 0; j < count; j++) {
+					forms[j] = in.readUTF();
+				}
+				translations.put(key, forms);
+			}
+		}
+		try {
+			return new CatalogResourceBundle(translations, locale);
+		}
+		catch (IllegalArgumentException e) {
+			IOException e2 = new IOException("Invalid catalog");
+			e2.initCause(e);
+			throw e2;
+		}
+	}
+
+	/**
+	 * Writes the translations to <code>out</code>.
+	 * 
+	 * @see #read(DataInput, Locale)
+	 */
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeInt(entries.size());
+		for (Iterator it = entries.entrySet().iterator(); it.hasNext();) {
+			Map.Entry entry = (Map.Entry)it.next();
+			out.writeUTF((String)entry.getKey());
+			if (entry.getValue() instanceof String[]) {
+				String[] forms = (String[])entry.getValue();
+				out.writeInt(forms.length);
+				for (int i = 0; i < forms.length; i++) {
+					out.writeUTF(forms[i]);
+				}
+			}
+			else {
+				out.writeInt(-1);
+				out.writeUTF((String)entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Copies the translations of <code>bundle</code> and its parents into
+	 * a single catalog.
+	 * 
+	 * @return the catalog, <code>null</code> if <code>bundle</code>
+	 *         contains values other than strings or selects plural forms
+	 *         differently than the catalog would
+	 */
+	public static CatalogResourceBundle flatten(ResourceBundle bundle)
+	{
+		return flatten(bundle, bundle.getLocale());
+	}
+
+	/**
+	 * Copies the translations of <code>bundle</code> and its parents into
+	 * a single catalog for <code>locale</code>.
+	 * 
+	 * @see #flatten(ResourceBundle)
+	 */
+	static CatalogResourceBundle flatten(ResourceBundle bundle, Locale locale)
+	{
+		if (bundle instanceof CatalogResourceBundle && ((CatalogResourceBundle)bundle).getParent() == null) {
+			return (CatalogResourceBundle)bundle;
+		}
+		Map translations = new HashMap();
+		ResourceBundle pluralBundle = null;
+		Method pluralEvalMethod = null;
+		try {
+			for (ResourceBundle current = bundle; current != null;) {
+				Method lookupMethod = getPublicMethod(current, "lookup", new Class[] { String.class });
+				if (pluralEvalMethod == null) {
+					pluralEvalMethod = getPublicMethod(current, "pluralEval", new Class[] { Long.TYPE });
+					pluralBundle = current;
+				}
+				for (Enumeration e = current.getKeys(); e.hasMoreElements();) {
+					String key = (String)e.nextElement();
+					if (translations.containsKey(key)) {
+						continue;
+					}
+					Object value = (lookupMethod != null) ? lookupMethod.invoke(current, new Object[] { key })
+							: current.getObject(key);
+					if (!(value instanceof String) && !(value instanceof String[])) {
+						return null;
+					}
+					translations.put(key, value);
+				}
+				// bundles generated by msgfmt only enumerate their own keys
+				Method getParentMethod = getPublicMethod(current, "getParent", new Class[0]);
+				current = (getParentMethod != null) ? (ResourceBundle)getParentMethod.invoke(current, new Object[0])
+						: null;
+			}
+
+			CatalogResourceBundle flattened = new CatalogResourceBundle(translations, locale);
+			if (pluralEvalMethod != null) {
+				for (long n = 0; n <= 1000; n++) {
+					Object index = pluralEvalMethod.invoke(pluralBundle, new Object[] { new Long(n) });
+					if (((Long)index).longValue() != flattened.pluralEval(n)) {
+						return null;
+					}
+				}
+			}
+			return flattened;
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static Method getPublicMethod(ResourceBundle bundle, String name, Class[] parameterTypes)
+	{
+		try {
+			Method method = bundle.getClass().getMethod(name, parameterTypes);
+			return Modifier.isPublic(method.getModifiers()) ? method : null;
+		}
+		catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the translation of <code>key</code>, the singular form for
+	 * plural messages, or <code>null</code>.
+	 */
+	public Object handleGetObject(String key)
+	{
+		Object value = entries.get(key);
+		return (value instanceof String[]) ? ((String[])value)[0] : value;
+	}
+
+	/**
+	 * Returns the translation of <code>key</code>, an array of strings for
+	 * plural messages, or <code>null</code>.
+	 */
+	public Object lookup(String key)
+	{
+		return entries.get(key);
+	}
+
+	/**
+	 * Returns the index of the plural form for <code>n</code>.
+	 */
+	public long pluralEval(long n)
+	{
+		return plural.evaluate(n);
+	}
+
+	public ResourceBundle getParent()
+	{
+		return parent;
+	}
+
+	public Enumeration getKeys()
+	{
+		return new Vector(entries.keySet()).elements();
+	}
+
+	public Locale getLocale()
+	{
+		return locale;
+	}
+
+}
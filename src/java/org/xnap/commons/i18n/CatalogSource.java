@@ -0,0 +1,56 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Defines the requirements for classes that provide catalogs from a store
+ * other than the class path, e.g. a database or a translation service.
+ * <p>
+ * Sources are used through a {@link CatalogSourceLoader}, which invokes
+ * {@link #fetch(String, Locale)} on a background thread whenever a cached
+ * catalog needs to be revalidated, so implementations may block on I/O.
+ * 
+ * @see I18nFactory#getI18n(CatalogSourceLoader, String, Locale, int)
+ * @since 0.9.9
+ */
+public interface CatalogSource {
+
+	/**
+	 * Returns the translations of the catalog <code>baseName</code> for
+	 * <code>locale</code>. Unlike resource bundles, catalogs are not
+	 * chained: the returned translations need to include those inherited
+	 * from less specific locales, if any.
+	 * 
+	 * @param baseName
+	 *            the name of the catalog
+	 * @param locale
+	 *            the requested locale
+	 * @return a map that maps keys to strings or to string arrays of plural
+	 *         forms, keys of messages with context are built the way
+	 *         {@link OverlayResourceBundle#getKey(String, String)} does;
+	 *         <code>null</code>, if the source has no such catalog
+	 * @throws IOException
+	 *             if the store can not be accessed
+	 */
+	Map fetch(String baseName, Locale locale) throws IOException;
+
+}
@@ -0,0 +1,702 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * Loads catalogs from a {@link CatalogSource}, keeps them in memory and
+ * optionally in a directory on disk, and revalidates them in the
+ * background.
+ * <p>
+ * A catalog is fetched from the source on the calling thread only the
+ * first time it is requested and only if it is not in the disk cache.
+ * After that requests are always served from memory: once a catalog is
+ * older than the maximum age, the stale catalog is returned and a daemon
+ * thread fetches a fresh copy, which is then swapped into every
+ * {@link I18n} object created by the loader. If the source fails, the
+ * stale catalog remains in use and the failure is recorded.
+ * <p>
+ * Catalogs are revalidated when they are requested through
+ * {@link #getBundle(String, Locale)} or
+ * {@link I18nFactory#getI18n(CatalogSourceLoader, String, Locale, int)},
+ * translating through an existing <code>I18n</code> object does not
+ * check the age of its catalog. With {@link I18nFactory#FALLBACK} a
+ * catalog that is not in memory is read from the disk cache or fetched in
+ * the background, the calling thread never blocks on either.
+ * <p>
+ * The loader keeps the catalogs that are used by <code>I18n</code> objects
+ * and up to 256 other catalogs in memory.
+ * When there are more, the catalogs that have been requested least
+ * recently are discarded and loaded again when they are requested.
+ * 
+ * <pre>
+ * CatalogSourceLoader catalogs = new CatalogSourceLoader(source, new File(&quot;cache&quot;), 60 * 1000);
+ * I18n i18n = I18nFactory.getI18n(catalogs, &quot;app&quot;, Locale.GERMAN, I18nFactory.FALLBACK);
+ * </pre>
+ * 
+ * @since 0.9.9
+ */
+public class CatalogSourceLoader {
+
+	/**
+	 * Identifies the files of the disk cache, "GCS" and a format version.
+	 */
+	private static final int MAGIC = 0x47435301;
+
+	private static final String SUFFIX = ".catalog";
+
+	/**
+	 * The number of catalogs that are not used by any <code>I18n</code>
+	 * object kept in memory.
+	 */
+	static final int MAXIMUM_UNUSED_CATALOGS = 256;
+
+	private final CatalogSource source;
+
+	private final File directory;
+
+	private final long maxAge;
+
+	/**
+	 * Map<String, Catalog>, keyed by bundle name, in the order of the most
+	 * recent request. Access is synchronized on the map.
+	 */
+	private final Map catalogs = new LinkedHashMap(16, 0.75f, true);
+
+	/**
+	 * List<Catalog>, the catalogs that need to be fetched. Access to the
+	 * queue, {@link #thread} and {@link #pending} is synchronized on the
+	 * queue.
+	 */
+	private final LinkedList queue = new LinkedList();
+
+	private Thread thread;
+
+	/**
+	 * The number of queued fetches including the one in progress.
+	 */
+	private int pending;
+
+	/**
+	 * Updated while holding the lock of the queue.
+	 */
+	private volatile int fetchCount;
+
+	/**
+	 * Updated while holding the lock of the queue.
+	 */
+	private volatile int failureCount;
+
+	private volatile Exception lastFailure;
+
+	/**
+	 * Constructs a loader.
+	 * 
+	 * @param source
+	 *            the source of the catalogs
+	 * @param directory
+	 *            the directory of the disk cache, <code>null</code> to only
+	 *            cache catalogs in memory
+	 * @param maxAge
+	 *            the number of milliseconds after which a catalog is
+	 *            revalidated
+	 * @throws NullPointerException
+	 *             if <code>source</code> is <code>null</code>
+	 * @throws IllegalArgumentException
+	 *             if <code>maxAge</code> is negative
+	 */
+	public CatalogSourceLoader(CatalogSource source, File directory, long maxAge)
+	{
+		if (source == null) {
+			throw new NullPointerException("source must not be null");
+		}
+		if (maxAge < 0) {
+			throw new IllegalArgumentException("maxAge must not be negative");
+		}
+		this.source = source;
+		this.directory = directory;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Returns the catalog <code>baseName</code> for <code>locale</code>.
+	 * 
+	 * @throws MissingResourceException
+	 *             if the catalog has not been loaded before and the source
+	 *             does not provide it or fails
+	 */
+	public ResourceBundle getBundle(String baseName, Locale locale)
+	{
+		return getBundle(getCatalog(baseName, locale), true);
+	}
+
+	/**
+	 * Fetches the catalog <code>baseName</code> for <code>locale</code> in
+	 * the background, unless it is already loaded and current.
+	 */
+	public void prefetch(String baseName, Locale locale)
+	{
+		getBundle(getCatalog(baseName, locale), false);
+	}
+
+	/**
+	 * Returns an <code>I18n</code> object for a catalog, see
+	 * {@link I18nFactory#getI18n(CatalogSourceLoader, String, Locale, int)}.
+	 */
+	I18n getI18n(String baseName, Locale locale, int flags)
+	{
+		Catalog catalog = getCatalog(baseName, locale);
+		boolean cache = (flags & I18nFactory.NO_CACHE) == 0;
+		I18n i18n = catalog.i18n;
+		if (cache && i18n != null) {
+			revalidate(catalog);
+			return i18n;
+		}
+
+		ResourceBundle bundle = getBundle(catalog, (flags & I18nFactory.FALLBACK) == 0);
+		synchronized (catalog) {
+			if (cache && catalog.i18n != null) {
+				return catalog.i18n;
+			}
+			if (catalog.bundle != null) {
+				bundle = catalog.bundle;
+			}
+			else if (bundle == null) {
+				// replaced once the catalog has been fetched
+				if (catalog.placeholder == null) {
+					catalog.placeholder = new CatalogResourceBundle(new HashMap(), locale);
+				}
+				bundle = catalog.placeholder;
+			}
+			i18n = new I18n(bundle);
+			catalog.i18ns.add(new WeakReference(i18n));
+			if (cache) {
+				catalog.i18n = i18n;
+			}
+			return i18n;
+		}
+	}
+
+	/**
+	 * Returns the bundle of <code>catalog</code> and schedules a fetch if
+	 * it is stale.
+	 * 
+	 * @param wait
+	 *            if true, a catalog that is not in memory is read from disk
+	 *            or fetched on the calling thread, otherwise both happen in
+	 *            the background
+	 * @return <code>null</code>, if the catalog has not been loaded and
+	 *         <code>wait</code> is false
+	 */
+	private ResourceBundle getBundle(Catalog catalog, boolean wait)
+	{
+		ResourceBundle bundle = catalog.bundle;
+		if (bundle == null) {
+			synchronized (catalog) {
+				bundle = catalog.bundle;
+				if (bundle == null && !catalog.cacheRead && wait) {
+					catalog.cacheRead = true;
+					bundle = readCache(catalog);
+				}
+				if (bundle == null) {
+					if (!wait) {
+						enqueue(catalog);
+						return null;
+					}
+					catalog.checked = System.currentTimeMillis();
+					Map translations;
+					try {
+						translations = fetch(catalog);
+					}
+					catch (IOException e) {
+						failed(e);
+						MissingResourceException e2 = new MissingResourceException("Could not fetch catalog",
+								catalog.baseName, "");
+						e2.initCause(e);
+						throw e2;
+					}
+					if (translations == null) {
+						throw new MissingResourceException("Catalog not found", catalog.baseName, "");
+					}
+					CatalogResourceBundle fetched = new CatalogResourceBundle(translations, catalog.locale);
+					install(catalog, fetched);
+					writeCache(catalog, fetched, catalog.checked);
+					return fetched;
+				}
+			}
+		}
+		revalidate(catalog);
+		return bundle;
+	}
+
+	private Catalog getCatalog(String baseName, Locale locale)
+	{
+		String name = CatalogReloader.getBundleName(baseName, locale);
+		synchronized (catalogs) {
+			Catalog catalog = (Catalog)catalogs.get(name);
+			if (catalog == null) {
+				catalog = new Catalog(baseName, locale, name);
+				catalogs.put(name, catalog);
+				evict();
+			}
+			return catalog;
+		}
+	}
+
+	/**
+	 * Discards the least recently requested catalogs that are neither used
+	 * by an <code>I18n</code> object nor queued, until no more than
+	 * {@link #MAXIMUM_UNUSED_CATALOGS} of them are left. The caller needs
+	 * to hold the lock of the map.
+	 */
+	private void evict()
+	{
+		if (catalogs.size() <= MAXIMUM_UNUSED_CATALOGS) {
+			return;
+		}
+		List unused = new ArrayList();
+		for (Iterator it = catalogs.values().iterator(); it.hasNext();) {
+			Catalog catalog = (Catalog)it.next();
+			if (!catalog.isUsed()) {
+				unused.add(catalog);
+			}
+		}
+		for (int i = 0; i < unused.size() - MAXIMUM_UNUSED_CATALOGS; i++) {
+			catalogs.remove(((Catalog)unused.get(i)).name);
+		}
+	}
+
+	private void revalidate(Catalog catalog)
+	{
+		if (System.currentTimeMillis() - catalog.checked >= maxAge) {
+			enqueue(catalog);
+		}
+	}
+
+	private void enqueue(Catalog catalog)
+	{
+		synchronized (queue) {
+			if (catalog.queued) {
+				return;
+			}
+			catalog.queued = true;
+			queue.add(catalog);
+			pending++;
+			if (thread == null) {
+				thread = new Thread(new Runnable() {
+					public void run()
+					{
+						work();
+					}
+				}, "CatalogSourceLoader");
+				thread.setDaemon(true);
+				thread.start();
+			}
+			queue.notifyAll();
+		}
+	}
+
+	private void work()
+	{
+		Thread current = Thread.currentThread();
+		while (true) {
+			Catalog catalog;
+			synchronized (queue) {
+				while (queue.isEmpty() && thread == current) {
+					try {
+						queue.wait();
+					}
+					catch (InterruptedException e) {
+						// check if the loader has been stopped
+					}
+				}
+				if (thread != current) {
+					return;
+				}
+				catalog = (Catalog)queue.removeFirst();
+			}
+			try {
+				refresh(catalog);
+			}
+			finally {
+				synchronized (queue) {
+					catalog.queued = false;
+					pending--;
+					queue.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fetches <code>catalog</code> and swaps it in, unless the source fails
+	 * or no longer provides it. A catalog that has not been loaded is read
+	 * from the disk cache first and only fetched if it is not cached or
+	 * stale.
+	 */
+	private void refresh(Catalog catalog)
+	{
+		boolean read;
+		synchronized (catalog) {
+			read = catalog.bundle == null && !catalog.cacheRead;
+			catalog.cacheRead = true;
+		}
+		if (read && readCache(catalog) != null && System.currentTimeMillis() - catalog.checked < maxAge) {
+			return;
+		}
+
+		long checked = System.currentTimeMillis();
+		catalog.checked = checked;
+		try {
+			Map translations = fetch(catalog);
+			if (translations != null) {
+				CatalogResourceBundle bundle = new CatalogResourceBundle(translations, catalog.locale);
+				synchronized (catalog) {
+					install(catalog, bundle);
+				}
+				writeCache(catalog, bundle, checked);
+			}
+		}
+		catch (IOException e) {
+			failed(e);
+		}
+		catch (RuntimeException e) {
+			failed(e);
+		}
+	}
+
+	private Map fetch(Catalog catalog) throws IOException
+	{
+		I18nMonitor monitor = I18nManager.monitor;
+		Object context = (monitor != null) ? monitor.bundleLoading(catalog.baseName, catalog.locale) : null;
+		long start = (monitor != null) ? Clock.nanoTime() : 0;
+		Map translations = source.fetch(catalog.baseName, catalog.locale);
+		synchronized (queue) {
+			fetchCount++;
+		}
+		if (monitor != null) {
+			monitor.bundleLoaded(catalog.baseName, catalog.locale, translations != null, Clock.nanoTime() - start,
+					context);
+		}
+		return translations;
+	}
+
+	/**
+	 * Replaces the bundle of <code>catalog</code> and updates the
+	 * <code>I18n</code> objects that use it. The caller needs to hold the
+	 * lock of <code>catalog</code>.
+	 */
+	private void install(Catalog catalog, ResourceBundle bundle)
+	{
+		ResourceBundle previous = (catalog.bundle != null) ? catalog.bundle : catalog.placeholder;
+		catalog.bundle = bundle;
+		catalog.placeholder = null;
+		for (Iterator it = catalog.i18ns.iterator(); it.hasNext();) {
+			I18n i18n = (I18n)((Reference)it.next()).get();
+			if (i18n == null) {
+				it.remove();
+			}
+			else if (previous != null) {
+				i18n.replaceResources(previous, bundle);
+			}
+		}
+	}
+
+	private File getCacheFile(Catalog catalog)
+	{
+		StringBuffer sb = new StringBuffer(catalog.name.length() + SUFFIX.length());
+		for (int i = 0; i < catalog.name.length(); i++) {
+			char c = catalog.name.charAt(i);
+			sb.append((Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '-') ? c : '_');
+		}
+		sb.append(SUFFIX);
+		return new File(directory, sb.toString());
+	}
+
+	/**
+	 * Loads <code>catalog</code> from the disk cache. The file is read
+	 * without holding the lock of <code>catalog</code>, unless the caller
+	 * holds it, the bundle is installed while holding it.
+	 * 
+	 * @return the bundle, <code>null</code> if the catalog is not cached
+	 */
+	private ResourceBundle readCache(Catalog catalog)
+	{
+		if (directory == null) {
+			return null;
+		}
+		DataInputStream in;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(getCacheFile(catalog))));
+		}
+		catch (FileNotFoundException e) {
+			return null;
+		}
+		try {
+			if (in.readInt() != MAGIC) {
+				return null;
+			}
+			long fetched = in.readLong();
+			ResourceBundle bundle = CatalogResourceBundle.read(in, catalog.locale);
+			synchronized (catalog) {
+				if (catalog.bundle != null) {
+					// fetched in the meantime
+					return catalog.bundle;
+				}
+				install(catalog, bundle);
+				catalog.checked = fetched;
+			}
+			return bundle;
+		}
+		catch (IOException e) {
+			failed(e);
+			return null;
+		}
+		finally {
+			try {
+				in.close();
+			}
+			catch (IOException e) {
+				// this exception is lost
+			}
+		}
+	}
+
+	/**
+	 * Writes <code>bundle</code> to the disk cache and records failures.
+	 * 
+	 * @param fetched
+	 *            the time the catalog was fetched
+	 */
+	private void writeCache(Catalog catalog, CatalogResourceBundle bundle, long fetched)
+	{
+		if (directory == null) {
+			return;
+		}
+		try {
+			write(getCacheFile(catalog), bundle, fetched);
+		}
+		catch (IOException e) {
+			failed(e);
+		}
+	}
+
+	/**
+	 * Writes <code>bundle</code> to a temporary file that then replaces
+	 * <code>file</code>.
+	 */
+	private void write(File file, CatalogResourceBundle bundle, long fetched) throws IOException
+	{
+		directory.mkdirs();
+		File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeLong(fetched);
+				bundle.write(out);
+			}
+			finally {
+				out.close();
+			}
+			// File.renameTo() does not replace existing files on all platforms
+			file.delete();
+			if (!tempFile.renameTo(file)) {
+				throw new IOException("Could not rename " + tempFile + " to " + file);
+			}
+		}
+		finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Waits until all scheduled fetches have finished.
+	 * 
+	 * @param timeout
+	 *            the maximum number of milliseconds to wait
+	 * @return true, if no fetches are pending; false, if the timeout elapsed
+	 * @throws InterruptedException
+	 *             if the calling thread was interrupted
+	 */
+	public boolean await(long timeout) throws InterruptedException
+	{
+		long end = System.currentTimeMillis() + timeout;
+		synchronized (queue) {
+			while (pending > 0) {
+				long remaining = end - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				queue.wait(remaining);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stops the background thread and discards scheduled fetches. A new
+	 * thread is started when a catalog needs to be fetched again.
+	 */
+	public void stop()
+	{
+		synchronized (queue) {
+			for (Iterator it = queue.iterator(); it.hasNext();) {
+				((Catalog)it.next()).queued = false;
+			}
+			pending -= queue.size();
+			queue.clear();
+			if (thread != null) {
+				thread.interrupt();
+				thread = null;
+			}
+			queue.notifyAll();
+		}
+	}
+
+	private void failed(Exception e)
+	{
+		synchronized (queue) {
+			lastFailure = e;
+			failureCount++;
+		}
+	}
+
+	/**
+	 * Returns the number of times catalogs have been fetched from the
+	 * source.
+	 */
+	public int getFetchCount()
+	{
+		return fetchCount;
+	}
+
+	/**
+	 * Returns the number of failed attempts to fetch, read or write a
+	 * catalog.
+	 */
+	public int getFailureCount()
+	{
+		return failureCount;
+	}
+
+	/**
+	 * Returns the exception of the most recent failure.
+	 * 
+	 * @return the exception or <code>null</code>, if nothing has failed
+	 */
+	public Exception getLastFailure()
+	{
+		return lastFailure;
+	}
+
+	/**
+	 * A catalog for a base name and locale.
+	 */
+	private static class Catalog {
+
+		final String baseName;
+
+		final Locale locale;
+
+		final String name;
+
+		/**
+		 * The most recently loaded bundle, <code>null</code> until the
+		 * catalog has been loaded.
+		 */
+		volatile ResourceBundle bundle;
+
+		/**
+		 * The empty bundle used by <code>I18n</code> objects that were
+		 * created before the catalog was loaded.
+		 */
+		ResourceBundle placeholder;
+
+		/**
+		 * The time the catalog was last fetched or attempted to be fetched.
+		 */
+		volatile long checked;
+
+		boolean cacheRead;
+
+		/**
+		 * Written while holding the lock of the queue of the loader.
+		 */
+		volatile boolean queued;
+
+		/**
+		 * The shared object returned by the factory.
+		 */
+		volatile I18n i18n;
+
+		/**
+		 * List<Reference<I18n>>, all objects that use the catalog.
+		 */
+		final List i18ns = new ArrayList();
+
+		Catalog(String baseName, Locale locale, String name)
+		{
+			this.baseName = baseName;
+			this.locale = locale;
+			this.name = name;
+		}
+
+		/**
+		 * Returns true, if the catalog is queued or an <code>I18n</code>
+		 * object uses it.
+		 */
+		boolean isUsed()
+		{
+			synchronized (this) {
+				for (Iterator it = i18ns.iterator(); it.hasNext();) {
+					if (((Reference)it.next()).get() == null) {
+						it.remove();
+					}
+				}
+				if (!i18ns.isEmpty()) {
+					return true;
+				}
+			}
+			return queued;
+		}
+
+	}
+
+}
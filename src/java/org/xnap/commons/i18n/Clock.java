@@ -0,0 +1,55 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+/**
+ * Provides the time source for the durations reported to
+ * {@link I18nMonitor}. Uses <code>System.nanoTime()</code> where available
+ * and falls back to the millisecond clock on Java 1.4.
+ */
+final class Clock {
+
+	private static final boolean NANO_TIME = hasNanoTime();
+
+	private Clock()
+	{
+	}
+
+	/**
+	 * Returns the current value of the most precise available timer in
+	 * nanoseconds. The value is only meaningful as the difference of two
+	 * calls.
+	 */
+	static long nanoTime()
+	{
+		// the method is only linked on Java 5 and later
+		return NANO_TIME ? System.nanoTime() : System.currentTimeMillis() * 1000000L;
+	}
+
+	private static boolean hasNanoTime()
+	{
+		try {
+			System.class.getMethod("nanoTime", null);
+			return true;
+		}
+		catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,332 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.ResourceBundle;
+
+/**
+ * An immutable bundle that stores a flattened catalog in a single byte
+ * buffer instead of a map of strings, which reduces the number of objects
+ * and the memory retained by large catalogs considerably.
+ * <p>
+ * Keys and translations are packed one after the other, as Latin-1 if all
+ * characters fit into a byte, otherwise in a variant of UTF-8 that encodes
+ * each <code>char</code> separately. An open addressing table of ints maps
+ * the hash codes of the keys to the entries, strings are only created when
+ * a translation is looked up. The most recently looked up entries are kept
+ * in a small cache of decoded values.
+ * <p>
+ * The buffer can be allocated outside of the heap, in which case it does
+ * not add to the live set scanned by the garbage collector.
+ * <p>
+ * Bundles follow the conventions of the bundles generated by
+ * <code>msgfmt</code>. Plural forms are selected by the expression of the
+ * <code>Plural-Forms</code> field of the catalog header or, if the header
+ * does not specify a valid expression, by the rule of the Germanic
+ * languages (<code>n != 1</code>).
+ *
+ * <pre>
+ * ResourceBundle bundle = CompactResourceBundle.compact(ResourceBundle.getBundle(&quot;app.Messages&quot;), true);
+ * </pre>
+ *
+ * @see I18nFactory#COMPACT
+ * @since 0.9.9
+ */
+public class CompactResourceBundle extends ResourceBundle {
+
+	/**
+	 * The default number of entries of the cache of decoded values.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	/**
+	 * The packed entries: the key followed by the number of plural forms, 0
+	 * for messages without plural forms, and the translations.
+	 */
+	private final ByteBuffer data;
+
+	/**
+	 * The offset of each entry in {@link #data}.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * The hash code of the key of each entry.
+	 */
+	private final int[] hashes;
+
+	/**
+	 * Maps hash codes to entries, slots hold the index of the entry plus
+	 * one, 0 if empty.
+	 */
+	private final int[] table;
+
+	/**
+	 * The recently looked up entries, indexed by hash code, or
+	 * <code>null</code>. Entries are replaced without synchronization,
+	 * which is safe since they are immutable.
+	 */
+	private final PackedStrings.CachedEntry[] cache;
+
+	private final Locale locale;
+
+	private final PluralExpression plural;
+
+	/**
+	 * Constructs a bundle on the heap with the default cache size.
+	 *
+	 * @see #CompactResourceBundle(Map, Locale, boolean, int)
+	 */
+	public CompactResourceBundle(Map translations, Locale locale)
+	{
+		this(translations, locale, false, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Constructs a bundle.
+	 *
+	 * @param translations
+	 *            maps keys to strings or to string arrays of plural forms,
+	 *            keys of messages with context are built the way
+	 *            {@link OverlayResourceBundle#getKey(String, String)} does
+	 * @param locale
+	 *            the locale of the bundle
+	 * @param direct
+	 *            if true, the entries are stored outside of the heap
+	 * @param cacheSize
+	 *            the number of decoded entries to cache, rounded up to a
+	 *            power of two, 0 to disable the cache
+	 * @throws IllegalArgumentException
+	 *             if a value is neither a string nor a string array
+	 */
+	public CompactResourceBundle(Map translations, Locale locale, boolean direct, int cacheSize)
+	{
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("cacheSize must not be negative");
+		}
+		int size = translations.size();
+		offsets = new int[size];
+		hashes = new int[size];
+		table = new int[PackedStrings.getCapacity(size, LOAD_FACTOR)];
+		PackedStrings.Encoder encoder = new PackedStrings.Encoder(size * 32);
+		String header = null;
+		int index = 0;
+		for (Iterator it = translations.entrySet().iterator(); it.hasNext(); index++) {
+			Map.Entry entry = (Map.Entry)it.next();
+			String key = (String)entry.getKey();
+			Object value = entry.getValue();
+			offsets[index] = encoder.size();
+			encoder.writeString(key);
+			if (value instanceof String) {
+				encoder.writeVarInt(0);
+				encoder.writeString((String)value);
+				if (key.length() == 0) {
+					header = (String)value;
+				}
+			}
+			else if (value instanceof String[] && ((String[])value).length > 0) {
+				String[] forms = (String[])value;
+				encoder.writeVarInt(forms.length);
+				for (int i = 0; i < forms.length; i++) {
+					encoder.writeString(forms[i]);
+				}
+			}
+			else {
+				throw new IllegalArgumentException("Invalid translation for " + key + ": " + value);
+			}
+			hashes[index] = key.hashCode();
+			int mask = table.length - 1;
+			int slot = PackedStrings.spread(hashes[index]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = index + 1;
+		}
+		if (direct) {
+			data = ByteBuffer.allocateDirect(encoder.size());
+			data.put(encoder.getBuffer(), 0, encoder.size());
+		}
+		else {
+			byte[] buffer = new byte[encoder.size()];
+			System.arraycopy(encoder.getBuffer(), 0, buffer, 0, buffer.length);
+			data = ByteBuffer.wrap(buffer);
+		}
+		this.cache = (cacheSize > 0) ? new PackedStrings.CachedEntry[PackedStrings.getCapacity(cacheSize, 1)] : null;
+		this.locale = locale;
+		this.plural = PluralExpression.forHeader(header);
+	}
+
+	/**
+	 * Copies the translations of <code>bundle</code> and its parents into
+	 * a compact bundle.
+	 *
+	 * @param direct
+	 *            if true, the entries are stored outside of the heap
+	 * @return the compact bundle, <code>null</code> if <code>bundle</code>
+	 *         contains values other than strings or selects plural forms
+	 *         by a rule that can not be determined from its header
+	 */
+	public static CompactResourceBundle compact(ResourceBundle bundle, boolean direct)
+	{
+		if (bundle instanceof CompactResourceBundle) {
+			return (CompactResourceBundle)bundle;
+		}
+		CatalogResourceBundle flattened = CatalogResourceBundle.flatten(bundle);
+		return (flattened != null) ? new CompactResourceBundle(flattened.getEntries(), bundle.getLocale(), direct,
+				DEFAULT_CACHE_SIZE) : null;
+	}
+
+	/**
+	 * Returns the number of entries.
+	 */
+	public int size()
+	{
+		return offsets.length;
+	}
+
+	/**
+	 * Returns the number of bytes of the buffer that holds the entries.
+	 */
+	public int getDataSize()
+	{
+		return data.capacity();
+	}
+
+	/**
+	 * Returns true, if the entries are stored outside of the heap.
+	 */
+	public boolean isDirect()
+	{
+		return data.isDirect();
+	}
+
+	/**
+	 * Returns the translation of <code>key</code>, the singular form for
+	 * plural messages, or <code>null</code>.
+	 */
+	public Object handleGetObject(String key)
+	{
+		Object value = lookup(key);
+		return (value instanceof String[]) ? ((String[])value)[0] : value;
+	}
+
+	/**
+	 * Returns the translation of <code>key</code>, an array of strings for
+	 * plural messages, or <code>null</code>. The array must not be modified.
+	 */
+	public Object lookup(String key)
+	{
+		int hash = key.hashCode();
+		if (cache == null) {
+			return decode(find(key, hash));
+		}
+		int slot = PackedStrings.spread(hash) & (cache.length - 1);
+		PackedStrings.CachedEntry cached = cache[slot];
+		if (cached != null && cached.key.equals(key)) {
+			return cached.value;
+		}
+		Object value = decode(find(key, hash));
+		cache[slot] = new PackedStrings.CachedEntry(key, value);
+		return value;
+	}
+
+	/**
+	 * Returns the index of the entry for <code>key</code>, -1 if there is
+	 * none.
+	 */
+	private int find(String key, int hash)
+	{
+		int mask = table.length - 1;
+		for (int slot = PackedStrings.spread(hash) & mask;; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+			if (index < 0) {
+				return -1;
+			}
+			if (hashes[index] == hash && PackedStrings.matches(data, offsets[index], key, 0, key.length())) {
+				return index;
+			}
+		}
+	}
+
+	private Object decode(int index)
+	{
+		if (index < 0) {
+			return null;
+		}
+		int position = PackedStrings.skip(data, offsets[index]);
+		int count = PackedStrings.readVarInt(data, position);
+		position += PackedStrings.getVarIntSize(count);
+		if (count == 0) {
+			return PackedStrings.read(data, position);
+		}
+		String[] forms = new String[count];
+		for (int i = 0; i < count; i++) {
+			forms[i] = PackedStrings.read(data, position);
+			position = PackedStrings.skip(data, position);
+		}
+		return forms;
+	}
+
+	/**
+	 * Returns the index of the plural form for <code>n</code>.
+	 */
+	public long pluralEval(long n)
+	{
+		return plural.evaluate(n);
+	}
+
+	public ResourceBundle getParent()
+	{
+		return parent;
+	}
+
+	public Enumeration getKeys()
+	{
+		return new Enumeration() {
+
+			private int index;
+
+			public boolean hasMoreElements()
+			{
+				return index < offsets.length;
+			}
+
+			public Object nextElement()
+			{
+				if (index >= offsets.length) {
+					throw new NoSuchElementException();
+				}
+				return PackedStrings.read(data, offsets[index++]);
+			}
+		};
+	}
+
+	public Locale getLocale()
+	{
+		return locale;
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Caches the parsed <code>MessageFormat</code> objects of formatted
+ * patterns.
+ * <p>
+ * Lookups do not lock: the formats are kept in a map that is never modified
+ * once it has been published, modifications replace the map. Since
+ * <code>MessageFormat</code> is not thread-safe, each cached format is
+ * shared by all threads and only used while holding its lock, so the memory
+ * retained by the cache does not depend on the number of threads.
+ * <p>
+ * Formats are created for the locale passed by the caller, the cache is
+ * cleared when the locale changes. Each entry remembers the key of the
+ * message the pattern was translated from, so the formats of changed
+ * messages can be invalidated selectively.
+ * <p>
+ * When the cache is full, the formats that have not been used since the
+ * previous eviction are removed.
+ */
+class FormatCache {
+
+	/**
+	 * The default maximum number of cached formats. Only messages that take
+	 * arguments are cached, even large application catalogs rarely use more
+	 * than a few hundred of them.
+	 */
+	static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+	private static final Table EMPTY_TABLE = new Table(null, Collections.EMPTY_MAP);
+
+	private volatile Table table = EMPTY_TABLE;
+
+	private volatile int maximumSize;
+
+	FormatCache()
+	{
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	FormatCache(int maximumSize)
+	{
+		setMaximumSize(maximumSize);
+	}
+
+	/**
+	 * Sets the maximum number of cached formats.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>maximumSize</code> is not positive
+	 */
+	public void setMaximumSize(int maximumSize)
+	{
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be positive");
+		}
+		this.maximumSize = maximumSize;
+	}
+
+	public int getMaximumSize()
+	{
+		return maximumSize;
+	}
+
+	/**
+	 * Formats <code>objects</code> using <code>pattern</code>.
+	 *
+	 * @param locale
+	 *            the locale used for formatting the objects
+	 * @param key
+	 *            the key of the message <code>pattern</code> has been
+	 *            translated from
+	 * @see MessageFormat#format(Object)
+	 */
+	public String format(Locale locale, String key, String pattern, Object[] objects)
+	{
+		Table table = this.table;
+		CachedFormat cached = locale.equals(table.locale) ? (CachedFormat)table.formats.get(pattern) : null;
+		if (cached == null) {
+			cached = add(locale, key, pattern);
+		}
+		else if (!cached.used) {
+			cached.used = true;
+		}
+		return cached.format(objects);
+	}
+
+	private CachedFormat add(Locale locale, String key, String pattern)
+	{
+		CachedFormat cached = new CachedFormat(key, new MessageFormat(pattern, locale));
+		synchronized (this) {
+			Map formats = locale.equals(table.locale) ? table.formats : Collections.EMPTY_MAP;
+			CachedFormat existing = (CachedFormat)formats.get(pattern);
+			if (existing != null) {
+				return existing;
+			}
+			formats = (formats.size() >= maximumSize) ? evict(formats) : new HashMap(formats);
+			formats.put(pattern, cached);
+			table = new Table(locale, formats);
+		}
+		return cached;
+	}
+
+	/**
+	 * Returns a copy of <code>formats</code> that only contains the formats
+	 * that have been used since the previous eviction, or half of the
+	 * formats if all of them have been used.
+	 */
+	private Map evict(Map formats)
+	{
+		int limit = maximumSize / 2;
+		Map retained = new HashMap();
+		for (Iterator it = formats.entrySet().iterator(); it.hasNext() && retained.size() < limit;) {
+			Map.Entry entry = (Map.Entry)it.next();
+			CachedFormat cached = (CachedFormat)entry.getValue();
+			if (cached.used) {
+				cached.used = false;
+				retained.put(entry.getKey(), cached);
+			}
+		}
+		return retained;
+	}
+
+	/**
+	 * Removes the formats of the messages identified by <code>keys</code>.
+	 */
+	public synchronized void invalidate(Collection keys)
+	{
+		Map formats = new HashMap(table.formats);
+		boolean removed = false;
+		for (Iterator it = formats.values().iterator(); it.hasNext();) {
+			if (keys.contains(((CachedFormat)it.next()).key)) {
+				it.remove();
+				removed = true;
+			}
+		}
+		if (removed) {
+			table = new Table(table.locale, formats);
+		}
+	}
+
+	public synchronized void clear()
+	{
+		table = EMPTY_TABLE;
+	}
+
+	public int size()
+	{
+		return table.formats.size();
+	}
+
+	/**
+	 * The cached formats of a locale, never modified once it has been
+	 * published.
+	 */
+	private static class Table {
+
+		final Locale locale;
+
+		/**
+		 * Map<String, CachedFormat>, keyed by pattern.
+		 */
+		final Map formats;
+
+		Table(Locale locale, Map formats)
+		{
+			this.locale = locale;
+			this.formats = formats;
+		}
+
+	}
+
+	private static class CachedFormat {
+
+		final String key;
+
+		/**
+		 * Shared by all threads, guarded by its own lock.
+		 */
+		private final MessageFormat format;
+
+		/**
+		 * Set when the format is used, cleared by evictions.
+		 */
+		volatile boolean used;
+
+		CachedFormat(String key, MessageFormat format)
+		{
+			this.key = key;
+			this.format = format;
+		}
+
+		String format(Object[] objects)
+		{
+			synchronized (format) {
+				return format.format(objects);
+			}
+		}
+
+	}
+
+}
@@ -23,7 +23,12 @@ package org.xnap.commons.i18n;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 
@@ -41,7 +46,7 @@ import java.util.ResourceBundle;
  */
 public class I18n {
 
-	private static final String CONTEXT_GLUE = "\u0004";
+	static final String CONTEXT_GLUE = "\u0004";
 	
 	/**
 	 * Reference to the current localization bundles.
@@ -55,12 +60,58 @@ public class I18n {
 	 */
 	private volatile Locale sourceCodeLocale = Locale.ENGLISH;
 
-	private String baseName;
+	private volatile String baseName;
 
-	private ClassLoader loader;
+	private volatile ClassLoader loader;
 
 	private volatile Locale locale;
 
+	/**
+	 * The generation of the current bundle.
+	 * 
+	 * @see #getGeneration()
+	 */
+	private volatile long generation;
+
+	/**
+	 * If true, bundles loaded by base name are converted into compact
+	 * bundles.
+	 */
+	private volatile boolean compact;
+
+	/**
+	 * If not <code>null</code>, the strings of bundles loaded by base name
+	 * are shared through this pool.
+	 */
+	private volatile StringPool pool;
+
+	/**
+	 * If not <code>null</code>, bundles are loaded through the chains of
+	 * this object instead of {@link ResourceBundle#getBundle(String, Locale,
+	 * ClassLoader)}.
+	 */
+	private volatile LocaleFallback fallback;
+
+	/**
+	 * Map<String, I18n>, the objects of the domains that have been looked up
+	 * since the bundle was last loaded. The map is never modified once it
+	 * has been published.
+	 * 
+	 * @see #getDomain(String)
+	 */
+	private volatile Map domains = Collections.EMPTY_MAP;
+
+	/**
+	 * True, if this object has been registered with
+	 * {@link I18nManager#addLoaded(I18n)}.
+	 */
+	private volatile boolean loaded;
+
+	/**
+	 * The parsed patterns of the format methods.
+	 */
+	private final FormatCache formats = new FormatCache();
+
 	/**
 	 * Constructs an I18n object for a resource bundle.
 	 * 
@@ -90,6 +141,23 @@ public class I18n {
 		setResources(baseName, locale, loader);
 	}
 
+	/**
+	 * Constructs an I18n object for a bundle that has been loaded for
+	 * <code>baseName</code> and <code>locale</code> by other means, e.g.
+	 * restored from a snapshot. Subsequent calls to
+	 * {@link #setLocale(Locale)} load bundles through <code>loader</code>.
+	 */
+	I18n(ResourceBundle bundle, String baseName, Locale locale, ClassLoader loader)
+	{
+		this.bundle = bundle;
+		this.baseName = baseName;
+		this.locale = locale;
+		this.loader = loader;
+		this.generation = I18nManager.getInstance().nextGeneration();
+		attach(bundle);
+		loaded();
+	}
+
 	/**
 	 * Returns the current resource bundle.
 	 * 
@@ -114,6 +182,26 @@ public class I18n {
 		return locale;
 	}
 
+	/**
+	 * Returns the generation of the resource bundle that is used for
+	 * translations. A new generation is assigned whenever the bundle is
+	 * replaced, e.g. by {@link #setResources(ResourceBundle)} or
+	 * {@link #setLocale(Locale)}. Generations are taken from a global counter
+	 * maintained by {@link I18nManager} and only ever increase.
+	 * <p>
+	 * Objects that cache translated text can keep the generation that was
+	 * current when the text was translated and compare it later on to detect
+	 * stale entries.
+	 * 
+	 * @return the generation of the current resource bundle
+	 * @see I18nManager#getGeneration()
+	 * @since 0.9.9
+	 */
+	public long getGeneration()
+	{
+		return generation;
+	}
+
 	/**
 	 * Sets a resource bundle to be used for message translations.
 	 * <p>
@@ -133,6 +221,10 @@ public class I18n {
 		this.baseName = null;
 		this.locale = bundle.getLocale();
 		this.loader = null;
+		this.generation = I18nManager.getInstance().nextGeneration();
+		formats.clear();
+		domains = Collections.EMPTY_MAP;
+		attach(bundle);
 	}
 
 	/**
@@ -148,10 +240,325 @@ public class I18n {
 	 */
 	public synchronized void setResources(String baseName, Locale locale, ClassLoader loader)
 	{
-		this.bundle = ResourceBundle.getBundle(baseName, locale, loader);
+		ResourceBundle bundle = loadBundle(baseName, locale, loader);
+		this.bundle = prepare(bundle);
 		this.baseName = baseName;
 		this.locale = locale;
 		this.loader = loader;
+		this.generation = I18nManager.getInstance().nextGeneration();
+		formats.clear();
+		domains = Collections.EMPTY_MAP;
+		loaded();
+	}
+
+	/**
+	 * Loads the bundle for the base name, locale and class loader of this
+	 * object again, e.g. after its files have been modified. The bundle is
+	 * loaded and converted like by {@link #setLocale(Locale)}, so the
+	 * locale fallback and the compact and string pool settings apply.
+	 * 
+	 * @return true, if the bundle was reloaded; false, if it has not been
+	 *         loaded by base name
+	 * @throws MissingResourceException
+	 *             if the bundle could not be loaded, the current bundle
+	 *             remains in use
+	 * @see CatalogReloader
+	 */
+	synchronized boolean reload()
+	{
+		if (baseName == null || loader == null) {
+			return false;
+		}
+		setResources(baseName, locale, loader);
+		return true;
+	}
+
+	/**
+	 * Registers this object with {@link I18nManager#addLoaded(I18n)} once
+	 * it has loaded a bundle by base name.
+	 */
+	private void loaded()
+	{
+		if (!loaded && baseName != null) {
+			loaded = true;
+			I18nManager.getInstance().addLoaded(this);
+		}
+	}
+
+	/**
+	 * Sets whether bundles that are loaded by base name, e.g. by
+	 * {@link #setLocale(Locale)}, are converted into a
+	 * {@link CompactResourceBundle}. Enabling it converts the current
+	 * bundle as well.
+	 * 
+	 * @see I18nFactory#COMPACT
+	 */
+	synchronized void setCompact(boolean compact)
+	{
+		this.compact = compact;
+		if (compact) {
+			reprepare();
+		}
+	}
+
+	/**
+	 * Sets the pool that shares the strings of bundles that are loaded by
+	 * base name, <code>null</code> to not share strings. Setting a pool
+	 * converts the current bundle as well. Has no effect on compact
+	 * bundles, which do not hold strings.
+	 * 
+	 * @see I18nFactory#DEDUPLICATE
+	 */
+	synchronized void setStringPool(StringPool pool)
+	{
+		this.pool = pool;
+		if (pool != null) {
+			reprepare();
+		}
+	}
+
+	/**
+	 * Sets the rules that determine which catalogs are consulted for
+	 * messages that are not translated for the locale of this object, and
+	 * reloads the current bundle if it has been loaded by base name.
+	 * 
+	 * @param fallback
+	 *            the rules, <code>null</code> to load bundles by
+	 *            {@link ResourceBundle#getBundle(String, Locale, ClassLoader)}
+	 * @throws MissingResourceException
+	 *             if the bundle can not be reloaded
+	 * @since 0.9.9
+	 */
+	public synchronized void setLocaleFallback(LocaleFallback fallback)
+	{
+		this.fallback = fallback;
+		if (baseName != null && loader != null) {
+			setResources(baseName, locale, loader);
+		}
+	}
+
+	/**
+	 * Returns the rules set by {@link #setLocaleFallback(LocaleFallback)}.
+	 * 
+	 * @return the rules or <code>null</code>
+	 * @since 0.9.9
+	 */
+	public LocaleFallback getLocaleFallback()
+	{
+		return fallback;
+	}
+
+	/**
+	 * Loads a bundle through the fallback chains, if set.
+	 */
+	private ResourceBundle loadBundle(String baseName, Locale locale, ClassLoader loader)
+	{
+		LocaleFallback fallback = this.fallback;
+		return (fallback != null) ? fallback.getBundle(baseName, locale, loader) : getBundle(baseName, locale,
+				loader);
+	}
+
+	/**
+	 * Converts the current bundle by {@link #prepare(ResourceBundle)}, if it
+	 * has been loaded by base name.
+	 */
+	private void reprepare()
+	{
+		if (baseName != null) {
+			ResourceBundle bundle = prepare(this.bundle);
+			if (bundle != this.bundle) {
+				this.bundle = bundle;
+				this.generation = I18nManager.getInstance().nextGeneration();
+				formats.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns <code>bundle</code> converted into a compact bundle or a
+	 * bundle of pooled strings, depending on the settings, or
+	 * <code>bundle</code> itself, if it can not be converted.
+	 */
+	private ResourceBundle prepare(ResourceBundle bundle)
+	{
+		if (compact) {
+			ResourceBundle compacted = CompactResourceBundle.compact(bundle, false);
+			return (compacted != null) ? compacted : bundle;
+		}
+		StringPool pool = this.pool;
+		return (pool != null) ? pool.deduplicate(bundle) : bundle;
+	}
+
+	/**
+	 * Replaces the current bundle by <code>bundle</code> if the current bundle
+	 * is still <code>expected</code>. In contrast to
+	 * {@link #setResources(ResourceBundle)} the base name, locale and class
+	 * loader are retained, so subsequent calls to {@link #setLocale(Locale)}
+	 * keep working.
+	 * 
+	 * @return true, if the bundle was replaced; false, if the bundle was
+	 *         changed concurrently
+	 * @see CatalogReloader
+	 */
+	synchronized boolean replaceResources(ResourceBundle expected, ResourceBundle bundle)
+	{
+		if (this.bundle != expected) {
+			return false;
+		}
+		this.bundle = bundle;
+		this.generation = I18nManager.getInstance().nextGeneration();
+		formats.clear();
+		attach(bundle);
+		return true;
+	}
+
+	/**
+	 * Installs the bundle and settings of <code>i18n</code>, which has been
+	 * resolved by <code>placeholder</code>, unless the bundle of this object
+	 * has been replaced in the meantime. If the locale of this object has
+	 * been changed during resolution, the bundle for the current locale is
+	 * loaded instead.
+	 * 
+	 * @see I18nFactory#LAZY
+	 */
+	synchronized void resolved(LazyResourceBundle placeholder, I18n i18n)
+	{
+		if (this.bundle != placeholder) {
+			return;
+		}
+		Locale locale = this.locale;
+		this.bundle = i18n.bundle;
+		attach(bundle);
+		this.baseName = i18n.baseName;
+		this.locale = i18n.locale;
+		this.loader = i18n.loader;
+		this.compact = i18n.compact;
+		this.pool = i18n.pool;
+		this.fallback = i18n.fallback;
+		this.generation = I18nManager.getInstance().nextGeneration();
+		formats.clear();
+		domains = Collections.EMPTY_MAP;
+		loaded();
+		if (locale != null && !locale.equals(this.locale)) {
+			try {
+				setLocale(locale);
+			}
+			catch (MissingResourceException e) {
+				// keep the resolved bundle
+			}
+		}
+	}
+
+	/**
+	 * Applies the changed translations of <code>patch</code> to the current
+	 * bundle. Concurrent translations see either all changes or none of
+	 * them. Only the cached formats of the changed messages are discarded,
+	 * so the cost of a patch grows with the number of changes, not with the
+	 * size of the bundle.
+	 * <p>
+	 * The changes are kept in an {@link OverlayResourceBundle} on top of the
+	 * current bundle. If the current bundle already is an overlay, it is
+	 * updated in place, which affects all <code>I18n</code> objects that
+	 * share it. The changes are lost when the bundle is replaced, e.g. by
+	 * {@link #setLocale(Locale)}.
+	 * 
+	 * @return the generation of the patched bundle
+	 * @throws IllegalArgumentException
+	 *             if a translation of the patch is invalid, the bundle is
+	 *             not modified in that case
+	 * @see #getGeneration()
+	 * @since 0.9.9
+	 */
+	public synchronized long applyPatch(CatalogPatch patch)
+	{
+		if (bundle instanceof OverlayResourceBundle) {
+			// notifies all objects that share the overlay, including this
+			((OverlayResourceBundle)bundle).update(patch.getTranslations(), patch.getRemovals());
+		}
+		else {
+			OverlayResourceBundle overlay = new OverlayResourceBundle(bundle);
+			overlay.update(patch.getTranslations(), patch.getRemovals());
+			this.bundle = overlay;
+			this.generation = I18nManager.getInstance().nextGeneration();
+			formats.invalidate(patch.getKeys());
+			attach(overlay);
+		}
+		return generation;
+	}
+
+	/**
+	 * Registers this object with <code>bundle</code>, if it is an
+	 * {@link OverlayResourceBundle}, to be notified of modifications.
+	 */
+	private void attach(ResourceBundle bundle)
+	{
+		if (bundle instanceof OverlayResourceBundle) {
+			((OverlayResourceBundle)bundle).addOwner(this);
+		}
+	}
+
+	/**
+	 * Invoked when the translations of <code>overlay</code> have been
+	 * modified. Discards the affected formats and advances the generation,
+	 * if <code>overlay</code> still is the bundle of this object. Does not
+	 * lock this object, since the overlay may be modified by another object
+	 * that shares it.
+	 * 
+	 * @param keys
+	 *            the modified keys, <code>null</code> if all translations
+	 *            have been modified
+	 */
+	void overlayChanged(OverlayResourceBundle overlay, Collection keys)
+	{
+		if (bundle != overlay) {
+			return;
+		}
+		generation = I18nManager.getInstance().nextGeneration();
+		if (keys != null) {
+			formats.invalidate(keys);
+		}
+		else {
+			formats.clear();
+		}
+	}
+
+	/**
+	 * Sets the maximum number of parsed patterns that are cached for the
+	 * format methods, e.g. {@link #tr(String, Object[])}. The default is
+	 * large enough for most applications. If an application formats more
+	 * distinct messages than that, the patterns that have not been used
+	 * recently are parsed again.
+	 * 
+	 * @param size
+	 *            the maximum number of cached patterns
+	 * @throws IllegalArgumentException
+	 *             if <code>size</code> is not positive
+	 * @since 0.9.9
+	 */
+	public void setMaximumFormatCacheSize(int size)
+	{
+		formats.setMaximumSize(size);
+	}
+
+	/**
+	 * Returns the base name of the resource bundle.
+	 * 
+	 * @return the base name or <code>null</code>, if the bundle was set
+	 *         through {@link #setResources(ResourceBundle)}
+	 * @since 0.9.9
+	 */
+	public String getBaseName()
+	{
+		return baseName;
+	}
+
+	/**
+	 * Returns the class loader that was used to load the resource bundle or
+	 * <code>null</code>, if the bundle was set directly.
+	 */
+	ClassLoader getClassLoader()
+	{
+		return loader;
 	}
 
 	/**
@@ -214,6 +621,9 @@ public class I18n {
 			throw new NullPointerException("locale must not be null");
 		}
 		sourceCodeLocale = locale;
+		for (Iterator it = domains.values().iterator(); it.hasNext();) {
+			((I18n)it.next()).setSourceCodeLocale(locale);
+		}
 	}
 
 	/**
@@ -228,10 +638,14 @@ public class I18n {
 	 */
 	public final String tr(String text)
 	{
+		long start = startLookup();
 		try {
-			return bundle.getString(text);
+			String translation = bundle.getString(text);
+			translated(text, true, start);
+			return translation;
 		}
 		catch (MissingResourceException e) {
+			translated(text, false, start);
 			return text;
 		}
 	}
@@ -255,7 +669,7 @@ public class I18n {
 	 */
 	public final String tr(String text, Object[] objects)
 	{
-		return MessageFormat.format(tr(text), objects);
+		return format(text, tr(text), objects);
 	}
 
 	/**
@@ -313,10 +727,14 @@ public class I18n {
 	 */
 	public final String trn(String text, String pluralText, long n)
 	{
+		long start = startLookup();
 		try {
-			return trnInternal(bundle, text, pluralText, n);
+			String translation = trnInternal(bundle, text, pluralText, n);
+			translated(text, true, start);
+			return translation;
 		}
 		catch (MissingResourceException e) {
+			translated(text, false, start);
 			return (n == 1) ? text : pluralText;
 		}
 	}
@@ -338,7 +756,7 @@ public class I18n {
 	 */
 	public final String trn(String text, String pluralText, long n, Object[] objects)
 	{
-		return MessageFormat.format(trn(text, pluralText, n), objects);
+		return format(text, trn(text, pluralText, n), objects);
 	}
 
 	/**
@@ -389,6 +807,70 @@ public class I18n {
 		return trn(text, pluralText, n, new Object[]{ o1, o2, o3, o4 });
 	}
 
+	/**
+	 * Loads a resource bundle and notifies the monitor, if any.
+	 */
+	static ResourceBundle getBundle(String baseName, Locale locale, ClassLoader loader)
+	{
+		I18nMonitor monitor = I18nManager.monitor;
+		if (monitor == null) {
+			return ResourceBundle.getBundle(baseName, locale, loader);
+		}
+		Object context = monitor.bundleLoading(baseName, locale);
+		long start = Clock.nanoTime();
+		try {
+			ResourceBundle bundle = ResourceBundle.getBundle(baseName, locale, loader);
+			monitor.bundleLoaded(baseName, locale, true, Clock.nanoTime() - start, context);
+			return bundle;
+		}
+		catch (MissingResourceException e) {
+			monitor.bundleLoaded(baseName, locale, false, Clock.nanoTime() - start, context);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the start time of a lookup, if a monitor is installed.
+	 */
+	private static long startLookup()
+	{
+		return (I18nManager.monitor != null) ? Clock.nanoTime() : 0;
+	}
+
+	/**
+	 * Notifies the monitor, if any, of a lookup that was started at
+	 * <code>start</code>.
+	 */
+	private void translated(String key, boolean found, long start)
+	{
+		I18nMonitor monitor = I18nManager.monitor;
+		if (monitor != null) {
+			// the monitor may have been installed during the lookup
+			monitor.translated(this, key, found, (start != 0) ? Clock.nanoTime() - start : 0);
+		}
+	}
+
+	/**
+	 * Formats <code>objects</code> like
+	 * {@link MessageFormat#format(java.lang.String, java.lang.Object[])} and
+	 * notifies the monitor, if any. The objects are formatted for the locale
+	 * of this instance or the default locale, if this instance was directly
+	 * created from a resource bundle. The parsed pattern is cached.
+	 * 
+	 * @param key
+	 *            the key of the message <code>pattern</code> has been
+	 *            translated from
+	 */
+	private String format(String key, String pattern, Object[] objects)
+	{
+		I18nMonitor monitor = I18nManager.monitor;
+		if (monitor != null) {
+			monitor.formatted(this, pattern);
+		}
+		Locale locale = this.locale;
+		return formats.format((locale != null) ? locale : Locale.getDefault(), key, pattern, objects);
+	}
+
 	/**
 	 * Returns the plural form for <code>n<code> of the translation of ???
 	 *      
@@ -426,7 +908,10 @@ public class I18n {
 					// GNU gettext generated bundle w/ plural handling
 					try {
 						Object localValue = lookupMethod.invoke(bundle, new Object[]{ text });
-						if (localValue.getClass().isArray()) {
+						if (localValue == null) {
+							// not in this bundle, continue with the parent
+						}
+						else if (localValue.getClass().isArray()) {
 							String[] pluralforms = (String[])localValue;
 							long index = 0;
 							try {
@@ -457,11 +942,12 @@ public class I18n {
 					}
 					catch (Exception e) {}
 				}
-				bundle = null;
 				try {
 					bundle = (ResourceBundle)getParentMethod.invoke(bundle, new Object[0]);
 				}
-				catch (Exception e) {}
+				catch (Exception e) {
+					bundle = null;
+				}
 			}
 			else {
 				return bundle.getString(text);
@@ -488,13 +974,23 @@ public class I18n {
 	 */
 	public final String trc(String context, String text)
 	{
-		if (sourceCodeLocale.equals(getResources().getLocale())) { 
+		// read the bundle once, it may be replaced concurrently
+		ResourceBundle bundle = this.bundle;
+		if (sourceCodeLocale.equals(bundle.getLocale())) { 
 			return text;
 		} else {
+			long start = startLookup();
 			String key = context + CONTEXT_GLUE + text; 
-			String translated = tr(key);
-			// if no translation was found return text in source locale
-			return translated == key ? text : translated;
+			try {
+				String translation = bundle.getString(key);
+				translated(key, true, start);
+				return translation;
+			}
+			catch (MissingResourceException e) {
+				// if no translation was found return text in source locale
+				translated(key, false, start);
+				return text;
+			}
 		}
 	}
 	
@@ -514,10 +1010,15 @@ public class I18n {
 	 * @since 0.9.5
 	 */
 	public final String trnc(String context, String singularText, String pluralText, long n) {
+		long start = startLookup();
+		String key = context + CONTEXT_GLUE + singularText;
 		try {
-			return trnInternal(bundle, context + CONTEXT_GLUE + singularText, pluralText, n);
+			String translation = trnInternal(bundle, key, pluralText, n);
+			translated(key, true, start);
+			return translation;
 		}
 		catch (MissingResourceException e) {
+			translated(key, false, start);
 			return (n == 1) ? singularText : pluralText;
 		}
 	}
@@ -540,7 +1041,7 @@ public class I18n {
 	 * @since 0.9
 	 */
 	public final String trnc(String context, String singularText, String pluralText, long n, Object[] objects) {
-		return MessageFormat.format(trnc(context, singularText, pluralText, n), objects);
+		return format(context + CONTEXT_GLUE + singularText, trnc(context, singularText, pluralText, n), objects);
 	}
 
 	/**
@@ -551,7 +1052,7 @@ public class I18n {
 	 * @since 0.9.5
 	 */
 	public final String trnc(String comment, String singularText, String pluralText, long n, Object obj) {
-		return MessageFormat.format(trnc(comment, singularText, pluralText, n), new Object[] { obj });
+		return trnc(comment, singularText, pluralText, n, new Object[] { obj });
 	}
 	
 	/**
@@ -562,7 +1063,7 @@ public class I18n {
 	 * @since 0.9.5
 	 */
 	public final String trnc(String comment, String singularText, String pluralText, long n, Object obj1, Object obj2) {
-		return MessageFormat.format(trnc(comment, singularText, pluralText, n), new Object[] { obj1, obj2 });
+		return trnc(comment, singularText, pluralText, n, new Object[] { obj1, obj2 });
 	}
 	
 	/**
@@ -573,7 +1074,7 @@ public class I18n {
 	 * @since 0.9.5
 	 */
 	public final String trnc(String comment, String singularText, String pluralText, long n, Object obj1, Object obj2, Object obj3) {
-		return MessageFormat.format(trnc(comment, singularText, pluralText, n), new Object[] { obj1, obj2, obj3 });
+		return trnc(comment, singularText, pluralText, n, new Object[] { obj1, obj2, obj3 });
 	}
 	
 	/**
@@ -584,7 +1085,146 @@ public class I18n {
 	 * @since 0.9.5
 	 */
 	public final String trnc(String comment, String singularText, String pluralText, long n, Object obj1, Object obj2, Object obj3, Object obj4) {
-		return MessageFormat.format(trnc(comment, singularText, pluralText, n), new Object[] { obj1, obj2, obj3, obj4 });
+		return trnc(comment, singularText, pluralText, n, new Object[] { obj1, obj2, obj3, obj4 });
 	}
-	
+
+	/**
+	 * Returns the object that translates the messages of
+	 * <code>domain</code>. A domain is a separate catalog in the package of
+	 * the bundle of this object, e.g. the domain <code>admin</code> of
+	 * <code>app.i18n.Messages</code> is loaded from
+	 * <code>app.i18n.admin</code>. Splitting a large catalog into domains
+	 * avoids loading messages that are rarely used: the catalog of a domain
+	 * is loaded on the first lookup after the locale has been set.
+	 * <p>
+	 * If the catalog of the domain does not exist, the returned object
+	 * returns the passed text. The returned object is replaced when the
+	 * bundle of this object is replaced, e.g. by {@link #setLocale(Locale)},
+	 * so it should not be kept.
+	 * 
+	 * @param domain
+	 *            the name of the domain
+	 * @return the object for the domain, never <code>null</code>
+	 * @since 0.9.9
+	 */
+	public I18n getDomain(String domain)
+	{
+		ResourceBundle bundle = this.bundle;
+		if (bundle instanceof LazyResourceBundle) {
+			((LazyResourceBundle)bundle).resolve();
+		}
+		I18n i18n = (I18n)domains.get(domain);
+		return (i18n != null) ? i18n : loadDomain(domain);
+	}
+
+	private synchronized I18n loadDomain(String domain)
+	{
+		I18n i18n = (I18n)domains.get(domain);
+		if (i18n != null) {
+			return i18n;
+		}
+		if (baseName != null && loader != null) {
+			int i = baseName.lastIndexOf('.');
+			String domainBaseName = (i != -1) ? baseName.substring(0, i + 1) + domain : domain;
+			ResourceBundle bundle;
+			try {
+				bundle = loadBundle(domainBaseName, locale, loader);
+			}
+			catch (MissingResourceException e) {
+				bundle = new CatalogResourceBundle(Collections.EMPTY_MAP, locale);
+			}
+			i18n = new I18n(bundle, domainBaseName, locale, loader);
+			i18n.compact = compact;
+			i18n.pool = pool;
+			i18n.fallback = fallback;
+			i18n.bundle = i18n.prepare(bundle);
+		}
+		else {
+			i18n = new I18n(new CatalogResourceBundle(Collections.EMPTY_MAP, bundle.getLocale()));
+		}
+		i18n.setSourceCodeLocale(sourceCodeLocale);
+		Map domains = new HashMap(this.domains);
+		domains.put(domain, i18n);
+		this.domains = domains;
+		return i18n;
+	}
+
+	/**
+	 * Returns the translation of <code>text</code> in <code>domain</code>.
+	 * 
+	 * @see #getDomain(String)
+	 * @see #tr(String)
+	 * @since 0.9.9
+	 */
+	public final String dtr(String domain, String text)
+	{
+		return getDomain(domain).tr(text);
+	}
+
+	/**
+	 * Returns the translation of <code>text</code> in <code>domain</code>
+	 * formatted with <code>objects</code>.
+	 * 
+	 * @see #getDomain(String)
+	 * @see #tr(String, Object[])
+	 * @since 0.9.9
+	 */
+	public final String dtr(String domain, String text, Object[] objects)
+	{
+		return getDomain(domain).tr(text, objects);
+	}
+
+	/**
+	 * Returns the plural form for <code>n</code> of the translation of
+	 * <code>text</code> in <code>domain</code>.
+	 * 
+	 * @see #getDomain(String)
+	 * @see #trn(String, String, long)
+	 * @since 0.9.9
+	 */
+	public final String dtrn(String domain, String text, String pluralText, long n)
+	{
+		return getDomain(domain).trn(text, pluralText, n);
+	}
+
+	/**
+	 * Returns the plural form for <code>n</code> of the translation of
+	 * <code>text</code> in <code>domain</code> formatted with
+	 * <code>objects</code>.
+	 * 
+	 * @see #getDomain(String)
+	 * @see #trn(String, String, long, Object[])
+	 * @since 0.9.9
+	 */
+	public final String dtrn(String domain, String text, String pluralText, long n, Object[] objects)
+	{
+		return getDomain(domain).trn(text, pluralText, n, objects);
+	}
+
+	/**
+	 * Returns the translation of <code>text</code> in <code>context</code>
+	 * and <code>domain</code>.
+	 * 
+	 * @see #getDomain(String)
+	 * @see #trc(String, String)
+	 * @since 0.9.9
+	 */
+	public final String dtrc(String domain, String context, String text)
+	{
+		return getDomain(domain).trc(context, text);
+	}
+
+	/**
+	 * Returns the plural form for <code>n</code> of the translation of
+	 * <code>text</code> in <code>context</code> and <code>domain</code>.
+	 * 
+	 * @see #getDomain(String)
+	 * @see #trnc(String, String, String, long)
+	 * @since 0.9.9
+	 */
+	public final String dtrnc(String domain, String context, String text, String pluralText, long n)
+	{
+		return getDomain(domain).trnc(context, text, pluralText, n);
+	}
+
 }
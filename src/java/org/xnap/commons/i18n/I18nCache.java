@@ -20,83 +20,247 @@
  */
 package org.xnap.commons.i18n;
 
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Stores a list of {@link I18n} objects by a String key.
+ * <p>
+ * The cache is partitioned by class loader. Partitions are only weakly
+ * referenced by their class loader. Every <code>I18n</code> object references
+ * its class loader, so a cached object would keep the loader of its
+ * partition reachable. Therefore only the objects of the system class loader
+ * and its parents, which are never garbage collected, are held through soft
+ * references. The objects of all other class loaders, e.g. the loader of a
+ * web application, are held through weak references and are cached as long
+ * as the application references them. This lets a class loader be garbage
+ * collected as soon as it becomes unreachable. Each partition holds at most
+ * {@link #getMaximumSize()} keys, the least recently used key is evicted
+ * first.
  * 
  * @author Steffen Pingel
  */
 class I18nCache {
 	
 	/**
-	 * Map<String, List<I18n>>, list is synchronized too.
+	 * The default maximum number of keys per class loader.
 	 */
-	private final Map i18nByPackage = Collections.synchronizedMap(new HashMap());
+	static final int DEFAULT_MAXIMUM_SIZE = 512;
+	
+	/**
+	 * Map<ClassLoader, Map<String, List<Reference<I18n>>>>, access is
+	 * synchronized on the map.
+	 */
+	private final Map partitions = new WeakHashMap();
 
+	private volatile int maximumSize;
+	
 	I18nCache()
 	{
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	I18nCache(int maximumSize)
+	{
+		setMaximumSize(maximumSize);
 	}
 
 	public void clear()
 	{
-		i18nByPackage.clear();
+		synchronized (partitions) {
+			partitions.clear();
+		}
+	}
+
+	/**
+	 * Returns the maximum number of keys per class loader.
+	 */
+	public int getMaximumSize()
+	{
+		return maximumSize;
+	}
+
+	/**
+	 * Sets the maximum number of keys per class loader. Partitions that
+	 * exceed the new size shrink as new keys are added.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>maximumSize</code> is not positive
+	 */
+	public void setMaximumSize(int maximumSize)
+	{
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be positive");
+		}
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Returns the number of keys that are cached for <code>loader</code>.
+	 */
+	public int size(final ClassLoader loader)
+	{
+		synchronized (partitions) {
+			Map partition = (Map)partitions.get(loader);
+			return (partition != null) ? partition.size() : 0;
+		}
 	}
 
+	/**
+	 * Returns an I18n object that is not associated with a class loader.
+	 */
 	public I18n get(final String packageName, final Locale locale)
+	{
+		return get(null, packageName, locale);
+	}
+
+	public I18n get(final ClassLoader loader, final String packageName, final Locale locale)
 	{
 		if (locale == null) {
 			throw new NullPointerException("locale is null");
 		}
 		
-		List list = (List)i18nByPackage.get(packageName);
-		if (list != null) {
-			synchronized (list) {
-				for (Iterator it = list.iterator(); it.hasNext();) {
-					I18n i18n = (I18n)it.next();
-					if (locale.equals(i18n.getLocale())) {
-						return i18n;
-					}
+		synchronized (partitions) {
+			Map partition = (Map)partitions.get(loader);
+			if (partition == null) {
+				return null;
+			}
+			List list = (List)partition.get(packageName);
+			if (list == null) {
+				return null;
+			}
+			for (Iterator it = list.iterator(); it.hasNext();) {
+				I18n i18n = (I18n)((Reference)it.next()).get();
+				if (i18n == null) {
+					it.remove();
+				}
+				else if (locale.equals(i18n.getLocale())) {
+					return i18n;
 				}
 			}
+			if (list.isEmpty()) {
+				partition.remove(packageName);
+			}
 		}
 		return null;
 	}
 
+	/**
+	 * Stores an I18n object that is not associated with a class loader.
+	 */
 	public void put(String packageName, I18n i18n)
 	{
-		List list;
-		synchronized (i18nByPackage) {
-			list = (List)i18nByPackage.get(packageName);
+		put(null, packageName, i18n);
+	}
+
+	public void put(ClassLoader loader, String packageName, I18n i18n)
+	{
+		synchronized (partitions) {
+			Partition partition = (Partition)partitions.get(loader);
+			if (partition == null) {
+				partition = new Partition(isSystemLoader(loader));
+				partitions.put(loader, partition);
+			}
+			List list = (List)partition.get(packageName);
 			if (list == null) {
-				list = Collections.synchronizedList(new ArrayList(2));
-				i18nByPackage.put(packageName, list);
+				list = new ArrayList(2);
+				partition.put(packageName, list);
 			}
+			list.add(partition.soft ? (Reference)new SoftReference(i18n) : new WeakReference(i18n));
 		}
-		list.add(i18n);
 	}
 
-	public void visit(final Visitor visitor)
+	/**
+	 * Returns the number of class loaders that have cached objects.
+	 */
+	public int getPartitionCount()
 	{
-		List[] lists;
-		synchronized (i18nByPackage) {
-			 lists = (List[])i18nByPackage.values().toArray(new List[0]);
+		synchronized (partitions) {
+			return partitions.size();
 		}
-		for (int i = 0; i < lists.length; i++) {
-			List list = lists[i];
-			synchronized (list) {
-				for (Iterator it2 = list.iterator(); it2.hasNext();) {
-					I18n i18n = (I18n)it2.next();
-					visitor.visit(i18n);
+	}
+
+	/**
+	 * Returns true, if <code>loader</code> is the system class loader or
+	 * one of its parents, which are never garbage collected.
+	 */
+	static boolean isSystemLoader(ClassLoader loader)
+	{
+		if (loader == null) {
+			return true;
+		}
+		try {
+			for (ClassLoader system = ClassLoader.getSystemClassLoader(); system != null; system = system
+					.getParent()) {
+				if (system == loader) {
+					return true;
+				}
+			}
+		}
+		catch (SecurityException e) {
+			// treat it as a loader that can be garbage collected
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the objects cached for <code>loader</code>.
+	 *
+	 * @return a map from keys to lists of I18n objects
+	 */
+	public Map getEntries(final ClassLoader loader)
+	{
+		Map entries = new LinkedHashMap();
+		synchronized (partitions) {
+			Map partition = (Map)partitions.get(loader);
+			if (partition == null) {
+				return entries;
+			}
+			for (Iterator it = partition.entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry)it.next();
+				List i18ns = new ArrayList();
+				for (Iterator it2 = ((List)entry.getValue()).iterator(); it2.hasNext();) {
+					Object i18n = ((Reference)it2.next()).get();
+					if (i18n != null) {
+						i18ns.add(i18n);
+					}
+				}
+				if (!i18ns.isEmpty()) {
+					entries.put(entry.getKey(), i18ns);
 				}
 			}
 		}
+		return entries;
+	}
+
+	public void visit(final Visitor visitor)
+	{
+		List i18ns = new ArrayList();
+		synchronized (partitions) {
+			for (Iterator it = partitions.values().iterator(); it.hasNext();) {
+				Map partition = (Map)it.next();
+				for (Iterator it2 = partition.values().iterator(); it2.hasNext();) {
+					List list = (List)it2.next();
+					for (Iterator it3 = list.iterator(); it3.hasNext();) {
+						Object i18n = ((Reference)it3.next()).get();
+						if (i18n != null) {
+							i18ns.add(i18n);
+						}
+					}
+				}
+			}
+		}
+		for (Iterator it = i18ns.iterator(); it.hasNext();) {
+			visitor.visit((I18n)it.next());
+		}
 	}
 
 	public static interface Visitor {
@@ -105,4 +269,31 @@ class I18nCache {
 		
 	}
 
+	/**
+	 * A map that evicts the least recently used key when it grows beyond the
+	 * maximum size of the cache.
+	 */
+	private class Partition extends LinkedHashMap {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * If true, objects are held through soft references, otherwise
+		 * through weak references.
+		 */
+		final boolean soft;
+
+		public Partition(boolean soft)
+		{
+			super(16, 0.75f, true);
+			this.soft = soft;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry eldest)
+		{
+			return size() > maximumSize;
+		}
+
+	}
+
 }
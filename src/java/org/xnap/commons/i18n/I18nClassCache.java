@@ -0,0 +1,221 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Remembers the {@link I18n} objects that have been resolved for a class, so
+ * repeated lookups for the same class do not walk the package hierarchy
+ * again.
+ * <p>
+ * Lookups do not lock and do not allocate: the entries are kept in a hash
+ * table of immutable chains. A modification replaces the chain of one
+ * bucket and publishes it through the volatile table field, the table is
+ * only copied when it grows. Classes are only weakly referenced. Since every
+ * <code>I18n</code> object references a class loader, the objects are held
+ * through weak references unless the class has been loaded by the system
+ * class loader or one of its parents, see {@link I18nCache}. Entries are
+ * therefore released with their class.
+ * <p>
+ * An object is only returned as long as its locale matches the requested
+ * locale, so objects whose locale has been changed, e.g. by
+ * {@link I18nManager#setDefaultLocale(Locale)}, are resolved again.
+ */
+class I18nClassCache {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The hash table, its length is a power of two. Buckets are replaced
+	 * under the lock of the cache, the entries are never modified.
+	 */
+	private volatile Entry[] table = new Entry[INITIAL_CAPACITY];
+
+	/**
+	 * The number of entries in the table including the ones that have been
+	 * garbage collected, guarded by the cache.
+	 */
+	private int count;
+
+	public synchronized void clear()
+	{
+		table = new Entry[INITIAL_CAPACITY];
+		count = 0;
+	}
+
+	/**
+	 * Returns the number of entries whose class and object have not been
+	 * garbage collected.
+	 */
+	public int size()
+	{
+		return getEntries(table).size();
+	}
+
+	/**
+	 * Returns the object that has been resolved for <code>clazz</code> or
+	 * <code>null</code>.
+	 * 
+	 * @param bundleName
+	 *            the bundle name the object has been resolved with,
+	 *            <code>null</code> if it has been resolved through
+	 *            {@link I18nFactory#PROPS_FILENAME}
+	 * @param flags
+	 *            the flags the object has been resolved with
+	 */
+	public I18n get(Class clazz, String bundleName, Locale locale, int flags)
+	{
+		Entry[] table = this.table;
+		int hash = System.identityHashCode(clazz);
+		for (Entry entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+			if (entry.hash == hash && entry.clazz.get() == clazz && entry.matches(bundleName, flags)) {
+				I18n i18n = (I18n)entry.reference.get();
+				if (i18n != null && locale.equals(i18n.getLocale())) {
+					return i18n;
+				}
+			}
+		}
+		return null;
+	}
+
+	public synchronized void put(Class clazz, String bundleName, int flags, I18n i18n)
+	{
+		Entry[] table = this.table;
+		int hash = System.identityHashCode(clazz);
+		int index = hash & (table.length - 1);
+		Entry chain = null;
+		for (Entry entry = table[index]; entry != null; entry = entry.next) {
+			Class cachedClass = (Class)entry.clazz.get();
+			I18n cached = (I18n)entry.reference.get();
+			// drop collected entries and the entry that is replaced
+			if (cachedClass == null || cached == null
+					|| (cachedClass == clazz && entry.matches(bundleName, flags) && equals(i18n.getLocale(), cached
+							.getLocale()))) {
+				count--;
+			}
+			else {
+				chain = new Entry(entry, chain);
+			}
+		}
+		table[index] = new Entry(clazz, bundleName, flags, i18n, chain);
+		count++;
+
+		if (count > table.length / 2) {
+			table = rehash(table);
+		}
+		// publishes the bucket
+		this.table = table;
+	}
+
+	/**
+	 * Returns a copy of <code>table</code> that contains its entries which
+	 * have not been garbage collected, grown if they fill half of it.
+	 */
+	private Entry[] rehash(Entry[] table)
+	{
+		List entries = getEntries(table);
+		int capacity = table.length;
+		while (capacity <= entries.size() * 2) {
+			capacity <<= 1;
+		}
+		Entry[] copy = new Entry[capacity];
+		for (int i = 0; i < entries.size(); i++) {
+			Entry entry = (Entry)entries.get(i);
+			int index = entry.hash & (copy.length - 1);
+			copy[index] = new Entry(entry, copy[index]);
+		}
+		count = entries.size();
+		return copy;
+	}
+
+	private static boolean equals(Locale locale1, Locale locale2)
+	{
+		return (locale1 == null) ? locale2 == null : locale1.equals(locale2);
+	}
+
+	/**
+	 * Returns the entries whose class and object have not been garbage
+	 * collected.
+	 */
+	private List getEntries(Entry[] table)
+	{
+		List entries = new ArrayList();
+		for (int i = 0; i < table.length; i++) {
+			for (Entry entry = table[i]; entry != null; entry = entry.next) {
+				if (entry.clazz.get() != null && entry.reference.get() != null) {
+					entries.add(entry);
+				}
+			}
+		}
+		return entries;
+	}
+
+	private static class Entry {
+
+		private final int hash;
+
+		private final Reference clazz;
+
+		private final String bundleName;
+
+		private final int flags;
+
+		private final Reference reference;
+
+		private final Entry next;
+
+		public Entry(Class clazz, String bundleName, int flags, I18n i18n, Entry next)
+		{
+			this.hash = System.identityHashCode(clazz);
+			this.clazz = new WeakReference(clazz);
+			this.bundleName = bundleName;
+			this.flags = flags;
+			this.reference = I18nCache.isSystemLoader(clazz.getClassLoader()) ? (Reference)new SoftReference(i18n)
+					: new WeakReference(i18n);
+			this.next = next;
+		}
+
+		/**
+		 * Copies <code>entry</code> into a different bucket.
+		 */
+		public Entry(Entry entry, Entry next)
+		{
+			this.hash = entry.hash;
+			this.clazz = entry.clazz;
+			this.bundleName = entry.bundleName;
+			this.flags = entry.flags;
+			this.reference = entry.reference;
+			this.next = next;
+		}
+
+		public boolean matches(String bundleName, int flags)
+		{
+			return this.flags == flags
+					&& (this.bundleName == bundleName || (this.bundleName != null && this.bundleName
+							.equals(bundleName)));
+		}
+
+	}
+
+}
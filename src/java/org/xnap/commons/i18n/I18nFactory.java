@@ -20,6 +20,7 @@
  */
 package org.xnap.commons.i18n;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
@@ -71,6 +72,40 @@ public class I18nFactory {
 	 * @since 0.9.1
 	 */
 	public static final int NO_CACHE = 4 << 0;
+	/**
+	 * Store the catalogs of created {@link I18n} instances in a
+	 * {@link CompactResourceBundle}, which needs less memory than the
+	 * bundles loaded by {@link java.util.ResourceBundle}. Bundles that can
+	 * not be converted are used as they are.
+	 * 
+	 * @since 0.9.9
+	 */
+	public static final int COMPACT = 8 << 0;
+	/**
+	 * Share equal keys and translations between the catalogs of all created
+	 * {@link I18n} instances through the pool returned by
+	 * {@link #getStringPool()}. Catalogs are flattened into a single table
+	 * and their message ids are interned, so they are the same instances as
+	 * the string literals of the calls to {@link I18n#tr(String)}. Bundles
+	 * that can not be flattened are used as they are. Has no effect if
+	 * {@link #COMPACT} is set.
+	 * 
+	 * @since 0.9.9
+	 */
+	public static final int DEDUPLICATE = 16 << 0;
+	/**
+	 * Return an {@link I18n} instance that does not resolve and load its
+	 * resource bundle until the first message is translated, which moves the
+	 * cost of loading catalogs out of the startup of applications that
+	 * create many instances in static initializers. Once resolved, the
+	 * instance behaves like one that has been created without this flag, so
+	 * translations do not incur any overhead. If the bundle can not be
+	 * resolved, the instance returns the passed text, whether or not
+	 * {@link #FALLBACK} is set.
+	 * 
+	 * @since 0.9.9
+	 */
+	public static final int LAZY = 32 << 0;
 	
 	/**
 	 * Default name for Message bundles, is "i18n.Messages".
@@ -89,6 +124,23 @@ public class I18nFactory {
 	
 	private static final I18nCache i18nCache = new I18nCache();
 
+	/**
+	 * Caches the instances created with the {@link #LAZY} flag separately,
+	 * since they are not resolved to a base name.
+	 */
+	private static final I18nCache lazyCache = new I18nCache();
+
+	/**
+	 * Remembers the instances resolved by the methods that take a class.
+	 */
+	private static final I18nClassCache classCache = new I18nClassCache();
+
+	private static final StringPool stringPool = new StringPool();
+
+	private static volatile LocaleFallback localeFallback;
+
+	private static final LocaleIndex localeIndex = new LocaleIndex();
+
 	private I18nFactory()
 	{
 	}
@@ -98,14 +150,175 @@ public class I18nFactory {
 	 */
 	static void clearCache()
 	{
-		i18nCache.visit(new I18nCache.Visitor() {
+		I18nCache.Visitor visitor = new I18nCache.Visitor() {
 
 			public void visit(I18n i18n)
 			{
 				I18nManager.getInstance().remove(i18n);
 			}
-		});
+		};
+		i18nCache.visit(visitor);
 		i18nCache.clear();
+		lazyCache.visit(visitor);
+		lazyCache.clear();
+		classCache.clear();
+		localeIndex.clear();
+	}
+
+	/**
+	 * Sets the maximum number of bundle names that are cached per class
+	 * loader. When the limit is exceeded, the least recently used entry is
+	 * evicted. The default is 512.
+	 * 
+	 * @param size
+	 *            the maximum number of cache entries per class loader
+	 * @throws IllegalArgumentException
+	 *             if <code>size</code> is not positive
+	 * @since 0.9.9
+	 */
+	public static void setMaximumCacheSize(int size)
+	{
+		i18nCache.setMaximumSize(size);
+	}
+
+	/**
+	 * Returns the pool that shares the strings of the catalogs loaded with
+	 * the {@link #DEDUPLICATE} flag. The pool reports how much memory has
+	 * been saved.
+	 * 
+	 * @since 0.9.9
+	 */
+	public static StringPool getStringPool()
+	{
+		return stringPool;
+	}
+
+	/**
+	 * Returns the locales that have a catalog for <code>baseName</code>,
+	 * e.g. to populate a language picker. The class path is scanned once
+	 * per base name and class loader, subsequent calls return the cached
+	 * result.
+	 * 
+	 * @param baseName
+	 *            the base name of the catalog
+	 * @param loader
+	 *            the class loader, <code>null</code> for the system class
+	 *            loader
+	 * @return the locales sorted by their string representation, the root
+	 *         locale is not included
+	 * @since 0.9.9
+	 */
+	public static Locale[] getAvailableLocales(String baseName, ClassLoader loader)
+	{
+		return localeIndex.getAvailableLocales(baseName, getClassLoader(loader));
+	}
+
+	/**
+	 * Sets the rules that determine which catalogs are consulted for
+	 * messages that are not translated for the requested locale. The rules
+	 * apply to <code>I18n</code> objects that are created afterwards.
+	 * 
+	 * @param fallback
+	 *            the rules, <code>null</code> to load bundles by
+	 *            {@link java.util.ResourceBundle#getBundle(String, Locale,
+	 *            ClassLoader)}
+	 * @see I18n#setLocaleFallback(LocaleFallback)
+	 * @since 0.9.9
+	 */
+	public static void setLocaleFallback(LocaleFallback fallback)
+	{
+		localeFallback = fallback;
+	}
+
+	/**
+	 * Returns the rules set by {@link #setLocaleFallback(LocaleFallback)}.
+	 * 
+	 * @return the rules or <code>null</code>
+	 * @since 0.9.9
+	 */
+	public static LocaleFallback getLocaleFallback()
+	{
+		return localeFallback;
+	}
+
+	/**
+	 * Writes the catalogs of the cached <code>I18n</code> objects of
+	 * <code>loader</code> to a snapshot file that can be restored by
+	 * {@link #loadSnapshot(File, ClassLoader)} at the next start, which is
+	 * considerably faster than loading the bundles. Catalogs are flattened:
+	 * the translations of all bundles in the chain are stored in a single
+	 * table. Bundles that contain values other than strings are skipped.
+	 *
+	 * @param file
+	 *            the snapshot file, replaced if it exists
+	 * @param loader
+	 *            the class loader the objects have been loaded with,
+	 *            <code>null</code> for the system class loader
+	 * @return the number of stored catalogs
+	 * @throws IOException
+	 *             if the file can not be written
+	 * @since 0.9.9
+	 */
+	public static int saveSnapshot(File file, ClassLoader loader) throws IOException
+	{
+		loader = getClassLoader(loader);
+		return I18nSnapshot.write(file, loader, i18nCache.getEntries(loader));
+	}
+
+	/**
+	 * Registers a shutdown hook that invokes
+	 * {@link #saveSnapshot(File, ClassLoader)}.
+	 *
+	 * @since 0.9.9
+	 */
+	public static void saveSnapshotOnExit(final File file, final ClassLoader loader)
+	{
+		Runtime.getRuntime().addShutdownHook(new Thread("I18nSnapshot") {
+			public void run()
+			{
+				try {
+					saveSnapshot(file, loader);
+				}
+				catch (IOException e) {
+					// the snapshot is optional
+				}
+			}
+		});
+	}
+
+	/**
+	 * Restores the <code>I18n</code> objects of a snapshot written by
+	 * {@link #saveSnapshot(File, ClassLoader)} into the cache of the
+	 * factory, so subsequent lookups for <code>loader</code> do not load
+	 * bundles. Catalogs whose bundle files have been modified since the
+	 * snapshot was written are skipped, the snapshot is ignored entirely if
+	 * the class path has changed.
+	 * <p>
+	 * Restored objects translate from the snapshot until their locale is
+	 * changed, which loads the bundle as usual.
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @param loader
+	 *            the class loader the objects are restored for,
+	 *            <code>null</code> for the system class loader
+	 * @return the number of restored catalogs
+	 * @throws IOException
+	 *             if the file can not be read or is not a snapshot
+	 * @since 0.9.9
+	 */
+	public static int loadSnapshot(File file, final ClassLoader loader) throws IOException
+	{
+		final ClassLoader classLoader = getClassLoader(loader);
+		return I18nSnapshot.read(file, classLoader, new I18nSnapshot.Visitor() {
+			public void visit(String key, I18n i18n)
+			{
+				if (i18nCache.get(classLoader, key, i18n.getLocale()) == null) {
+					i18nCache.put(classLoader, key, i18n);
+					I18nManager.getInstance().add(i18n);
+				}
+			}
+		});
 	}
 
 	/**
@@ -142,6 +355,10 @@ public class I18nFactory {
 	 * If after the first iteration no I18n instance has been found, a second
 	 * search begins by looking for resource bundles having the name
 	 * <code>baseName</code>.
+	 * <p>
+	 * The instance is remembered for <code>clazz</code>, so subsequent calls
+	 * for the same class and locale return it without walking the package
+	 * hierarchy, unless {@link #NO_CACHE} is set.
 	 * 
 	 * @param clazz
 	 *            the package hierarchy of the clazz and its class loader are
@@ -156,9 +373,32 @@ public class I18nFactory {
 	 * @since 0.9.1
 	 */
 	public static I18n getI18n(final Class clazz, final Locale locale, final int flags)
+	{
+		I18n i18n = getCachedI18n(clazz, null, locale, flags);
+		if (i18n != null) {
+			return i18n;
+		}
+		i18n = resolveI18n(clazz, locale, flags);
+		if (!isNoCacheSet(flags)) {
+			classCache.put(clazz, null, flags, i18n);
+		}
+		return i18n;
+	}
+
+	private static I18n resolveI18n(final Class clazz, final Locale locale, final int flags)
 	{
 		ClassLoader classLoader = getClassLoader(clazz.getClassLoader());
 		
+		if (isLazySet(flags) && isReadPropertiesSet(flags)) {
+			return getLazyI18n(getPackageName(clazz.getName()) + "/" + PROPS_FILENAME, classLoader, locale, flags,
+					new LazyResourceBundle.Resolver() {
+						public I18n resolve(Locale locale)
+						{
+							return getI18n(clazz, locale, (flags & ~LAZY) | NO_CACHE);
+						}
+					});
+		}
+
 		String bundleName = null;
 		if (isReadPropertiesSet(flags)) {
 			String path = clazz.getName();
@@ -208,7 +448,39 @@ public class I18nFactory {
 	 */
 	public static I18n getI18n(final Class clazz, final String bundleName, final Locale locale, int flags)
 	{
-		return getI18n(clazz.getName(), bundleName, clazz.getClassLoader(), locale, flags);
+		I18n i18n = getCachedI18n(clazz, bundleName, locale, flags);
+		if (i18n != null) {
+			return i18n;
+		}
+		i18n = getI18n(clazz.getName(), bundleName, clazz.getClassLoader(), locale, flags);
+		if (!isNoCacheSet(flags)) {
+			classCache.put(clazz, bundleName, flags, i18n);
+		}
+		return i18n;
+	}
+
+	/**
+	 * Returns the instance that has previously been resolved for
+	 * <code>clazz</code>, which saves the walk of the package hierarchy.
+	 * 
+	 * @return the instance or <code>null</code>
+	 */
+	private static I18n getCachedI18n(Class clazz, String bundleName, Locale locale, int flags)
+	{
+		if (locale == null || isNoCacheSet(flags)) {
+			return null;
+		}
+		I18nMonitor monitor = I18nManager.monitor;
+		if (monitor == null) {
+			return classCache.get(clazz, bundleName, locale, flags);
+		}
+		Object context = monitor.resolving(clazz.getName(), locale);
+		long start = Clock.nanoTime();
+		I18n i18n = classCache.get(clazz, bundleName, locale, flags);
+		if (i18n != null) {
+			resolved(monitor, clazz.getName(), locale, i18n, 0, start, context);
+		}
+		return i18n;
 	}
 
 	/**
@@ -217,6 +489,20 @@ public class I18nFactory {
 	public static I18n getI18n(final String path, final String bundleName, final ClassLoader classLoader, final Locale locale,
 			final int flags)
 	{
+		final ClassLoader loader = getClassLoader(classLoader);
+		if (isLazySet(flags)) {
+			return getLazyI18n(getPackageName(path) + "/" + bundleName, loader, locale, flags,
+					new LazyResourceBundle.Resolver() {
+						public I18n resolve(Locale locale)
+						{
+							return getI18n(path, bundleName, loader, locale, (flags & ~LAZY) | NO_CACHE);
+						}
+					});
+		}
+		I18nMonitor monitor = I18nManager.monitor;
+		Object context = (monitor != null) ? monitor.resolving(path, locale) : null;
+		long start = (monitor != null) ? Clock.nanoTime() : 0;
+		int probes = 0;
 		int index;
 		String prefix = path;
 		do {
@@ -226,18 +512,19 @@ public class I18nFactory {
 			String name = prefix.length() == 0 ? bundleName : prefix + "." + bundleName;
 			
 			// check cache
-			I18n i18n = i18nCache.get(name, locale);
+			I18n i18n = i18nCache.get(loader, name, locale);
 			if (i18n != null) {
-				return i18n;
+				return resolved(monitor, path, locale, i18n, probes, start, context);
 			}
 			
 			// look for resource bundle in class path
-			i18n = findByBaseName(name, locale, getClassLoader(classLoader), flags);
+			probes++;
+			i18n = findByBaseName(name, locale, loader, flags);
 			if (i18n != null) {
 				if ((flags & NO_CACHE) == 0) {
-					i18nCache.put(name, i18n);
+					i18nCache.put(loader, name, i18n);
 				}
-				return i18n;
+				return resolved(monitor, path, locale, i18n, probes, start, context);
 			}
 		}
 		while (index != -1);
@@ -249,12 +536,102 @@ public class I18nFactory {
 				i18n = new I18n(new EmptyResourceBundle(locale));
 				i18nCache.put("", i18n);
 			}
-			return i18n;
+			return resolved(monitor, path, locale, i18n, probes, start, context);
 		}
 		
+		resolved(monitor, path, locale, null, probes, start, context);
 		throw new MissingResourceException("Resource bundle not found", path, bundleName);
 	}
 
+	/**
+	 * Returns the I18n instance for the catalog <code>baseName</code> that
+	 * is provided by a {@link CatalogSource}. The instance is cached by
+	 * <code>catalogs</code> and its bundle is replaced whenever the catalog
+	 * has been revalidated in the background. The instances are not managed
+	 * by {@link I18nManager}, since a change of the locale requires a
+	 * different catalog.
+	 *
+	 * @param catalogs
+	 *            the loader that fetches and caches the catalogs
+	 * @param baseName
+	 *            the name of the catalog
+	 * @param locale
+	 *            the requested locale
+	 * @param flags
+	 *            a combination of these configuration flags:
+	 *            {@link #FALLBACK} to return an instance that translates to
+	 *            the passed text until the catalog has been read from the
+	 *            disk cache or fetched in the background, instead of
+	 *            loading it on the calling thread;
+	 *            {@link #NO_CACHE}
+	 * @return created or cached <code>I18n</code> instance
+	 * @throws MissingResourceException
+	 *             if the catalog could not be fetched and
+	 *             <code>FALLBACK</code> is not set
+	 * @see CatalogSourceLoader
+	 * @since 0.9.9
+	 */
+	public static I18n getI18n(CatalogSourceLoader catalogs, String baseName, Locale locale, int flags)
+	{
+		return catalogs.getI18n(baseName, locale, flags);
+	}
+
+	/**
+	 * Returns the cached instance for <code>key</code> or creates an instance
+	 * whose bundle is resolved by <code>resolver</code> on first use.
+	 */
+	private static I18n getLazyI18n(String key, ClassLoader loader, Locale locale, int flags,
+			LazyResourceBundle.Resolver resolver)
+	{
+		if (locale == null) {
+			throw new NullPointerException("locale is null");
+		}
+		if (isNoCacheSet(flags)) {
+			return createLazyI18n(locale, resolver);
+		}
+		synchronized (lazyCache) {
+			I18n i18n = lazyCache.get(loader, key, locale);
+			if (i18n == null) {
+				i18n = createLazyI18n(locale, resolver);
+				lazyCache.put(loader, key, i18n);
+				I18nManager.getInstance().add(i18n);
+			}
+			return i18n;
+		}
+	}
+
+	private static I18n createLazyI18n(Locale locale, LazyResourceBundle.Resolver resolver)
+	{
+		LazyResourceBundle bundle = new LazyResourceBundle(resolver);
+		I18n i18n = new I18n(bundle, null, locale, null);
+		bundle.setOwner(i18n);
+		return i18n;
+	}
+
+	/**
+	 * Returns the part of <code>path</code> before the last dot.
+	 */
+	private static String getPackageName(String path)
+	{
+		int index = path.lastIndexOf('.');
+		return (index != -1) ? path.substring(0, index) : "";
+	}
+
+	/**
+	 * Notifies <code>monitor</code> of a resolution that was started at
+	 * <code>start</code>.
+	 * 
+	 * @return <code>i18n</code>
+	 */
+	private static I18n resolved(I18nMonitor monitor, String path, Locale locale, I18n i18n, int probes, long start,
+			Object context)
+	{
+		if (monitor != null) {
+			monitor.resolved(path, locale, i18n, probes, Clock.nanoTime() - start, context);
+		}
+		return i18n;
+	}
+
 	static ClassLoader getClassLoader(ClassLoader classLoader) {
 		return (classLoader != null) ? classLoader : ClassLoader.getSystemClassLoader();
 	}
@@ -269,6 +646,19 @@ public class I18nFactory {
 	 *             if properties file was found but specified resource not
 	 */
 	static String readFromPropertiesFile(final String path, final Locale locale, final ClassLoader loader)
+	{
+		I18nMonitor monitor = I18nManager.monitor;
+		if (monitor == null) {
+			return readBaseName(path, loader);
+		}
+		Object context = monitor.propertiesReading(path);
+		long start = Clock.nanoTime();
+		String baseName = readBaseName(path, loader);
+		monitor.propertiesRead(path, baseName, Clock.nanoTime() - start, context);
+		return baseName;
+	}
+
+	private static String readBaseName(final String path, final ClassLoader loader)
 	{
 		Properties props = new Properties();
 		String filename = path.length() == 0 ? PROPS_FILENAME : path.replace('.', '/') + "/" + PROPS_FILENAME;
@@ -315,6 +705,40 @@ public class I18nFactory {
 		}
 	}
 
+	/**
+	 * Creates an instance for <code>baseName</code> that is neither cached
+	 * nor managed by {@link I18nManager}, so its locale is never changed by
+	 * {@link I18nManager#setDefaultLocale(Locale)}.
+	 * 
+	 * @param flags
+	 *            {@link #FALLBACK}, {@link #COMPACT}, {@link #DEDUPLICATE}
+	 *            and {@link #LAZY} are honored
+	 * @throws MissingResourceException
+	 *             if the bundle can not be loaded and <code>FALLBACK</code>
+	 *             is not set
+	 */
+	static I18n createUnmanagedI18n(final String baseName, final Locale locale, final ClassLoader loader,
+			final int flags)
+	{
+		if (isLazySet(flags)) {
+			return createLazyI18n(locale, new LazyResourceBundle.Resolver() {
+				public I18n resolve(Locale locale)
+				{
+					return createUnmanagedI18n(baseName, locale, loader, flags & ~LAZY);
+				}
+			});
+		}
+		try {
+			return createI18n(baseName, locale, getClassLoader(loader), flags | NO_CACHE);
+		}
+		catch (MissingResourceException e) {
+			if (isFallbackSet(flags)) {
+				return new I18n(new EmptyResourceBundle(locale));
+			}
+			throw e;
+		}
+	}
+
 	/**
 	 * Creates a new i18n instance and registers it with {@link I18nManager}.
 	 * 
@@ -328,7 +752,21 @@ public class I18nFactory {
 	 */
 	private static I18n createI18n(final String baseName, final Locale locale, final ClassLoader loader, final int flags)
 	{
-		I18n i18n = new I18n(baseName, locale, loader);
+		LocaleFallback fallback = localeFallback;
+		I18n i18n;
+		if (fallback != null) {
+			i18n = new I18n(fallback.getBundle(baseName, locale, loader), baseName, locale, loader);
+			i18n.setLocaleFallback(fallback);
+		}
+		else {
+			i18n = new I18n(baseName, locale, loader);
+		}
+		if (isCompactSet(flags)) {
+			i18n.setCompact(true);
+		}
+		else if (isDeduplicateSet(flags)) {
+			i18n.setStringPool(stringPool);
+		}
 		if (!isNoCacheSet(flags)) {
 			I18nManager.getInstance().add(i18n);
 		}
@@ -350,4 +788,19 @@ public class I18nFactory {
 		return (flags & NO_CACHE) != 0;
 	}
 
+	private static boolean isCompactSet(final int flags)
+	{
+		return (flags & COMPACT) != 0;
+	}
+
+	private static boolean isDeduplicateSet(final int flags)
+	{
+		return (flags & DEDUPLICATE) != 0;
+	}
+
+	private static boolean isLazySet(final int flags)
+	{
+		return (flags & LAZY) != 0;
+	}
+
 }
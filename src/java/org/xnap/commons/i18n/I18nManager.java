@@ -24,8 +24,12 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * Manager class that maintains a set of {@link org.xnap.commons.i18n.I18n}
@@ -42,11 +46,74 @@ public class I18nManager {
 
 	private static I18nManager instance = new I18nManager();
 
-	/** List of managed {@link I18n} objects. */
+	/**
+	 * List of weak references to managed {@link I18n} objects, references are
+	 * removed when they have been cleared.
+	 */
 	List i18ns = Collections.synchronizedList(new ArrayList());
 
-	/** List of managed {@link LocaleChangeListener} objects. */
-	List localeChangeListeners = new ArrayList();
+	/**
+	 * List of managed {@link LocaleChangeListener} objects. The list is never
+	 * modified once it has been published, modifications replace it while
+	 * holding {@link #listenerLock}.
+	 */
+	volatile List localeChangeListeners = Collections.EMPTY_LIST;
+
+	/**
+	 * Guards modifications of {@link #localeChangeListeners} and the state of
+	 * the event delivery.
+	 */
+	private final Object listenerLock = new Object();
+
+	/**
+	 * The locale set by the most recent call to
+	 * {@link #setDefaultLocale(Locale)}, access is synchronized on
+	 * {@link #i18ns}.
+	 */
+	private Locale defaultLocale;
+
+	/**
+	 * The locale of the most recent change that has not been delivered to
+	 * the listeners yet.
+	 */
+	private Locale pendingLocale;
+
+	/**
+	 * The locale before the first of the changes that have not been
+	 * delivered yet.
+	 */
+	private Locale pendingOldLocale;
+
+	/**
+	 * Set<I18n>, the objects affected by the changes that have not been
+	 * delivered yet.
+	 */
+	private Set pendingI18ns;
+
+	/**
+	 * True, while events are being delivered by the dispatcher or a delivery
+	 * has been passed to it.
+	 */
+	private boolean dispatching;
+
+	private volatile LocaleChangeDispatcher dispatcher;
+
+	/**
+	 * The monitor that is notified of translations, read by {@link I18n} on
+	 * every lookup.
+	 */
+	static volatile I18nMonitor monitor;
+
+	/** The most recently assigned catalog generation. */
+	private volatile long generation;
+
+	/**
+	 * Map<I18n, Object>, the objects that have loaded a bundle by base
+	 * name, whether they are managed or not.
+	 * 
+	 * @see CatalogReloader
+	 */
+	private final Map loaded = new WeakHashMap();
 
 	private I18nManager()
 	{
@@ -65,7 +132,8 @@ public class I18nManager {
 
 	/**
 	 * Adds <code>i18n</code> to the list of managed <code>I18n</code>
-	 * objects.
+	 * objects. The object is only weakly referenced and is removed from the
+	 * list when it has been cleaned up by the garbage collection.
 	 * 
 	 * @param i18n
 	 *            the <code>I18n</code> instance
@@ -75,7 +143,7 @@ public class I18nManager {
 	 */
 	public void add(I18n i18n)
 	{
-		i18ns.add(i18n);
+		i18ns.add(new WeakReference(i18n));
 	}
 
 	/**
@@ -88,6 +156,14 @@ public class I18nManager {
 	 * NOTE: This only works if the objects that display messages do not cache
 	 * translated messages.
 	 * <p>
+	 * Every object loads its bundle again, including the objects whose
+	 * locale already is <code>locale</code>, so bundles that have become
+	 * available since are picked up. Listeners are only notified of the
+	 * objects and base names that have been switched to a different locale,
+	 * see {@link LocaleChangeEvent}. If a
+	 * dispatcher has been set, the notification may be deferred and
+	 * coalesced with other changes, see
+	 * {@link #setLocaleChangeDispatcher(LocaleChangeDispatcher)}.
 	 * 
 	 * @param locale
 	 *            the new default locale
@@ -96,13 +172,251 @@ public class I18nManager {
 	 */
 	public void setDefaultLocale(Locale locale)
 	{
+		I18nMonitor monitor = I18nManager.monitor;
+		Object context = (monitor != null) ? monitor.defaultLocaleChanging(locale) : null;
+		long start = (monitor != null) ? Clock.nanoTime() : 0;
+		int count = 0;
+		Locale oldLocale;
+		List affected = new ArrayList();
 		synchronized (i18ns) {
+			oldLocale = defaultLocale;
+			defaultLocale = locale;
 			for (Iterator it = i18ns.iterator(); it.hasNext();) {
-				I18n i18n = (I18n)it.next();
-				i18n.setLocale(locale);
+				I18n i18n = (I18n)((WeakReference)it.next()).get();
+				if (i18n != null) {
+					boolean changed = !locale.equals(i18n.getLocale());
+					i18n.setLocale(locale);
+					if (changed) {
+						affected.add(i18n);
+					}
+					count++;
+				}
+				else {
+					it.remove();
+				}
 			}
 		}
-		fireLocaleChangedEvent(locale);
+		if (monitor != null) {
+			monitor.defaultLocaleChanged(locale, count, Clock.nanoTime() - start, context);
+		}
+		scheduleLocaleChangedEvent(oldLocale, locale, affected);
+	}
+
+	/**
+	 * Sets the dispatcher that delivers locale change events.
+	 * <p>
+	 * With a dispatcher, changes of the locale that happen before the
+	 * listeners have been notified of a previous change are coalesced: the
+	 * listeners are only notified once of the most recent locale, the event
+	 * describes all coalesced changes. This prevents a quick succession of
+	 * changes from refreshing a user interface repeatedly.
+	 * <p>
+	 * Without a dispatcher, events are not coalesced. Every call to
+	 * {@link #setDefaultLocale(Locale)} notifies the listeners of its own
+	 * change on the calling thread before it returns, including calls from
+	 * within a listener. The listeners of concurrent calls from different
+	 * threads may be notified concurrently.
+	 * 
+	 * @param dispatcher
+	 *            the dispatcher, <code>null</code> to deliver events on the
+	 *            thread that changes the locale
+	 * @since 0.9.9
+	 */
+	public void setLocaleChangeDispatcher(LocaleChangeDispatcher dispatcher)
+	{
+		this.dispatcher = dispatcher;
+	}
+
+	/**
+	 * Returns the dispatcher that delivers locale change events.
+	 * 
+	 * @return the dispatcher or <code>null</code>, if events are delivered
+	 *         on the calling thread
+	 * @since 0.9.9
+	 */
+	public LocaleChangeDispatcher getLocaleChangeDispatcher()
+	{
+		return dispatcher;
+	}
+
+	/**
+	 * Delivers an event for <code>locale</code>. Without a dispatcher the
+	 * event is delivered right away. Otherwise it is passed to the
+	 * dispatcher, unless a delivery is in progress, which then delivers the
+	 * event once it has finished. Changes that have not been delivered yet
+	 * are merged.
+	 */
+	private void scheduleLocaleChangedEvent(Locale oldLocale, Locale locale, List affected)
+	{
+		LocaleChangeDispatcher dispatcher = this.dispatcher;
+		if (dispatcher == null) {
+			fireLocaleChangedEvent(new LocaleChangeEvent(I18nFactory.class, oldLocale, locale, affected,
+					getGeneration()));
+			return;
+		}
+		synchronized (listenerLock) {
+			if (pendingLocale == null) {
+				pendingOldLocale = oldLocale;
+				pendingI18ns = new LinkedHashSet();
+			}
+			pendingLocale = locale;
+			pendingI18ns.addAll(affected);
+			if (dispatching) {
+				return;
+			}
+			dispatching = true;
+		}
+		Runnable task = new Runnable() {
+			public void run()
+			{
+				deliverLocaleChangedEvents();
+			}
+		};
+		boolean scheduled = false;
+		try {
+			dispatcher.execute(task);
+			scheduled = true;
+		}
+		finally {
+			if (!scheduled) {
+				// the caller sees the exception, the changes are not delivered
+				synchronized (listenerLock) {
+					dispatching = false;
+					pendingLocale = null;
+					pendingOldLocale = null;
+					pendingI18ns = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listeners of the pending locale until no change is
+	 * pending anymore.
+	 */
+	private void deliverLocaleChangedEvents()
+	{
+		boolean finished = false;
+		try {
+			while (true) {
+				LocaleChangeEvent event;
+				synchronized (listenerLock) {
+					if (pendingLocale == null) {
+						dispatching = false;
+						finished = true;
+						return;
+					}
+					event = new LocaleChangeEvent(I18nFactory.class, pendingOldLocale, pendingLocale,
+							new ArrayList(pendingI18ns), getGeneration());
+					pendingLocale = null;
+					pendingOldLocale = null;
+					pendingI18ns = null;
+				}
+				fireLocaleChangedEvent(event);
+			}
+		}
+		finally {
+			if (!finished) {
+				synchronized (listenerLock) {
+					dispatching = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the most recent catalog generation. The value is increased
+	 * whenever the resource bundle of any {@link I18n} object is replaced,
+	 * regardless of whether the object is managed by this manager.
+	 * <p>
+	 * A cache of translated text can store the generation at the time it was
+	 * populated and compare it to the current generation to decide if its
+	 * content is still valid, which requires a single volatile read.
+	 * 
+	 * @return the current generation
+	 * @see I18n#getGeneration()
+	 * @since 0.9.9
+	 */
+	public long getGeneration()
+	{
+		return generation;
+	}
+
+	/**
+	 * Sets the monitor that is notified of translations and of resource
+	 * bundles being loaded by any {@link I18n} object.
+	 * 
+	 * @param monitor
+	 *            the monitor or <code>null</code> to disable monitoring
+	 * @see I18nStatistics
+	 * @since 0.9.9
+	 */
+	public void setMonitor(I18nMonitor monitor)
+	{
+		I18nManager.monitor = monitor;
+	}
+
+	/**
+	 * Returns the monitor that is notified of translations.
+	 * 
+	 * @return the monitor or <code>null</code>, if none is set
+	 * @since 0.9.9
+	 */
+	public I18nMonitor getMonitor()
+	{
+		return monitor;
+	}
+
+	/**
+	 * Returns a snapshot of the managed <code>I18n</code> objects.
+	 */
+	I18n[] getI18ns()
+	{
+		List list = new ArrayList(i18ns.size());
+		synchronized (i18ns) {
+			for (Iterator it = i18ns.iterator(); it.hasNext();) {
+				Object i18n = ((WeakReference)it.next()).get();
+				if (i18n != null) {
+					list.add(i18n);
+				}
+				else {
+					it.remove();
+				}
+			}
+		}
+		return (I18n[])list.toArray(new I18n[0]);
+	}
+
+	/**
+	 * Remembers that <code>i18n</code> has loaded a bundle by base name.
+	 * The object is only weakly referenced. The state of the files of the
+	 * bundle is recorded for {@link CatalogReloader}.
+	 */
+	void addLoaded(I18n i18n)
+	{
+		synchronized (loaded) {
+			loaded.put(i18n, null);
+		}
+		CatalogReloader.loaded(i18n);
+	}
+
+	/**
+	 * Returns a snapshot of the objects that have loaded a bundle by base
+	 * name, including the ones that are not managed.
+	 */
+	I18n[] getLoadedI18ns()
+	{
+		synchronized (loaded) {
+			return (I18n[])loaded.keySet().toArray(new I18n[0]);
+		}
+	}
+
+	/**
+	 * Returns a new catalog generation.
+	 */
+	synchronized long nextGeneration()
+	{
+		return ++generation;
 	}
 
 	/**
@@ -116,8 +430,10 @@ public class I18nManager {
 	 */
 	public void addLocaleChangeListener(LocaleChangeListener listener)
 	{
-		synchronized (localeChangeListeners) {
-			localeChangeListeners.add(listener);
+		synchronized (listenerLock) {
+			List listeners = new ArrayList(localeChangeListeners);
+			listeners.add(listener);
+			localeChangeListeners = listeners;
 		}
 	}
 
@@ -136,9 +452,37 @@ public class I18nManager {
 	 */
 	public void addWeakLocaleChangeListener(LocaleChangeListener listener)
 	{
-		synchronized (localeChangeListeners) {
-			localeChangeListeners.add(new WeakLocaleChangeListener(listener));
-		}
+		addLocaleChangeListener(new WeakLocaleChangeListener(listener));
+	}
+
+	/**
+	 * Adds a listener that is only notified when the locale of the catalog
+	 * <code>baseName</code> has been changed, e.g. for a component that only
+	 * displays text of that catalog.
+	 * 
+	 * @param baseName
+	 *            the base name of the catalog
+	 * @param listener
+	 *            the listener
+	 * @see LocaleChangeEvent#isAffected(String)
+	 * @since 0.9.9
+	 */
+	public void addLocaleChangeListener(String baseName, LocaleChangeListener listener)
+	{
+		addLocaleChangeListener(new FilteredLocaleChangeListener(baseName, listener));
+	}
+
+	/**
+	 * Adds a listener using a {@link WeakReference} that is only notified
+	 * when the locale of the catalog <code>baseName</code> has been changed.
+	 * 
+	 * @see #addLocaleChangeListener(String, LocaleChangeListener)
+	 * @see #addWeakLocaleChangeListener(LocaleChangeListener)
+	 * @since 0.9.9
+	 */
+	public void addWeakLocaleChangeListener(String baseName, LocaleChangeListener listener)
+	{
+		addLocaleChangeListener(new FilteredLocaleChangeListener(baseName, new WeakLocaleChangeListener(listener)));
 	}
 
 	/**
@@ -152,12 +496,20 @@ public class I18nManager {
 	 */
 	public void remove(I18n i18n)
 	{
-		i18ns.remove(i18n);
+		synchronized (i18ns) {
+			for (Iterator it = i18ns.iterator(); it.hasNext();) {
+				Object referent = ((WeakReference)it.next()).get();
+				if (referent == null || referent == i18n) {
+					it.remove();
+				}
+			}
+		}
 	}
 
 	/**
 	 * Removes <code>listener</code> from the list of objects that are
-	 * notified when the locale has changed.
+	 * notified when the locale has changed, regardless of whether it has
+	 * been added weakly or for a base name.
 	 * 
 	 * @param listener
 	 *            the listener
@@ -165,8 +517,45 @@ public class I18nManager {
 	 */
 	public void removeLocaleChangeListener(LocaleChangeListener listener)
 	{
-		synchronized (localeChangeListeners) {
-			localeChangeListeners.remove(listener);
+		removeLocaleChangeListeners(listener);
+	}
+
+	/**
+	 * Removes <code>listener</code> and all weakly added listeners that have
+	 * been cleaned up by the garbage collection in a single modification.
+	 * 
+	 * @param listener
+	 *            the listener to remove, <code>null</code> to only remove
+	 *            cleared listeners
+	 */
+	private void removeLocaleChangeListeners(LocaleChangeListener listener)
+	{
+		synchronized (listenerLock) {
+			List listeners = new ArrayList(localeChangeListeners);
+			boolean removed = false;
+			boolean removedListener = false;
+			for (Iterator it = listeners.iterator(); it.hasNext();) {
+				Object element = it.next();
+				if (element instanceof FilteredLocaleChangeListener) {
+					element = ((FilteredLocaleChangeListener)element).delegate;
+				}
+				if (element instanceof WeakLocaleChangeListener) {
+					Object referent = ((WeakLocaleChangeListener)element).get();
+					if (referent == null || (listener != null && referent == listener)) {
+						it.remove();
+						removed = true;
+					}
+				}
+				else if (!removedListener && listener != null && element.equals(listener)) {
+					// remove a single registration like List.remove()
+					it.remove();
+					removed = true;
+					removedListener = true;
+				}
+			}
+			if (removed) {
+				localeChangeListeners = listeners;
+			}
 		}
 	}
 
@@ -179,16 +568,69 @@ public class I18nManager {
 	 */
 	protected void fireLocaleChangedEvent(Locale newLocale)
 	{
-		LocaleChangeListener[] listeners;
-		synchronized (localeChangeListeners) {
-			listeners = (LocaleChangeListener[])localeChangeListeners.toArray(new LocaleChangeListener[0]);
+		fireLocaleChangedEvent(new LocaleChangeEvent(I18nFactory.class, newLocale));
+	}
+
+	/**
+	 * Notifies listeners of a locale change. Listeners that have been added
+	 * for a base name are only notified if the catalog is affected.
+	 * 
+	 * @param event
+	 *            the event
+	 * @since 0.9.9
+	 */
+	protected void fireLocaleChangedEvent(LocaleChangeEvent event)
+	{
+		List listeners = localeChangeListeners;
+		boolean cleared = false;
+		for (int i = listeners.size() - 1; i >= 0; i--) {
+			LocaleChangeListener listener = (LocaleChangeListener)listeners.get(i);
+			if (listener instanceof FilteredLocaleChangeListener) {
+				FilteredLocaleChangeListener filter = (FilteredLocaleChangeListener)listener;
+				if (!event.isAffected(filter.baseName)) {
+					continue;
+				}
+				listener = filter.delegate;
+			}
+			if (listener instanceof WeakLocaleChangeListener) {
+				listener = ((WeakLocaleChangeListener)listener).get();
+				if (listener == null) {
+					cleared = true;
+					continue;
+				}
+			}
+			listener.localeChanged(event);
+		}
+		if (cleared) {
+			removeLocaleChangeListeners(null);
 		}
-		if (listeners.length > 0) {
-			LocaleChangeEvent event = new LocaleChangeEvent(I18nFactory.class, newLocale);
-			for (int i = listeners.length - 1; i >= 0; i--) {
-				listeners[i].localeChanged(event);
+	}
+
+	/**
+	 * Wraps a listener that has been added for a base name.
+	 */
+	private static class FilteredLocaleChangeListener implements LocaleChangeListener {
+
+		private final String baseName;
+
+		private final LocaleChangeListener delegate;
+
+		public FilteredLocaleChangeListener(String baseName, LocaleChangeListener delegate)
+		{
+			if (baseName == null) {
+				throw new NullPointerException("baseName must not be null");
 			}
+			this.baseName = baseName;
+			this.delegate = delegate;
 		}
+
+		public void localeChanged(LocaleChangeEvent event)
+		{
+			if (event.isAffected(baseName)) {
+				delegate.localeChanged(event);
+			}
+		}
+
 	}
 
 	private static class WeakLocaleChangeListener implements LocaleChangeListener {
@@ -200,14 +642,20 @@ public class I18nManager {
 			reference = new WeakReference(listener);
 		}
 
+		/**
+		 * Returns the listener or <code>null</code>, if it has been cleaned
+		 * up by the garbage collection.
+		 */
+		public LocaleChangeListener get()
+		{
+			return (LocaleChangeListener)reference.get();
+		}
+
 		public void localeChanged(LocaleChangeEvent event)
 		{
-			Object listener = reference.get();
+			LocaleChangeListener listener = get();
 			if (listener != null) {
-				((LocaleChangeListener)listener).localeChanged(event);
-			}
-			else {
-				I18nManager.getInstance().removeLocaleChangeListener(this);
+				listener.localeChanged(event);
 			}
 		}
 
@@ -0,0 +1,194 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Locale;
+
+/**
+ * Defines the requirements for classes that observe translations and the
+ * loading of resource bundles, e.g. to collect statistics.
+ * <p>
+ * A monitor is installed through
+ * {@link I18nManager#setMonitor(I18nMonitor)}. Methods are invoked
+ * synchronously on the thread that performs the operation, so
+ * implementations need to be thread-safe and should return quickly. When no
+ * monitor is installed the cost is a single volatile read per operation.
+ * <p>
+ * Durations are measured with <code>System.nanoTime()</code> and reported
+ * in nanoseconds. On Java 1.4 they have the resolution of the millisecond
+ * clock.
+ * <p>
+ * Bundle loads, resolutions, properties file reads and locale changes are
+ * announced before they start, e.g. by
+ * {@link #bundleLoading(String, Locale)}, so a monitor can wrap the
+ * operation, e.g. in a timed event. The returned context is passed to the
+ * matching completion callback. The completion callback may not be
+ * invoked, e.g. if the operation fails with an exception or a cached class
+ * lookup misses and the resolution starts over for the package.
+ * 
+ * @see I18nStatistics
+ * @since 0.9.9
+ */
+public interface I18nMonitor {
+
+	/**
+	 * Invoked when a message has been looked up by one of the
+	 * <code>tr*()</code> methods.
+	 * 
+	 * @param i18n
+	 *            the object that looked up the message
+	 * @param key
+	 *            the key of the message including the context, if any
+	 * @param found
+	 *            true, if a translation was found
+	 * @param duration
+	 *            the time the lookup took in nanoseconds
+	 */
+	void translated(I18n i18n, String key, boolean found, long duration);
+
+	/**
+	 * Invoked when a translated message has been formatted with arguments.
+	 * 
+	 * @param i18n
+	 *            the object that formatted the message
+	 * @param pattern
+	 *            the translated message
+	 */
+	void formatted(I18n i18n, String pattern);
+
+	/**
+	 * Invoked before a resource bundle is loaded.
+	 * 
+	 * @param baseName
+	 *            the base name of the bundle
+	 * @param locale
+	 *            the requested locale
+	 * @return a context that is passed to
+	 *         {@link #bundleLoaded(String, Locale, boolean, long, Object)},
+	 *         may be <code>null</code>
+	 */
+	Object bundleLoading(String baseName, Locale locale);
+
+	/**
+	 * Invoked when an attempt to load a resource bundle has finished.
+	 * 
+	 * @param baseName
+	 *            the base name of the bundle
+	 * @param locale
+	 *            the requested locale
+	 * @param found
+	 *            false, if no bundle was found
+	 * @param duration
+	 *            the time it took to load the bundle in nanoseconds
+	 * @param context
+	 *            the value returned by {@link #bundleLoading(String, Locale)}
+	 */
+	void bundleLoaded(String baseName, Locale locale, boolean found, long duration, Object context);
+
+	/**
+	 * Invoked before {@link I18nFactory} resolves an <code>I18n</code>
+	 * object for a class or package.
+	 * 
+	 * @param path
+	 *            the name of the class or package
+	 * @param locale
+	 *            the requested locale
+	 * @return a context that is passed to
+	 *         {@link #resolved(String, Locale, I18n, int, long, Object)},
+	 *         may be <code>null</code>
+	 */
+	Object resolving(String path, Locale locale);
+
+	/**
+	 * Invoked when {@link I18nFactory} has resolved an <code>I18n</code>
+	 * object for a class or package.
+	 * 
+	 * @param path
+	 *            the name of the class or package that was resolved
+	 * @param locale
+	 *            the requested locale
+	 * @param i18n
+	 *            the resolved object, <code>null</code> if none was found
+	 * @param probes
+	 *            the number of bundle names that needed to be loaded, 0 if
+	 *            the object was cached
+	 * @param duration
+	 *            the time the resolution took in nanoseconds
+	 * @param context
+	 *            the value returned by {@link #resolving(String, Locale)}
+	 */
+	void resolved(String path, Locale locale, I18n i18n, int probes, long duration, Object context);
+
+	/**
+	 * Invoked before {@link I18nFactory} looks for an
+	 * {@link I18nFactory#PROPS_FILENAME} file in a package.
+	 * 
+	 * @param path
+	 *            the name of the package
+	 * @return a context that is passed to
+	 *         {@link #propertiesRead(String, String, long, Object)}, may be
+	 *         <code>null</code>
+	 */
+	Object propertiesReading(String path);
+
+	/**
+	 * Invoked when {@link I18nFactory} has looked for an
+	 * {@link I18nFactory#PROPS_FILENAME} file in a package to determine the
+	 * base name of a bundle.
+	 * 
+	 * @param path
+	 *            the name of the package
+	 * @param baseName
+	 *            the base name that was read, <code>null</code> if the
+	 *            package has no properties file or the file does not specify a
+	 *            base name
+	 * @param duration
+	 *            the time it took to read the file in nanoseconds
+	 * @param context
+	 *            the value returned by {@link #propertiesReading(String)}
+	 */
+	void propertiesRead(String path, String baseName, long duration, Object context);
+
+	/**
+	 * Invoked before {@link I18nManager#setDefaultLocale(Locale)} changes
+	 * the locale of the managed <code>I18n</code> objects.
+	 * 
+	 * @param locale
+	 *            the new locale
+	 * @return a context that is passed to
+	 *         {@link #defaultLocaleChanged(Locale, int, long, Object)}, may be
+	 *         <code>null</code>
+	 */
+	Object defaultLocaleChanging(Locale locale);
+
+	/**
+	 * Invoked when the locale of the managed <code>I18n</code> objects has
+	 * been changed by {@link I18nManager#setDefaultLocale(Locale)}.
+	 * 
+	 * @param locale
+	 *            the new locale
+	 * @param count
+	 *            the number of objects that were updated
+	 * @param duration
+	 *            the time the update took in nanoseconds
+	 * @param context
+	 *            the value returned by {@link #defaultLocaleChanging(Locale)}
+	 */
+	void defaultLocaleChanged(Locale locale, int count, long duration, Object context);
+
+}
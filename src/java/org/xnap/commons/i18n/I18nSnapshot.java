@@ -0,0 +1,287 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes snapshots of the {@link I18n} objects cached by
+ * {@link I18nFactory} for a class loader. A snapshot stores the flattened
+ * catalog of each object, so restoring it neither loads bundle classes nor
+ * parses properties files.
+ * <p>
+ * The snapshot records a checksum of the class path and, for each catalog,
+ * a checksum of the location, size and modification time of the files the
+ * bundle may have been loaded from. Catalogs whose files have changed are
+ * skipped when the snapshot is read, the whole snapshot is discarded if
+ * the class path has changed.
+ */
+class I18nSnapshot {
+
+	/**
+	 * Identifies snapshot files, "GCS" and a format version.
+	 */
+	private static final int MAGIC = 0x47435381;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private I18nSnapshot()
+	{
+	}
+
+	/**
+	 * Writes the flattened catalogs of the <code>I18n</code> objects in
+	 * <code>entries</code> to <code>file</code>. Objects that were not
+	 * loaded by base name or whose bundles can not be flattened are
+	 * skipped.
+	 * 
+	 * @param entries
+	 *            maps cache keys to lists of <code>I18n</code> objects
+	 * @return the number of stored catalogs
+	 */
+	public static int write(File file, ClassLoader loader, Map entries) throws IOException
+	{
+		List records = new ArrayList();
+		for (Iterator it = entries.entrySet().iterator(); it.hasNext();) {
+			Map.Entry entry = (Map.Entry)it.next();
+			for (Iterator it2 = ((List)entry.getValue()).iterator(); it2.hasNext();) {
+				I18n i18n = (I18n)it2.next();
+				ResourceBundle bundle;
+				String baseName;
+				Locale locale;
+				synchronized (i18n) {
+					bundle = i18n.getResources();
+					baseName = i18n.getBaseName();
+					locale = i18n.getLocale();
+				}
+				if (baseName == null || locale == null || bundle.getLocale() == null) {
+					continue;
+				}
+				CatalogResourceBundle catalog = CatalogResourceBundle.flatten(bundle);
+				if (catalog != null) {
+					records.add(new Object[] { entry.getKey(), baseName, locale, catalog });
+				}
+			}
+		}
+
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile),
+					BUFFER_SIZE));
+			try {
+				out.writeInt(MAGIC);
+				out.writeLong(getClassPathChecksum(loader));
+				out.writeInt(records.size());
+				for (Iterator it = records.iterator(); it.hasNext();) {
+					Object[] record = (Object[])it.next();
+					String baseName = (String)record[1];
+					Locale locale = (Locale)record[2];
+					CatalogResourceBundle catalog = (CatalogResourceBundle)record[3];
+					out.writeUTF((String)record[0]);
+					out.writeUTF(baseName);
+					out.writeUTF(locale.toString());
+					out.writeUTF(catalog.getLocale().toString());
+					out.writeLong(getChecksum(baseName, locale, catalog.getLocale(), loader));
+					catalog.write(out);
+				}
+			}
+			finally {
+				out.close();
+			}
+			// File.renameTo() does not replace existing files on all platforms
+			file.delete();
+			if (!tempFile.renameTo(file)) {
+				throw new IOException("Could not rename " + tempFile + " to " + file);
+			}
+		}
+		finally {
+			tempFile.delete();
+		}
+		return records.size();
+	}
+
+	/**
+	 * Reads the catalogs of a snapshot written by
+	 * {@link #write(File, ClassLoader, Map)} and passes an
+	 * <code>I18n</code> object for each valid catalog to
+	 * <code>visitor</code>.
+	 * 
+	 * @return the number of restored catalogs
+	 */
+	public static int read(File file, ClassLoader loader, Visitor visitor) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Invalid snapshot: " + file);
+			}
+			if (in.readLong() != getClassPathChecksum(loader)) {
+				return 0;
+			}
+			int count = 0;
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				String key = in.readUTF();
+				String baseName = in.readUTF();
+				Locale locale = toLocale(in.readUTF());
+				Locale bundleLocale = toLocale(in.readUTF());
+				long checksum = in.readLong();
+				CatalogResourceBundle catalog = CatalogResourceBundle.read(in, bundleLocale);
+				if (checksum == getChecksum(baseName, locale, bundleLocale, loader)) {
+					visitor.visit(key, new I18n(catalog, baseName, locale, loader));
+					count++;
+				}
+			}
+			return count;
+		}
+		finally {
+			try {
+				in.close();
+			}
+			catch (IOException e) {
+				// this exception is lost
+			}
+		}
+	}
+
+	/**
+	 * Returns a checksum of the class path of <code>loader</code>.
+	 */
+	static long getClassPathChecksum(ClassLoader loader)
+	{
+		CRC32 crc = new CRC32();
+		update(crc, System.getProperty("java.class.path"));
+		for (ClassLoader current = loader; current != null; current = current.getParent()) {
+			if (current instanceof URLClassLoader) {
+				URL[] urls = ((URLClassLoader)current).getURLs();
+				for (int i = 0; i < urls.length; i++) {
+					update(crc, urls[i].toExternalForm());
+				}
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns a checksum of the files the bundle <code>baseName</code> for
+	 * <code>locale</code> may have been loaded from.
+	 */
+	static long getChecksum(String baseName, Locale locale, Locale bundleLocale, ClassLoader loader)
+	{
+		CRC32 crc = new CRC32();
+		update(crc, loader, baseName, CatalogReloader.getCandidateLocales(locale));
+		if (!bundleLocale.equals(locale)) {
+			// the bundle of the default locale has been used instead
+			update(crc, loader, baseName, CatalogReloader.getCandidateLocales(bundleLocale));
+		}
+		return crc.getValue();
+	}
+
+	private static void update(CRC32 crc, ClassLoader loader, String baseName, Locale[] locales)
+	{
+		for (int i = 0; i < locales.length; i++) {
+			String path = CatalogReloader.getBundleName(baseName, locales[i]).replace('.', '/');
+			update(crc, loader.getResource(path + ".class"));
+			update(crc, loader.getResource(path + ".properties"));
+		}
+	}
+
+	private static void update(CRC32 crc, URL url)
+	{
+		if (url == null) {
+			update(crc, "-");
+			return;
+		}
+		update(crc, url.toExternalForm());
+		File file = getFile(url);
+		if (file != null) {
+			update(crc, file.lastModified() + ":" + file.length());
+		}
+	}
+
+	/**
+	 * Returns the file that contains the resource <code>url</code>, i.e.
+	 * the archive for resources in archives.
+	 */
+	private static File getFile(URL url)
+	{
+		if ("jar".equals(url.getProtocol())) {
+			String path = url.getPath();
+			int index = path.indexOf("!/");
+			try {
+				url = new URL((index != -1) ? path.substring(0, index) : path);
+			}
+			catch (IOException e) {
+				return null;
+			}
+		}
+		return CatalogReloader.toFile(url);
+	}
+
+	private static void update(CRC32 crc, String value)
+	{
+		try {
+			crc.update(value.getBytes("UTF-8"));
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+		crc.update(0);
+	}
+
+	/**
+	 * Parses the result of {@link Locale#toString()}.
+	 */
+	static Locale toLocale(String value)
+	{
+		int index = value.indexOf('_');
+		if (index == -1) {
+			return new Locale(value, "");
+		}
+		String language = value.substring(0, index);
+		int index2 = value.indexOf('_', index + 1);
+		if (index2 == -1) {
+			return new Locale(language, value.substring(index + 1));
+		}
+		return new Locale(language, value.substring(index + 1, index2), value.substring(index2 + 1));
+	}
+
+	public static interface Visitor {
+
+		void visit(String key, I18n i18n);
+
+	}
+
+}
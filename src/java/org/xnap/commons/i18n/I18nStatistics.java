@@ -0,0 +1,457 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A monitor that counts lookups, formatting operations and bundle loads per
+ * bundle base name and locale.
+ * <p>
+ * The statistics are enabled by installing the monitor:
+ *
+ * <pre>
+ * I18nStatistics statistics = new I18nStatistics();
+ * I18nManager.getInstance().setMonitor(statistics);
+ * statistics.registerMBean(I18nStatistics.OBJECT_NAME);
+ * </pre>
+ *
+ * Counters are kept per thread, so threads that translate concurrently
+ * neither lock nor contend. Times are measured in nanoseconds, lookups are
+ * timed as well. Bundles that were not loaded by base name are accounted
+ * for by the class name of the bundle.
+ *
+ * @since 0.9.9
+ */
+public class I18nStatistics implements I18nMonitor, I18nStatisticsMBean {
+
+	/**
+	 * The default name used to register the statistics with an MBean server.
+	 */
+	public static final String OBJECT_NAME = "org.xnap.commons.i18n:type=I18nStatistics";
+
+	/**
+	 * The number of buckets of the time histograms, the last bucket counts
+	 * durations of 2<sup>46</sup> nanoseconds and longer.
+	 */
+	private static final int HISTOGRAM_SIZE = 48;
+
+	/**
+	 * Map<String, Map<Locale, CatalogStatistics>>, copied on write so lookups
+	 * do not need to lock.
+	 */
+	private volatile Map statisticsByName = new HashMap();
+
+	private final StripedCounter resolutionCount = new StripedCounter();
+
+	private final StripedCounter resolutionProbeCount = new StripedCounter();
+
+	private final StripedCounter resolutionTime = new StripedCounter();
+
+	private final StripedCounter propertiesReadCount = new StripedCounter();
+
+	private final StripedCounter propertiesReadTime = new StripedCounter();
+
+	private final StripedCounter localeChangeCount = new StripedCounter();
+
+	/**
+	 * Constructs an empty set of statistics.
+	 */
+	public I18nStatistics()
+	{
+	}
+
+	/**
+	 * Registers the statistics with the platform MBean server. This requires
+	 * Java 5 or later.
+	 *
+	 * @param name
+	 *            the object name, e.g. {@link #OBJECT_NAME}
+	 * @throws JMException
+	 *             if the registration fails
+	 */
+	public void registerMBean(String name) throws JMException
+	{
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+	}
+
+	/**
+	 * Removes the registration of <code>name</code> from the platform MBean
+	 * server.
+	 *
+	 * @throws JMException
+	 *             if the object is not registered
+	 */
+	public void unregisterMBean(String name) throws JMException
+	{
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(name));
+	}
+
+	public void translated(I18n i18n, String key, boolean found, long duration)
+	{
+		CatalogStatistics statistics = getStatistics(i18n);
+		if (found) {
+			statistics.hitCount.increment();
+		}
+		else {
+			statistics.missCount.increment();
+		}
+		statistics.lookupTime.add(duration);
+		statistics.lookupTimeHistogram.increment(getBucket(duration));
+	}
+
+	public void formatted(I18n i18n, String pattern)
+	{
+		getStatistics(i18n).formatCount.increment();
+	}
+
+	public Object bundleLoading(String baseName, Locale locale)
+	{
+		return null;
+	}
+
+	public void bundleLoaded(String baseName, Locale locale, boolean found, long duration, Object context)
+	{
+		CatalogStatistics statistics = getStatistics(baseName, locale);
+		if (found) {
+			statistics.loadCount.increment();
+		}
+		else {
+			statistics.loadFailureCount.increment();
+		}
+		statistics.loadTime.add(duration);
+		statistics.loadTimeHistogram.increment(getBucket(duration));
+	}
+
+	public Object resolving(String path, Locale locale)
+	{
+		return null;
+	}
+
+	public void resolved(String path, Locale locale, I18n i18n, int probes, long duration, Object context)
+	{
+		resolutionCount.increment();
+		resolutionProbeCount.add(probes);
+		resolutionTime.add(duration);
+	}
+
+	public Object propertiesReading(String path)
+	{
+		return null;
+	}
+
+	public void propertiesRead(String path, String baseName, long duration, Object context)
+	{
+		propertiesReadCount.increment();
+		propertiesReadTime.add(duration);
+	}
+
+	public Object defaultLocaleChanging(Locale locale)
+	{
+		return null;
+	}
+
+	public void defaultLocaleChanged(Locale locale, int count, long duration, Object context)
+	{
+		localeChangeCount.increment();
+	}
+
+	private static int getBucket(long duration)
+	{
+		int bucket = 0;
+		while (duration > 0 && bucket < HISTOGRAM_SIZE - 1) {
+			duration >>= 1;
+			bucket++;
+		}
+		return bucket;
+	}
+
+	private CatalogStatistics getStatistics(I18n i18n)
+	{
+		String baseName = i18n.getBaseName();
+		if (baseName == null) {
+			baseName = i18n.getResources().getClass().getName();
+		}
+		return getStatistics(baseName, i18n.getLocale());
+	}
+
+	private CatalogStatistics findStatistics(String baseName, Locale locale)
+	{
+		Map statisticsByLocale = (Map)statisticsByName.get(baseName);
+		return (statisticsByLocale != null) ? (CatalogStatistics)statisticsByLocale.get(locale) : null;
+	}
+
+	/**
+	 * Returns the statistics for <code>baseName</code> and
+	 * <code>locale</code>, creating them if necessary.
+	 */
+	private CatalogStatistics getStatistics(String baseName, Locale locale)
+	{
+		CatalogStatistics statistics = findStatistics(baseName, locale);
+		if (statistics != null) {
+			return statistics;
+		}
+
+		synchronized (this) {
+			Map statisticsByName = new HashMap(this.statisticsByName);
+			Map statisticsByLocale = (Map)statisticsByName.get(baseName);
+			statisticsByLocale = (statisticsByLocale != null) ? new HashMap(statisticsByLocale) : new HashMap();
+			statistics = (CatalogStatistics)statisticsByLocale.get(locale);
+			if (statistics == null) {
+				statistics = new CatalogStatistics(baseName, locale);
+				statisticsByLocale.put(locale, statistics);
+				statisticsByName.put(baseName, statisticsByLocale);
+				this.statisticsByName = statisticsByName;
+			}
+			return statistics;
+		}
+	}
+
+	private CatalogStatistics[] getAllStatistics()
+	{
+		List list = new ArrayList();
+		for (Iterator it = statisticsByName.values().iterator(); it.hasNext();) {
+			list.addAll(((Map)it.next()).values());
+		}
+		return (CatalogStatistics[])list.toArray(new CatalogStatistics[0]);
+	}
+
+	public long getHitCount()
+	{
+		long count = 0;
+		CatalogStatistics[] statistics = getAllStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			count += statistics[i].hitCount.get();
+		}
+		return count;
+	}
+
+	public long getMissCount()
+	{
+		long count = 0;
+		CatalogStatistics[] statistics = getAllStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			count += statistics[i].missCount.get();
+		}
+		return count;
+	}
+
+	public double getHitRatio()
+	{
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+		return (total == 0) ? 0 : (double)hits / total;
+	}
+
+	public long getFormatCount()
+	{
+		long count = 0;
+		CatalogStatistics[] statistics = getAllStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			count += statistics[i].formatCount.get();
+		}
+		return count;
+	}
+
+	public long getBundleLoadCount()
+	{
+		long count = 0;
+		CatalogStatistics[] statistics = getAllStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			count += statistics[i].loadCount.get();
+		}
+		return count;
+	}
+
+	public long getBundleLoadFailureCount()
+	{
+		long count = 0;
+		CatalogStatistics[] statistics = getAllStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			count += statistics[i].loadFailureCount.get();
+		}
+		return count;
+	}
+
+	public long getBundleLoadTime()
+	{
+		long time = 0;
+		CatalogStatistics[] statistics = getAllStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			time += statistics[i].loadTime.get();
+		}
+		return time;
+	}
+
+	public long[] getBundleLoadTimeHistogram()
+	{
+		long[] histogram = new long[HISTOGRAM_SIZE];
+		CatalogStatistics[] statistics = getAllStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			for (int j = 0; j < histogram.length; j++) {
+				histogram[j] += statistics[i].loadTimeHistogram.get(j);
+			}
+		}
+		return histogram;
+	}
+
+	public long getLookupTime()
+	{
+		long time = 0;
+		CatalogStatistics[] statistics = getAllStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			time += statistics[i].lookupTime.get();
+		}
+		return time;
+	}
+
+	public long[] getLookupTimeHistogram()
+	{
+		long[] histogram = new long[HISTOGRAM_SIZE];
+		CatalogStatistics[] statistics = getAllStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			for (int j = 0; j < histogram.length; j++) {
+				histogram[j] += statistics[i].lookupTimeHistogram.get(j);
+			}
+		}
+		return histogram;
+	}
+
+	public long getResolutionCount()
+	{
+		return resolutionCount.get();
+	}
+
+	public long getResolutionProbeCount()
+	{
+		return resolutionProbeCount.get();
+	}
+
+	public long getResolutionTime()
+	{
+		return resolutionTime.get();
+	}
+
+	public long getPropertiesReadCount()
+	{
+		return propertiesReadCount.get();
+	}
+
+	public long getPropertiesReadTime()
+	{
+		return propertiesReadTime.get();
+	}
+
+	public long getLocaleChangeCount()
+	{
+		return localeChangeCount.get();
+	}
+
+	public String[] getCatalogStatistics()
+	{
+		CatalogStatistics[] statistics = getAllStatistics();
+		String[] lines = new String[statistics.length];
+		for (int i = 0; i < statistics.length; i++) {
+			lines[i] = statistics[i].toString();
+		}
+		return lines;
+	}
+
+	/**
+	 * Returns the number of lookups in the bundle <code>baseName</code> for
+	 * <code>locale</code> that found a translation.
+	 */
+	public long getHitCount(String baseName, Locale locale)
+	{
+		CatalogStatistics statistics = findStatistics(baseName, locale);
+		return (statistics != null) ? statistics.hitCount.get() : 0;
+	}
+
+	/**
+	 * Returns the number of lookups in the bundle <code>baseName</code> for
+	 * <code>locale</code> that did not find a translation.
+	 */
+	public long getMissCount(String baseName, Locale locale)
+	{
+		CatalogStatistics statistics = findStatistics(baseName, locale);
+		return (statistics != null) ? statistics.missCount.get() : 0;
+	}
+
+	public synchronized void reset()
+	{
+		statisticsByName = new HashMap();
+		resolutionCount.reset();
+		resolutionProbeCount.reset();
+		resolutionTime.reset();
+		propertiesReadCount.reset();
+		propertiesReadTime.reset();
+		localeChangeCount.reset();
+	}
+
+	/**
+	 * The counters of a bundle base name and locale.
+	 */
+	private static class CatalogStatistics {
+
+		private String baseName;
+
+		private Locale locale;
+
+		final StripedCounter hitCount = new StripedCounter();
+
+		final StripedCounter missCount = new StripedCounter();
+
+		final StripedCounter formatCount = new StripedCounter();
+
+		final StripedCounter loadCount = new StripedCounter();
+
+		final StripedCounter loadFailureCount = new StripedCounter();
+
+		final StripedCounter loadTime = new StripedCounter();
+
+		final StripedCounter loadTimeHistogram = new StripedCounter(HISTOGRAM_SIZE);
+
+		final StripedCounter lookupTime = new StripedCounter();
+
+		final StripedCounter lookupTimeHistogram = new StripedCounter(HISTOGRAM_SIZE);
+
+		public CatalogStatistics(String baseName, Locale locale)
+		{
+			this.baseName = baseName;
+			this.locale = locale;
+		}
+
+		public String toString()
+		{
+			return baseName + " " + locale + ": hits=" + hitCount.get() + ", misses=" + missCount.get() + ", formats="
+					+ formatCount.get() + ", loads=" + loadCount.get() + ", loadFailures=" + loadFailureCount.get()
+					+ ", loadTime=" + loadTime.get() + "ns, lookupTime=" + lookupTime.get() + "ns";
+		}
+
+	}
+
+}
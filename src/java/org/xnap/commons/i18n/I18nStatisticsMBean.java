@@ -0,0 +1,132 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+/**
+ * The management interface of {@link I18nStatistics}.
+ * 
+ * @since 0.9.9
+ */
+public interface I18nStatisticsMBean {
+
+	/**
+	 * Returns the number of lookups that found a translation.
+	 */
+	long getHitCount();
+
+	/**
+	 * Returns the number of lookups that did not find a translation.
+	 */
+	long getMissCount();
+
+	/**
+	 * Returns the ratio of lookups that found a translation, a value between
+	 * 0 and 1.
+	 */
+	double getHitRatio();
+
+	/**
+	 * Returns the number of translations that have been formatted with
+	 * arguments.
+	 */
+	long getFormatCount();
+
+	/**
+	 * Returns the number of resource bundles that have been loaded.
+	 */
+	long getBundleLoadCount();
+
+	/**
+	 * Returns the number of attempts to load a resource bundle that failed.
+	 */
+	long getBundleLoadFailureCount();
+
+	/**
+	 * Returns the total time spent loading resource bundles in nanoseconds.
+	 */
+	long getBundleLoadTime();
+
+	/**
+	 * Returns the distribution of bundle load times. The value at index 0
+	 * counts loads that took less than a nanosecond, the value at index
+	 * <code>i</code> counts loads that took between 2<sup>i-1</sup> and
+	 * 2<sup>i</sup> - 1 nanoseconds. The last index also counts all slower
+	 * loads.
+	 */
+	long[] getBundleLoadTimeHistogram();
+
+	/**
+	 * Returns the total time spent looking up messages by the
+	 * <code>tr*()</code> methods in nanoseconds.
+	 */
+	long getLookupTime();
+
+	/**
+	 * Returns the distribution of lookup times, indexed like
+	 * {@link #getBundleLoadTimeHistogram()}.
+	 */
+	long[] getLookupTimeHistogram();
+
+	/**
+	 * Returns the number of times {@link I18nFactory} has resolved an
+	 * {@link I18n} object.
+	 */
+	long getResolutionCount();
+
+	/**
+	 * Returns the number of bundle names that {@link I18nFactory} needed to
+	 * probe.
+	 */
+	long getResolutionProbeCount();
+
+	/**
+	 * Returns the total time spent by {@link I18nFactory} resolving
+	 * {@link I18n} objects in nanoseconds.
+	 */
+	long getResolutionTime();
+
+	/**
+	 * Returns the number of {@link I18nFactory#PROPS_FILENAME} files that
+	 * {@link I18nFactory} tried to read.
+	 */
+	long getPropertiesReadCount();
+
+	/**
+	 * Returns the total time spent reading {@link I18nFactory#PROPS_FILENAME}
+	 * files in nanoseconds.
+	 */
+	long getPropertiesReadTime();
+
+	/**
+	 * Returns the number of times the default locale has been changed through
+	 * {@link I18nManager#setDefaultLocale(java.util.Locale)}.
+	 */
+	long getLocaleChangeCount();
+
+	/**
+	 * Returns the statistics for each combination of bundle base name and
+	 * locale, one line per combination.
+	 */
+	String[] getCatalogStatistics();
+
+	/**
+	 * Resets all counters.
+	 */
+	void reset();
+
+}
@@ -0,0 +1,138 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+/**
+ * A placeholder for the bundle of an {@link I18n} object that resolves and
+ * loads the actual bundle on first use. Once resolved, the bundle is
+ * installed into the owner, so subsequent translations do not pass through
+ * the placeholder. Lookups that still hold a reference to the placeholder
+ * are delegated to the actual bundle, which is the parent of the
+ * placeholder.
+ *
+ * @see I18nFactory#LAZY
+ */
+class LazyResourceBundle extends ResourceBundle {
+
+	private final Resolver resolver;
+
+	private I18n owner;
+
+	private boolean resolved;
+
+	LazyResourceBundle(Resolver resolver)
+	{
+		this.resolver = resolver;
+	}
+
+	/**
+	 * Sets the object the resolved bundle is installed into.
+	 */
+	synchronized void setOwner(I18n owner)
+	{
+		this.owner = owner;
+	}
+
+	/**
+	 * Resolves the actual bundle for the current locale of the owner and
+	 * installs it, unless that has happened before. If the bundle can not
+	 * be resolved, an empty bundle is used that returns the passed text.
+	 */
+	synchronized void resolve()
+	{
+		if (resolved) {
+			return;
+		}
+		Locale locale = owner.getLocale();
+		I18n i18n;
+		try {
+			i18n = resolver.resolve(locale);
+		}
+		catch (MissingResourceException e) {
+			i18n = new I18n(new CatalogResourceBundle(Collections.EMPTY_MAP, locale));
+		}
+		setParent(i18n.getResources());
+		resolved = true;
+		owner.resolved(this, i18n);
+	}
+
+	/**
+	 * Resolves the bundle and returns <code>null</code>, lookups continue
+	 * with the parent.
+	 */
+	public Object handleGetObject(String key)
+	{
+		resolve();
+		return null;
+	}
+
+	/**
+	 * Resolves the bundle and returns <code>null</code>, lookups continue
+	 * with the parent.
+	 */
+	public Object lookup(String key)
+	{
+		resolve();
+		return null;
+	}
+
+	/**
+	 * Never used, since the placeholder does not hold plural messages.
+	 */
+	public long pluralEval(long n)
+	{
+		return (n != 1) ? 1 : 0;
+	}
+
+	public synchronized ResourceBundle getParent()
+	{
+		resolve();
+		return parent;
+	}
+
+	public Enumeration getKeys()
+	{
+		return getParent().getKeys();
+	}
+
+	public Locale getLocale()
+	{
+		return getParent().getLocale();
+	}
+
+	/**
+	 * Resolves the <code>I18n</code> object that provides the actual
+	 * bundle.
+	 */
+	static interface Resolver {
+
+		/**
+		 * @throws MissingResourceException
+		 *             if no bundle can be found
+		 */
+		I18n resolve(Locale locale);
+
+	}
+
+}
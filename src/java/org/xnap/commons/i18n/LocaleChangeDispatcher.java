@@ -0,0 +1,49 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+/**
+ * Delivers locale change events on behalf of {@link I18nManager}, e.g. on a
+ * background thread or on the event dispatch thread of a user interface.
+ * The method matches <code>java.util.concurrent.Executor</code>, so an
+ * executor can be adapted easily:
+ * 
+ * <pre>
+ * I18nManager.getInstance().setLocaleChangeDispatcher(new LocaleChangeDispatcher() {
+ * 	public void execute(Runnable task)
+ * 	{
+ * 		SwingUtilities.invokeLater(task);
+ * 	}
+ * });
+ * </pre>
+ * 
+ * @see I18nManager#setLocaleChangeDispatcher(LocaleChangeDispatcher)
+ * @since 0.9.9
+ */
+public interface LocaleChangeDispatcher {
+
+	/**
+	 * Runs <code>task</code>, which notifies the listeners, at some time in
+	 * the future.
+	 * 
+	 * @param task
+	 *            the task
+	 */
+	void execute(Runnable task);
+
+}
@@ -19,11 +19,20 @@
  */
 package org.xnap.commons.i18n;
 
+import java.util.Collections;
 import java.util.EventObject;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /**
  * Provides information about a locale change.
+ * <p>
+ * Events fired by {@link I18nManager} describe which catalogs have actually
+ * been switched to a different locale, so listeners can limit their work,
+ * e.g. only refresh the components whose text is translated through one of
+ * the affected base names.
  * 
  * @author Steffen Pingel
  * @since 0.9
@@ -34,6 +43,21 @@ public class LocaleChangeEvent extends EventObject {
 	
 	private Locale newLocale;
 
+	private Locale oldLocale;
+
+	/**
+	 * The base names of the affected catalogs, <code>null</code> if unknown.
+	 */
+	private Set baseNames;
+
+	/**
+	 * The affected objects, not serialized since <code>I18n</code> objects
+	 * are not serializable.
+	 */
+	private transient List i18ns;
+
+	private long generation;
+
 	/**
 	 * Constructs the event.
 	 * @param source the source of the event
@@ -47,6 +71,38 @@ public class LocaleChangeEvent extends EventObject {
 		this.newLocale = newLocale;
 	}
 
+	/**
+	 * Constructs an event that describes the affected catalogs.
+	 * 
+	 * @param source
+	 *            the source of the event
+	 * @param oldLocale
+	 *            the previous locale, <code>null</code> if unknown
+	 * @param newLocale
+	 *            the new locale
+	 * @param i18ns
+	 *            the objects whose locale has been changed
+	 * @param generation
+	 *            the catalog generation after the change
+	 * @since 0.9.9
+	 */
+	public LocaleChangeEvent(Object source, Locale oldLocale, Locale newLocale, List i18ns, long generation)
+	{
+		this(source, newLocale);
+
+		this.oldLocale = oldLocale;
+		this.i18ns = Collections.unmodifiableList(i18ns);
+		this.generation = generation;
+		Set baseNames = new LinkedHashSet();
+		for (int i = 0; i < i18ns.size(); i++) {
+			String baseName = ((I18n)i18ns.get(i)).getBaseName();
+			if (baseName != null) {
+				baseNames.add(baseName);
+			}
+		}
+		this.baseNames = Collections.unmodifiableSet(baseNames);
+	}
+
 	/**
 	 * Returns the new locale.
 	 * 
@@ -58,4 +114,65 @@ public class LocaleChangeEvent extends EventObject {
 		return newLocale;
 	}
 
+	/**
+	 * Returns the locale before the change.
+	 * 
+	 * @return the previous locale or <code>null</code>, if it is not known,
+	 *         e.g. if the default locale is changed for the first time
+	 * @since 0.9.9
+	 */
+	public Locale getOldLocale()
+	{
+		return oldLocale;
+	}
+
+	/**
+	 * Returns the base names of the catalogs that have been switched to the
+	 * new locale.
+	 * 
+	 * @return an unmodifiable set of strings or <code>null</code>, if the
+	 *         affected catalogs are not known
+	 * @since 0.9.9
+	 */
+	public Set getBaseNames()
+	{
+		return baseNames;
+	}
+
+	/**
+	 * Returns the <code>I18n</code> objects whose locale has been changed.
+	 * 
+	 * @return an unmodifiable list of <code>I18n</code> objects or
+	 *         <code>null</code>, if the affected objects are not known
+	 * @since 0.9.9
+	 */
+	public List getI18ns()
+	{
+		return i18ns;
+	}
+
+	/**
+	 * Returns true, if the catalog <code>baseName</code> has been switched to
+	 * the new locale or if the affected catalogs are not known.
+	 * 
+	 * @since 0.9.9
+	 */
+	public boolean isAffected(String baseName)
+	{
+		return baseNames == null || baseNames.contains(baseName);
+	}
+
+	/**
+	 * Returns the catalog generation after the change. Translations that have
+	 * been cached at an older generation may be stale.
+	 * 
+	 * @return the generation or 0, if it is not known
+	 * @see I18nManager#getGeneration()
+	 * @since 0.9.9
+	 */
+	public long getGeneration()
+	{
+		return generation;
+	}
+
 }
@@ -0,0 +1,304 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+import java.util.WeakHashMap;
+
+/**
+ * Defines the order in which the catalogs of other locales are consulted
+ * when a message is not translated for a locale. Without further rules the
+ * chain of a locale consists of the locale, the locales obtained by
+ * removing the variant and the country, and finally the root locale, which
+ * is the order of {@link ResourceBundle#getBundle(String, Locale)}, except
+ * that the default locale of the JVM is not consulted. Rules add locales to
+ * the chain:
+ *
+ * <pre>
+ * LocaleFallback fallback = new LocaleFallback();
+ * fallback.addFallback(new Locale(&quot;pt&quot;), new Locale(&quot;es&quot;));
+ * fallback.addFallback(new Locale(&quot;es&quot;), Locale.ENGLISH);
+ * // pt_BR, pt, es, en, root
+ * Locale[] chain = fallback.getChain(new Locale(&quot;pt&quot;, &quot;BR&quot;));
+ * </pre>
+ *
+ * The chain of each locale is resolved once into a list of loaded
+ * catalogs. Catalogs are loaded once per base name, locale and class
+ * loader and shared by all chains that contain them, locales without a
+ * catalog are remembered as well, so changing the locale of an
+ * {@link I18n} object neither probes the class path again nor throws
+ * exceptions internally. The catalogs are held until {@link #clear()} is
+ * invoked or the class loader is garbage collected.
+ * <p>
+ * Catalogs are loaded from classes or properties files named like the
+ * candidates of {@link ResourceBundle#getBundle(String, Locale)}. Catalogs
+ * that contain values other than strings or select plural forms by a rule
+ * that can not be determined from their header are skipped.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @see I18nFactory#setLocaleFallback(LocaleFallback)
+ * @see I18n#setLocaleFallback(LocaleFallback)
+ * @since 0.9.9
+ */
+public class LocaleFallback {
+
+	private static final Locale ROOT = new Locale("");
+
+	/**
+	 * Marks locales that do not have a catalog.
+	 */
+	private static final Object MISSING = new Object();
+
+	/**
+	 * Map<Locale, List<Locale>>, the fallbacks added for each locale.
+	 */
+	private final Map rules = new HashMap();
+
+	/**
+	 * Map<Locale, Locale[]>, the resolved chains.
+	 */
+	private final Map chains = new HashMap();
+
+	/**
+	 * Map<ClassLoader, Map<String, Object>>, the loaded catalogs by name or
+	 * {@link #MISSING}.
+	 */
+	private final Map catalogs = new WeakHashMap();
+
+	/**
+	 * Map<ClassLoader, Map<String, ResourceBundle>>, the first bundle of
+	 * each resolved chain by name.
+	 */
+	private final Map bundles = new WeakHashMap();
+
+	/**
+	 * Adds <code>fallback</code> to the chain of <code>locale</code> and
+	 * of all locales whose chain contains <code>locale</code>. Fallbacks are
+	 * consulted in the order they have been added, after the locales that
+	 * are derived from <code>locale</code> by removing the variant and
+	 * country.
+	 */
+	public synchronized void addFallback(Locale locale, Locale fallback)
+	{
+		if (locale == null || fallback == null) {
+			throw new NullPointerException();
+		}
+		List list = (List)rules.get(locale);
+		if (list == null) {
+			list = new ArrayList(2);
+			rules.put(locale, list);
+		}
+		list.add(fallback);
+		chains.clear();
+		bundles.clear();
+	}
+
+	/**
+	 * Returns the locales of the chain of <code>locale</code>, starting
+	 * with <code>locale</code> and ending with the root locale.
+	 */
+	public synchronized Locale[] getChain(Locale locale)
+	{
+		Locale[] chain = (Locale[])chains.get(locale);
+		if (chain == null) {
+			List list = new ArrayList();
+			addChain(list, locale);
+			list.remove(ROOT);
+			list.add(ROOT);
+			chain = (Locale[])list.toArray(new Locale[list.size()]);
+			chains.put(locale, chain);
+		}
+		return (Locale[])chain.clone();
+	}
+
+	private void addChain(List chain, Locale locale)
+	{
+		List derived = new ArrayList(3);
+		derived.add(locale);
+		if (locale.getVariant().length() > 0) {
+			derived.add(new Locale(locale.getLanguage(), locale.getCountry()));
+		}
+		if (locale.getCountry().length() > 0) {
+			derived.add(new Locale(locale.getLanguage(), ""));
+		}
+		for (Iterator it = derived.iterator(); it.hasNext();) {
+			Object candidate = it.next();
+			if (chain.contains(candidate)) {
+				it.remove();
+			}
+			else {
+				chain.add(candidate);
+			}
+		}
+		for (Iterator it = derived.iterator(); it.hasNext();) {
+			List fallbacks = (List)rules.get(it.next());
+			if (fallbacks != null) {
+				for (Iterator it2 = fallbacks.iterator(); it2.hasNext();) {
+					addChain(chain, (Locale)it2.next());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a bundle that looks up messages in the catalogs of the chain
+	 * of <code>locale</code>, in order. The locale of the bundle is the
+	 * locale of the first catalog that exists.
+	 *
+	 * @throws MissingResourceException
+	 *             if none of the locales of the chain has a catalog
+	 */
+	public synchronized ResourceBundle getBundle(String baseName, Locale locale, ClassLoader loader)
+	{
+		if (baseName == null || locale == null || loader == null) {
+			throw new NullPointerException();
+		}
+		Map partition = getPartition(bundles, loader);
+		String name = toBundleName(baseName, locale);
+		ResourceBundle bundle = (ResourceBundle)partition.get(name);
+		if (bundle != null) {
+			return bundle;
+		}
+		Locale[] chain = getChain(locale);
+		for (int i = chain.length - 1; i >= 0; i--) {
+			CatalogResourceBundle catalog = getCatalog(baseName, chain[i], loader);
+			if (catalog != null) {
+				bundle = catalog.withParent(bundle);
+			}
+		}
+		if (bundle == null) {
+			throw new MissingResourceException("Can't find bundle for base name " + baseName + ", locale "
+					+ locale, name, "");
+		}
+		partition.put(name, bundle);
+		return bundle;
+	}
+
+	/**
+	 * Discards all loaded catalogs.
+	 */
+	public synchronized void clear()
+	{
+		catalogs.clear();
+		bundles.clear();
+	}
+
+	private CatalogResourceBundle getCatalog(String baseName, Locale locale, ClassLoader loader)
+	{
+		Map partition = getPartition(catalogs, loader);
+		String name = toBundleName(baseName, locale);
+		Object catalog = partition.get(name);
+		if (catalog == null) {
+			I18nMonitor monitor = I18nManager.monitor;
+			Object context = (monitor != null) ? monitor.bundleLoading(baseName, locale) : null;
+			long start = (monitor != null) ? Clock.nanoTime() : 0;
+			ResourceBundle bundle = loadBundle(name, loader);
+			catalog = (bundle != null) ? CatalogResourceBundle.flatten(bundle, locale) : null;
+			if (monitor != null) {
+				monitor.bundleLoaded(baseName, locale, catalog != null, Clock.nanoTime() - start, context);
+			}
+			if (catalog == null) {
+				catalog = MISSING;
+			}
+			partition.put(name, catalog);
+		}
+		return (catalog != MISSING) ? (CatalogResourceBundle)catalog : null;
+	}
+
+	/**
+	 * Loads the bundle <code>name</code> without parents the way
+	 * {@link ResourceBundle#getBundle(String, Locale, ClassLoader)} loads a
+	 * single candidate.
+	 */
+	private static ResourceBundle loadBundle(String name, ClassLoader loader)
+	{
+		try {
+			Class clazz = Class.forName(name, true, loader);
+			if (ResourceBundle.class.isAssignableFrom(clazz)) {
+				return (ResourceBundle)clazz.newInstance();
+			}
+		}
+		catch (ClassNotFoundException e) {
+			// try a properties file
+		}
+		catch (LinkageError e) {
+			// e.g. a class that differs in case only, try a properties file
+		}
+		catch (Exception e) {
+			return null;
+		}
+		InputStream in = loader.getResourceAsStream(name.replace('.', '/') + ".properties");
+		if (in != null) {
+			try {
+				return new PropertyResourceBundle(in);
+			}
+			catch (IOException e) {
+				return null;
+			}
+			finally {
+				try {
+					in.close();
+				}
+				catch (IOException e) {
+					// this exception is lost
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Discards the catalogs loaded through <code>loader</code>, e.g. after
+	 * their files have been modified.
+	 * 
+	 * @see CatalogReloader
+	 */
+	synchronized void clear(ClassLoader loader)
+	{
+		catalogs.remove(loader);
+		bundles.remove(loader);
+	}
+
+	private static Map getPartition(Map partitions, ClassLoader loader)
+	{
+		Map partition = (Map)partitions.get(loader);
+		if (partition == null) {
+			partition = new HashMap();
+			partitions.put(loader, partition);
+		}
+		return partition;
+	}
+
+	private static String toBundleName(String baseName, Locale locale)
+	{
+		String suffix = locale.toString();
+		return (suffix.length() > 0) ? baseName + "_" + suffix : baseName;
+	}
+
+}
@@ -0,0 +1,330 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Determines the locales that have a catalog for a base name by scanning
+ * the class path once. Directories and jar files that contain the package
+ * of the base name are listed for classes and properties files named like
+ * the bundles of a locale, e.g. <code>Messages_pt_BR.class</code>. Jar
+ * files are found through the package directory, the root bundle and the
+ * manifests of the class loader.
+ * <p>
+ * If the package is provided by a location that can not be listed, e.g.
+ * by a custom URL protocol, the locales of
+ * {@link Locale#getAvailableLocales()} are probed in addition.
+ * <p>
+ * Results are cached by class loader and base name, the cache does not
+ * prevent class loaders from being garbage collected. Each jar file is read
+ * once per class loader, the bundle files it contains are kept by package
+ * directory and answer the scans of later base names. Scans run without
+ * holding the lock of the index.
+ */
+class LocaleIndex {
+
+	private static final Comparator LOCALE_ORDER = new Comparator() {
+		public int compare(Object o1, Object o2)
+		{
+			return o1.toString().compareTo(o2.toString());
+		}
+	};
+
+	/**
+	 * Map<ClassLoader, Map<String, Locale[]>>, access is synchronized on
+	 * the index.
+	 */
+	private final Map partitions = new WeakHashMap();
+
+	/**
+	 * Map<ClassLoader, Set<File>>, the jar files that have a manifest.
+	 */
+	private final Map jarFiles = new WeakHashMap();
+
+	/**
+	 * Map<ClassLoader, Map<File, Map<String, List<String>>>>, the names of
+	 * the bundle files of each jar file by package directory.
+	 */
+	private final Map listings = new WeakHashMap();
+
+	/**
+	 * Returns the locales that have a catalog for <code>baseName</code>,
+	 * sorted by their string representation. The root bundle is not
+	 * included.
+	 */
+	public Locale[] getAvailableLocales(String baseName, ClassLoader loader)
+	{
+		Locale[] locales;
+		synchronized (this) {
+			Map partition = (Map)partitions.get(loader);
+			locales = (partition != null) ? (Locale[])partition.get(baseName) : null;
+		}
+		if (locales == null) {
+			// concurrent scans of the same base name find the same locales
+			locales = scan(baseName, loader);
+			synchronized (this) {
+				Map partition = (Map)partitions.get(loader);
+				if (partition == null) {
+					partition = new HashMap();
+					partitions.put(loader, partition);
+				}
+				partition.put(baseName, locales);
+			}
+		}
+		return (Locale[])locales.clone();
+	}
+
+	public synchronized void clear()
+	{
+		partitions.clear();
+		jarFiles.clear();
+		listings.clear();
+	}
+
+	private Locale[] scan(String baseName, ClassLoader loader)
+	{
+		String path = baseName.replace('.', '/');
+		int slash = path.lastIndexOf('/');
+		String directory = (slash != -1) ? path.substring(0, slash) : "";
+		String prefix = path.substring(slash + 1) + "_";
+
+		Set locales = new HashSet();
+		Set jars = new HashSet(getJarFiles(loader));
+		boolean complete = true;
+		try {
+			List urls = new ArrayList(Collections.list(loader.getResources(directory)));
+			URL root = loader.getResource(path + ".class");
+			if (root == null) {
+				root = loader.getResource(path + ".properties");
+			}
+			if (root != null) {
+				urls.add(root);
+			}
+			for (Iterator it = urls.iterator(); it.hasNext();) {
+				URL url = (URL)it.next();
+				if ("file".equals(url.getProtocol())) {
+					File file = toFile(url);
+					String[] names = (file.isDirectory() ? file : file.getParentFile()).list();
+					for (int i = 0; names != null && i < names.length; i++) {
+						addLocale(locales, names[i], prefix);
+					}
+				}
+				else if ("jar".equals(url.getProtocol()) && url.getPath().startsWith("file:")
+						&& url.getPath().indexOf("!/") != -1) {
+					String spec = url.getPath();
+					jars.add(toFile(new URL(spec.substring(0, spec.indexOf("!/")))));
+				}
+				else {
+					complete = false;
+				}
+			}
+		}
+		catch (IOException e) {
+			complete = false;
+		}
+
+		for (Iterator it = jars.iterator(); it.hasNext();) {
+			Map listing = getListing(loader, (File)it.next());
+			if (listing == null) {
+				complete = false;
+				continue;
+			}
+			List names = (List)listing.get(directory);
+			for (int i = 0; names != null && i < names.size(); i++) {
+				addLocale(locales, (String)names.get(i), prefix);
+			}
+		}
+
+		if (!complete) {
+			Locale[] candidates = Locale.getAvailableLocales();
+			for (int i = 0; i < candidates.length; i++) {
+				String name = path + "_" + candidates[i];
+				if (candidates[i].toString().length() > 0
+						&& (loader.getResource(name + ".class") != null || loader.getResource(name + ".properties") != null)) {
+					locales.add(candidates[i]);
+				}
+			}
+		}
+
+		Locale[] result = (Locale[])locales.toArray(new Locale[locales.size()]);
+		Arrays.sort(result, LOCALE_ORDER);
+		return result;
+	}
+
+	/**
+	 * Returns the jar files of <code>loader</code> that contain a manifest.
+	 */
+	private Set getJarFiles(ClassLoader loader)
+	{
+		Set jars;
+		synchronized (this) {
+			jars = (Set)jarFiles.get(loader);
+		}
+		if (jars == null) {
+			jars = new HashSet();
+			try {
+				for (Enumeration e = loader.getResources("META-INF/MANIFEST.MF"); e.hasMoreElements();) {
+					URL url = (URL)e.nextElement();
+					String spec = url.getPath();
+					if ("jar".equals(url.getProtocol()) && spec.startsWith("file:") && spec.indexOf("!/") != -1) {
+						jars.add(toFile(new URL(spec.substring(0, spec.indexOf("!/")))));
+					}
+				}
+			}
+			catch (IOException e) {
+				// the jars are found through the package directories
+			}
+			synchronized (this) {
+				jarFiles.put(loader, jars);
+			}
+		}
+		return jars;
+	}
+
+	/**
+	 * Returns the names of the bundle files in <code>file</code> by package
+	 * directory. The jar file is read on the first call for
+	 * <code>loader</code> only.
+	 *
+	 * @return Map<String, List<String>>, <code>null</code> if the jar file
+	 *         can not be read
+	 */
+	private Map getListing(ClassLoader loader, File file)
+	{
+		Map jars;
+		synchronized (this) {
+			jars = (Map)listings.get(loader);
+			if (jars == null) {
+				jars = new HashMap();
+				listings.put(loader, jars);
+			}
+			Map listing = (Map)jars.get(file);
+			if (listing != null) {
+				return listing;
+			}
+		}
+
+		Map listing = new HashMap();
+		try {
+			JarFile jar = new JarFile(file);
+			try {
+				for (Enumeration e = jar.entries(); e.hasMoreElements();) {
+					String name = ((JarEntry)e.nextElement()).getName();
+					int slash = name.lastIndexOf('/');
+					String fileName = name.substring(slash + 1);
+					// only bundles of a locale are kept
+					if (fileName.indexOf('_') == -1 || fileName.indexOf('$') != -1
+							|| !(fileName.endsWith(".class") || fileName.endsWith(".properties"))) {
+						continue;
+					}
+					String directory = (slash != -1) ? name.substring(0, slash) : "";
+					List names = (List)listing.get(directory);
+					if (names == null) {
+						names = new ArrayList();
+						listing.put(directory, names);
+					}
+					names.add(fileName);
+				}
+			}
+			finally {
+				jar.close();
+			}
+		}
+		catch (IOException e) {
+			return null;
+		}
+		synchronized (this) {
+			jars.put(file, listing);
+		}
+		return listing;
+	}
+
+	/**
+	 * Adds the locale of the bundle file <code>name</code> to
+	 * <code>locales</code>, if it is a bundle of a locale for the base name
+	 * <code>prefix</code> without the trailing underscore.
+	 */
+	private static void addLocale(Set locales, String name, String prefix)
+	{
+		if (!name.startsWith(prefix) || name.indexOf('$') != -1) {
+			return;
+		}
+		String suffix;
+		if (name.endsWith(".class")) {
+			suffix = name.substring(prefix.length(), name.length() - 6);
+		}
+		else if (name.endsWith(".properties")) {
+			suffix = name.substring(prefix.length(), name.length() - 11);
+		}
+		else {
+			return;
+		}
+		Locale locale = toLocale(suffix);
+		if (locale != null) {
+			locales.add(locale);
+		}
+	}
+
+	/**
+	 * Parses the locale suffix of a bundle name.
+	 *
+	 * @return the locale, <code>null</code> if <code>suffix</code> does not
+	 *         start with a language code
+	 */
+	static Locale toLocale(String suffix)
+	{
+		String[] parts = suffix.split("_", 3);
+		String language = parts[0];
+		if (language.length() < 2 || language.length() > 3) {
+			return null;
+		}
+		for (int i = 0; i < language.length(); i++) {
+			if (language.charAt(i) < 'a' || language.charAt(i) > 'z') {
+				return null;
+			}
+		}
+		return new Locale(language, (parts.length > 1) ? parts[1] : "", (parts.length > 2) ? parts[2] : "");
+	}
+
+	private static File toFile(URL url) throws UnsupportedEncodingException
+	{
+		// URLDecoder decodes form data, which encodes spaces as '+'
+		return new File(URLDecoder.decode(url.getPath().replaceAll("\\+", "%2B"), "UTF-8"));
+	}
+
+}
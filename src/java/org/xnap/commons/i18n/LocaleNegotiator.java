@@ -0,0 +1,347 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * Maps the value of an HTTP <code>Accept-Language</code> header to the
+ * best available locale of a catalog and the corresponding {@link I18n}
+ * object:
+ *
+ * <pre>
+ * LocaleNegotiator negotiator = new LocaleNegotiator(&quot;app.i18n.Messages&quot;, loader, Locale.ENGLISH);
+ * I18n i18n = negotiator.getI18n(request.getHeader(&quot;Accept-Language&quot;));
+ * </pre>
+ *
+ * The available locales are determined once. Language ranges are
+ * considered in the order of their quality values; for each range the
+ * lookup scheme of RFC 4647 is applied first, i.e. subtags are removed
+ * from the end of the range until it matches an available locale, then
+ * the first available locale the range is a prefix of is taken, e.g.
+ * <code>de</code> matches <code>de_AT</code>. If no range matches, the
+ * default locale is used.
+ * <p>
+ * The results are cached by header value in a map of bounded size, the
+ * least recently used entry is evicted first, so negotiating a header that
+ * has been seen before costs about one hash lookup. Negotiators are
+ * thread-safe.
+ *
+ * @since 0.9.9
+ */
+public class LocaleNegotiator {
+
+	/**
+	 * The default maximum number of cached header values.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	/**
+	 * Header values longer than this are negotiated but not cached.
+	 */
+	private static final int MAXIMUM_CACHED_LENGTH = 256;
+
+	private final String baseName;
+
+	private final ClassLoader loader;
+
+	private final Locale[] available;
+
+	private final Locale defaultLocale;
+
+	private final int flags;
+
+	/**
+	 * Map<String, Locale>, access is synchronized on the map.
+	 */
+	private final Map cache;
+
+	/**
+	 * Map<Locale, I18n>, access is synchronized on the map.
+	 */
+	private final Map i18ns = new HashMap();
+
+	/**
+	 * Constructs a negotiator for the locales returned by
+	 * {@link I18nFactory#getAvailableLocales(String, ClassLoader)}.
+	 *
+	 * @param baseName
+	 *            the base name of the catalog
+	 * @param loader
+	 *            the class loader that loads the catalogs,
+	 *            <code>null</code> for the system class loader
+	 * @param defaultLocale
+	 *            the locale used if no language range matches
+	 */
+	public LocaleNegotiator(String baseName, ClassLoader loader, Locale defaultLocale)
+	{
+		this(baseName, loader, I18nFactory.getAvailableLocales(baseName, loader), defaultLocale,
+				I18nFactory.DEFAULT, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Constructs a negotiator.
+	 *
+	 * @param baseName
+	 *            the base name of the catalog
+	 * @param loader
+	 *            the class loader that loads the catalogs,
+	 *            <code>null</code> for the system class loader
+	 * @param available
+	 *            the locales that have a catalog, in the order of
+	 *            preference
+	 * @param defaultLocale
+	 *            the locale used if no language range matches
+	 * @param flags
+	 *            the flags passed to {@link I18nFactory}
+	 * @param cacheSize
+	 *            the maximum number of cached header values
+	 * @throws IllegalArgumentException
+	 *             if <code>cacheSize</code> is not positive
+	 */
+	public LocaleNegotiator(String baseName, ClassLoader loader, Locale[] available, Locale defaultLocale,
+			int flags, final int cacheSize)
+	{
+		if (baseName == null || defaultLocale == null) {
+			throw new NullPointerException();
+		}
+		if (cacheSize <= 0) {
+			throw new IllegalArgumentException("cacheSize must be positive");
+		}
+		this.baseName = baseName;
+		this.loader = I18nFactory.getClassLoader(loader);
+		this.available = (Locale[])available.clone();
+		this.defaultLocale = defaultLocale;
+		this.flags = flags;
+		this.cache = new LinkedHashMap(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry eldest)
+			{
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the locales that have a catalog.
+	 */
+	public Locale[] getAvailableLocales()
+	{
+		return (Locale[])available.clone();
+	}
+
+	/**
+	 * Returns the best available locale for <code>acceptLanguage</code>.
+	 *
+	 * @param acceptLanguage
+	 *            the value of an <code>Accept-Language</code> header, may
+	 *            be <code>null</code>
+	 * @return the best locale, the default locale if none matches
+	 */
+	public Locale negotiate(String acceptLanguage)
+	{
+		if (acceptLanguage == null) {
+			return defaultLocale;
+		}
+		synchronized (cache) {
+			Locale locale = (Locale)cache.get(acceptLanguage);
+			if (locale != null) {
+				return locale;
+			}
+		}
+		Locale locale = match(parse(acceptLanguage));
+		if (acceptLanguage.length() <= MAXIMUM_CACHED_LENGTH) {
+			synchronized (cache) {
+				cache.put(acceptLanguage, locale);
+			}
+		}
+		return locale;
+	}
+
+	/**
+	 * Returns the <code>I18n</code> object of the best available locale
+	 * for <code>acceptLanguage</code>. The objects are shared and must not
+	 * be modified, e.g. by {@link I18n#setLocale(Locale)}. They are not
+	 * managed by {@link I18nManager}, so changing the default locale does
+	 * not affect them.
+	 *
+	 * @throws java.util.MissingResourceException
+	 *             if the catalog of the negotiated locale can not be loaded
+	 * @see #negotiate(String)
+	 */
+	public I18n getI18n(String acceptLanguage)
+	{
+		Locale locale = negotiate(acceptLanguage);
+		synchronized (i18ns) {
+			I18n i18n = (I18n)i18ns.get(locale);
+			if (i18n == null) {
+				i18n = I18nFactory.createUnmanagedI18n(baseName, locale, loader, flags);
+				i18ns.put(locale, i18n);
+			}
+			return i18n;
+		}
+	}
+
+	/**
+	 * Discards the cached results.
+	 */
+	public void clear()
+	{
+		synchronized (cache) {
+			cache.clear();
+		}
+		synchronized (i18ns) {
+			i18ns.clear();
+		}
+	}
+
+	private Locale match(List ranges)
+	{
+		for (int i = 0; i < ranges.size(); i++) {
+			String[] subtags = (String[])ranges.get(i);
+			if (subtags.length == 1 && "*".equals(subtags[0])) {
+				return defaultLocale;
+			}
+			Locale range = toLocale(subtags);
+			// lookup
+			Locale[] candidates = new Locale[] { range, new Locale(range.getLanguage(), range.getCountry()),
+					new Locale(range.getLanguage(), "") };
+			for (int j = 0; j < candidates.length; j++) {
+				for (int k = 0; k < available.length; k++) {
+					if (available[k].equals(candidates[j])) {
+						return available[k];
+					}
+				}
+			}
+			// filtering
+			for (int k = 0; k < available.length; k++) {
+				if (available[k].getLanguage().equals(range.getLanguage())
+						&& (range.getCountry().length() == 0 || available[k].getCountry().equals(range.getCountry()))) {
+					return available[k];
+				}
+			}
+		}
+		return defaultLocale;
+	}
+
+	/**
+	 * Converts the subtags of a language range into a locale, skipping
+	 * script subtags, which are not supported by <code>Locale</code>.
+	 */
+	private static Locale toLocale(String[] subtags)
+	{
+		String country = "";
+		StringBuffer variant = new StringBuffer();
+		for (int i = 1; i < subtags.length; i++) {
+			if (i == 1 && subtags[i].length() == 4) {
+				continue;
+			}
+			if (country.length() == 0 && variant.length() == 0 && subtags[i].length() <= 3) {
+				country = subtags[i];
+			}
+			else {
+				if (variant.length() > 0) {
+					variant.append('_');
+				}
+				variant.append(subtags[i]);
+			}
+		}
+		return new Locale(subtags[0], country, variant.toString());
+	}
+
+	/**
+	 * Parses the language ranges of an <code>Accept-Language</code>
+	 * header.
+	 *
+	 * @return the subtags of each range, ordered by decreasing quality;
+	 *         ranges with a quality of 0 or invalid syntax are omitted
+	 */
+	static List parse(String acceptLanguage)
+	{
+		List ranges = new ArrayList();
+		final Map qualities = new HashMap();
+		StringTokenizer t = new StringTokenizer(acceptLanguage, ",");
+		while (t.hasMoreTokens()) {
+			String token = t.nextToken().trim();
+			float quality = 1;
+			int semicolon = token.indexOf(';');
+			if (semicolon != -1) {
+				String parameter = token.substring(semicolon + 1).trim();
+				token = token.substring(0, semicolon).trim();
+				if (!parameter.startsWith("q=")) {
+					continue;
+				}
+				try {
+					quality = Float.parseFloat(parameter.substring(2));
+				}
+				catch (NumberFormatException e) {
+					continue;
+				}
+			}
+			if (quality <= 0 || token.length() == 0) {
+				continue;
+			}
+			String[] subtags = split(token.toLowerCase(Locale.ENGLISH));
+			if (subtags != null) {
+				ranges.add(subtags);
+				qualities.put(subtags, new Float(quality));
+			}
+		}
+		// the sort is stable, ranges of equal quality keep their order
+		Collections.sort(ranges, new Comparator() {
+			public int compare(Object o1, Object o2)
+			{
+				return ((Float)qualities.get(o2)).compareTo((Float)qualities.get(o1));
+			}
+		});
+		return ranges;
+	}
+
+	private static String[] split(String range)
+	{
+		if ("*".equals(range)) {
+			return new String[] { range };
+		}
+		List subtags = new ArrayList(Arrays.asList(range.split("-")));
+		for (int i = 0; i < subtags.size(); i++) {
+			String subtag = (String)subtags.get(i);
+			if (subtag.length() == 0 || subtag.length() > 8 || (i == 0 && subtag.length() > 3)) {
+				return null;
+			}
+			for (int j = 0; j < subtag.length(); j++) {
+				char c = subtag.charAt(j);
+				if (!(c >= 'a' && c <= 'z') && !(i > 0 && c >= '0' && c <= '9')) {
+					return null;
+				}
+			}
+		}
+		return (String[])subtags.toArray(new String[subtags.size()]);
+	}
+
+}
@@ -0,0 +1,438 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Converts catalogs into the file format read by
+ * {@link MappedResourceBundle}. Catalogs are read from <code>.po</code>
+ * or <code>.properties</code> files, or from maps:
+ *
+ * <pre>
+ * java -cp gettext-commons.jar org.xnap.commons.i18n.MappedCatalogWriter -locale de po/de.po messages_de.catalog
+ * </pre>
+ *
+ * @since 0.9.9
+ */
+public class MappedCatalogWriter {
+
+	private MappedCatalogWriter()
+	{
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		Locale locale = new Locale("");
+		int i = 0;
+		if (args.length == 4 && "-locale".equals(args[0])) {
+			locale = I18nSnapshot.toLocale(args[1]);
+			i = 2;
+		}
+		if (args.length - i != 2) {
+			System.err.println("usage: MappedCatalogWriter [-locale locale] input.po|input.properties output");
+			System.exit(1);
+		}
+		File input = new File(args[i]);
+		InputStream in = new BufferedInputStream(new FileInputStream(input));
+		Map translations;
+		try {
+			translations = input.getName().endsWith(".properties") ? readProperties(in) : readPo(in);
+		}
+		finally {
+			in.close();
+		}
+		write(translations, locale, new File(args[i + 1]));
+	}
+
+	/**
+	 * Writes a catalog file. The catalog is written to a temporary file
+	 * first that then replaces <code>file</code>, so bundles that have
+	 * mapped the previous file remain valid.
+	 *
+	 * @param translations
+	 *            maps keys to strings or to string arrays of plural forms,
+	 *            keys of messages with context are built the way
+	 *            {@link OverlayResourceBundle#getKey(String, String)} does
+	 * @param locale
+	 *            the locale of the catalog
+	 * @throws IllegalArgumentException
+	 *             if a value is neither a string nor a string array
+	 */
+	public static void write(Map translations, Locale locale, File file) throws IOException
+	{
+		// group the entries by context, messages without context come first
+		Map sections = new LinkedHashMap();
+		sections.put(null, new ArrayList());
+		Map contexts = new TreeMap();
+		int pluralSize = 0;
+		for (Iterator it = translations.entrySet().iterator(); it.hasNext();) {
+			Map.Entry entry = (Map.Entry)it.next();
+			String key = (String)entry.getKey();
+			Object value = entry.getValue();
+			if (value instanceof String[] && ((String[])value).length > 0) {
+				pluralSize += ((String[])value).length * 4;
+			}
+			else if (!(value instanceof String)) {
+				throw new IllegalArgumentException("Invalid translation for " + key + ": " + value);
+			}
+			int glue = key.indexOf(I18n.CONTEXT_GLUE);
+			Map target = (glue == -1) ? sections : contexts;
+			String context = (glue == -1) ? null : key.substring(0, glue);
+			List list = (List)target.get(context);
+			if (list == null) {
+				list = new ArrayList();
+				target.put(context, list);
+			}
+			list.add(entry);
+		}
+		if (((List)sections.get(null)).isEmpty()) {
+			sections.remove(null);
+		}
+		sections.putAll(contexts);
+
+		int size = translations.size();
+		int tableSize = PackedStrings.getCapacity(size + 1, 0.5f);
+		int entriesOffset = MappedResourceBundle.HEADER_SIZE + tableSize * 4;
+		int sectionsOffset = entriesOffset + size * MappedResourceBundle.ENTRY_SIZE;
+		int pluralsOffset = sectionsOffset + sections.size() * MappedResourceBundle.SECTION_SIZE;
+		int poolOffset = pluralsOffset + pluralSize;
+		Pool pool = new Pool(poolOffset, size * 32);
+
+		PackedStrings.Encoder out = new PackedStrings.Encoder(poolOffset);
+		out.writeInt(MappedResourceBundle.MAGIC);
+		out.writeInt(MappedResourceBundle.VERSION);
+		out.writeInt(size);
+		out.writeInt(tableSize);
+		out.writeInt(MappedResourceBundle.HEADER_SIZE);
+		out.writeInt(entriesOffset);
+		out.writeInt(sections.size());
+		out.writeInt(sectionsOffset);
+		out.writeInt(pluralsOffset);
+		out.writeInt(poolOffset);
+		out.writeInt(pool.add(locale.toString()));
+
+		int[] table = new int[tableSize];
+		PackedStrings.Encoder entries = new PackedStrings.Encoder(size * MappedResourceBundle.ENTRY_SIZE);
+		PackedStrings.Encoder sectionTable = new PackedStrings.Encoder(sections.size()
+				* MappedResourceBundle.SECTION_SIZE);
+		PackedStrings.Encoder plurals = new PackedStrings.Encoder(pluralSize);
+		int index = 0;
+		int sectionIndex = 0;
+		for (Iterator it = sections.entrySet().iterator(); it.hasNext(); sectionIndex++) {
+			Map.Entry section = (Map.Entry)it.next();
+			String context = (String)section.getKey();
+			List list = (List)section.getValue();
+			sectionTable.writeInt((context != null) ? pool.add(context) : -1);
+			sectionTable.writeInt(index);
+			sectionTable.writeInt(list.size());
+			for (Iterator it2 = list.iterator(); it2.hasNext(); index++) {
+				Map.Entry entry = (Map.Entry)it2.next();
+				String key = (String)entry.getKey();
+				Object value = entry.getValue();
+				int hash = key.hashCode();
+				entries.writeInt(hash);
+				entries.writeInt(sectionIndex);
+				entries.writeInt(pool.add((context != null) ? key.substring(context.length() + 1) : key));
+				if (value instanceof String) {
+					entries.writeInt(pool.add((String)value));
+					entries.writeInt(0);
+				}
+				else {
+					String[] forms = (String[])value;
+					entries.writeInt(pluralsOffset + plurals.size());
+					entries.writeInt(forms.length);
+					for (int i = 0; i < forms.length; i++) {
+						plurals.writeInt(pool.add(forms[i]));
+					}
+				}
+				int mask = tableSize - 1;
+				int slot = PackedStrings.spread(hash) & mask;
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = index + 1;
+			}
+		}
+		for (int i = 0; i < table.length; i++) {
+			out.writeInt(table[i]);
+		}
+
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			stream.write(out.getBuffer(), 0, out.size());
+			stream.write(entries.getBuffer(), 0, entries.size());
+			stream.write(sectionTable.getBuffer(), 0, sectionTable.size());
+			stream.write(plurals.getBuffer(), 0, plurals.size());
+			stream.write(pool.encoder.getBuffer(), 0, pool.encoder.size());
+		}
+		finally {
+			stream.close();
+		}
+		if (!temp.renameTo(file)) {
+			file.delete();
+			if (!temp.renameTo(file)) {
+				temp.delete();
+				throw new IOException("Could not rename " + temp + " to " + file);
+			}
+		}
+	}
+
+	/**
+	 * Reads the translations of a properties file.
+	 *
+	 * @return a map from keys to translations
+	 */
+	public static Map readProperties(InputStream in) throws IOException
+	{
+		Properties properties = new Properties();
+		properties.load(in);
+		return new HashMap(properties);
+	}
+
+	/**
+	 * Reads the translations of a <code>.po</code> file encoded in UTF-8.
+	 * Untranslated, fuzzy and obsolete messages are skipped, except for the
+	 * header entry.
+	 *
+	 * @return a map from keys to strings or to string arrays of plural
+	 *         forms, the header is stored under the empty key
+	 * @throws IOException
+	 *             if the file can not be read or is malformed
+	 */
+	public static Map readPo(InputStream in) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		Map translations = new LinkedHashMap();
+		PoEntry entry = new PoEntry();
+		StringBuffer current = null;
+		int lineNumber = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.length() == 0) {
+				entry = entry.flush(translations);
+				current = null;
+			}
+			else if (line.startsWith("#")) {
+				if (line.startsWith("#,") && line.indexOf("fuzzy") != -1) {
+					entry = entry.flush(translations);
+					entry.fuzzy = true;
+				}
+				current = null;
+			}
+			else if (line.startsWith("\"")) {
+				if (current == null) {
+					throw new IOException("Unexpected string in line " + lineNumber);
+				}
+				current.append(unquote(line, lineNumber));
+			}
+			else {
+				int space = line.indexOf(' ');
+				if (space == -1) {
+					throw new IOException("Invalid line " + lineNumber + ": " + line);
+				}
+				String keyword = line.substring(0, space);
+				String value = unquote(line.substring(space + 1).trim(), lineNumber);
+				if (("msgctxt".equals(keyword) || "msgid".equals(keyword)) && !entry.forms.isEmpty()) {
+					entry = entry.flush(translations);
+				}
+				if ("msgctxt".equals(keyword)) {
+					entry.context = current = new StringBuffer(value);
+				}
+				else if ("msgid".equals(keyword)) {
+					entry.id = current = new StringBuffer(value);
+				}
+				else if ("msgid_plural".equals(keyword)) {
+					entry.plural = true;
+					current = new StringBuffer(value);
+				}
+				else if ("msgstr".equals(keyword)) {
+					current = new StringBuffer(value);
+					entry.forms.add(current);
+				}
+				else if (keyword.startsWith("msgstr[") && keyword.endsWith("]")) {
+					int n;
+					try {
+						n = Integer.parseInt(keyword.substring(7, keyword.length() - 1));
+					}
+					catch (NumberFormatException e) {
+						throw new IOException("Invalid plural form in line " + lineNumber);
+					}
+					if (n != entry.forms.size()) {
+						throw new IOException("Unexpected plural form in line " + lineNumber);
+					}
+					current = new StringBuffer(value);
+					entry.forms.add(current);
+				}
+				else {
+					throw new IOException("Unknown keyword in line " + lineNumber + ": " + keyword);
+				}
+			}
+		}
+		entry.flush(translations);
+		return translations;
+	}
+
+	private static String unquote(String s, int lineNumber) throws IOException
+	{
+		if (s.length() < 2 || s.charAt(0) != '"' || s.charAt(s.length() - 1) != '"') {
+			throw new IOException("Invalid string in line " + lineNumber);
+		}
+		StringBuffer sb = new StringBuffer(s.length());
+		for (int i = 1; i < s.length() - 1; i++) {
+			char c = s.charAt(i);
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			if (++i == s.length() - 1) {
+				throw new IOException("Invalid escape sequence in line " + lineNumber);
+			}
+			c = s.charAt(i);
+			switch (c) {
+			case 'n':
+				sb.append('\n');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 'a':
+				sb.append('\u0007');
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'v':
+				sb.append('\u000b');
+				break;
+			default:
+				if (c >= '0' && c <= '7') {
+					int value = 0;
+					int end = Math.min(i + 3, s.length() - 1);
+					for (; i < end && s.charAt(i) >= '0' && s.charAt(i) <= '7'; i++) {
+						value = value * 8 + s.charAt(i) - '0';
+					}
+					i--;
+					sb.append((char)value);
+				}
+				else {
+					// \", \\ and \?
+					sb.append(c);
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * An entry of a <code>.po</code> file while it is parsed.
+	 */
+	private static class PoEntry {
+
+		StringBuffer context;
+
+		StringBuffer id;
+
+		boolean plural;
+
+		boolean fuzzy;
+
+		List forms = new ArrayList();
+
+		/**
+		 * Adds the entry to <code>translations</code>, if it is translated,
+		 * and returns a new entry.
+		 */
+		PoEntry flush(Map translations)
+		{
+			if (id != null && !forms.isEmpty()) {
+				String key = (context != null) ? context + I18n.CONTEXT_GLUE + id : id.toString();
+				boolean header = key.length() == 0;
+				boolean translated = false;
+				String[] values = new String[forms.size()];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = forms.get(i).toString();
+					translated |= values[i].length() > 0;
+				}
+				if (translated && (!fuzzy || header)) {
+					translations.put(key, plural ? (Object)values : values[0]);
+				}
+			}
+			return new PoEntry();
+		}
+
+	}
+
+	/**
+	 * Stores each distinct string once.
+	 */
+	private static class Pool {
+
+		final PackedStrings.Encoder encoder;
+
+		private final Map offsets = new HashMap();
+
+		private final int start;
+
+		Pool(int start, int capacity)
+		{
+			this.start = start;
+			this.encoder = new PackedStrings.Encoder(capacity);
+		}
+
+		int add(String s)
+		{
+			Integer offset = (Integer)offsets.get(s);
+			if (offset == null) {
+				offset = new Integer(start + encoder.size());
+				encoder.writeString(s);
+				offsets.put(s, offset);
+			}
+			return offset.intValue();
+		}
+
+	}
+
+}
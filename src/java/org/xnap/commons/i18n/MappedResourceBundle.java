@@ -0,0 +1,355 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.ResourceBundle;
+
+/**
+ * A read-only bundle that memory-maps a catalog file written by
+ * {@link MappedCatalogWriter}. The translations are never copied into the
+ * heap, so processes that open the same file share a single copy in the
+ * page cache of the operating system. Opening a catalog only reads its
+ * header, the time does not depend on the number of entries. The entries
+ * are checked when they are looked up, entries that refer to data outside
+ * of their part of the file are treated as missing.
+ *
+ * <pre>
+ * ResourceBundle bundle = MappedResourceBundle.open(new File(&quot;/var/lib/app/messages_de.catalog&quot;));
+ * I18n i18n = new I18n(bundle);
+ * </pre>
+ *
+ * The file consists of the following parts, all integers are stored in
+ * big-endian byte order and references are absolute offsets into the
+ * file:
+ * <ol>
+ * <li>the header: the magic number, the version, the number of entries,
+ * the size of the index and the offsets of the index, the entries, the
+ * sections, the plural tables and the string pool; followed by a reference
+ * to the locale,</li>
+ * <li>the index: an open addressing table of ints that holds the number
+ * of the entry plus one for each hash code of a key, 0 if empty,</li>
+ * <li>the entries: the hash code of the key, the section, a reference to
+ * the message id, a reference to the translation or plural table and the
+ * number of plural forms, 0 for messages without plural forms,</li>
+ * <li>the sections: the entries are grouped by context, each section
+ * holds a reference to its context, -1 for messages without context, the
+ * first entry and the number of entries,</li>
+ * <li>the plural tables: a reference to each plural form,</li>
+ * <li>the string pool: each distinct string once, encoded as Latin-1 or
+ * as a variant of UTF-8.</li>
+ * </ol>
+ * Bundles follow the conventions of the bundles generated by
+ * <code>msgfmt</code>. Plural forms are selected by the expression of the
+ * <code>Plural-Forms</code> field of the catalog header or, if the header
+ * does not specify a valid expression, by the rule of the Germanic
+ * languages (<code>n != 1</code>).
+ * <p>
+ * A mapped file must not be modified while it is in use, replace it by a
+ * new file instead, as {@link MappedCatalogWriter#write} does.
+ *
+ * @since 0.9.9
+ */
+public class MappedResourceBundle extends ResourceBundle {
+
+	static final int MAGIC = 0x47434D43;
+
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 44;
+
+	static final int ENTRY_SIZE = 20;
+
+	static final int SECTION_SIZE = 12;
+
+	private final ByteBuffer data;
+
+	private final int entryCount;
+
+	private final int tableSize;
+
+	private final int tableOffset;
+
+	private final int entriesOffset;
+
+	private final int sectionCount;
+
+	private final int sectionsOffset;
+
+	private final int pluralsOffset;
+
+	private final int poolOffset;
+
+	private final PackedStrings.CachedEntry[] cache;
+
+	private final Locale locale;
+
+	private final PluralExpression plural;
+
+	private MappedResourceBundle(ByteBuffer data) throws IOException
+	{
+		this.data = data;
+		if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+			throw new IOException("Not a catalog file");
+		}
+		if (data.getInt(4) != VERSION) {
+			throw new IOException("Unsupported catalog version: " + data.getInt(4));
+		}
+		entryCount = data.getInt(8);
+		tableSize = data.getInt(12);
+		tableOffset = data.getInt(16);
+		entriesOffset = data.getInt(20);
+		sectionCount = data.getInt(24);
+		sectionsOffset = data.getInt(28);
+		pluralsOffset = data.getInt(32);
+		poolOffset = data.getInt(36);
+		int capacity = data.capacity();
+		if (entryCount < 0 || entryCount > capacity / ENTRY_SIZE || tableSize <= entryCount
+				|| tableSize > capacity / 4 || (tableSize & (tableSize - 1)) != 0
+				|| sectionCount > capacity / SECTION_SIZE
+				|| tableOffset != HEADER_SIZE || entriesOffset != tableOffset + tableSize * 4
+				|| sectionCount < 0 || sectionsOffset != entriesOffset + entryCount * ENTRY_SIZE
+				|| pluralsOffset != sectionsOffset + sectionCount * SECTION_SIZE || poolOffset < pluralsOffset
+				|| poolOffset > capacity || !isString(data.getInt(40))) {
+			throw new IOException("Corrupt catalog header");
+		}
+		this.locale = I18nSnapshot.toLocale(PackedStrings.read(data, data.getInt(40)));
+		this.cache = new PackedStrings.CachedEntry[PackedStrings.getCapacity(
+				CompactResourceBundle.DEFAULT_CACHE_SIZE, 1)];
+		Object header = lookup("");
+		this.plural = PluralExpression.forHeader((header instanceof String) ? (String)header : null);
+	}
+
+	/**
+	 * Maps a catalog file into memory. The mapping remains valid after the
+	 * file has been closed.
+	 *
+	 * @throws IOException
+	 *             if the file can not be read or is not a catalog file
+	 */
+	public static MappedResourceBundle open(File file) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			return new MappedResourceBundle(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		catch (IndexOutOfBoundsException e) {
+			throw (IOException)new IOException("Corrupt catalog file: " + file).initCause(e);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the number of entries.
+	 */
+	public int size()
+	{
+		return entryCount;
+	}
+
+	/**
+	 * Returns the size of the mapped file in bytes.
+	 */
+	public int getDataSize()
+	{
+		return data.capacity();
+	}
+
+	/**
+	 * Returns the translation of <code>key</code>, the singular form for
+	 * plural messages, or <code>null</code>.
+	 */
+	public Object handleGetObject(String key)
+	{
+		Object value = lookup(key);
+		return (value instanceof String[]) ? ((String[])value)[0] : value;
+	}
+
+	/**
+	 * Returns the translation of <code>key</code>, an array of strings for
+	 * plural messages, or <code>null</code>. The array must not be modified.
+	 */
+	public Object lookup(String key)
+	{
+		int hash = key.hashCode();
+		int slot = PackedStrings.spread(hash) & (cache.length - 1);
+		PackedStrings.CachedEntry cached = cache[slot];
+		if (cached != null && cached.key.equals(key)) {
+			return cached.value;
+		}
+		Object value = decode(find(key, hash));
+		cache[slot] = new PackedStrings.CachedEntry(key, value);
+		return value;
+	}
+
+	/**
+	 * Returns the offset of the entry for <code>key</code>, -1 if there is
+	 * none. Each slot is probed at most once, so a corrupt table without
+	 * empty slots can not loop forever.
+	 */
+	private int find(String key, int hash)
+	{
+		int glue = key.indexOf(I18n.CONTEXT_GLUE);
+		int mask = tableSize - 1;
+		int slot = PackedStrings.spread(hash) & mask;
+		for (int i = 0; i < tableSize; i++, slot = (slot + 1) & mask) {
+			int index = data.getInt(tableOffset + slot * 4) - 1;
+			if (index < 0 || index >= entryCount) {
+				return -1;
+			}
+			int entry = entriesOffset + index * ENTRY_SIZE;
+			if (data.getInt(entry) == hash && matches(entry, key, glue)) {
+				return entry;
+			}
+		}
+		return -1;
+	}
+
+	private boolean matches(int entry, String key, int glue)
+	{
+		int context = getContext(entry);
+		int text = data.getInt(entry + 8);
+		if (context == -2 || !isString(text)) {
+			return false;
+		}
+		if (context == -1) {
+			return PackedStrings.matches(data, text, key, 0, key.length());
+		}
+		return glue != -1 && PackedStrings.matches(data, context, key, 0, glue)
+				&& PackedStrings.matches(data, text, key, glue + 1, key.length());
+	}
+
+	/**
+	 * Returns the reference to the context of <code>entry</code>, -1 if the
+	 * message has no context or -2 if the reference is invalid.
+	 */
+	private int getContext(int entry)
+	{
+		int section = data.getInt(entry + 4);
+		if (section < 0 || section >= sectionCount) {
+			return -2;
+		}
+		int context = data.getInt(sectionsOffset + section * SECTION_SIZE);
+		return (context == -1 || isString(context)) ? context : -2;
+	}
+
+	/**
+	 * Returns true, if a string that lies within the string pool starts at
+	 * <code>offset</code>.
+	 */
+	private boolean isString(int offset)
+	{
+		return offset >= poolOffset && PackedStrings.isValid(data, offset, data.capacity());
+	}
+
+	private Object decode(int entry)
+	{
+		if (entry < 0) {
+			return null;
+		}
+		int value = data.getInt(entry + 12);
+		int count = data.getInt(entry + 16);
+		if (count == 0) {
+			return isString(value) ? PackedStrings.read(data, value) : null;
+		}
+		if (count < 0 || value < pluralsOffset || value > poolOffset || count > (poolOffset - value) / 4) {
+			return null;
+		}
+		String[] forms = new String[count];
+		for (int i = 0; i < count; i++) {
+			int form = data.getInt(value + i * 4);
+			if (!isString(form)) {
+				return null;
+			}
+			forms[i] = PackedStrings.read(data, form);
+		}
+		return forms;
+	}
+
+	/**
+	 * Returns the index of the plural form for <code>n</code>.
+	 */
+	public long pluralEval(long n)
+	{
+		return plural.evaluate(n);
+	}
+
+	public ResourceBundle getParent()
+	{
+		return parent;
+	}
+
+	/**
+	 * Returns the keys of all entries, entries with invalid references are
+	 * skipped.
+	 */
+	public Enumeration getKeys()
+	{
+		return new Enumeration() {
+
+			private int index;
+
+			private String next = advance();
+
+			private String advance()
+			{
+				while (index < entryCount) {
+					int entry = entriesOffset + index++ * ENTRY_SIZE;
+					int context = getContext(entry);
+					int text = data.getInt(entry + 8);
+					if (context != -2 && isString(text)) {
+						return (context == -1) ? PackedStrings.read(data, text) : PackedStrings.read(data, context)
+								+ I18n.CONTEXT_GLUE + PackedStrings.read(data, text);
+					}
+				}
+				return null;
+			}
+
+			public boolean hasMoreElements()
+			{
+				return next != null;
+			}
+
+			public Object nextElement()
+			{
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				String key = next;
+				next = advance();
+				return key;
+			}
+		};
+	}
+
+	public Locale getLocale()
+	{
+		return locale;
+	}
+
+}
@@ -0,0 +1,376 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Vector;
+
+/**
+ * A resource bundle that overrides some of the translations of a shared
+ * base bundle. The overlay only stores the overridden entries, all other
+ * lookups fall through to the base bundle, which is never modified. This
+ * makes it possible to customize a catalog for many tenants without
+ * duplicating it:
+ *
+ * <pre>
+ * ResourceBundle base = ResourceBundle.getBundle(&quot;app.Messages&quot;, Locale.GERMAN);
+ * OverlayResourceBundle overlay = new OverlayResourceBundle(base);
+ * overlay.put(&quot;house&quot;, &quot;Villa&quot;);
+ * I18n i18n = new I18n(overlay);
+ * </pre>
+ *
+ * The overridden entries can be changed while translations are in
+ * progress. Every modification replaces the entries as a whole, so a
+ * lookup sees either all or none of the changes of a call to
+ * {@link #putAll(Map)}. The {@link I18n} objects that use the overlay as
+ * their bundle are notified of modifications, so they discard their cached
+ * formats and advance their generation.
+ * <p>
+ * Overlays follow the conventions of the bundles generated by
+ * <code>msgfmt</code>, so {@link I18n#trn(String, String, long)} selects
+ * overridden plural forms. The plural form is determined by the base
+ * bundle if it has been generated by <code>msgfmt</code>, otherwise the
+ * rule of the Germanic languages (<code>n != 1</code>) applies.
+ *
+ * @since 0.9.9
+ */
+public class OverlayResourceBundle extends ResourceBundle {
+
+	private final ResourceBundle base;
+
+	/**
+	 * The <code>pluralEval</code> method of the base bundle, if any.
+	 */
+	private final Method pluralEvalMethod;
+
+	/**
+	 * Map<String, Object>, the values are strings or string arrays that hold
+	 * the plural forms. The map is never modified once it has been
+	 * published.
+	 */
+	private volatile Map entries = Collections.EMPTY_MAP;
+
+	/**
+	 * List<WeakReference<I18n>>, the objects that are notified of
+	 * modifications. The list is never modified once it has been published.
+	 */
+	private volatile List owners = Collections.EMPTY_LIST;
+
+	/**
+	 * Constructs an overlay without any overridden entries.
+	 *
+	 * @param base
+	 *            the bundle that provides all entries that are not
+	 *            overridden
+	 * @throws NullPointerException
+	 *             if <code>base</code> is <code>null</code>
+	 */
+	public OverlayResourceBundle(ResourceBundle base)
+	{
+		if (base == null) {
+			throw new NullPointerException("base must not be null");
+		}
+		this.base = base;
+		setParent(base);
+		Method method = null;
+		try {
+			method = base.getClass().getMethod("pluralEval", new Class[] { Long.TYPE });
+		}
+		catch (Exception e) {
+			// the base bundle has not been generated by msgfmt
+		}
+		this.pluralEvalMethod = method;
+	}
+
+	/**
+	 * Returns the shared base bundle.
+	 */
+	public ResourceBundle getBase()
+	{
+		return base;
+	}
+
+	/**
+	 * Overrides the translation of <code>text</code>.
+	 */
+	public void put(String text, String translation)
+	{
+		put(text, (Object)translation);
+	}
+
+	/**
+	 * Overrides the translation of <code>text</code> in
+	 * <code>context</code>.
+	 *
+	 * @see I18n#trc(String, String)
+	 */
+	public void put(String context, String text, String translation)
+	{
+		put(getKey(context, text), (Object)translation);
+	}
+
+	/**
+	 * Overrides the plural forms of the translation of <code>text</code>.
+	 *
+	 * @param translations
+	 *            the translated plural forms, indexed by the plural form
+	 *            that is determined by {@link #pluralEval(long)}
+	 * @see I18n#trn(String, String, long)
+	 */
+	public void putPlural(String text, String[] translations)
+	{
+		put(text, (Object)translations.clone());
+	}
+
+	/**
+	 * Overrides the plural forms of the translation of <code>text</code> in
+	 * <code>context</code>.
+	 *
+	 * @see I18n#trnc(String, String, String, long)
+	 */
+	public void putPlural(String context, String text, String[] translations)
+	{
+		put(getKey(context, text), (Object)translations.clone());
+	}
+
+	private void put(String key, Object value)
+	{
+		if (key == null || value == null) {
+			throw new NullPointerException();
+		}
+		synchronized (this) {
+			Map entries = new HashMap(this.entries);
+			entries.put(key, value);
+			this.entries = entries;
+		}
+		changed(Collections.singleton(key));
+	}
+
+	/**
+	 * Overrides several translations at once. Concurrent lookups either see
+	 * all of the new translations or none of them.
+	 *
+	 * @param translations
+	 *            maps keys to strings or to string arrays of plural forms;
+	 *            keys of messages with context are built the way
+	 *            {@link #getKey(String, String)} does
+	 * @throws IllegalArgumentException
+	 *             if a value is neither a string nor a string array
+	 */
+	public void putAll(Map translations)
+	{
+		update(translations, Collections.EMPTY_SET);
+	}
+
+	/**
+	 * Overrides and removes several translations at once.
+	 *
+	 * @param removals
+	 *            the keys of the translations to remove, applied after
+	 *            <code>translations</code>
+	 * @see #putAll(Map)
+	 */
+	void update(Map translations, Collection removals)
+	{
+		synchronized (this) {
+			Map entries = new HashMap(this.entries);
+			for (Iterator it = translations.entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry)it.next();
+				Object value = entry.getValue();
+				if (value instanceof String[]) {
+					value = ((String[])value).clone();
+				}
+				else if (!(value instanceof String)) {
+					throw new IllegalArgumentException("Invalid translation for " + entry.getKey() + ": " + value);
+				}
+				entries.put((String)entry.getKey(), value);
+			}
+			entries.keySet().removeAll(removals);
+			this.entries = entries;
+		}
+		Collection keys = new HashSet(translations.keySet());
+		keys.addAll(removals);
+		changed(keys);
+	}
+
+	/**
+	 * Removes the overridden translation of <code>key</code>, subsequent
+	 * lookups return the translation of the base bundle.
+	 *
+	 * @return true, if the translation was overridden
+	 */
+	public boolean remove(String key)
+	{
+		synchronized (this) {
+			if (!entries.containsKey(key)) {
+				return false;
+			}
+			Map entries = new HashMap(this.entries);
+			entries.remove(key);
+			this.entries = entries;
+		}
+		changed(Collections.singleton(key));
+		return true;
+	}
+
+	/**
+	 * Removes all overridden translations.
+	 */
+	public void clear()
+	{
+		synchronized (this) {
+			entries = Collections.EMPTY_MAP;
+		}
+		changed(null);
+	}
+
+	/**
+	 * Registers <code>i18n</code> to be notified of modifications. The
+	 * object is only weakly referenced.
+	 */
+	synchronized void addOwner(I18n i18n)
+	{
+		List owners = new ArrayList(this.owners.size() + 1);
+		for (Iterator it = this.owners.iterator(); it.hasNext();) {
+			WeakReference reference = (WeakReference)it.next();
+			Object owner = reference.get();
+			if (owner == i18n) {
+				return;
+			}
+			if (owner != null) {
+				owners.add(reference);
+			}
+		}
+		owners.add(new WeakReference(i18n));
+		this.owners = owners;
+	}
+
+	/**
+	 * Notifies the owners of modified translations. Invoked without holding
+	 * the lock of this overlay.
+	 * 
+	 * @param keys
+	 *            the modified keys, <code>null</code> if all translations
+	 *            have been modified
+	 */
+	private void changed(Collection keys)
+	{
+		for (Iterator it = owners.iterator(); it.hasNext();) {
+			I18n owner = (I18n)((WeakReference)it.next()).get();
+			if (owner != null) {
+				owner.overlayChanged(this, keys);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of overridden translations.
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Returns the key of <code>text</code> in <code>context</code> in a
+	 * catalog.
+	 */
+	public static String getKey(String context, String text)
+	{
+		return context + I18n.CONTEXT_GLUE + text;
+	}
+
+	/**
+	 * Returns the overridden translation of <code>key</code> or
+	 * <code>null</code>, if it is not overridden. For plural messages the
+	 * singular form is returned.
+	 */
+	public Object handleGetObject(String key)
+	{
+		Object value = entries.get(key);
+		return (value instanceof String[]) ? ((String[])value)[0] : value;
+	}
+
+	/**
+	 * Returns the overridden translation of <code>key</code>, an array of
+	 * strings for plural messages, or <code>null</code>, if it is not
+	 * overridden.
+	 */
+	public Object lookup(String key)
+	{
+		return entries.get(key);
+	}
+
+	/**
+	 * Returns the index of the plural form for <code>n</code>.
+	 */
+	public long pluralEval(long n)
+	{
+		if (pluralEvalMethod != null) {
+			try {
+				return ((Long)pluralEvalMethod.invoke(base, new Object[] { new Long(n) })).longValue();
+			}
+			catch (Exception e) {
+				// fall back to the default rule
+			}
+		}
+		return (n != 1) ? 1 : 0;
+	}
+
+	/**
+	 * Returns the base bundle.
+	 */
+	public ResourceBundle getParent()
+	{
+		return parent;
+	}
+
+	public Enumeration getKeys()
+	{
+		Map entries = this.entries;
+		Vector keys = new Vector(entries.keySet());
+		for (Enumeration e = base.getKeys(); e.hasMoreElements();) {
+			Object key = e.nextElement();
+			if (!entries.containsKey(key)) {
+				keys.add(key);
+			}
+		}
+		return keys.elements();
+	}
+
+	/**
+	 * Returns the locale of the base bundle.
+	 */
+	public Locale getLocale()
+	{
+		return base.getLocale();
+	}
+
+}
@@ -0,0 +1,323 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes strings into byte buffers and decodes them in place, shared by
+ * the bundles that store catalogs in packed form.
+ * <p>
+ * A string is stored as a variable length header followed by its
+ * characters. The header holds the number of bytes shifted left by one,
+ * the lowest bit is set if the string is encoded as Latin-1, which is used
+ * if all characters fit into a byte. Other strings are encoded in a
+ * variant of UTF-8 that encodes each <code>char</code> separately, so
+ * unpaired surrogates are preserved.
+ */
+final class PackedStrings {
+
+	private PackedStrings()
+	{
+	}
+
+	/**
+	 * Returns the smallest power of two that holds <code>size</code>
+	 * entries at <code>loadFactor</code>.
+	 */
+	static int getCapacity(int size, float loadFactor)
+	{
+		int capacity = 1;
+		while (capacity * loadFactor < size) {
+			capacity <<= 1;
+		}
+		return Math.max(capacity, 2);
+	}
+
+	/**
+	 * Mixes the high bits of <code>hash</code> into the low bits used to
+	 * index power of two tables.
+	 */
+	static int spread(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Returns true, if the string at <code>offset</code> equals the
+	 * substring of <code>s</code> from <code>start</code> to
+	 * <code>end</code>.
+	 */
+	static boolean matches(ByteBuffer data, int offset, String s, int start, int end)
+	{
+		int header = readVarInt(data, offset);
+		int position = offset + getVarIntSize(header);
+		int length = header >>> 1;
+		if ((header & 1) != 0) {
+			// Latin-1
+			if (length != end - start) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if ((data.get(position + i) & 0xFF) != s.charAt(start + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		int limit = position + length;
+		int i = start;
+		while (position < limit) {
+			if (i == end) {
+				return false;
+			}
+			int b = data.get(position++) & 0xFF;
+			char c;
+			if (b < 0x80) {
+				c = (char)b;
+			}
+			else if (b < 0xE0) {
+				c = (char)(((b & 0x1F) << 6) | (data.get(position++) & 0x3F));
+			}
+			else {
+				c = (char)(((b & 0x0F) << 12) | ((data.get(position++) & 0x3F) << 6) | (data.get(position++) & 0x3F));
+			}
+			if (c != s.charAt(i++)) {
+				return false;
+			}
+		}
+		return i == end;
+	}
+
+	/**
+	 * Decodes the string at <code>offset</code>.
+	 */
+	static String read(ByteBuffer data, int offset)
+	{
+		int header = readVarInt(data, offset);
+		int position = offset + getVarIntSize(header);
+		int length = header >>> 1;
+		char[] chars = new char[length];
+		if ((header & 1) != 0) {
+			for (int i = 0; i < length; i++) {
+				chars[i] = (char)(data.get(position + i) & 0xFF);
+			}
+			return new String(chars);
+		}
+		int end = position + length;
+		int count = 0;
+		while (position < end) {
+			int b = data.get(position++) & 0xFF;
+			if (b < 0x80) {
+				chars[count++] = (char)b;
+			}
+			else if (b < 0xE0) {
+				chars[count++] = (char)(((b & 0x1F) << 6) | (data.get(position++) & 0x3F));
+			}
+			else {
+				chars[count++] = (char)(((b & 0x0F) << 12) | ((data.get(position++) & 0x3F) << 6) | (data
+						.get(position++) & 0x3F));
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	/**
+	 * Returns true, if a string starts at <code>offset</code> and neither
+	 * its header nor its characters extend beyond <code>limit</code>, so it
+	 * can be decoded without reading past the limit. Used to check data
+	 * that has not been packed in the same process.
+	 */
+	static boolean isValid(ByteBuffer data, int offset, int limit)
+	{
+		if (offset < 0) {
+			return false;
+		}
+		int header = 0;
+		int position = offset;
+		for (int shift = 0;; shift += 7) {
+			if (position >= limit || shift > 28) {
+				return false;
+			}
+			int b = data.get(position++);
+			header |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+		}
+		int length = header >>> 1;
+		if (position - offset != getVarIntSize(header) || length > limit - position) {
+			return false;
+		}
+		if ((header & 1) != 0) {
+			return true;
+		}
+		int end = position + length;
+		while (position < end) {
+			int b = data.get(position) & 0xFF;
+			position += (b < 0x80) ? 1 : (b < 0xE0) ? 2 : 3;
+		}
+		return position == end;
+	}
+
+	/**
+	 * Returns the offset following the string at <code>offset</code>.
+	 */
+	static int skip(ByteBuffer data, int offset)
+	{
+		int header = readVarInt(data, offset);
+		return offset + getVarIntSize(header) + (header >>> 1);
+	}
+
+	static int readVarInt(ByteBuffer data, int offset)
+	{
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = data.get(offset++);
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+
+	static int getVarIntSize(int value)
+	{
+		int size = 1;
+		while ((value >>>= 7) != 0) {
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * A decoded entry kept in the cache of a bundle. Entries are immutable,
+	 * so they can be published without synchronization.
+	 */
+	static final class CachedEntry {
+
+		final String key;
+
+		final Object value;
+
+		CachedEntry(String key, Object value)
+		{
+			this.key = key;
+			this.value = value;
+		}
+
+	}
+
+	/**
+	 * Packs strings and integers into a growing byte array.
+	 */
+	static final class Encoder {
+
+		private byte[] buffer;
+
+		private int size;
+
+		Encoder(int capacity)
+		{
+			buffer = new byte[Math.max(capacity, 16)];
+		}
+
+		int size()
+		{
+			return size;
+		}
+
+		byte[] getBuffer()
+		{
+			return buffer;
+		}
+
+		void writeString(String s)
+		{
+			int length = s.length();
+			boolean latin1 = true;
+			int byteLength = 0;
+			for (int i = 0; i < length; i++) {
+				char c = s.charAt(i);
+				if (c > 0xFF) {
+					latin1 = false;
+				}
+				byteLength += (c < 0x80) ? 1 : (c < 0x800) ? 2 : 3;
+			}
+			if (latin1) {
+				writeVarInt((length << 1) | 1);
+				ensureCapacity(length);
+				for (int i = 0; i < length; i++) {
+					buffer[size++] = (byte)s.charAt(i);
+				}
+				return;
+			}
+			writeVarInt(byteLength << 1);
+			ensureCapacity(byteLength);
+			for (int i = 0; i < length; i++) {
+				char c = s.charAt(i);
+				if (c < 0x80) {
+					buffer[size++] = (byte)c;
+				}
+				else if (c < 0x800) {
+					buffer[size++] = (byte)(0xC0 | (c >> 6));
+					buffer[size++] = (byte)(0x80 | (c & 0x3F));
+				}
+				else {
+					buffer[size++] = (byte)(0xE0 | (c >> 12));
+					buffer[size++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+					buffer[size++] = (byte)(0x80 | (c & 0x3F));
+				}
+			}
+		}
+
+		void writeVarInt(int value)
+		{
+			ensureCapacity(5);
+			while ((value & ~0x7F) != 0) {
+				buffer[size++] = (byte)((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[size++] = (byte)value;
+		}
+
+		/**
+		 * Writes <code>value</code> in big-endian byte order, the default
+		 * order of <code>ByteBuffer</code>.
+		 */
+		void writeInt(int value)
+		{
+			ensureCapacity(4);
+			buffer[size++] = (byte)(value >>> 24);
+			buffer[size++] = (byte)(value >>> 16);
+			buffer[size++] = (byte)(value >>> 8);
+			buffer[size++] = (byte)value;
+		}
+
+		private void ensureCapacity(int length)
+		{
+			if (size + length > buffer.length) {
+				byte[] newBuffer = new byte[Math.max(buffer.length * 2, size + length)];
+				System.arraycopy(buffer, 0, newBuffer, 0, size);
+				buffer = newBuffer;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,466 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+/**
+ * A parsed plural expression of a gettext catalog header, e.g.
+ * <code>n != 1</code> or
+ * <code>n%10==1 &amp;&amp; n%100!=11 ? 0 : n != 0 ? 1 : 2</code>.
+ * <p>
+ * The syntax is the subset of C that GNU gettext accepts: the variable
+ * <code>n</code>, non-negative integer constants, parentheses, the
+ * operators <code>! * / % + - &lt; &lt;= &gt; &gt;= == != &amp;&amp; ||</code>
+ * and the conditional operator <code>?:</code>. Division by zero yields 0.
+ */
+class PluralExpression {
+
+	/**
+	 * The expression used when a catalog does not specify one, the rule of
+	 * the Germanic languages.
+	 */
+	static final PluralExpression DEFAULT = new PluralExpression(new Binary(Binary.NE, new Variable(), new Constant(1)),
+			"n != 1");
+
+	private final Node root;
+
+	private final String expression;
+
+	private PluralExpression(Node root, String expression)
+	{
+		this.root = root;
+		this.expression = expression;
+	}
+
+	/**
+	 * Parses <code>expression</code>.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>expression</code> is not valid
+	 */
+	public static PluralExpression parse(String expression)
+	{
+		Parser parser = new Parser(expression);
+		Node root = parser.parseExpression();
+		parser.skipWhitespace();
+		if (parser.index < expression.length()) {
+			throw parser.error();
+		}
+		return new PluralExpression(root, expression);
+	}
+
+	/**
+	 * Parses the <code>plural</code> expression of the
+	 * <code>Plural-Forms</code> field of a catalog header.
+	 * 
+	 * @param header
+	 *            the translation of the empty string
+	 * @return the expression, <code>null</code> if the header does not
+	 *         specify one
+	 * @throws IllegalArgumentException
+	 *             if the expression is not valid
+	 */
+	public static PluralExpression parseHeader(String header)
+	{
+		int start = header.indexOf("Plural-Forms:");
+		if (start == -1) {
+			return null;
+		}
+		int end = header.indexOf('\n', start);
+		String field = header.substring(start, (end != -1) ? end : header.length());
+		start = field.indexOf("plural=");
+		if (start == -1) {
+			return null;
+		}
+		start += "plural=".length();
+		end = field.indexOf(';', start);
+		return parse(field.substring(start, (end != -1) ? end : field.length()).trim());
+	}
+
+	/**
+	 * Returns the plural expression of a catalog header or, like GNU
+	 * gettext does, {@link #DEFAULT} if the header does not specify a valid
+	 * expression.
+	 * 
+	 * @param header
+	 *            the translation of the empty string, may be
+	 *            <code>null</code>
+	 */
+	public static PluralExpression forHeader(String header)
+	{
+		if (header != null) {
+			try {
+				PluralExpression expression = parseHeader(header);
+				if (expression != null) {
+					return expression;
+				}
+			}
+			catch (IllegalArgumentException e) {
+				// fall back to the default
+			}
+		}
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns the index of the plural form for <code>n</code>.
+	 */
+	public long evaluate(long n)
+	{
+		return root.evaluate(n);
+	}
+
+	public String toString()
+	{
+		return expression;
+	}
+
+	private static abstract class Node {
+
+		abstract long evaluate(long n);
+
+	}
+
+	private static class Constant extends Node {
+
+		private final long value;
+
+		Constant(long value)
+		{
+			this.value = value;
+		}
+
+		long evaluate(long n)
+		{
+			return value;
+		}
+
+	}
+
+	private static class Variable extends Node {
+
+		long evaluate(long n)
+		{
+			return n;
+		}
+
+	}
+
+	private static class Not extends Node {
+
+		private final Node operand;
+
+		Not(Node operand)
+		{
+			this.operand = operand;
+		}
+
+		long evaluate(long n)
+		{
+			return (operand.evaluate(n) == 0) ? 1 : 0;
+		}
+
+	}
+
+	private static class Conditional extends Node {
+
+		private final Node condition;
+
+		private final Node then;
+
+		private final Node otherwise;
+
+		Conditional(Node condition, Node then, Node otherwise)
+		{
+			this.condition = condition;
+			this.then = then;
+			this.otherwise = otherwise;
+		}
+
+		long evaluate(long n)
+		{
+			return (condition.evaluate(n) != 0) ? then.evaluate(n) : otherwise.evaluate(n);
+		}
+
+	}
+
+	private static class Binary extends Node {
+
+		static final int MUL = 0;
+
+		static final int DIV = 1;
+
+		static final int MOD = 2;
+
+		static final int ADD = 3;
+
+		static final int SUB = 4;
+
+		static final int LT = 5;
+
+		static final int LE = 6;
+
+		static final int GT = 7;
+
+		static final int GE = 8;
+
+		static final int EQ = 9;
+
+		static final int NE = 10;
+
+		static final int AND = 11;
+
+		static final int OR = 12;
+
+		private final int operator;
+
+		private final Node left;
+
+		private final Node right;
+
+		Binary(int operator, Node left, Node right)
+		{
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		long evaluate(long n)
+		{
+			long l = left.evaluate(n);
+			switch (operator) {
+			case AND:
+				return (l != 0 && right.evaluate(n) != 0) ? 1 : 0;
+			case OR:
+				return (l != 0 || right.evaluate(n) != 0) ? 1 : 0;
+			}
+			long r = right.evaluate(n);
+			switch (operator) {
+			case MUL:
+				return l * r;
+			case DIV:
+				return (r != 0) ? l / r : 0;
+			case MOD:
+				return (r != 0) ? l % r : 0;
+			case ADD:
+				return l + r;
+			case SUB:
+				return l - r;
+			case LT:
+				return (l < r) ? 1 : 0;
+			case LE:
+				return (l <= r) ? 1 : 0;
+			case GT:
+				return (l > r) ? 1 : 0;
+			case GE:
+				return (l >= r) ? 1 : 0;
+			case EQ:
+				return (l == r) ? 1 : 0;
+			default:
+				return (l != r) ? 1 : 0;
+			}
+		}
+
+	}
+
+	/**
+	 * A recursive descent parser that follows the precedence of the C
+	 * operators.
+	 */
+	private static class Parser {
+
+		private final String expression;
+
+		int index;
+
+		Parser(String expression)
+		{
+			this.expression = expression;
+		}
+
+		Node parseExpression()
+		{
+			Node condition = parseOr();
+			if (accept("?")) {
+				Node then = parseExpression();
+				expect(":");
+				return new Conditional(condition, then, parseExpression());
+			}
+			return condition;
+		}
+
+		private Node parseOr()
+		{
+			Node node = parseAnd();
+			while (accept("||")) {
+				node = new Binary(Binary.OR, node, parseAnd());
+			}
+			return node;
+		}
+
+		private Node parseAnd()
+		{
+			Node node = parseEquality();
+			while (accept("&&")) {
+				node = new Binary(Binary.AND, node, parseEquality());
+			}
+			return node;
+		}
+
+		private Node parseEquality()
+		{
+			Node node = parseRelation();
+			while (true) {
+				if (accept("==")) {
+					node = new Binary(Binary.EQ, node, parseRelation());
+				}
+				else if (accept("!=")) {
+					node = new Binary(Binary.NE, node, parseRelation());
+				}
+				else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseRelation()
+		{
+			Node node = parseAdditive();
+			while (true) {
+				if (accept("<=")) {
+					node = new Binary(Binary.LE, node, parseAdditive());
+				}
+				else if (accept(">=")) {
+					node = new Binary(Binary.GE, node, parseAdditive());
+				}
+				else if (accept("<")) {
+					node = new Binary(Binary.LT, node, parseAdditive());
+				}
+				else if (accept(">")) {
+					node = new Binary(Binary.GT, node, parseAdditive());
+				}
+				else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseAdditive()
+		{
+			Node node = parseMultiplicative();
+			while (true) {
+				if (accept("+")) {
+					node = new Binary(Binary.ADD, node, parseMultiplicative());
+				}
+				else if (accept("-")) {
+					node = new Binary(Binary.SUB, node, parseMultiplicative());
+				}
+				else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseMultiplicative()
+		{
+			Node node = parseUnary();
+			while (true) {
+				if (accept("*")) {
+					node = new Binary(Binary.MUL, node, parseUnary());
+				}
+				else if (accept("/")) {
+					node = new Binary(Binary.DIV, node, parseUnary());
+				}
+				else if (accept("%")) {
+					node = new Binary(Binary.MOD, node, parseUnary());
+				}
+				else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseUnary()
+		{
+			skipWhitespace();
+			if (index < expression.length() && expression.charAt(index) == '!'
+					&& !expression.startsWith("!=", index)) {
+				index++;
+				return new Not(parseUnary());
+			}
+			return parsePrimary();
+		}
+
+		private Node parsePrimary()
+		{
+			if (accept("(")) {
+				Node node = parseExpression();
+				expect(")");
+				return node;
+			}
+			if (accept("n")) {
+				return new Variable();
+			}
+			int start = index;
+			while (index < expression.length() && Character.isDigit(expression.charAt(index))) {
+				index++;
+			}
+			if (start == index) {
+				throw error();
+			}
+			try {
+				return new Constant(Long.parseLong(expression.substring(start, index)));
+			}
+			catch (NumberFormatException e) {
+				index = start;
+				throw error();
+			}
+		}
+
+		void skipWhitespace()
+		{
+			while (index < expression.length() && Character.isWhitespace(expression.charAt(index))) {
+				index++;
+			}
+		}
+
+		private boolean accept(String token)
+		{
+			skipWhitespace();
+			if (expression.startsWith(token, index)) {
+				index += token.length();
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(String token)
+		{
+			if (!accept(token)) {
+				throw error();
+			}
+		}
+
+		IllegalArgumentException error()
+		{
+			return new IllegalArgumentException("Invalid plural expression at position " + index + ": "
+					+ expression);
+		}
+
+	}
+
+}
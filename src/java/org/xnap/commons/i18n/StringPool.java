@@ -0,0 +1,167 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.WeakHashMap;
+
+/**
+ * Shares equal strings between catalogs. Catalogs repeat many strings:
+ * identical translations in the bundles of different packages, region
+ * variants like <code>de_AT</code> that copy most of <code>de</code>, and
+ * untranslated entries whose translation equals the message id. A pool
+ * keeps a single instance of each of them.
+ * <p>
+ * Message ids are interned with {@link String#intern()}, so they are the
+ * same instances as the string literals passed to {@link I18n#tr(String)}.
+ * Translations are only held weakly, a pool does not prevent strings of
+ * catalogs that are no longer used from being garbage collected.
+ * <p>
+ * Pools are thread-safe.
+ *
+ * @see I18nFactory#DEDUPLICATE
+ * @since 0.9.9
+ */
+public class StringPool {
+
+	/**
+	 * The approximate number of bytes used by a string in addition to its
+	 * characters: the string object and the header of its character array.
+	 */
+	private static final int STRING_OVERHEAD = 40;
+
+	/**
+	 * Map<String, WeakReference<String>>, access is synchronized on the
+	 * pool.
+	 */
+	private final Map strings = new WeakHashMap();
+
+	private long lookupCount;
+
+	private long sharedCount;
+
+	private long savedBytes;
+
+	/**
+	 * Returns the pooled instance of <code>s</code>, adding
+	 * <code>s</code> to the pool if it does not contain an equal string.
+	 */
+	public String share(String s)
+	{
+		return share(s, false);
+	}
+
+	private synchronized String share(String s, boolean literal)
+	{
+		lookupCount++;
+		WeakReference reference = (WeakReference)strings.get(s);
+		String pooled = (reference != null) ? (String)reference.get() : null;
+		if (pooled == null) {
+			pooled = literal ? s.intern() : s;
+			strings.put(pooled, new WeakReference(pooled));
+		}
+		if (pooled != s) {
+			sharedCount++;
+			savedBytes += STRING_OVERHEAD + s.length() * 2;
+		}
+		return pooled;
+	}
+
+	/**
+	 * Copies the translations of <code>bundle</code> and its parents into
+	 * a single catalog whose keys and translations are shared through the
+	 * pool.
+	 *
+	 * @return the catalog, or <code>bundle</code> itself if it contains
+	 *         values other than strings or selects plural forms by a rule
+	 *         that can not be determined from its header
+	 */
+	public ResourceBundle deduplicate(ResourceBundle bundle)
+	{
+		CatalogResourceBundle flattened = CatalogResourceBundle.flatten(bundle);
+		if (flattened == null) {
+			return bundle;
+		}
+		Map entries = flattened.getEntries();
+		Map translations = new HashMap((int)(entries.size() / 0.75f) + 1);
+		for (Iterator it = entries.entrySet().iterator(); it.hasNext();) {
+			Map.Entry entry = (Map.Entry)it.next();
+			String key = share((String)entry.getKey(), true);
+			Object value = entry.getValue();
+			if (value instanceof String) {
+				value = share((String)value, false);
+			}
+			else {
+				String[] forms = (String[])((String[])value).clone();
+				for (int i = 0; i < forms.length; i++) {
+					forms[i] = share(forms[i], false);
+				}
+				value = forms;
+			}
+			translations.put(key, value);
+		}
+		return new CatalogResourceBundle(translations, bundle.getLocale(), false);
+	}
+
+	/**
+	 * Returns the number of distinct strings in the pool.
+	 */
+	public synchronized int size()
+	{
+		return strings.size();
+	}
+
+	/**
+	 * Returns the number of strings that have been passed to the pool.
+	 */
+	public synchronized long getLookupCount()
+	{
+		return lookupCount;
+	}
+
+	/**
+	 * Returns the number of strings that have been replaced by an equal
+	 * string of the pool.
+	 */
+	public synchronized long getSharedCount()
+	{
+		return sharedCount;
+	}
+
+	/**
+	 * Returns an estimate of the memory saved by sharing strings in bytes,
+	 * based on two bytes per character and a fixed overhead per string.
+	 * The estimate does not account for strings that have been collected
+	 * since.
+	 */
+	public synchronized long getSavedBytes()
+	{
+		return savedBytes;
+	}
+
+	public synchronized String toString()
+	{
+		return "StringPool[size=" + strings.size() + ", lookups=" + lookupCount + ", shared=" + sharedCount
+				+ ", savedBytes=" + savedBytes + "]";
+	}
+
+}
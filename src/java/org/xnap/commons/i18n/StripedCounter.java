@@ -0,0 +1,179 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A set of counters that gives each thread a cell of its own, so updates
+ * neither lock nor contend. A cell is only written by its thread, reading a
+ * value sums up all cells. Reads are not synchronized with updates and may
+ * miss the most recent ones. Cells are padded to keep the cells of
+ * different threads off a shared cache line.
+ */
+class StripedCounter {
+
+	/**
+	 * The number of longs before and after the values of a cell.
+	 */
+	private static final int PADDING = 8;
+
+	private final int size;
+
+	/**
+	 * The cell of the current thread.
+	 */
+	private final ThreadLocal cell = new ThreadLocal();
+
+	/**
+	 * Cell[], copied on write.
+	 */
+	private volatile Cell[] cells = new Cell[0];
+
+	/**
+	 * The sums of the cells of threads that have been garbage collected,
+	 * guarded by the counter.
+	 */
+	private final long[] retired;
+
+	/**
+	 * The sums at the last reset, guarded by the counter.
+	 */
+	private final long[] offsets;
+
+	/**
+	 * Constructs a single counter.
+	 */
+	StripedCounter()
+	{
+		this(1);
+	}
+
+	/**
+	 * Constructs <code>size</code> counters that are updated by index.
+	 */
+	StripedCounter(int size)
+	{
+		this.size = size;
+		this.retired = new long[size];
+		this.offsets = new long[size];
+	}
+
+	public void increment()
+	{
+		add(0, 1);
+	}
+
+	public void increment(int index)
+	{
+		add(index, 1);
+	}
+
+	public void add(long value)
+	{
+		add(0, value);
+	}
+
+	public void add(int index, long value)
+	{
+		Cell cell = (Cell)this.cell.get();
+		if (cell == null) {
+			cell = register();
+		}
+		// the cell has a single writer, no update is lost
+		cell.values[PADDING + index] += value;
+	}
+
+	public long get()
+	{
+		return get(0);
+	}
+
+	public synchronized long get(int index)
+	{
+		return sum(index) - offsets[index];
+	}
+
+	public synchronized void reset()
+	{
+		for (int i = 0; i < size; i++) {
+			offsets[i] = sum(i);
+		}
+	}
+
+	private long sum(int index)
+	{
+		long sum = retired[index];
+		Cell[] cells = this.cells;
+		for (int i = 0; i < cells.length; i++) {
+			sum += cells[i].values[PADDING + index];
+		}
+		return sum;
+	}
+
+	/**
+	 * Adds a cell for the current thread. The cells of threads that have
+	 * been garbage collected are folded into {@link #retired}.
+	 */
+	private synchronized Cell register()
+	{
+		Cell cell = new Cell(Thread.currentThread(), size);
+		Cell[] cells = this.cells;
+		int live = 0;
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i].thread.get() != null) {
+				live++;
+			}
+		}
+		Cell[] copy = new Cell[live + 1];
+		int index = 0;
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i].thread.get() != null) {
+				copy[index++] = cells[i];
+			}
+			else {
+				for (int j = 0; j < size; j++) {
+					retired[j] += cells[i].values[PADDING + j];
+				}
+			}
+		}
+		copy[index] = cell;
+		this.cells = copy;
+		this.cell.set(cell);
+		return cell;
+	}
+
+	private static class Cell {
+
+		final WeakReference thread;
+
+		/**
+		 * The values, preceded and followed by {@link #PADDING} unused
+		 * elements.
+		 */
+		final long[] values;
+
+		Cell(Thread thread, int size)
+		{
+			this.thread = new WeakReference(thread);
+			this.values = new long[PADDING + size + PADDING];
+		}
+
+	}
+
+}
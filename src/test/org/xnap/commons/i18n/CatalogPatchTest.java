@@ -0,0 +1,127 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+public class CatalogPatchTest extends TestCase {
+
+	private I18n i18n;
+
+	protected void setUp() throws Exception
+	{
+		i18n = new I18n(I18nTest.BASENAME, Locale.GERMAN, getClass().getClassLoader());
+	}
+
+	public void testApplyPatch()
+	{
+		long generation = i18n.getGeneration();
+		CatalogPatch patch = new CatalogPatch();
+		patch.put("house", "Villa");
+		patch.put("noun", "chat", "Unterhaltung");
+		patch.putPlural("File", new String[] { "Dokument", "{0} Dokumente" });
+		patch.putPlural("context", "File", new String[] { "Akte", "{0} Akten" });
+		assertEquals(4, patch.size());
+		assertTrue(i18n.applyPatch(patch) > generation);
+		assertTrue(i18n.getGeneration() > generation);
+
+		assertEquals("Villa", i18n.tr("house"));
+		assertEquals("Maus", i18n.tr("mouse"));
+		assertEquals("Unterhaltung", i18n.trc("noun", "chat"));
+		assertEquals("Chatten", i18n.trc("verb", "chat"));
+		assertEquals("2 Dokumente", i18n.trn("File", "{0} Files", 2, new Integer(2)));
+		assertEquals("Akte", i18n.trnc("context", "File", "{0} Files", 1));
+		assertEquals("3 Akten", i18n.trnc("context", "File", "{0} Files", 3, new Integer(3)));
+		assertEquals(Locale.GERMAN, i18n.getLocale());
+		assertEquals(I18nTest.BASENAME, i18n.getBaseName());
+	}
+
+	public void testApplySeveralPatches()
+	{
+		CatalogPatch patch = new CatalogPatch();
+		patch.put("house", "Villa");
+		i18n.applyPatch(patch);
+		OverlayResourceBundle overlay = (OverlayResourceBundle)i18n.getResources();
+
+		patch = new CatalogPatch();
+		patch.put("mouse", "Ratte");
+		i18n.applyPatch(patch);
+		assertSame(overlay, i18n.getResources());
+		assertEquals("Villa", i18n.tr("house"));
+		assertEquals("Ratte", i18n.tr("mouse"));
+
+		patch = new CatalogPatch();
+		patch.remove("house");
+		i18n.applyPatch(patch);
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals("Ratte", i18n.tr("mouse"));
+	}
+
+	public void testApplyPatchInvalidatesFormats()
+	{
+		assertEquals("Haus Nr. 1", i18n.tr("House Nr. {0} ", new Integer(1)));
+		CatalogPatch patch = new CatalogPatch();
+		patch.put("House Nr. {0} ", "Hausnummer {0}");
+		i18n.applyPatch(patch);
+		assertEquals("Hausnummer 1", i18n.tr("House Nr. {0} ", new Integer(1)));
+	}
+
+	public void testApplyPatchToSharedOverlay()
+	{
+		CatalogPatch patch = new CatalogPatch();
+		patch.put("house", "Villa");
+		i18n.applyPatch(patch);
+		I18n shared = new I18n(i18n.getResources());
+		assertEquals("Haus Nr. 1", shared.tr("House Nr. {0} ", new Integer(1)));
+
+		long generation = shared.getGeneration();
+		patch = new CatalogPatch();
+		patch.put("House Nr. {0} ", "Hausnummer {0}");
+		long patched = i18n.applyPatch(patch);
+		assertTrue(shared.getGeneration() > generation);
+		assertTrue(patched > generation);
+		assertEquals("Hausnummer 1", shared.tr("House Nr. {0} ", new Integer(1)));
+
+		generation = i18n.getGeneration();
+		((OverlayResourceBundle)shared.getResources()).clear();
+		assertTrue(i18n.getGeneration() > generation);
+		assertEquals("Haus", i18n.tr("house"));
+	}
+
+	public void testSetLocaleDiscardsPatch()
+	{
+		CatalogPatch patch = new CatalogPatch();
+		patch.put("house", "Villa");
+		i18n.applyPatch(patch);
+		i18n.setLocale(Locale.GERMAN);
+		assertEquals("Haus", i18n.tr("house"));
+	}
+
+	public void testPutAfterRemove()
+	{
+		CatalogPatch patch = new CatalogPatch();
+		patch.remove("house");
+		patch.put("house", "Villa");
+		assertEquals(1, patch.size());
+		i18n.applyPatch(patch);
+		assertEquals("Villa", i18n.tr("house"));
+	}
+
+}
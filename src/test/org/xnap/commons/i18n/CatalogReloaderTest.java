@@ -0,0 +1,235 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import junit.framework.TestCase;
+
+public class CatalogReloaderTest extends TestCase {
+
+	private File directory;
+
+	private I18n i18n;
+
+	private CatalogReloader reloader;
+
+	protected void setUp() throws Exception
+	{
+		directory = File.createTempFile("reload", "");
+		directory.delete();
+		directory.mkdir();
+		write("Reload.properties", "house=house\nmouse=mouse\n");
+		write("Reload_de.properties", "house=Haus\n");
+
+		ClassLoader loader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, null);
+		i18n = new I18n("Reload", Locale.GERMAN, loader);
+		I18nManager.getInstance().add(i18n);
+		// record the modifications of objects left over by other tests
+		new CatalogReloader().reload();
+		reloader = new CatalogReloader();
+	}
+
+	protected void tearDown() throws Exception
+	{
+		reloader.stop();
+		I18nManager.getInstance().remove(i18n);
+		File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		directory.delete();
+	}
+
+	private void write(String filename, String content) throws IOException
+	{
+		File file = new File(directory, filename);
+		long lastModified = file.lastModified();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("ISO-8859-1"));
+		}
+		finally {
+			out.close();
+		}
+		if (lastModified != 0) {
+			// make sure the modification is noticed on file systems with a
+			// coarse time resolution
+			file.setLastModified(lastModified + 2000);
+		}
+	}
+
+	public void testReload() throws Exception
+	{
+		assertEquals(0, reloader.reload());
+		assertEquals("Haus", i18n.tr("house"));
+
+		long generation = i18n.getGeneration();
+		write("Reload_de.properties", "house=Haus\nmouse=Maus\n");
+		assertEquals(1, reloader.reload());
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals("Maus", i18n.tr("mouse"));
+		assertEquals(Locale.GERMAN, i18n.getResources().getLocale());
+		assertTrue(i18n.getGeneration() > generation);
+		assertEquals(1, reloader.getReloadCount());
+		assertEquals(0, reloader.getFailureCount());
+
+		assertEquals(0, reloader.reload());
+
+		write("Reload.properties", "house=house\nmouse=mouse\nfile=file\n");
+		assertEquals(1, reloader.reload());
+		assertEquals("file", i18n.tr("file"));
+		assertEquals("Maus", i18n.tr("mouse"));
+	}
+
+	public void testReloadBeforeFirstCheck() throws Exception
+	{
+		write("Other.properties", "house=house\n");
+		write("Other_de.properties", "house=Haus\n");
+		I18n other = new I18n("Other", Locale.GERMAN, i18n.getClassLoader());
+		write("Other_de.properties", "house=Haus\nmouse=Maus\n");
+		assertEquals(1, reloader.reload());
+		assertEquals("Maus", other.tr("mouse"));
+	}
+
+	public void testReloadCreatedFile() throws Exception
+	{
+		Locale defaultLocale = Locale.getDefault();
+		Locale.setDefault(Locale.ENGLISH);
+		try {
+			I18n french = new I18n("Reload", Locale.FRENCH, i18n.getClassLoader());
+			assertEquals("house", french.tr("house"));
+			assertEquals(0, reloader.reload());
+			write("Reload_fr.properties", "house=maison\n");
+			assertEquals(1, reloader.reload());
+			assertEquals("maison", french.tr("house"));
+		}
+		finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+	public void testReloadAfterSetLocale() throws Exception
+	{
+		reloader.reload();
+		write("Reload_de.properties", "house=Haus\nmouse=Maus\n");
+		reloader.reload();
+		// the stale bundle cached by ResourceBundle has been discarded
+		assertTrue(i18n.setLocale(Locale.GERMAN));
+		assertEquals("Maus", i18n.tr("mouse"));
+		assertEquals(0, reloader.reload());
+		assertEquals("Maus", i18n.tr("mouse"));
+	}
+
+	public void testReloadUnmanaged() throws Exception
+	{
+		I18n unmanaged = new I18n("Reload", Locale.GERMAN, i18n.getClassLoader());
+		reloader.reload();
+		write("Reload_de.properties", "house=Haus\nmouse=Maus\n");
+		assertEquals(1, reloader.reload());
+		assertEquals("Maus", unmanaged.tr("mouse"));
+		assertEquals("Maus", i18n.tr("mouse"));
+	}
+
+	public void testReloadRetainsSettings() throws Exception
+	{
+		i18n.setCompact(true);
+		assertTrue(i18n.getResources() instanceof CompactResourceBundle);
+		reloader.reload();
+		write("Reload_de.properties", "house=Haus\nmouse=Maus\n");
+		assertEquals(1, reloader.reload());
+		assertTrue(i18n.getResources() instanceof CompactResourceBundle);
+		assertEquals("Maus", i18n.tr("mouse"));
+	}
+
+	public void testReloadLocaleFallback() throws Exception
+	{
+		LocaleFallback fallback = new LocaleFallback();
+		i18n.setLocaleFallback(fallback);
+		reloader.reload();
+		write("Reload_de.properties", "house=Haus\nmouse=Maus\n");
+		assertEquals(1, reloader.reload());
+		assertSame(fallback, i18n.getLocaleFallback());
+		assertEquals("Maus", i18n.tr("mouse"));
+	}
+
+	public void testReloadDefaultLocale() throws Exception
+	{
+		Locale defaultLocale = Locale.getDefault();
+		Locale.setDefault(Locale.GERMAN);
+		try {
+			// ResourceBundle falls back to the catalog of the default locale
+			I18n french = new I18n("Reload", Locale.FRENCH, i18n.getClassLoader());
+			assertEquals("Haus", french.tr("house"));
+			reloader.reload();
+			write("Reload_de.properties", "house=Haus\nmouse=Maus\n");
+			assertEquals(1, reloader.reload());
+			assertEquals("Maus", french.tr("mouse"));
+		}
+		finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+	public void testReloadFailure() throws Exception
+	{
+		reloader.reload();
+		new File(directory, "Reload_de.properties").delete();
+		assertEquals(0, reloader.reload());
+		assertEquals(1, reloader.getFailureCount());
+		assertNotNull(reloader.getLastFailure());
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals(0, reloader.reload());
+		assertEquals(1, reloader.getFailureCount());
+	}
+
+	public void testStart() throws Exception
+	{
+		reloader.reload();
+		reloader.start(10);
+		assertTrue(reloader.isRunning());
+		write("Reload_de.properties", "house=Haus\nmouse=Maus\n");
+		for (int i = 0; i < 500 && reloader.getReloadCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals("Maus", i18n.tr("mouse"));
+		reloader.stop();
+		assertFalse(reloader.isRunning());
+	}
+
+	public void testCompiledBundlesAreIgnored()
+	{
+		I18n compiled = new I18n(I18nTest.BASENAME, Locale.GERMAN, getClass().getClassLoader());
+		I18nManager.getInstance().add(compiled);
+		try {
+			ResourceBundle bundle = compiled.getResources();
+			assertEquals(0, reloader.reload());
+			assertSame(bundle, compiled.getResources());
+		}
+		finally {
+			I18nManager.getInstance().remove(compiled);
+		}
+	}
+
+}
@@ -0,0 +1,226 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+import junit.framework.TestCase;
+
+public class CatalogSourceLoaderTest extends TestCase {
+
+	private static final long TIMEOUT = 10000;
+
+	private File directory;
+
+	private TestSource source;
+
+	private CatalogSourceLoader loader;
+
+	protected void setUp() throws Exception
+	{
+		directory = File.createTempFile("catalogs", "");
+		directory.delete();
+		directory.mkdir();
+		source = new TestSource();
+		source.put("house", "Haus");
+		source.put(OverlayResourceBundle.getKey("noun", "chat"), "Unterhaltung");
+		source.put("File", new String[] { "Datei", "{0} Dateien" });
+	}
+
+	protected void tearDown() throws Exception
+	{
+		if (loader != null) {
+			loader.stop();
+		}
+		File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		directory.delete();
+	}
+
+	public void testGetBundle() throws Exception
+	{
+		loader = new CatalogSourceLoader(source, null, Long.MAX_VALUE);
+		ResourceBundle bundle = loader.getBundle("app", Locale.GERMAN);
+		assertEquals(Locale.GERMAN, bundle.getLocale());
+		assertEquals("Haus", bundle.getString("house"));
+		assertSame(bundle, loader.getBundle("app", Locale.GERMAN));
+		assertEquals(1, loader.getFetchCount());
+	}
+
+	public void testGetI18n() throws Exception
+	{
+		loader = new CatalogSourceLoader(source, null, Long.MAX_VALUE);
+		I18n i18n = I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT);
+		assertSame(i18n, I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT));
+		assertNotSame(i18n, I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.NO_CACHE));
+		assertEquals(Locale.GERMAN, i18n.getLocale());
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals("mouse", i18n.tr("mouse"));
+		assertEquals("Unterhaltung", i18n.trc("noun", "chat"));
+		assertEquals("Datei", i18n.trn("File", "{0} Files", 1));
+		assertEquals("2 Dateien", i18n.trn("File", "{0} Files", 2, new Integer(2)));
+		assertEquals("{0} Folders", i18n.trn("Folder", "{0} Folders", 2));
+	}
+
+	public void testMissingCatalog() throws Exception
+	{
+		loader = new CatalogSourceLoader(source, null, Long.MAX_VALUE);
+		try {
+			loader.getBundle("other", Locale.GERMAN);
+			fail("Expected MissingResourceException");
+		}
+		catch (MissingResourceException e) {
+		}
+
+		source.failure = new IOException("unavailable");
+		try {
+			I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT);
+			fail("Expected MissingResourceException");
+		}
+		catch (MissingResourceException e) {
+			assertSame(source.failure, e.getCause());
+		}
+		assertEquals(1, loader.getFailureCount());
+	}
+
+	public void testDiskCache() throws Exception
+	{
+		loader = new CatalogSourceLoader(source, directory, Long.MAX_VALUE);
+		assertEquals("Haus", loader.getBundle("app", Locale.GERMAN).getString("house"));
+		assertEquals(1, directory.listFiles().length);
+
+		source.failure = new IOException("unavailable");
+		loader = new CatalogSourceLoader(source, directory, Long.MAX_VALUE);
+		I18n i18n = I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT);
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals("Unterhaltung", i18n.trc("noun", "chat"));
+		assertEquals("{0} Dateien", i18n.trn("File", "{0} Files", 2));
+		assertEquals(0, loader.getFetchCount());
+	}
+
+	public void testStaleWhileRevalidate() throws Exception
+	{
+		loader = new CatalogSourceLoader(source, directory, 0);
+		I18n i18n = I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT);
+		assertTrue(loader.await(TIMEOUT));
+		long generation = i18n.getGeneration();
+
+		source.put("house", "Villa");
+		synchronized (source) {
+			// the stale catalog is served while the source is blocked
+			assertSame(i18n, I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT));
+			assertEquals("Haus", i18n.tr("house"));
+		}
+		assertTrue(loader.await(TIMEOUT));
+		assertEquals("Villa", i18n.tr("house"));
+		assertTrue(i18n.getGeneration() > generation);
+
+		// the disk cache has been updated
+		loader = new CatalogSourceLoader(source, directory, Long.MAX_VALUE);
+		assertEquals("Villa", loader.getBundle("app", Locale.GERMAN).getString("house"));
+	}
+
+	public void testRevalidationFailure() throws Exception
+	{
+		loader = new CatalogSourceLoader(source, null, 0);
+		I18n i18n = I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT);
+		assertTrue(loader.await(TIMEOUT));
+		source.failure = new IOException("unavailable");
+		I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT);
+		assertTrue(loader.await(TIMEOUT));
+		assertEquals("Haus", i18n.tr("house"));
+		assertSame(source.failure, loader.getLastFailure());
+	}
+
+	public void testFallback() throws Exception
+	{
+		loader = new CatalogSourceLoader(source, null, Long.MAX_VALUE);
+		I18n i18n;
+		synchronized (source) {
+			i18n = I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.FALLBACK);
+			assertEquals(Locale.GERMAN, i18n.getLocale());
+			assertEquals("house", i18n.tr("house"));
+			assertEquals("{0} Files", i18n.trn("File", "{0} Files", 2));
+		}
+		assertTrue(loader.await(TIMEOUT));
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals(1, loader.getFetchCount());
+	}
+
+	public void testFallbackDiskCache() throws Exception
+	{
+		loader = new CatalogSourceLoader(source, directory, Long.MAX_VALUE);
+		loader.getBundle("app", Locale.GERMAN);
+
+		loader = new CatalogSourceLoader(source, directory, Long.MAX_VALUE);
+		I18n i18n = I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.FALLBACK);
+		assertTrue(loader.await(TIMEOUT));
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals(0, loader.getFetchCount());
+	}
+
+	public void testEvictUnused() throws Exception
+	{
+		loader = new CatalogSourceLoader(source, null, Long.MAX_VALUE);
+		I18n i18n = I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT);
+		ResourceBundle bundle = loader.getBundle("app", Locale.FRENCH);
+		for (int i = 0; i < CatalogSourceLoader.MAXIMUM_UNUSED_CATALOGS; i++) {
+			loader.getBundle("app", new Locale("x" + i));
+		}
+		int fetchCount = loader.getFetchCount();
+		// still in use
+		assertSame(i18n, I18nFactory.getI18n(loader, "app", Locale.GERMAN, I18nFactory.DEFAULT));
+		// discarded and fetched again
+		assertNotSame(bundle, loader.getBundle("app", Locale.FRENCH));
+		assertEquals(fetchCount + 1, loader.getFetchCount());
+	}
+
+	/**
+	 * Serves a single catalog named "app". Fetches block while a thread
+	 * holds the lock of the source.
+	 */
+	private static class TestSource implements CatalogSource {
+
+		private final Map translations = new HashMap();
+
+		volatile IOException failure;
+
+		public synchronized void put(String key, Object value)
+		{
+			translations.put(key, value);
+		}
+
+		public synchronized Map fetch(String baseName, Locale locale) throws IOException
+		{
+			if (failure != null) {
+				throw failure;
+			}
+			return "app".equals(baseName) ? new HashMap(translations) : null;
+		}
+
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class CompactResourceBundleTest extends TestCase {
+
+	private Map translations;
+
+	protected void setUp() throws Exception
+	{
+		translations = new HashMap();
+		translations.put("house", "Haus");
+		translations.put("Completion", "Erg\u00e4nzung");
+		translations.put("\u00e4", "\u4e2d\u6587");
+		translations.put("smile \ud83d\ude00", "\ud83d\ude00 \ud800");
+		translations.put("empty", "");
+		translations.put(OverlayResourceBundle.getKey("noun", "chat"), "Chat");
+		translations.put("File", new String[] { "Datei", "{0} Dateien" });
+	}
+
+	public void testLookup()
+	{
+		assertLookup(new CompactResourceBundle(translations, Locale.GERMAN));
+	}
+
+	public void testLookupDirect()
+	{
+		CompactResourceBundle bundle = new CompactResourceBundle(translations, Locale.GERMAN, true, 0);
+		assertTrue(bundle.isDirect());
+		assertLookup(bundle);
+	}
+
+	private void assertLookup(CompactResourceBundle bundle)
+	{
+		assertEquals(translations.size(), bundle.size());
+		assertEquals(Locale.GERMAN, bundle.getLocale());
+		for (int i = 0; i < 2; i++) {
+			assertEquals("Haus", bundle.getString("house"));
+			assertEquals("Erg\u00e4nzung", bundle.getString("Completion"));
+			assertEquals("\u4e2d\u6587", bundle.getString("\u00e4"));
+			assertEquals("\ud83d\ude00 \ud800", bundle.getString("smile \ud83d\ude00"));
+			assertEquals("", bundle.getString("empty"));
+			assertEquals("Datei", bundle.getString("File"));
+			assertNull(bundle.lookup("mouse"));
+			assertNull(bundle.lookup("hous"));
+			assertNull(bundle.lookup("houses"));
+		}
+		String[] forms = (String[])bundle.lookup("File");
+		assertEquals("{0} Dateien", forms[1]);
+
+		Set keys = new HashSet();
+		for (Enumeration e = bundle.getKeys(); e.hasMoreElements();) {
+			keys.add(e.nextElement());
+		}
+		assertEquals(translations.keySet(), keys);
+	}
+
+	public void testI18n()
+	{
+		I18n i18n = new I18n(new CompactResourceBundle(translations, Locale.GERMAN));
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals("mouse", i18n.tr("mouse"));
+		assertEquals("Chat", i18n.trc("noun", "chat"));
+		assertEquals("Datei", i18n.trn("File", "{0} Files", 1));
+		assertEquals("2 Dateien", i18n.trn("File", "{0} Files", 2, new Integer(2)));
+		assertEquals("{0} Folders", i18n.trn("Folder", "{0} Folders", 2));
+		try {
+			i18n.getResources().getString("mouse");
+			fail("Expected MissingResourceException");
+		}
+		catch (MissingResourceException e) {
+		}
+	}
+
+	public void testPluralForms()
+	{
+		translations.put("", "Plural-Forms: nplurals=3; plural=(n==1 ? 0 : n%10>=2 && n%10<=4"
+				+ " && (n%100<10 || n%100>=20) ? 1 : 2);\n");
+		translations.put("File", new String[] { "plik", "pliki", "plik\u00f3w" });
+		I18n i18n = new I18n(new CompactResourceBundle(translations, new Locale("pl")));
+		assertEquals("plik", i18n.trn("File", "Files", 1));
+		assertEquals("pliki", i18n.trn("File", "Files", 3));
+		assertEquals("plik\u00f3w", i18n.trn("File", "Files", 5));
+	}
+
+	public void testLargeCatalog()
+	{
+		Map translations = new HashMap();
+		for (int i = 0; i < 10000; i++) {
+			translations.put("message " + i, "Nachricht " + i);
+		}
+		CompactResourceBundle bundle = new CompactResourceBundle(translations, Locale.GERMAN, false, 16);
+		for (int i = 0; i < 10000; i++) {
+			assertEquals("Nachricht " + i, bundle.getString("message " + i));
+		}
+		assertNull(bundle.lookup("message 10000"));
+	}
+
+	public void testInvalidTranslation()
+	{
+		translations.put("house", new Integer(1));
+		try {
+			new CompactResourceBundle(translations, Locale.GERMAN);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testCompact()
+	{
+		ResourceBundle bundle = ResourceBundle.getBundle(I18nTest.BASENAME, Locale.GERMAN);
+		CompactResourceBundle compacted = CompactResourceBundle.compact(bundle, false);
+		assertNotNull(compacted);
+		assertSame(compacted, CompactResourceBundle.compact(compacted, false));
+		I18n i18n = new I18n(bundle);
+		I18n compactI18n = new I18n(compacted);
+		assertEquals(i18n.tr("house"), compactI18n.tr("house"));
+		assertEquals(i18n.trc("noun", "chat"), compactI18n.trc("noun", "chat"));
+		for (int n = 0; n < 3; n++) {
+			assertEquals(i18n.trn("File", "{0} Files", n), compactI18n.trn("File", "{0} Files", n));
+		}
+	}
+
+	public void testFactory()
+	{
+		I18n i18n = I18nFactory.getI18n(getClass(), "Messages", Locale.GERMAN, I18nFactory.COMPACT
+				| I18nFactory.NO_CACHE);
+		assertTrue(i18n.getResources() instanceof CompactResourceBundle);
+		assertEquals("Haus", i18n.tr("house"));
+		i18n.setLocale(Locale.ENGLISH);
+		assertTrue(i18n.getResources() instanceof CompactResourceBundle);
+		assertEquals("house", i18n.tr("house"));
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Collections;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+public class FormatCacheTest extends TestCase {
+
+	private FormatCache cache;
+
+	protected void setUp() throws Exception
+	{
+		cache = new FormatCache(2);
+	}
+
+	public void testFormat()
+	{
+		Object[] args = new Object[] { "a", "b" };
+		assertEquals("b a", cache.format(Locale.ENGLISH, "key", "{1} {0}", args));
+		assertEquals("b a", cache.format(Locale.ENGLISH, "key", "{1} {0}", args));
+		assertEquals(1, cache.size());
+	}
+
+	public void testMaximumSize()
+	{
+		cache.format(Locale.ENGLISH, "1", "1 {0}", new Object[] { "a" });
+		cache.format(Locale.ENGLISH, "2", "2 {0}", new Object[] { "a" });
+		cache.format(Locale.ENGLISH, "3", "3 {0}", new Object[] { "a" });
+		assertTrue(cache.size() <= 2);
+		assertEquals("3 a", cache.format(Locale.ENGLISH, "3", "3 {0}", new Object[] { "a" }));
+	}
+
+	public void testEvictUnused()
+	{
+		cache = new FormatCache(4);
+		for (int i = 0; i < 4; i++) {
+			cache.format(Locale.ENGLISH, "" + i, i + " {0}", new Object[] { "a" });
+		}
+		// mark as used
+		cache.format(Locale.ENGLISH, "0", "0 {0}", new Object[] { "a" });
+		cache.format(Locale.ENGLISH, "4", "4 {0}", new Object[] { "a" });
+		assertEquals(2, cache.size());
+		cache.setMaximumSize(1);
+		assertEquals(1, cache.getMaximumSize());
+	}
+
+	public void testInvalidMaximumSize()
+	{
+		try {
+			cache.setMaximumSize(0);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testConcurrentFormat() throws Exception
+	{
+		final FormatCache cache = new FormatCache();
+		final boolean[] failed = new boolean[1];
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final String value = "v" + i;
+			threads[i] = new Thread() {
+				public void run()
+				{
+					for (int j = 0; j < 10000; j++) {
+						if (!("<" + value + ">").equals(cache.format(Locale.ENGLISH, "key", "<{0}>", new Object[] { value }))) {
+							failed[0] = true;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertFalse(failed[0]);
+		assertEquals(1, cache.size());
+	}
+
+	public void testLocale()
+	{
+		Object[] args = new Object[] { new Double(1.5) };
+		assertEquals("1.5", cache.format(Locale.ENGLISH, "key", "{0}", args));
+		assertEquals("1,5", cache.format(Locale.GERMAN, "key", "{0}", args));
+		assertEquals(1, cache.size());
+	}
+
+	public void testInvalidate()
+	{
+		cache.format(Locale.ENGLISH, "1", "1 {0}", new Object[] { "a" });
+		cache.format(Locale.ENGLISH, "2", "2 {0}", new Object[] { "a" });
+		cache.invalidate(Collections.singleton("1"));
+		assertEquals(1, cache.size());
+	}
+
+}
@@ -0,0 +1,289 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import junit.framework.TestCase;
+
+/**
+ * Verifies that translations that are found in the bundle do not allocate
+ * more memory than necessary. Plain lookups must not allocate at all. The
+ * other methods are compared to a baseline that performs the work they
+ * can not avoid, e.g. building the key of a context lookup, measured in
+ * the same virtual machine, so the limits do not depend on the version of
+ * the class library.
+ * <p>
+ * The allocated bytes are determined through
+ * <code>com.sun.management.ThreadMXBean</code>. The tests pass without
+ * checking anything on virtual machines that do not provide it.
+ */
+public class I18nAllocationTest extends TestCase {
+
+	private static final int ITERATIONS = 20000;
+
+	private static final int ROUNDS = 5;
+
+	/**
+	 * The allocation a method may exceed its baseline by in percent, which
+	 * covers e.g. whether the compiler eliminates a temporary buffer.
+	 */
+	private static final int TOLERANCE = 25;
+
+	/**
+	 * The maximum allocation of formatting with a cached format in percent
+	 * of <code>MessageFormat.format()</code>, which parses the pattern on
+	 * every call. Measured about 75% on HotSpot 1.8 and 17.
+	 */
+	private static final int FORMAT_PERCENT = 90;
+
+	private Object threadBean;
+
+	private Method getThreadAllocatedBytes;
+
+	private I18n i18n;
+
+	private I18n gettextI18n;
+
+	private Object result;
+
+	protected void setUp() throws Exception
+	{
+		try {
+			Class clazz = Class.forName("com.sun.management.ThreadMXBean");
+			Object bean = ManagementFactory.getThreadMXBean();
+			if (clazz.isInstance(bean)) {
+				Method isSupported = clazz.getMethod("isThreadAllocatedMemorySupported", new Class[0]);
+				Method isEnabled = clazz.getMethod("isThreadAllocatedMemoryEnabled", new Class[0]);
+				if (((Boolean)isSupported.invoke(bean, new Object[0])).booleanValue()
+						&& ((Boolean)isEnabled.invoke(bean, new Object[0])).booleanValue()) {
+					threadBean = bean;
+					getThreadAllocatedBytes = clazz.getMethod("getThreadAllocatedBytes", new Class[] { Long.TYPE });
+				}
+			}
+		}
+		catch (ClassNotFoundException e) {
+			// not supported
+		}
+
+		i18n = new I18n("org.xnap.commons.i18n.testpackage.TestMessages", Locale.GERMAN, getClass().getClassLoader());
+		gettextI18n = new I18n(I18nTest.BASENAME, Locale.GERMAN, getClass().getClassLoader());
+	}
+
+	private long getAllocatedBytes() throws Exception
+	{
+		Long bytes = (Long)getThreadAllocatedBytes.invoke(threadBean, new Object[] { new Long(Thread.currentThread()
+				.getId()) });
+		return bytes.longValue();
+	}
+
+	/**
+	 * Runs <code>runnable</code> until it has been compiled and returns the
+	 * average number of bytes allocated by an invocation. The minimum of
+	 * several rounds is returned, since the first rounds may still run
+	 * code that has not been fully optimized.
+	 */
+	private long measure(Runnable runnable) throws Exception
+	{
+		for (int i = 0; i < ITERATIONS; i++) {
+			runnable.run();
+		}
+		long minimum = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = getAllocatedBytes();
+			for (int i = 0; i < ITERATIONS; i++) {
+				runnable.run();
+			}
+			minimum = Math.min(minimum, (getAllocatedBytes() - start) / ITERATIONS);
+		}
+		return minimum;
+	}
+
+	private void assertAllocation(long maximum, Runnable runnable) throws Exception
+	{
+		if (threadBean == null) {
+			return;
+		}
+		long bytes = measure(runnable);
+		assertTrue("Expected at most " + maximum + " bytes per invocation, got " + bytes, bytes <= maximum);
+	}
+
+	/**
+	 * Verifies that <code>runnable</code> allocates at most
+	 * <code>percent</code> percent of the bytes allocated by
+	 * <code>baseline</code>.
+	 */
+	private void assertAllocation(Runnable baseline, int percent, Runnable runnable) throws Exception
+	{
+		if (threadBean == null) {
+			return;
+		}
+		long maximum = measure(baseline) * percent / 100;
+		long bytes = measure(runnable);
+		assertTrue("Expected at most " + maximum + " bytes per invocation, got " + bytes, bytes <= maximum);
+	}
+
+	/**
+	 * Returns a baseline that looks up and invokes the plural handling
+	 * methods of <code>bundle</code> the way {@link I18n#trn(String, String,
+	 * long)} does.
+	 */
+	private Runnable createPluralBaseline(final ResourceBundle bundle, final String key, final long n)
+	{
+		return new Runnable() {
+			public void run()
+			{
+				try {
+					Class clazz = bundle.getClass();
+					clazz.getMethod("handleGetObject", new Class[] { String.class });
+					clazz.getMethod("getParent", new Class[0]);
+					Method lookup = clazz.getMethod("lookup", new Class[] { String.class });
+					Method pluralEval = clazz.getMethod("pluralEval", new Class[] { Long.TYPE });
+					result = lookup.invoke(bundle, new Object[] { key });
+					result = pluralEval.invoke(bundle, new Object[] { new Long(n) });
+				}
+				catch (Exception e) {
+					result = e;
+				}
+			}
+		};
+	}
+
+	private Runnable createFormatBaseline(final String pattern, final Object[] objects)
+	{
+		return new Runnable() {
+			public void run()
+			{
+				result = MessageFormat.format(pattern, objects);
+			}
+		};
+	}
+
+	public void testTr() throws Exception
+	{
+		assertEquals("Wert", i18n.tr("value"));
+		assertAllocation(0, new Runnable() {
+			public void run()
+			{
+				result = i18n.tr("value");
+			}
+		});
+	}
+
+	public void testGetI18nClass() throws Exception
+	{
+		final Class clazz = org.xnap.commons.i18n.testpackage.MockResourceBundle.class;
+		final I18n cached = I18nFactory.getI18n(clazz, Locale.GERMAN);
+		assertAllocation(0, new Runnable() {
+			public void run()
+			{
+				result = I18nFactory.getI18n(clazz, Locale.GERMAN);
+			}
+		});
+		assertSame(cached, result);
+	}
+
+	public void testTrGettext() throws Exception
+	{
+		assertEquals("Haus", gettextI18n.tr("house"));
+		assertAllocation(0, new Runnable() {
+			public void run()
+			{
+				result = gettextI18n.tr("house");
+			}
+		});
+	}
+
+	public void testTrFormat() throws Exception
+	{
+		final Integer one = new Integer(1);
+		assertEquals("Haus Nr. 1", gettextI18n.tr("House Nr. {0} ", one));
+		Runnable cached = new Runnable() {
+			public void run()
+			{
+				result = gettextI18n.tr("House Nr. {0} ", one);
+			}
+		};
+		// the format cache is used
+		assertAllocation(createFormatBaseline("Haus Nr. {0}", new Object[] { one }), FORMAT_PERCENT, cached);
+	}
+
+	public void testTrc() throws Exception
+	{
+		assertEquals("Chat", gettextI18n.trc("noun", "chat"));
+		final String context = "noun";
+		Runnable key = new Runnable() {
+			public void run()
+			{
+				result = new StringBuffer(context).append(I18n.CONTEXT_GLUE).append("chat").toString();
+			}
+		};
+		assertAllocation(key, 100 + TOLERANCE, new Runnable() {
+			public void run()
+			{
+				result = gettextI18n.trc("noun", "chat");
+			}
+		});
+	}
+
+	public void testTrn() throws Exception
+	{
+		assertEquals("{0} Dateien", gettextI18n.trn("File", "{0} Files", 2));
+		assertAllocation(createPluralBaseline(gettextI18n.getResources(), "File", 2), 100 + TOLERANCE,
+				new Runnable() {
+					public void run()
+					{
+						result = gettextI18n.trn("File", "{0} Files", 2);
+					}
+				});
+	}
+
+	public void testTrnProperties() throws Exception
+	{
+		assertEquals("Wert", i18n.trn("value", "values", 2));
+		assertAllocation(createPluralBaseline(i18n.getResources(), "value", 2), 100 + TOLERANCE, new Runnable() {
+			public void run()
+			{
+				result = i18n.trn("value", "values", 2);
+			}
+		});
+	}
+
+	public void testTrnFormat() throws Exception
+	{
+		final Integer two = new Integer(2);
+		assertEquals("2 Dateien", gettextI18n.trn("File", "{0} Files", 2, two));
+		Runnable cached = new Runnable() {
+			public void run()
+			{
+				result = gettextI18n.trn("File", "{0} Files", 2, two);
+			}
+		};
+		if (threadBean == null) {
+			return;
+		}
+		long plural = measure(createPluralBaseline(gettextI18n.getResources(), "File", 2));
+		long format = measure(createFormatBaseline("{0} Dateien", new Object[] { two }));
+		assertAllocation(plural * (100 + TOLERANCE) / 100 + format * FORMAT_PERCENT / 100, cached);
+	}
+
+}
@@ -19,6 +19,10 @@
  */
 package org.xnap.commons.i18n;
 
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Locale;
 
 import junit.framework.TestCase;
@@ -45,6 +49,78 @@ public class I18nCacheTest extends TestCase {
 		assertSame(i18n, cache.get("foo", Locale.ENGLISH));
 	}
 
+	public void testGetByClassLoader()
+	{
+		I18nCache cache = new I18nCache();
+		ClassLoader loader = new URLClassLoader(new URL[0]);
+		I18n i18n = new I18n(new MockResourceBundle());
+		i18n.setLocale(Locale.ENGLISH);
+		cache.put(loader, "foo", i18n);
+		assertSame(i18n, cache.get(loader, "foo", Locale.ENGLISH));
+		assertNull(cache.get(getClass().getClassLoader(), "foo", Locale.ENGLISH));
+		assertNull(cache.get("foo", Locale.ENGLISH));
+		assertEquals(1, cache.size(loader));
+		assertEquals(0, cache.size(null));
+	}
+
+	public void testClassLoaderCollected() throws Exception
+	{
+		I18nCache cache = new I18nCache();
+		Reference reference = putForTemporaryLoader(cache);
+		for (int i = 0; i < 20 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull("class loader was not collected", reference.get());
+		assertEquals(0, cache.getPartitionCount());
+	}
+
+	/**
+	 * Caches an object that has been loaded through a new class loader and
+	 * returns a reference to the loader, which is not referenced otherwise.
+	 */
+	private Reference putForTemporaryLoader(I18nCache cache) throws Exception
+	{
+		String name = "org/xnap/commons/i18n/testpackage/TestMessages_de.properties";
+		String url = getClass().getClassLoader().getResource(name).toString();
+		ClassLoader loader = new URLClassLoader(new URL[] { new URL(url.substring(0, url.length() - name.length())) },
+				null);
+		I18n i18n = new I18n("org.xnap.commons.i18n.testpackage.TestMessages", Locale.GERMAN, loader);
+		assertEquals("Wert", i18n.tr("value"));
+		cache.put(loader, "org.xnap.commons.i18n.testpackage.TestMessages", i18n);
+		assertEquals(1, cache.getPartitionCount());
+		assertFalse(I18nCache.isSystemLoader(loader));
+		assertTrue(I18nCache.isSystemLoader(ClassLoader.getSystemClassLoader()));
+		assertTrue(I18nCache.isSystemLoader(null));
+		return new WeakReference(loader);
+	}
+
+	public void testEviction()
+	{
+		I18nCache cache = new I18nCache(2);
+		ClassLoader loader = getClass().getClassLoader();
+		I18n foo = new I18n(new MockResourceBundle());
+		foo.setLocale(Locale.ENGLISH);
+		I18n bar = new I18n(new MockResourceBundle());
+		bar.setLocale(Locale.ENGLISH);
+		I18n baz = new I18n(new MockResourceBundle());
+		baz.setLocale(Locale.ENGLISH);
+		cache.put(loader, "foo", foo);
+		cache.put(loader, "bar", bar);
+		// access foo so bar becomes the least recently used entry
+		assertSame(foo, cache.get(loader, "foo", Locale.ENGLISH));
+		cache.put(loader, "baz", baz);
+		assertEquals(2, cache.size(loader));
+		assertSame(foo, cache.get(loader, "foo", Locale.ENGLISH));
+		assertNull(cache.get(loader, "bar", Locale.ENGLISH));
+		assertSame(baz, cache.get(loader, "baz", Locale.ENGLISH));
+		try {
+			cache.setMaximumSize(0);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException expected) {}
+	}
+
 	public void testClear()
 	{
 		I18nCache cache = new I18nCache();
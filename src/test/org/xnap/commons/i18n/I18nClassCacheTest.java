@@ -0,0 +1,192 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+import org.xnap.commons.i18n.testpackage.MockResourceBundle;
+
+public class I18nClassCacheTest extends TestCase {
+
+	private I18nClassCache cache;
+
+	private I18n i18n;
+
+	protected void setUp() throws Exception
+	{
+		cache = new I18nClassCache();
+		i18n = new I18n(new EmptyResourceBundle(Locale.GERMAN));
+	}
+
+	protected void tearDown() throws Exception
+	{
+		I18nFactory.clearCache();
+	}
+
+	public void testGetPut()
+	{
+		assertNull(cache.get(String.class, null, Locale.GERMAN, 0));
+		cache.put(String.class, null, 0, i18n);
+		assertSame(i18n, cache.get(String.class, null, Locale.GERMAN, 0));
+		assertNull(cache.get(String.class, null, Locale.FRENCH, 0));
+		assertNull(cache.get(String.class, "Messages", Locale.GERMAN, 0));
+		assertNull(cache.get(String.class, null, Locale.GERMAN, I18nFactory.FALLBACK));
+		assertNull(cache.get(Integer.class, null, Locale.GERMAN, 0));
+		assertEquals(1, cache.size());
+	}
+
+	public void testBundleName()
+	{
+		cache.put(String.class, "Messages", 0, i18n);
+		assertSame(i18n, cache.get(String.class, new String("Messages"), Locale.GERMAN, 0));
+		assertNull(cache.get(String.class, null, Locale.GERMAN, 0));
+	}
+
+	public void testLocaleChanged()
+	{
+		cache.put(String.class, null, 0, i18n);
+		i18n.setLocale(Locale.FRENCH);
+		assertNull(cache.get(String.class, null, Locale.GERMAN, 0));
+		assertSame(i18n, cache.get(String.class, null, Locale.FRENCH, 0));
+	}
+
+	public void testReplace()
+	{
+		cache.put(String.class, null, 0, i18n);
+		I18n other = new I18n(new EmptyResourceBundle(Locale.GERMAN));
+		cache.put(String.class, null, 0, other);
+		assertSame(other, cache.get(String.class, null, Locale.GERMAN, 0));
+	}
+
+	public void testGrow()
+	{
+		for (int i = 0; i < 100; i++) {
+			cache.put(String.class, "Messages" + i, 0, i18n);
+			cache.put(Integer.class, "Messages" + i, 0, i18n);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertSame(i18n, cache.get(String.class, "Messages" + i, Locale.GERMAN, 0));
+			assertSame(i18n, cache.get(Integer.class, "Messages" + i, Locale.GERMAN, 0));
+		}
+		assertEquals(200, cache.size());
+	}
+
+	public void testPutAfterObjectCollected() throws Exception
+	{
+		Class clazz = loadTemporaryClass();
+		Reference reference = put(clazz);
+		for (int i = 0; i < 20 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull("object was not collected", reference.get());
+
+		// the collected entry is dropped
+		cache.put(clazz, null, 0, i18n);
+		assertSame(i18n, cache.get(clazz, null, Locale.GERMAN, 0));
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 * Caches an object for <code>clazz</code> that is not referenced
+	 * otherwise and returns a reference to it.
+	 */
+	private Reference put(Class clazz)
+	{
+		I18n i18n = new I18n(new EmptyResourceBundle(Locale.GERMAN));
+		cache.put(clazz, null, 0, i18n);
+		return new WeakReference(i18n);
+	}
+
+	public void testClear()
+	{
+		cache.put(String.class, null, 0, i18n);
+		cache.clear();
+		assertNull(cache.get(String.class, null, Locale.GERMAN, 0));
+		assertEquals(0, cache.size());
+	}
+
+	public void testClassCollected() throws Exception
+	{
+		Reference reference = putForTemporaryClass();
+		for (int i = 0; i < 20 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull("class was not collected", reference.get());
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Caches an object for a class that has been loaded through a new class
+	 * loader and returns a reference to the class, which is not referenced
+	 * otherwise.
+	 */
+	private Reference putForTemporaryClass() throws Exception
+	{
+		Class clazz = loadTemporaryClass();
+		I18n i18n = new I18n("org.xnap.commons.i18n.testpackage.TestMessages", Locale.GERMAN, clazz.getClassLoader());
+		cache.put(clazz, null, 0, i18n);
+		assertSame(i18n, cache.get(clazz, null, Locale.GERMAN, 0));
+		assertEquals(1, cache.size());
+		return new WeakReference(clazz);
+	}
+
+	/**
+	 * Loads a class through a new class loader, so it is only weakly cached.
+	 */
+	private Class loadTemporaryClass() throws Exception
+	{
+		String name = MockResourceBundle.class.getName().replace('.', '/') + ".class";
+		String url = getClass().getClassLoader().getResource(name).toString();
+		ClassLoader loader = new URLClassLoader(new URL[] { new URL(url.substring(0, url.length() - name.length())) },
+				null);
+		Class clazz = loader.loadClass(MockResourceBundle.class.getName());
+		assertNotSame(MockResourceBundle.class, clazz);
+		return clazz;
+	}
+
+	public void testFactory()
+	{
+		I18nFactory.clearCache();
+		I18n i18n = I18nFactory.getI18n(MockResourceBundle.class, Locale.GERMAN);
+		assertSame(i18n, I18nFactory.getI18n(MockResourceBundle.class, Locale.GERMAN));
+
+		i18n = I18nFactory.getI18n(MockResourceBundle.class, "TestMessages", Locale.FRENCH);
+		assertEquals("valeur", i18n.tr("value"));
+		assertSame(i18n, I18nFactory.getI18n(MockResourceBundle.class, "TestMessages", Locale.FRENCH));
+	}
+
+	public void testFactoryDefaultLocaleChanged()
+	{
+		I18nFactory.clearCache();
+		I18n i18n = I18nFactory.getI18n(MockResourceBundle.class, Locale.GERMAN);
+		i18n.setLocale(Locale.FRENCH);
+		I18n german = I18nFactory.getI18n(MockResourceBundle.class, Locale.GERMAN);
+		assertEquals(Locale.GERMAN, german.getLocale());
+		assertEquals("Wert", german.tr("value"));
+		assertSame(i18n, I18nFactory.getI18n(MockResourceBundle.class, Locale.FRENCH));
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+
+/**
+ * Translates concurrently while the locale and the resources are changed
+ * and the cache of the factory is cleared. Readers verify that every
+ * translation belongs to one of the two locales in use and that the
+ * generation of a bundle never decreases, writers verify that no
+ * generation is assigned twice. The test fails if a thread does not
+ * terminate, e.g. due to a deadlock.
+ * <p>
+ * The duration can be set in milliseconds through the system property
+ * <code>i18n.stress.duration</code>.
+ */
+public class I18nConcurrencyTest extends TestCase {
+
+	private static final long DURATION = Long.getLong("i18n.stress.duration", 2000).longValue();
+
+	private static final long JOIN_TIMEOUT = 10000;
+
+	private I18n i18n;
+
+	private Locale savedDefault;
+
+	private volatile boolean stopped;
+
+	private List errors;
+
+	/**
+	 * The generations assigned by the writers, must be distinct.
+	 */
+	private List generations;
+
+	protected void setUp() throws Exception
+	{
+		savedDefault = Locale.getDefault();
+		errors = Collections.synchronizedList(new ArrayList());
+		generations = Collections.synchronizedList(new ArrayList());
+		// objects left by other tests may not have a bundle for every locale
+		I18nFactory.clearCache();
+		I18n[] i18ns = I18nManager.getInstance().getI18ns();
+		for (int i = 0; i < i18ns.length; i++) {
+			I18nManager.getInstance().remove(i18ns[i]);
+		}
+		i18n = new I18n(I18nTest.BASENAME, Locale.GERMAN, getClass().getClassLoader());
+		I18nManager.getInstance().add(i18n);
+	}
+
+	protected void tearDown() throws Exception
+	{
+		I18nManager.getInstance().remove(i18n);
+		I18nFactory.clearCache();
+		Locale.setDefault(savedDefault);
+	}
+
+	public void testConcurrentLocaleChanges() throws Exception
+	{
+		List threads = new ArrayList();
+		for (int i = 0; i < 2; i++) {
+			threads.add(new Worker("tr-" + i) {
+				void work()
+				{
+					assertOneOf(i18n.tr("house"), "house", "Haus");
+				}
+			});
+			threads.add(new Worker("trc-" + i) {
+				void work()
+				{
+					assertOneOf(i18n.trc("noun", "chat"), "chat", "Chat");
+				}
+			});
+			threads.add(new Worker("trn-" + i) {
+				void work()
+				{
+					assertOneOf(i18n.trn("File", "{0} Files", 2), "{0} Files", "{0} Dateien");
+					assertOneOf(i18n.trn("File", "{0} Files", 1, "x"), "File", "Datei");
+				}
+			});
+		}
+		threads.add(new Worker("factory") {
+			void work()
+			{
+				I18n i18n = I18nFactory.getI18n(I18nConcurrencyTest.class, "Messages", Locale.GERMAN);
+				assertOneOf(i18n.tr("house"), "house", "Haus");
+			}
+		});
+		threads.add(new Worker("setLocale") {
+			private int count;
+
+			void work()
+			{
+				synchronized (i18n) {
+					i18n.setLocale((count++ % 2 == 0) ? Locale.ENGLISH : Locale.GERMAN);
+					generations.add(new Long(i18n.getGeneration()));
+				}
+			}
+		});
+		threads.add(new Worker("setResources") {
+			private int count;
+
+			void work()
+			{
+				synchronized (i18n) {
+					i18n.setResources(I18nTest.BASENAME, (count++ % 2 == 0) ? Locale.GERMAN : Locale.ENGLISH,
+							I18nConcurrencyTest.class.getClassLoader());
+					generations.add(new Long(i18n.getGeneration()));
+				}
+			}
+		});
+		threads.add(new Worker("setDefaultLocale") {
+			private int count;
+
+			void work()
+			{
+				I18nManager.getInstance().setDefaultLocale((count++ % 2 == 0) ? Locale.ENGLISH : Locale.GERMAN);
+			}
+		});
+		threads.add(new Worker("clearCache") {
+			void work()
+			{
+				I18nFactory.clearCache();
+				Thread.yield();
+			}
+		});
+
+		for (int i = 0; i < threads.size(); i++) {
+			((Thread)threads.get(i)).start();
+		}
+		Thread.sleep(DURATION);
+		stopped = true;
+		for (int i = 0; i < threads.size(); i++) {
+			Thread thread = (Thread)threads.get(i);
+			thread.join(JOIN_TIMEOUT);
+			if (thread.isAlive()) {
+				long[] deadlocked = ManagementFactory.getThreadMXBean().findMonitorDeadlockedThreads();
+				fail("Thread " + thread.getName() + " did not terminate"
+						+ ((deadlocked != null) ? ", " + deadlocked.length + " threads are deadlocked" : ""));
+			}
+		}
+
+		if (!errors.isEmpty()) {
+			Throwable error = (Throwable)errors.get(0);
+			AssertionFailedError failure = new AssertionFailedError(errors.size() + " errors, first: " + error);
+			failure.initCause(error);
+			throw failure;
+		}
+		Set distinct = new HashSet(generations);
+		assertEquals("generations assigned twice", generations.size(), distinct.size());
+
+		// the instance is consistent once the writers have terminated
+		i18n.setLocale(Locale.GERMAN);
+		assertEquals(Locale.GERMAN, i18n.getLocale());
+		assertEquals(Locale.GERMAN, i18n.getResources().getLocale());
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals("Chat", i18n.trc("noun", "chat"));
+	}
+
+	private static void assertOneOf(String actual, String expected1, String expected2)
+	{
+		if (!expected1.equals(actual) && !expected2.equals(actual)) {
+			fail("Expected \"" + expected1 + "\" or \"" + expected2 + "\", got \"" + actual + "\"");
+		}
+	}
+
+	/**
+	 * Invokes {@link #work()} until the test is stopped and records any
+	 * exception.
+	 */
+	private abstract class Worker extends Thread {
+
+		private long lastGeneration;
+
+		public Worker(String name)
+		{
+			super(name);
+			setDaemon(true);
+		}
+
+		public void run()
+		{
+			try {
+				while (!stopped) {
+					long generation = i18n.getGeneration();
+					assertTrue("generation decreased", generation >= lastGeneration);
+					lastGeneration = generation;
+					work();
+				}
+			}
+			catch (Throwable e) {
+				errors.add(e);
+			}
+		}
+
+		abstract void work();
+
+	}
+
+}
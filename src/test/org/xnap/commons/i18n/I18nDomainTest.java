@@ -0,0 +1,88 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+public class I18nDomainTest extends TestCase {
+
+	private static final String BASENAME = "org.xnap.commons.i18n.testpackage.TestMessages";
+
+	private Locale savedDefault;
+
+	private I18n i18n;
+
+	protected void setUp() throws Exception
+	{
+		savedDefault = Locale.getDefault();
+		Locale.setDefault(Locale.ITALIAN);
+		i18n = new I18n(BASENAME, Locale.GERMAN, getClass().getClassLoader());
+	}
+
+	protected void tearDown() throws Exception
+	{
+		Locale.setDefault(savedDefault);
+	}
+
+	public void testDtr()
+	{
+		assertEquals("Wert", i18n.tr("value"));
+		assertEquals("Benutzer", i18n.dtr("admin", "users"));
+		assertEquals("value", i18n.dtr("admin", "value"));
+		assertEquals("\u00f6ffnen", i18n.dtrc("admin", "menu", "open"));
+		assertEquals("close", i18n.dtrc("admin", "menu", "close"));
+		assertEquals("{0} files", i18n.dtrn("admin", "{0} file", "{0} files", 2));
+		assertEquals("1 Benutzer", i18n.dtr("admin", "{0} users", new Object[] { "1" }));
+	}
+
+	public void testLazyLoading()
+	{
+		I18n admin = i18n.getDomain("admin");
+		assertSame(admin, i18n.getDomain("admin"));
+		assertEquals("org.xnap.commons.i18n.testpackage.admin", admin.getBaseName());
+		assertEquals(Locale.GERMAN, admin.getLocale());
+
+		i18n.setLocale(Locale.FRENCH);
+		assertNotSame(admin, i18n.getDomain("admin"));
+		assertEquals("utilisateurs", i18n.dtr("admin", "users"));
+		assertEquals("valeur", i18n.tr("value"));
+	}
+
+	public void testMissingDomain()
+	{
+		assertEquals("users", i18n.dtr("missing", "users"));
+		assertEquals("{0} users", i18n.dtrn("missing", "user", "{0} users", 3));
+	}
+
+	public void testDirectBundle()
+	{
+		I18n direct = new I18n(i18n.getResources());
+		assertEquals("users", direct.dtr("admin", "users"));
+	}
+
+	public void testSourceCodeLocale()
+	{
+		i18n.getDomain("admin");
+		i18n.setSourceCodeLocale(Locale.GERMAN);
+		assertEquals(Locale.GERMAN, i18n.getDomain("admin").getResources().getLocale());
+		assertEquals("open", i18n.dtrc("admin", "menu", "open"));
+	}
+
+}
@@ -19,6 +19,10 @@
  */
 package org.xnap.commons.i18n;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import junit.framework.TestCase;
 import org.xnap.commons.i18n.testpackage.MockResourceBundle;
@@ -28,6 +32,8 @@ import org.xnap.commons.i18n.testpackage.MockResourceBundle;
  */
 public class I18nManagerTest extends TestCase 
 {
+	private static final String BASENAME = "org.xnap.commons.i18n.testpackage.TestMessages";
+
 	private Locale savedDefault;
 	
 	protected void setUp() throws Exception 
@@ -40,6 +46,7 @@ public class I18nManagerTest extends TestCase
 	
 	protected void tearDown() throws Exception 
 	{
+		I18nManager.getInstance().setLocaleChangeDispatcher(null);
 		Locale.setDefault(savedDefault);
 	}
 	
@@ -53,6 +60,16 @@ public class I18nManagerTest extends TestCase
 		assertEquals(Locale.GERMAN, i18n.getResources().getLocale());
 	}
 	
+	public void testGeneration()
+	{
+		I18n i18n = I18nFactory.getI18n(MockResourceBundle.class);
+		long generation = I18nManager.getInstance().getGeneration();
+		assertTrue(i18n.getGeneration() <= generation);
+		I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+		assertTrue(I18nManager.getInstance().getGeneration() > generation);
+		assertTrue(i18n.getGeneration() > generation);
+	}
+	
 	public void testListener()
 	{
 		MyLocaleChangeListener listener = new MyLocaleChangeListener();
@@ -82,13 +99,282 @@ public class I18nManagerTest extends TestCase
 		assertEquals(listenerCount, I18nManager.getInstance().localeChangeListeners.size());
 	}
 
+	public void testRemoveWeakListener()
+	{
+		int listenerCount = I18nManager.getInstance().localeChangeListeners.size();
+		MyLocaleChangeListener listener = new MyLocaleChangeListener();
+		I18nManager.getInstance().addWeakLocaleChangeListener(listener);
+		I18nManager.getInstance().removeLocaleChangeListener(listener);
+		assertEquals(listenerCount, I18nManager.getInstance().localeChangeListeners.size());
+		I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+		assertEquals(0, listener.count);
+	}
+
+	public void testDispatcher()
+	{
+		QueueDispatcher dispatcher = new QueueDispatcher();
+		I18nManager.getInstance().setLocaleChangeDispatcher(dispatcher);
+		assertSame(dispatcher, I18nManager.getInstance().getLocaleChangeDispatcher());
+		MyLocaleChangeListener listener = new MyLocaleChangeListener();
+		I18nManager.getInstance().addLocaleChangeListener(listener);
+		try {
+			I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			I18nManager.getInstance().setDefaultLocale(Locale.ITALIAN);
+			I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+			assertEquals(0, listener.count);
+			assertEquals(1, dispatcher.tasks.size());
+
+			dispatcher.runAll();
+			assertEquals(1, listener.count);
+			assertEquals(Locale.GERMAN, listener.newLocale);
+
+			I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			assertEquals(1, dispatcher.tasks.size());
+			dispatcher.runAll();
+			assertEquals(2, listener.count);
+			assertEquals(Locale.FRENCH, listener.newLocale);
+		}
+		finally {
+			I18nManager.getInstance().removeLocaleChangeListener(listener);
+		}
+	}
+
+	public void testDispatcherFails()
+	{
+		I18nManager.getInstance().setLocaleChangeDispatcher(new LocaleChangeDispatcher() {
+			public void execute(Runnable task)
+			{
+				throw new IllegalStateException();
+			}
+		});
+		try {
+			I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+		}
+		I18nManager.getInstance().setLocaleChangeDispatcher(null);
+		MyLocaleChangeListener listener = new MyLocaleChangeListener();
+		I18nManager.getInstance().addLocaleChangeListener(listener);
+		try {
+			I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+			assertEquals(1, listener.count);
+
+			// the rejected change is not delivered later
+			QueueDispatcher dispatcher = new QueueDispatcher();
+			I18nManager.getInstance().setLocaleChangeDispatcher(dispatcher);
+			I18nManager.getInstance().setDefaultLocale(Locale.ITALIAN);
+			dispatcher.runAll();
+			assertEquals(2, listener.count);
+			assertEquals(Locale.GERMAN, listener.event.getOldLocale());
+		}
+		finally {
+			I18nManager.getInstance().removeLocaleChangeListener(listener);
+		}
+	}
+
+	public void testChangeFromListener()
+	{
+		final List locales = new ArrayList();
+		LocaleChangeListener listener = new LocaleChangeListener() {
+			public void localeChanged(LocaleChangeEvent event)
+			{
+				locales.add(event.getNewLocale());
+				if (Locale.FRENCH.equals(event.getNewLocale())) {
+					I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+					// delivered before the nested call returns
+					assertEquals(2, locales.size());
+				}
+			}
+		};
+		I18nManager.getInstance().addLocaleChangeListener(listener);
+		try {
+			I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			assertEquals(Arrays.asList(new Locale[] { Locale.FRENCH, Locale.GERMAN }), locales);
+		}
+		finally {
+			I18nManager.getInstance().removeLocaleChangeListener(listener);
+		}
+	}
+
+	public void testConcurrentChange() throws Exception
+	{
+		final Object lock = new Object();
+		final boolean[] blocked = new boolean[1];
+		final List locales = Collections.synchronizedList(new ArrayList());
+		LocaleChangeListener listener = new LocaleChangeListener() {
+			public void localeChanged(LocaleChangeEvent event)
+			{
+				locales.add(event.getNewLocale());
+				if (Locale.FRENCH.equals(event.getNewLocale())) {
+					synchronized (lock) {
+						blocked[0] = true;
+						lock.notifyAll();
+						while (blocked[0]) {
+							try {
+								lock.wait();
+							}
+							catch (InterruptedException e) {
+								return;
+							}
+						}
+					}
+				}
+			}
+		};
+		I18nManager.getInstance().addLocaleChangeListener(listener);
+		Thread thread = new Thread() {
+			public void run()
+			{
+				I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			}
+		};
+		try {
+			thread.start();
+			synchronized (lock) {
+				while (!blocked[0]) {
+					lock.wait();
+				}
+			}
+			// not delayed by the delivery in progress on the other thread
+			I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+			assertTrue(locales.contains(Locale.GERMAN));
+		}
+		finally {
+			synchronized (lock) {
+				blocked[0] = false;
+				lock.notifyAll();
+			}
+			thread.join();
+			I18nManager.getInstance().removeLocaleChangeListener(listener);
+		}
+	}
+
+	public void testEventDetails()
+	{
+		I18n i18n = I18nFactory.getI18n(MockResourceBundle.class);
+		I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+		MyLocaleChangeListener listener = new MyLocaleChangeListener();
+		I18nManager.getInstance().addLocaleChangeListener(listener);
+		try {
+			I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			LocaleChangeEvent event = listener.event;
+			assertEquals(Locale.GERMAN, event.getOldLocale());
+			assertEquals(Locale.FRENCH, event.getNewLocale());
+			assertTrue(event.getI18ns().contains(i18n));
+			assertTrue(event.getBaseNames().contains(BASENAME));
+			assertTrue(event.isAffected(BASENAME));
+			assertFalse(event.isAffected("org.xnap.commons.i18n.Other"));
+			assertEquals(i18n.getGeneration(), event.getGeneration());
+
+			// objects in the same locale still load their bundle again
+			long generation = i18n.getGeneration();
+			I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			assertTrue(i18n.getGeneration() > generation);
+			assertEquals(2, listener.count);
+			assertFalse(listener.event.getI18ns().contains(i18n));
+			assertFalse(listener.event.isAffected(BASENAME));
+		}
+		finally {
+			I18nManager.getInstance().removeLocaleChangeListener(listener);
+		}
+	}
+
+	public void testUnknownAffected()
+	{
+		LocaleChangeEvent event = new LocaleChangeEvent(this, Locale.FRENCH);
+		assertNull(event.getOldLocale());
+		assertNull(event.getBaseNames());
+		assertNull(event.getI18ns());
+		assertTrue(event.isAffected(BASENAME));
+	}
+
+	public void testBaseNameListener()
+	{
+		I18nFactory.getI18n(MockResourceBundle.class);
+		I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+		MyLocaleChangeListener listener = new MyLocaleChangeListener();
+		MyLocaleChangeListener other = new MyLocaleChangeListener();
+		int listenerCount = I18nManager.getInstance().localeChangeListeners.size();
+		I18nManager.getInstance().addLocaleChangeListener(BASENAME, listener);
+		I18nManager.getInstance().addWeakLocaleChangeListener("org.xnap.commons.i18n.Other", other);
+		try {
+			I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			assertEquals(1, listener.count);
+			assertEquals(0, other.count);
+			I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			assertEquals(1, listener.count);
+		}
+		finally {
+			I18nManager.getInstance().removeLocaleChangeListener(listener);
+			I18nManager.getInstance().removeLocaleChangeListener(other);
+		}
+		assertEquals(listenerCount, I18nManager.getInstance().localeChangeListeners.size());
+	}
+
+	public void testCoalescedEventDetails()
+	{
+		I18n i18n = I18nFactory.getI18n(MockResourceBundle.class);
+		I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+		QueueDispatcher dispatcher = new QueueDispatcher();
+		I18nManager.getInstance().setLocaleChangeDispatcher(dispatcher);
+		MyLocaleChangeListener listener = new MyLocaleChangeListener();
+		I18nManager.getInstance().addLocaleChangeListener(listener);
+		try {
+			I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+			I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+			dispatcher.runAll();
+			assertEquals(1, listener.count);
+			assertEquals(Locale.GERMAN, listener.event.getOldLocale());
+			assertEquals(Locale.GERMAN, listener.event.getNewLocale());
+			assertTrue(listener.event.getI18ns().contains(i18n));
+			assertTrue(listener.event.isAffected(BASENAME));
+		}
+		finally {
+			I18nManager.getInstance().removeLocaleChangeListener(listener);
+		}
+	}
+
+	public void testWeakI18n()
+	{
+		I18n i18n = new I18n(new MockResourceBundle());
+		I18nManager.getInstance().add(i18n);
+		assertTrue(Arrays.asList(I18nManager.getInstance().getI18ns()).contains(i18n));
+		I18nManager.getInstance().remove(i18n);
+		assertFalse(Arrays.asList(I18nManager.getInstance().getI18ns()).contains(i18n));
+		
+		System.gc();
+		I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+		I18nManager.getInstance().add(new I18n(new MockResourceBundle()));
+		int count = I18nManager.getInstance().i18ns.size();
+		System.gc();
+		I18nManager.getInstance().setDefaultLocale(Locale.FRENCH);
+		assertEquals(count - 1, I18nManager.getInstance().i18ns.size());
+	}
+
+	private static class QueueDispatcher implements LocaleChangeDispatcher {
+		List tasks = new ArrayList();
+		public void execute(Runnable task)
+		{
+			tasks.add(task);
+		}
+		void runAll()
+		{
+			while (!tasks.isEmpty()) {
+				((Runnable)tasks.remove(0)).run();
+			}
+		}
+	}
+
 	private class MyLocaleChangeListener implements LocaleChangeListener {
 		int count;
 		Locale newLocale;
+		LocaleChangeEvent event;
 		public void localeChanged(LocaleChangeEvent event)
 		{
 			count++;
 			newLocale = event.getNewLocale();
+			this.event = event;
 		}			
 	};
 
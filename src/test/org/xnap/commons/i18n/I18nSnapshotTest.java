@@ -0,0 +1,125 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+public class I18nSnapshotTest extends TestCase {
+
+	private File directory;
+
+	private File snapshot;
+
+	private ClassLoader loader;
+
+	protected void setUp() throws Exception
+	{
+		I18nFactory.clearCache();
+		directory = File.createTempFile("snapshot", "");
+		directory.delete();
+		directory.mkdir();
+		write("Snapshot.properties", "house=house\nmouse=mouse\n");
+		write("Snapshot_de.properties", "house=Haus\n");
+		snapshot = new File(directory, "i18n.snapshot");
+		loader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, null);
+	}
+
+	protected void tearDown() throws Exception
+	{
+		I18nFactory.clearCache();
+		File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		directory.delete();
+	}
+
+	private void write(String filename, String content) throws IOException
+	{
+		File file = new File(directory, filename);
+		long lastModified = file.lastModified();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("ISO-8859-1"));
+		}
+		finally {
+			out.close();
+		}
+		if (lastModified != 0) {
+			file.setLastModified(lastModified + 2000);
+		}
+	}
+
+	public void testSaveAndLoad() throws Exception
+	{
+		I18nFactory.getI18n("", "Snapshot", loader, Locale.GERMAN, I18nFactory.DEFAULT);
+		assertEquals(1, I18nFactory.saveSnapshot(snapshot, loader));
+		I18nFactory.clearCache();
+
+		assertEquals(1, I18nFactory.loadSnapshot(snapshot, loader));
+		I18n i18n = I18nFactory.getI18n("", "Snapshot", loader, Locale.GERMAN, I18nFactory.DEFAULT);
+		assertTrue(i18n.getResources() instanceof CatalogResourceBundle);
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals("mouse", i18n.tr("mouse"));
+		assertEquals("Snapshot", i18n.getBaseName());
+		assertEquals(Locale.GERMAN, i18n.getLocale());
+		assertTrue(Arrays.asList(I18nManager.getInstance().getI18ns()).contains(i18n));
+
+		// changing the locale loads the bundle
+		i18n.setLocale(Locale.ENGLISH);
+		assertEquals("house", i18n.tr("house"));
+		assertFalse(i18n.getResources() instanceof CatalogResourceBundle);
+	}
+
+	public void testModifiedBundle() throws Exception
+	{
+		I18nFactory.getI18n("", "Snapshot", loader, Locale.GERMAN, I18nFactory.DEFAULT);
+		assertEquals(1, I18nFactory.saveSnapshot(snapshot, loader));
+		I18nFactory.clearCache();
+
+		write("Snapshot_de.properties", "house=Villa\n");
+		assertEquals(0, I18nFactory.loadSnapshot(snapshot, loader));
+	}
+
+	public void testGettextBundle() throws Exception
+	{
+		ClassLoader loader = getClass().getClassLoader();
+		I18nFactory.getI18n("", I18nTest.BASENAME, loader, Locale.GERMAN, I18nFactory.DEFAULT);
+		assertTrue(I18nFactory.saveSnapshot(snapshot, loader) >= 1);
+		I18nFactory.clearCache();
+
+		assertTrue(I18nFactory.loadSnapshot(snapshot, loader) >= 1);
+		I18n i18n = new I18n(I18nTest.BASENAME, Locale.GERMAN, loader);
+		I18n restored = I18nFactory.getI18n("", I18nTest.BASENAME, loader, Locale.GERMAN, I18nFactory.DEFAULT);
+		assertTrue(restored.getResources() instanceof CatalogResourceBundle);
+		assertEquals(i18n.tr("house"), restored.tr("house"));
+		assertEquals(i18n.trc("noun", "chat"), restored.trc("noun", "chat"));
+		for (int n = 0; n < 3; n++) {
+			assertEquals(i18n.trn("File", "{0} Files", n), restored.trn("File", "{0} Files", n));
+		}
+	}
+
+}
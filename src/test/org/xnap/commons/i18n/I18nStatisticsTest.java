@@ -0,0 +1,153 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.MissingResourceException;
+
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import org.xnap.commons.i18n.testpackage.MockResourceBundle;
+
+public class I18nStatisticsTest extends TestCase {
+
+	private static final String BASENAME = "org.xnap.commons.i18n.testpackage.TestMessages";
+
+	private I18nStatistics statistics;
+
+	protected void setUp() throws Exception
+	{
+		I18nFactory.clearCache();
+		statistics = new I18nStatistics();
+		I18nManager.getInstance().setMonitor(statistics);
+	}
+
+	protected void tearDown() throws Exception
+	{
+		I18nManager.getInstance().setMonitor(null);
+	}
+
+	public void testTranslated()
+	{
+		I18n i18n = new I18n(BASENAME, Locale.GERMAN, getClass().getClassLoader());
+		assertEquals("Wert", i18n.tr("value"));
+		assertEquals("house", i18n.tr("house"));
+		assertEquals("house", i18n.trc("context", "house"));
+		assertEquals("houses", i18n.trn("house", "houses", 2));
+		assertEquals(1, statistics.getHitCount());
+		assertEquals(3, statistics.getMissCount());
+		assertEquals(0.25, statistics.getHitRatio(), 0.001);
+		assertEquals(1, statistics.getHitCount(BASENAME, Locale.GERMAN));
+		assertEquals(3, statistics.getMissCount(BASENAME, Locale.GERMAN));
+		assertEquals(0, statistics.getHitCount(BASENAME, Locale.FRENCH));
+
+		I18n mock = new I18n(new MockResourceBundle());
+		mock.tr("value");
+		assertEquals(1, statistics.getHitCount(MockResourceBundle.class.getName(), null));
+	}
+
+	public void testLookupTime()
+	{
+		I18n i18n = new I18n(BASENAME, Locale.GERMAN, getClass().getClassLoader());
+		i18n.tr("value");
+		i18n.trc("context", "house");
+		long[] histogram = statistics.getLookupTimeHistogram();
+		long total = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			total += histogram[i];
+		}
+		assertEquals(2, total);
+		assertTrue(statistics.getLookupTime() >= 0);
+	}
+
+	public void testFormatted()
+	{
+		I18n i18n = new I18n(BASENAME, Locale.GERMAN, getClass().getClassLoader());
+		assertEquals("value 1", i18n.tr("value {0}", "1"));
+		assertEquals("2 files", i18n.trn("file", "{0} files", 2, "2"));
+		assertEquals(2, statistics.getFormatCount());
+	}
+
+	public void testBundleLoaded()
+	{
+		new I18n(BASENAME, Locale.GERMAN, getClass().getClassLoader());
+		try {
+			new I18n("NonExistant", Locale.GERMAN, getClass().getClassLoader());
+			fail("Expected MissingResourceException");
+		}
+		catch (MissingResourceException expected) {}
+		assertEquals(1, statistics.getBundleLoadCount());
+		assertEquals(1, statistics.getBundleLoadFailureCount());
+		long[] histogram = statistics.getBundleLoadTimeHistogram();
+		long total = 0;
+		for (int i = 0; i < histogram.length; i++) {
+			total += histogram[i];
+		}
+		assertEquals(2, total);
+		assertEquals(2, statistics.getCatalogStatistics().length);
+	}
+
+	public void testResolved()
+	{
+		I18nFactory.getI18n(MockResourceBundle.class, "TestMessages", Locale.GERMAN);
+		assertEquals(1, statistics.getResolutionCount());
+		assertEquals(1, statistics.getResolutionProbeCount());
+		I18nFactory.getI18n(MockResourceBundle.class, "TestMessages", Locale.GERMAN);
+		assertEquals(2, statistics.getResolutionCount());
+		assertEquals(1, statistics.getResolutionProbeCount());
+	}
+
+	public void testPropertiesRead()
+	{
+		I18nFactory.getI18n(MockResourceBundle.class, Locale.GERMAN);
+		assertEquals(1, statistics.getPropertiesReadCount());
+	}
+
+	public void testDefaultLocaleChanged()
+	{
+		I18nManager.getInstance().setDefaultLocale(Locale.GERMAN);
+		assertEquals(1, statistics.getLocaleChangeCount());
+	}
+
+	public void testReset()
+	{
+		I18n i18n = new I18n(BASENAME, Locale.GERMAN, getClass().getClassLoader());
+		i18n.tr("value");
+		statistics.reset();
+		assertEquals(0, statistics.getHitCount());
+		assertEquals(0, statistics.getBundleLoadCount());
+		assertEquals(0, statistics.getCatalogStatistics().length);
+	}
+
+	public void testRegisterMBean() throws Exception
+	{
+		statistics.registerMBean(I18nStatistics.OBJECT_NAME);
+		try {
+			ObjectName name = new ObjectName(I18nStatistics.OBJECT_NAME);
+			new I18n(BASENAME, Locale.GERMAN, getClass().getClassLoader()).tr("value");
+			assertEquals(new Long(1), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HitCount"));
+		}
+		finally {
+			statistics.unregisterMBean(I18nStatistics.OBJECT_NAME);
+		}
+	}
+
+}
@@ -74,6 +74,19 @@ public class I18nTest extends TestCase {
 		assertEquals("Foo foo bar", i18nEN.tr("Foo {0} {1}", "foo", "bar"));
 	}
 
+	public void testTrFormatsForLocale()
+	{
+		Locale saved = Locale.getDefault();
+		Locale.setDefault(Locale.ENGLISH);
+		try {
+			assertEquals("1,5", i18nDE.tr("{0}", new Double(1.5)));
+			assertEquals("1.5", i18nEN.tr("{0}", new Double(1.5)));
+		}
+		finally {
+			Locale.setDefault(saved);
+		}
+	}
+
 	public void testTr3()
 	{
 		assertEquals("Foo bar baz foo", i18nEN.tr("Foo {1} {2} {0}", "foo", "bar", "baz"));
@@ -107,6 +120,24 @@ public class I18nTest extends TestCase {
 		assertTrue(i18n.setLocale(Locale.FRENCH));
 	}
 
+	public void testGeneration()
+	{
+		I18n i18n = new I18n(new MockResourceBundle());
+		long generation = i18n.getGeneration();
+		assertTrue(generation <= I18nManager.getInstance().getGeneration());
+		assertFalse(i18n.setLocale(Locale.FRENCH));
+		assertEquals(generation, i18n.getGeneration());
+		i18n.setResources(new MockResourceBundle());
+		assertTrue(i18n.getGeneration() > generation);
+		generation = i18n.getGeneration();
+		i18n.setResources(MockResourceBundle.class.getName(), Locale.GERMAN, MockResourceBundle.class.getClassLoader());
+		assertTrue(i18n.getGeneration() > generation);
+		generation = i18n.getGeneration();
+		assertTrue(i18n.setLocale(Locale.FRENCH));
+		assertTrue(i18n.getGeneration() > generation);
+		assertEquals(i18n.getGeneration(), I18nManager.getInstance().getGeneration());
+	}
+
 	public void testSetResources()
 	{
 		try {
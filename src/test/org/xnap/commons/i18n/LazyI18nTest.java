@@ -0,0 +1,142 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+import org.xnap.commons.i18n.testpackage.MockResourceBundle;
+
+public class LazyI18nTest extends TestCase {
+
+	private static final String BASENAME = "org.xnap.commons.i18n.testpackage.TestMessages";
+
+	private I18nStatistics statistics;
+
+	protected void setUp() throws Exception
+	{
+		I18nFactory.clearCache();
+		statistics = new I18nStatistics();
+		I18nManager.getInstance().setMonitor(statistics);
+	}
+
+	protected void tearDown() throws Exception
+	{
+		I18nManager.getInstance().setMonitor(null);
+		I18nFactory.clearCache();
+	}
+
+	public void testLoadOnFirstUse()
+	{
+		I18n i18n = I18nFactory.getI18n("", BASENAME, null, Locale.GERMAN, I18nFactory.LAZY);
+		assertEquals(0, statistics.getBundleLoadCount());
+		assertEquals(0, statistics.getResolutionCount());
+		assertEquals(Locale.GERMAN, i18n.getLocale());
+		assertNull(i18n.getBaseName());
+
+		assertEquals("Wert", i18n.tr("value"));
+		assertEquals(1, statistics.getResolutionCount());
+		assertEquals(BASENAME, i18n.getBaseName());
+		assertFalse(i18n.getResources() instanceof LazyResourceBundle);
+
+		long loads = statistics.getBundleLoadCount();
+		assertEquals("Wert", i18n.tr("value"));
+		assertEquals(loads, statistics.getBundleLoadCount());
+		assertEquals(1, statistics.getResolutionCount());
+	}
+
+	public void testPropertiesReadOnFirstUse()
+	{
+		I18n i18n = I18nFactory.getI18n(MockResourceBundle.class, Locale.GERMAN, I18nFactory.READ_PROPERTIES
+				| I18nFactory.LAZY);
+		assertEquals(0, statistics.getPropertiesReadCount());
+		assertEquals("Wert", i18n.tr("value"));
+		assertEquals(1, statistics.getPropertiesReadCount());
+	}
+
+	public void testCached()
+	{
+		I18n i18n = I18nFactory.getI18n("", BASENAME, null, Locale.GERMAN, I18nFactory.LAZY);
+		assertSame(i18n, I18nFactory.getI18n("", BASENAME, null, Locale.GERMAN, I18nFactory.LAZY));
+		assertNotSame(i18n, I18nFactory.getI18n("", BASENAME, null, Locale.FRENCH, I18nFactory.LAZY));
+		assertNotSame(i18n, I18nFactory.getI18n("", BASENAME, null, Locale.GERMAN, I18nFactory.LAZY
+				| I18nFactory.NO_CACHE));
+	}
+
+	public void testPluralAndContext()
+	{
+		I18n i18n = I18nFactory.getI18n("", BASENAME, null, Locale.GERMAN, I18nFactory.LAZY);
+		assertEquals("files", i18n.trn("file", "files", 2));
+		i18n = I18nFactory.getI18n("", "org.xnap.commons.i18n.testpackage.admin", null, Locale.GERMAN,
+				I18nFactory.LAZY);
+		assertEquals("\u00f6ffnen", i18n.trc("menu", "open"));
+	}
+
+	public void testSetLocaleBeforeFirstUse()
+	{
+		I18n i18n = I18nFactory.getI18n("", BASENAME, null, Locale.GERMAN, I18nFactory.LAZY
+				| I18nFactory.NO_CACHE);
+		assertFalse(i18n.setLocale(Locale.FRENCH));
+		assertEquals(Locale.FRENCH, i18n.getLocale());
+		assertEquals("valeur", i18n.tr("value"));
+		assertTrue(i18n.setLocale(Locale.GERMAN));
+		assertEquals("Wert", i18n.tr("value"));
+	}
+
+	public void testMissingBundle()
+	{
+		I18n i18n = I18nFactory.getI18n("", "org.xnap.commons.i18n.DoesNotExist", null, Locale.GERMAN,
+				I18nFactory.LAZY);
+		assertEquals("value", i18n.tr("value"));
+		assertEquals("values", i18n.trn("value", "values", 2));
+	}
+
+	public void testDomain()
+	{
+		I18n i18n = I18nFactory.getI18n("", BASENAME, null, Locale.GERMAN, I18nFactory.LAZY);
+		assertEquals("Benutzer", i18n.dtr("admin", "users"));
+	}
+
+	public void testConcurrentFirstUse() throws Exception
+	{
+		final I18n i18n = I18nFactory.getI18n("", BASENAME, null, Locale.GERMAN, I18nFactory.LAZY);
+		final String[] results = new String[8];
+		Thread[] threads = new Thread[results.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run()
+				{
+					results[index] = i18n.tr("value");
+				}
+			};
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		for (int i = 0; i < results.length; i++) {
+			assertEquals("Wert", results[i]);
+		}
+		assertEquals(1, statistics.getResolutionCount());
+	}
+
+}
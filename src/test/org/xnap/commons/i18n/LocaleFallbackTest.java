@@ -0,0 +1,141 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+import junit.framework.TestCase;
+
+public class LocaleFallbackTest extends TestCase {
+
+	private static final String BASENAME = "org.xnap.commons.i18n.testpackage.TestMessages";
+
+	private static final Locale ROOT = new Locale("");
+
+	private static final Locale PORTUGUESE = new Locale("pt");
+
+	private static final Locale BRAZIL = new Locale("pt", "BR");
+
+	private static final Locale SPANISH = new Locale("es");
+
+	private LocaleFallback fallback;
+
+	private ClassLoader loader;
+
+	private Locale savedDefault;
+
+	protected void setUp() throws Exception
+	{
+		fallback = new LocaleFallback();
+		loader = getClass().getClassLoader();
+		savedDefault = Locale.getDefault();
+	}
+
+	protected void tearDown() throws Exception
+	{
+		Locale.setDefault(savedDefault);
+		I18nFactory.setLocaleFallback(null);
+	}
+
+	public void testGetChain()
+	{
+		assertEquals(Arrays.asList(new Locale[] { new Locale("de", "AT", "x"), new Locale("de", "AT"), Locale.GERMAN,
+				ROOT }), Arrays.asList(fallback.getChain(new Locale("de", "AT", "x"))));
+
+		fallback.addFallback(PORTUGUESE, SPANISH);
+		fallback.addFallback(SPANISH, Locale.ENGLISH);
+		assertEquals(Arrays.asList(new Locale[] { BRAZIL, PORTUGUESE, SPANISH, Locale.ENGLISH, ROOT }), Arrays
+				.asList(fallback.getChain(BRAZIL)));
+		assertEquals(Arrays.asList(new Locale[] { SPANISH, Locale.ENGLISH, ROOT }), Arrays.asList(fallback
+				.getChain(SPANISH)));
+	}
+
+	public void testGetChainCycle()
+	{
+		fallback.addFallback(PORTUGUESE, SPANISH);
+		fallback.addFallback(SPANISH, PORTUGUESE);
+		fallback.addFallback(SPANISH, ROOT);
+		assertEquals(Arrays.asList(new Locale[] { BRAZIL, PORTUGUESE, SPANISH, ROOT }), Arrays.asList(fallback
+				.getChain(BRAZIL)));
+	}
+
+	public void testGetBundle()
+	{
+		fallback.addFallback(PORTUGUESE, Locale.FRENCH);
+		ResourceBundle bundle = fallback.getBundle(BASENAME, BRAZIL, loader);
+		assertEquals(Locale.FRENCH, bundle.getLocale());
+		assertEquals("valeur", bundle.getString("value"));
+		assertSame(bundle, fallback.getBundle(BASENAME, BRAZIL, loader));
+
+		// catalogs are shared between chains
+		ResourceBundle french = fallback.getBundle(BASENAME, Locale.FRENCH, loader);
+		assertSame(((CatalogResourceBundle)bundle).getEntries(), ((CatalogResourceBundle)french).getEntries());
+	}
+
+	public void testGetBundleIgnoresDefaultLocale()
+	{
+		Locale.setDefault(Locale.GERMAN);
+		ResourceBundle bundle = fallback.getBundle(BASENAME, Locale.ITALIAN, loader);
+		assertEquals(ROOT, bundle.getLocale());
+		try {
+			bundle.getString("value");
+			fail("Expected MissingResourceException");
+		}
+		catch (MissingResourceException e) {
+		}
+	}
+
+	public void testGetBundleMissing()
+	{
+		try {
+			fallback.getBundle("org.xnap.commons.i18n.NoSuchMessages", Locale.GERMAN, loader);
+			fail("Expected MissingResourceException");
+		}
+		catch (MissingResourceException e) {
+		}
+	}
+
+	public void testI18n()
+	{
+		I18n i18n = new I18n(I18nTest.BASENAME, Locale.GERMAN, loader);
+		fallback.addFallback(new Locale("rm"), Locale.GERMAN);
+		i18n.setLocaleFallback(fallback);
+		assertSame(fallback, i18n.getLocaleFallback());
+		i18n.setLocale(new Locale("rm", "CH"));
+		assertEquals(Locale.GERMAN, i18n.getResources().getLocale());
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals("Chat", i18n.trc("noun", "chat"));
+		assertEquals("2 Dateien", i18n.trn("File", "{0} Files", 2, new Integer(2)));
+		assertEquals("unknown", i18n.tr("unknown"));
+	}
+
+	public void testFactory()
+	{
+		fallback.addFallback(PORTUGUESE, Locale.FRENCH);
+		I18nFactory.setLocaleFallback(fallback);
+		I18n i18n = I18nFactory.getI18n("", BASENAME, loader, BRAZIL, I18nFactory.NO_CACHE);
+		assertSame(fallback, i18n.getLocaleFallback());
+		assertEquals("valeur", i18n.tr("value"));
+		i18n.setLocale(Locale.GERMAN);
+		assertEquals("Wert", i18n.tr("value"));
+	}
+
+}
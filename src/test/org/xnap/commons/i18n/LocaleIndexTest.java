@@ -0,0 +1,113 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+public class LocaleIndexTest extends TestCase {
+
+	private File jar;
+
+	protected void setUp() throws Exception
+	{
+		jar = File.createTempFile("gettext-commons index", ".jar");
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		String[] names = { "a/b/Msgs.properties", "a/b/Msgs_pt_BR.properties", "a/b/Msgs_es.class",
+				"a/b/Msgs_es$1.class", "a/b/Msgs_de_CH_POSIX.properties", "a/b/Msgs_admin.properties",
+				"a/b/Msgsx_it.properties", "a/b/sub/Msgs_it.properties", "a/b/Msgs_fr.txt",
+				"a/b/Other.properties", "a/b/Other_xx_YY.properties" };
+		for (int i = 0; i < names.length; i++) {
+			out.putNextEntry(new ZipEntry(names[i]));
+			out.closeEntry();
+		}
+		out.close();
+	}
+
+	protected void tearDown() throws Exception
+	{
+		jar.delete();
+	}
+
+	public void testToLocale()
+	{
+		assertEquals(Locale.GERMAN, LocaleIndex.toLocale("de"));
+		assertEquals(Locale.GERMANY, LocaleIndex.toLocale("de_DE"));
+		assertEquals(new Locale("de", "DE", "POSIX_x"), LocaleIndex.toLocale("de_DE_POSIX_x"));
+		assertNull(LocaleIndex.toLocale("admin"));
+		assertNull(LocaleIndex.toLocale("De"));
+		assertNull(LocaleIndex.toLocale(""));
+	}
+
+	public void testScanDirectory()
+	{
+		Locale[] locales = new LocaleIndex().getAvailableLocales("org.xnap.commons.i18n.testpackage.TestMessages",
+				getClass().getClassLoader());
+		assertEquals(Arrays.asList(new Locale[] { Locale.GERMAN, Locale.FRENCH }), Arrays.asList(locales));
+	}
+
+	public void testScanJar() throws Exception
+	{
+		ClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+		LocaleIndex index = new LocaleIndex();
+		Locale[] locales = index.getAvailableLocales("a.b.Msgs", loader);
+		assertEquals(Arrays.asList(new Locale[] { new Locale("de", "CH", "POSIX"), new Locale("es"),
+				new Locale("pt", "BR") }), Arrays.asList(locales));
+
+		// cached, the result is a copy
+		locales[0] = null;
+		jar.delete();
+		locales = index.getAvailableLocales("a.b.Msgs", loader);
+		assertNotNull(locales[0]);
+		assertEquals(new Locale("pt", "BR"), locales[2]);
+	}
+
+	public void testScanJarOnce() throws Exception
+	{
+		ClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+		LocaleIndex index = new LocaleIndex();
+		assertEquals(3, index.getAvailableLocales("a.b.Msgs", loader).length);
+
+		// the listing of the jar answers later base names, probing the
+		// available locales would not find xx_YY
+		jar.delete();
+		assertEquals(Arrays.asList(new Locale[] { new Locale("xx", "YY") }), Arrays.asList(index
+				.getAvailableLocales("a.b.Other", loader)));
+	}
+
+	public void testScanMissing()
+	{
+		assertEquals(0, new LocaleIndex().getAvailableLocales("org.xnap.commons.i18n.NoSuchMessages",
+				getClass().getClassLoader()).length);
+	}
+
+	public void testFactory()
+	{
+		assertEquals(Arrays.asList(new Locale[] { Locale.GERMAN, Locale.FRENCH }), Arrays.asList(I18nFactory
+				.getAvailableLocales("org.xnap.commons.i18n.testpackage.TestMessages", getClass().getClassLoader())));
+	}
+
+}
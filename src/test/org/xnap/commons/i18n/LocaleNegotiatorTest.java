@@ -0,0 +1,123 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+public class LocaleNegotiatorTest extends TestCase {
+
+	private static final String BASENAME = "org.xnap.commons.i18n.testpackage.TestMessages";
+
+	private static final Locale AUSTRIA = new Locale("de", "AT");
+
+	private LocaleNegotiator negotiator;
+
+	protected void setUp() throws Exception
+	{
+		negotiator = new LocaleNegotiator(BASENAME, getClass().getClassLoader(), new Locale[] { Locale.FRENCH,
+				AUSTRIA, Locale.GERMAN, Locale.CANADA_FRENCH }, Locale.ENGLISH, I18nFactory.NO_CACHE, 2);
+	}
+
+	public void testFindAvailableLocales()
+	{
+		negotiator = new LocaleNegotiator(BASENAME, getClass().getClassLoader(), Locale.ENGLISH);
+		assertEquals(new HashSet(Arrays.asList(new Locale[] { Locale.GERMAN, Locale.FRENCH })), new HashSet(Arrays
+				.asList(negotiator.getAvailableLocales())));
+	}
+
+	public void testParse()
+	{
+		List ranges = LocaleNegotiator.parse("fr;q=0.5, de-AT , en;q=0, *;q=0.1, x_y, zh-Hant-TW;q=0.5, es;q=bad");
+		assertEquals(4, ranges.size());
+		assertEquals(Arrays.asList(new String[] { "de", "at" }), Arrays.asList((String[])ranges.get(0)));
+		assertEquals(Arrays.asList(new String[] { "fr" }), Arrays.asList((String[])ranges.get(1)));
+		assertEquals(Arrays.asList(new String[] { "zh", "hant", "tw" }), Arrays.asList((String[])ranges.get(2)));
+		assertEquals(Arrays.asList(new String[] { "*" }), Arrays.asList((String[])ranges.get(3)));
+	}
+
+	public void testNegotiate()
+	{
+		assertEquals(Locale.ENGLISH, negotiator.negotiate(null));
+		assertEquals(Locale.ENGLISH, negotiator.negotiate(""));
+		assertEquals(Locale.ENGLISH, negotiator.negotiate("it, es"));
+		assertEquals(Locale.GERMAN, negotiator.negotiate("de-DE, fr"));
+		assertEquals(AUSTRIA, negotiator.negotiate("de-AT-1996, fr"));
+		assertEquals(Locale.GERMAN, negotiator.negotiate("fr;q=0.8, de"));
+		assertEquals(Locale.FRENCH, negotiator.negotiate("FR-ch"));
+		assertEquals(Locale.CANADA_FRENCH, negotiator.negotiate("fr-CA"));
+		assertEquals(Locale.ENGLISH, negotiator.negotiate("it, *, de"));
+		assertEquals(Locale.ENGLISH, negotiator.negotiate("fr;q=0, de;q=0.0"));
+	}
+
+	public void testNegotiateFiltering()
+	{
+		negotiator = new LocaleNegotiator(BASENAME, getClass().getClassLoader(), new Locale[] { AUSTRIA },
+				Locale.ENGLISH, I18nFactory.NO_CACHE, 16);
+		assertEquals(AUSTRIA, negotiator.negotiate("de"));
+		assertEquals(Locale.ENGLISH, negotiator.negotiate("de-CH"));
+	}
+
+	public void testNegotiateCached()
+	{
+		String header = "de-DE,de;q=0.9";
+		Locale locale = negotiator.negotiate(header);
+		assertSame(locale, negotiator.negotiate(header));
+		negotiator.negotiate("fr");
+		negotiator.negotiate("it");
+		assertEquals(locale, negotiator.negotiate(header));
+		negotiator.clear();
+		assertEquals(locale, negotiator.negotiate(header));
+	}
+
+	public void testGetI18n()
+	{
+		I18n i18n = negotiator.getI18n("de-CH, fr;q=0.5");
+		assertEquals(Locale.GERMAN, i18n.getLocale());
+		assertEquals("Wert", i18n.tr("value"));
+		assertSame(i18n, negotiator.getI18n("de"));
+		assertEquals("valeur", negotiator.getI18n("fr-BE").tr("value"));
+	}
+
+	public void testGetI18nUnmanaged()
+	{
+		negotiator = new LocaleNegotiator(BASENAME, getClass().getClassLoader(), new Locale[] { Locale.GERMAN,
+				Locale.FRENCH }, Locale.ENGLISH, I18nFactory.DEFAULT, 16);
+		I18n i18n = negotiator.getI18n("de");
+		I18nManager.getInstance().setDefaultLocale(Locale.ENGLISH);
+		assertSame(i18n, negotiator.getI18n("de"));
+		assertEquals(Locale.GERMAN, i18n.getLocale());
+		assertEquals("Wert", i18n.tr("value"));
+		assertFalse(Arrays.asList(I18nManager.getInstance().getI18ns()).contains(i18n));
+	}
+
+	public void testInvalidCacheSize()
+	{
+		try {
+			new LocaleNegotiator(BASENAME, null, new Locale[0], Locale.ENGLISH, 0, 0);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+		}
+	}
+
+}
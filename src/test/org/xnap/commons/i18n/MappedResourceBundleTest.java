@@ -0,0 +1,299 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class MappedResourceBundleTest extends TestCase {
+
+	private static final String PO = "# German translation\n"
+		+ "msgid \"\"\n"
+		+ "msgstr \"\"\n"
+		+ "\"Content-Type: text/plain; charset=UTF-8\\n\"\n"
+		+ "\"Plural-Forms: nplurals=3; plural=n==1 ? 0 : n==2 ? 1 : 2;\\n\"\n"
+		+ "\n"
+		+ "#: Main.java:12\n"
+		+ "msgid \"house\"\n"
+		+ "msgstr \"Haus\"\n"
+		+ "\n"
+		+ "msgid \"\"\n"
+		+ "\"multi\"\n"
+		+ "\"line\"\n"
+		+ "msgstr \"mehr\\n\"\n"
+		+ "\"zeilig \\\"\\101\\\"\"\n"
+		+ "\n"
+		+ "msgctxt \"noun\"\n"
+		+ "msgid \"chat\"\n"
+		+ "msgstr \"Chat\"\n"
+		+ "msgctxt \"verb\"\n"
+		+ "msgid \"chat\"\n"
+		+ "msgstr \"plaudern\"\n"
+		+ "\n"
+		+ "msgid \"File\"\n"
+		+ "msgid_plural \"Files\"\n"
+		+ "msgstr[0] \"Datei\"\n"
+		+ "msgstr[1] \"Dateien (2)\"\n"
+		+ "msgstr[2] \"Dateien\"\n"
+		+ "\n"
+		+ "#, fuzzy\n"
+		+ "msgid \"mouse\"\n"
+		+ "msgstr \"Maus\"\n"
+		+ "\n"
+		+ "msgid \"untranslated\"\n"
+		+ "msgstr \"\"\n"
+		+ "\n"
+		+ "#~ msgid \"obsolete\"\n"
+		+ "#~ msgstr \"veraltet\"\n";
+
+	private File file;
+
+	protected void setUp() throws Exception
+	{
+		file = File.createTempFile("gettext-commons", ".catalog");
+	}
+
+	protected void tearDown() throws Exception
+	{
+		file.delete();
+	}
+
+	public void testWriteMap() throws Exception
+	{
+		Map translations = new HashMap();
+		translations.put("house", "Haus");
+		translations.put("\u00e4", "\u4e2d\u6587");
+		translations.put("same", "Haus");
+		translations.put(OverlayResourceBundle.getKey("noun", "chat"), "Chat");
+		translations.put(OverlayResourceBundle.getKey("", "chat"), "leer");
+		translations.put("File", new String[] { "Datei", "{0} Dateien" });
+		MappedCatalogWriter.write(translations, Locale.GERMANY, file);
+
+		MappedResourceBundle bundle = MappedResourceBundle.open(file);
+		assertEquals(Locale.GERMANY, bundle.getLocale());
+		assertEquals(translations.size(), bundle.size());
+		for (int i = 0; i < 2; i++) {
+			assertEquals("Haus", bundle.getString("house"));
+			assertEquals("Haus", bundle.getString("same"));
+			assertEquals("\u4e2d\u6587", bundle.getString("\u00e4"));
+			assertEquals("Chat", bundle.getString(OverlayResourceBundle.getKey("noun", "chat")));
+			assertEquals("leer", bundle.getString(OverlayResourceBundle.getKey("", "chat")));
+			assertEquals("Datei", bundle.getString("File"));
+			assertNull(bundle.lookup("chat"));
+			assertNull(bundle.lookup(OverlayResourceBundle.getKey("verb", "chat")));
+			assertNull(bundle.lookup(OverlayResourceBundle.getKey("nou", "nchat")));
+			assertNull(bundle.lookup("mouse"));
+		}
+		assertEquals("{0} Dateien", ((String[])bundle.lookup("File"))[1]);
+		assertEquals(1, bundle.pluralEval(2));
+		assertEquals(0, bundle.pluralEval(1));
+
+		Set keys = new HashSet();
+		for (Enumeration e = bundle.getKeys(); e.hasMoreElements();) {
+			keys.add(e.nextElement());
+		}
+		assertEquals(translations.keySet(), keys);
+
+		I18n i18n = new I18n(bundle);
+		assertEquals("Haus", i18n.tr("house"));
+		assertEquals("Chat", i18n.trc("noun", "chat"));
+		assertEquals("3 Dateien", i18n.trn("File", "Files", 3, new Integer(3)));
+	}
+
+	public void testWriteEmpty() throws Exception
+	{
+		MappedCatalogWriter.write(new HashMap(), Locale.ENGLISH, file);
+		MappedResourceBundle bundle = MappedResourceBundle.open(file);
+		assertEquals(0, bundle.size());
+		assertNull(bundle.lookup("house"));
+		assertFalse(bundle.getKeys().hasMoreElements());
+	}
+
+	public void testReadPo() throws Exception
+	{
+		Map translations = MappedCatalogWriter.readPo(new ByteArrayInputStream(PO.getBytes("UTF-8")));
+		assertEquals(6, translations.size());
+		assertTrue(((String)translations.get("")).indexOf("Plural-Forms") != -1);
+		assertEquals("Haus", translations.get("house"));
+		assertEquals("mehr\nzeilig \"A\"", translations.get("multiline"));
+		assertEquals("Chat", translations.get(OverlayResourceBundle.getKey("noun", "chat")));
+		assertEquals("plaudern", translations.get(OverlayResourceBundle.getKey("verb", "chat")));
+		assertEquals("Dateien (2)", ((String[])translations.get("File"))[1]);
+		assertNull(translations.get("mouse"));
+		assertNull(translations.get("untranslated"));
+		assertNull(translations.get("obsolete"));
+
+		MappedCatalogWriter.write(translations, Locale.GERMAN, file);
+		MappedResourceBundle bundle = MappedResourceBundle.open(file);
+		assertEquals(0, bundle.pluralEval(1));
+		assertEquals(1, bundle.pluralEval(2));
+		assertEquals(2, bundle.pluralEval(5));
+		I18n i18n = new I18n(bundle);
+		assertEquals("plaudern", i18n.trc("verb", "chat"));
+		assertEquals("Dateien", i18n.trn("File", "Files", 5));
+	}
+
+	public void testReadPoInvalid() throws Exception
+	{
+		try {
+			MappedCatalogWriter.readPo(new ByteArrayInputStream("msgid house\n".getBytes("UTF-8")));
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+		}
+	}
+
+	public void testReadProperties() throws Exception
+	{
+		Map translations = MappedCatalogWriter.readProperties(new ByteArrayInputStream(
+				"house=Haus\nCompletion=Erg\\u00e4nzung\n".getBytes("ISO-8859-1")));
+		MappedCatalogWriter.write(translations, Locale.GERMAN, file);
+		MappedResourceBundle bundle = MappedResourceBundle.open(file);
+		assertEquals("Erg\u00e4nzung", bundle.getString("Completion"));
+		assertEquals(0, bundle.pluralEval(1));
+		assertEquals(1, bundle.pluralEval(0));
+	}
+
+	public void testOpenInvalid() throws Exception
+	{
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[64]);
+		out.close();
+		try {
+			MappedResourceBundle.open(file);
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+		}
+	}
+
+	public void testOpenInvalidLocale() throws Exception
+	{
+		writeCorrupt();
+		writeInt(40, Integer.MAX_VALUE);
+		try {
+			MappedResourceBundle.open(file);
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+		}
+	}
+
+	public void testFullTable() throws Exception
+	{
+		writeCorrupt();
+		int tableSize = readInt(12);
+		for (int i = 0; i < tableSize; i++) {
+			writeInt(MappedResourceBundle.HEADER_SIZE + i * 4, 1);
+		}
+		MappedResourceBundle bundle = MappedResourceBundle.open(file);
+		assertNull(bundle.lookup("missing"));
+	}
+
+	public void testInvalidIndex() throws Exception
+	{
+		writeCorrupt();
+		int tableSize = readInt(12);
+		for (int i = 0; i < tableSize; i++) {
+			writeInt(MappedResourceBundle.HEADER_SIZE + i * 4, readInt(8) + 1);
+		}
+		MappedResourceBundle bundle = MappedResourceBundle.open(file);
+		assertNull(bundle.lookup("house"));
+	}
+
+	public void testInvalidOffsets() throws Exception
+	{
+		writeCorrupt();
+		int entriesOffset = readInt(20);
+		for (int i = 0; i < readInt(8); i++) {
+			int entry = entriesOffset + i * MappedResourceBundle.ENTRY_SIZE;
+			if (i % 2 == 0) {
+				writeInt(entry + 8, Integer.MAX_VALUE);
+			}
+			else {
+				writeInt(entry + 12, (int)file.length() - 1);
+				writeInt(entry + 16, 2);
+			}
+		}
+		MappedResourceBundle bundle = MappedResourceBundle.open(file);
+		assertNull(bundle.lookup("house"));
+		assertNull(bundle.lookup("File"));
+		assertNull(bundle.lookup("mouse"));
+		assertEquals("house", new I18n(bundle).tr("house"));
+		for (Enumeration e = bundle.getKeys(); e.hasMoreElements();) {
+			assertNotNull(e.nextElement());
+		}
+	}
+
+	private void writeCorrupt() throws IOException
+	{
+		Map translations = new HashMap();
+		translations.put("house", "Haus");
+		translations.put("mouse", "Maus");
+		translations.put("File", new String[] { "Datei", "Dateien" });
+		MappedCatalogWriter.write(translations, Locale.GERMAN, file);
+	}
+
+	private int readInt(int offset) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			in.seek(offset);
+			return in.readInt();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private void writeInt(int offset, int value) throws IOException
+	{
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			out.seek(offset);
+			out.writeInt(value);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	public void testReplaceWhileMapped() throws Exception
+	{
+		Map translations = new HashMap();
+		translations.put("house", "Haus");
+		MappedCatalogWriter.write(translations, Locale.GERMAN, file);
+		MappedResourceBundle bundle = MappedResourceBundle.open(file);
+		translations.put("house", "Villa");
+		MappedCatalogWriter.write(translations, Locale.GERMAN, file);
+		assertEquals("Haus", bundle.getString("house"));
+		assertEquals("Villa", MappedResourceBundle.open(file).getString("house"));
+	}
+
+}
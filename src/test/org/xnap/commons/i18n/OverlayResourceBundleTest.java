@@ -0,0 +1,144 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import junit.framework.TestCase;
+
+public class OverlayResourceBundleTest extends TestCase {
+
+	private ResourceBundle base;
+
+	private OverlayResourceBundle overlay;
+
+	private I18n i18n;
+
+	protected void setUp() throws Exception
+	{
+		base = ResourceBundle.getBundle(I18nTest.BASENAME, Locale.GERMAN, getClass().getClassLoader());
+		overlay = new OverlayResourceBundle(base);
+		i18n = new I18n(overlay);
+	}
+
+	public void testTr()
+	{
+		assertEquals("Haus", i18n.tr("house"));
+		overlay.put("house", "Villa");
+		assertEquals("Villa", i18n.tr("house"));
+		assertEquals("Maus", i18n.tr("mouse"));
+		assertEquals("missing", i18n.tr("missing"));
+		assertEquals("Haus", base.getString("house"));
+		assertEquals(1, overlay.size());
+
+		assertTrue(overlay.remove("house"));
+		assertFalse(overlay.remove("house"));
+		assertEquals("Haus", i18n.tr("house"));
+	}
+
+	public void testTrc()
+	{
+		overlay.put("noun", "chat", "Unterhaltung");
+		assertEquals("Unterhaltung", i18n.trc("noun", "chat"));
+		assertEquals("Chatten", i18n.trc("verb", "chat"));
+	}
+
+	public void testTrn()
+	{
+		assertEquals("{0} Dateien", i18n.trn("File", "{0} Files", 2));
+		overlay.putPlural("File", new String[] { "Dokument", "{0} Dokumente" });
+		assertEquals("Dokument", i18n.trn("File", "{0} Files", 1));
+		assertEquals("{0} Dokumente", i18n.trn("File", "{0} Files", 2));
+		assertEquals("Foo", i18n.trn("Foo", "{0} Bars", 1));
+		assertEquals("{0} Bars", i18n.trn("Foo", "{0} Bars", 2));
+		assertEquals("missing", i18n.trn("missing", "missings", 1));
+		assertEquals("Dokument", i18n.tr("File"));
+	}
+
+	public void testTrnc()
+	{
+		overlay.putPlural("context", "File", new String[] { "Akte", "Akten" });
+		assertEquals("Akte", i18n.trnc("context", "File", "Files", 1));
+		assertEquals("Akten", i18n.trnc("context", "File", "Files", 2));
+	}
+
+	public void testPutAll()
+	{
+		Map translations = new HashMap();
+		translations.put("house", "Villa");
+		translations.put("File", new String[] { "Dokument", "Dokumente" });
+		overlay.putAll(translations);
+		assertEquals("Villa", i18n.tr("house"));
+		assertEquals("Dokumente", i18n.trn("File", "Files", 2));
+
+		try {
+			overlay.putAll(Collections.singletonMap("mouse", new Integer(1)));
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		assertEquals("Maus", i18n.tr("mouse"));
+
+		overlay.clear();
+		assertEquals(0, overlay.size());
+		assertEquals("Haus", i18n.tr("house"));
+	}
+
+	public void testPropertiesBase()
+	{
+		ResourceBundle properties = ResourceBundle.getBundle("org.xnap.commons.i18n.testpackage.TestMessages",
+				Locale.GERMAN, getClass().getClassLoader());
+		OverlayResourceBundle overlay = new OverlayResourceBundle(properties);
+		I18n i18n = new I18n(overlay);
+		assertEquals("Wert", i18n.tr("value"));
+		overlay.putPlural("value", new String[] { "Betrag", "Betr\u00e4ge" });
+		assertEquals("Betrag", i18n.trn("value", "values", 1));
+		assertEquals("Betr\u00e4ge", i18n.trn("value", "values", 3));
+		assertEquals("Locale of the base bundle", Locale.GERMAN, overlay.getLocale());
+	}
+
+	public void testSharedBase()
+	{
+		OverlayResourceBundle other = new OverlayResourceBundle(base);
+		other.put("house", "Haus am See");
+		overlay.put("house", "Villa");
+		assertEquals("Haus am See", new I18n(other).tr("house"));
+		assertEquals("Villa", i18n.tr("house"));
+		assertSame(base, other.getBase());
+	}
+
+	public void testGetKeys()
+	{
+		overlay.put("house", "Villa");
+		overlay.put("new", "neu");
+		int count = 0;
+		for (java.util.Enumeration e = overlay.getKeys(); e.hasMoreElements(); e.nextElement()) {
+			count++;
+		}
+		int baseCount = 0;
+		for (java.util.Enumeration e = base.getKeys(); e.hasMoreElements(); e.nextElement()) {
+			baseCount++;
+		}
+		assertEquals(baseCount + 1, count);
+	}
+
+}
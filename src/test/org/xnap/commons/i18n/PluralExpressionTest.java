@@ -0,0 +1,87 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import junit.framework.TestCase;
+
+public class PluralExpressionTest extends TestCase {
+
+	public void testGermanic()
+	{
+		PluralExpression expression = PluralExpression.parse("n != 1");
+		assertEquals(1, expression.evaluate(0));
+		assertEquals(0, expression.evaluate(1));
+		assertEquals(1, expression.evaluate(2));
+		assertEquals(PluralExpression.DEFAULT.evaluate(0), expression.evaluate(0));
+		assertEquals(PluralExpression.DEFAULT.evaluate(1), expression.evaluate(1));
+	}
+
+	public void testFrench()
+	{
+		PluralExpression expression = PluralExpression.parse("n>1");
+		assertEquals(0, expression.evaluate(0));
+		assertEquals(0, expression.evaluate(1));
+		assertEquals(1, expression.evaluate(2));
+	}
+
+	public void testPolish()
+	{
+		PluralExpression expression = PluralExpression
+				.parse("(n==1 ? 0 : n%10>=2 && n%10<=4 && (n%100<10 || n%100>=20) ? 1 : 2)");
+		assertEquals(2, expression.evaluate(0));
+		assertEquals(0, expression.evaluate(1));
+		assertEquals(1, expression.evaluate(2));
+		assertEquals(2, expression.evaluate(5));
+		assertEquals(2, expression.evaluate(12));
+		assertEquals(1, expression.evaluate(22));
+		assertEquals(2, expression.evaluate(25));
+	}
+
+	public void testArithmetic()
+	{
+		assertEquals(7, PluralExpression.parse("1 + 2 * 3").evaluate(0));
+		assertEquals(9, PluralExpression.parse("(1 + 2) * 3").evaluate(0));
+		assertEquals(1, PluralExpression.parse("n - 4 / 2").evaluate(3));
+		assertEquals(0, PluralExpression.parse("n / 0").evaluate(3));
+		assertEquals(1, PluralExpression.parse("!n").evaluate(0));
+		assertEquals(0, PluralExpression.parse("!!n").evaluate(0));
+		assertEquals(2, PluralExpression.parse("n ? n ? 2 : 1 : 0").evaluate(5));
+	}
+
+	public void testInvalid()
+	{
+		String[] expressions = new String[] { "", "n +", "(n", "n n", "x", "n ? 1", "99999999999999999999" };
+		for (int i = 0; i < expressions.length; i++) {
+			try {
+				PluralExpression.parse(expressions[i]);
+				fail("Expected IllegalArgumentException for " + expressions[i]);
+			}
+			catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	public void testParseHeader()
+	{
+		PluralExpression expression = PluralExpression
+				.parseHeader("Project-Id-Version: fr\nPlural-Forms: nplurals=2; plural=n>1;\n");
+		assertEquals("n>1", expression.toString());
+		assertNull(PluralExpression.parseHeader("Project-Id-Version: de\n"));
+	}
+
+}
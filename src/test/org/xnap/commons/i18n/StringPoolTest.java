@@ -0,0 +1,110 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import junit.framework.TestCase;
+
+public class StringPoolTest extends TestCase {
+
+	public void testShare()
+	{
+		StringPool pool = new StringPool();
+		String s = new String("house");
+		assertSame(s, pool.share(s));
+		assertSame(s, pool.share(new String("house")));
+		assertEquals(1, pool.size());
+		assertEquals(2, pool.getLookupCount());
+		assertEquals(1, pool.getSharedCount());
+		assertEquals(40 + 10, pool.getSavedBytes());
+	}
+
+	public void testDeduplicate()
+	{
+		Map translations = new HashMap();
+		translations.put(new String("house"), new String("Haus"));
+		translations.put(new String("Haus"), new String("Haus"));
+		translations.put(new String("untranslated"), new String("untranslated"));
+		translations.put(new String("File"), new String[] { new String("Datei"), new String("Haus") });
+		ResourceBundle de = new CatalogResourceBundle(translations, Locale.GERMAN);
+		ResourceBundle at = new CatalogResourceBundle(new HashMap(translations), new Locale("de", "AT"));
+
+		StringPool pool = new StringPool();
+		CatalogResourceBundle pooledDe = (CatalogResourceBundle)pool.deduplicate(de);
+		CatalogResourceBundle pooledAt = (CatalogResourceBundle)pool.deduplicate(at);
+		assertEquals(new Locale("de", "AT"), pooledAt.getLocale());
+
+		// message ids are shared with literals
+		assertSame("house", key(pooledDe, "house"));
+		assertSame("untranslated", pooledDe.getString("untranslated"));
+		// translations are shared within and across catalogs
+		assertSame(pooledDe.getString("house"), pooledDe.getString("Haus"));
+		assertSame(pooledDe.getString("house"), ((String[])pooledDe.lookup("File"))[1]);
+		assertSame(pooledDe.getString("house"), pooledAt.getString("house"));
+		assertSame(((String[])pooledDe.lookup("File"))[0], ((String[])pooledAt.lookup("File"))[0]);
+		assertEquals("Datei", ((String[])pooledAt.lookup("File"))[0]);
+
+		assertEquals(5, pool.size());
+		assertEquals(18, pool.getLookupCount());
+		assertTrue(pool.getSharedCount() >= 13);
+		assertTrue(pool.getSavedBytes() > 0);
+	}
+
+	private static String key(CatalogResourceBundle bundle, String key)
+	{
+		for (Iterator it = bundle.getEntries().keySet().iterator(); it.hasNext();) {
+			String s = (String)it.next();
+			if (s.equals(key)) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	public void testDeduplicateUnsupported()
+	{
+		ResourceBundle bundle = new ListResourceBundle() {
+			protected Object[][] getContents()
+			{
+				return new Object[][] { { "icon", new Integer(1) } };
+			}
+		};
+		assertSame(bundle, new StringPool().deduplicate(bundle));
+	}
+
+	public void testFactory()
+	{
+		I18n i18n = I18nFactory.getI18n(getClass(), "Messages", Locale.GERMAN, I18nFactory.DEDUPLICATE
+				| I18nFactory.NO_CACHE);
+		assertTrue(i18n.getResources() instanceof CatalogResourceBundle);
+		assertEquals("Haus", i18n.tr("house"));
+		long lookups = I18nFactory.getStringPool().getLookupCount();
+		assertTrue(lookups > 0);
+		i18n.setLocale(Locale.ENGLISH);
+		assertTrue(i18n.getResources() instanceof CatalogResourceBundle);
+		assertEquals("house", i18n.tr("house"));
+		assertTrue(I18nFactory.getStringPool().getLookupCount() > lookups);
+	}
+
+}
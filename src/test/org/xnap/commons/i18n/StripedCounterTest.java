@@ -0,0 +1,101 @@
+/*
+ *  Gettext Commons
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public
+ *  License along with this library; if not, write to the Free Software
+ *  Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+package org.xnap.commons.i18n;
+
+import junit.framework.TestCase;
+
+public class StripedCounterTest extends TestCase {
+
+	private static final int THREADS = 8;
+
+	private static final int INCREMENTS = 100000;
+
+	public void testAdd()
+	{
+		StripedCounter counter = new StripedCounter();
+		counter.increment();
+		counter.add(41);
+		assertEquals(42, counter.get());
+	}
+
+	public void testIndex()
+	{
+		StripedCounter counter = new StripedCounter(3);
+		counter.increment(0);
+		counter.add(2, 5);
+		assertEquals(1, counter.get(0));
+		assertEquals(0, counter.get(1));
+		assertEquals(5, counter.get(2));
+	}
+
+	public void testReset()
+	{
+		StripedCounter counter = new StripedCounter();
+		counter.add(5);
+		counter.reset();
+		assertEquals(0, counter.get());
+		counter.increment();
+		assertEquals(1, counter.get());
+	}
+
+	public void testConcurrentIncrements() throws Exception
+	{
+		final StripedCounter counter = new StripedCounter();
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run()
+				{
+					for (int j = 0; j < INCREMENTS; j++) {
+						counter.increment();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		// no update is lost without locking
+		assertEquals(THREADS * INCREMENTS, counter.get());
+	}
+
+	public void testTerminatedThreads() throws Exception
+	{
+		final StripedCounter counter = new StripedCounter();
+		Thread thread = new Thread() {
+			public void run()
+			{
+				counter.add(3);
+			}
+		};
+		thread.start();
+		thread.join();
+		thread = null;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+		}
+
+		// registering a new thread retires the cell of the collected one
+		counter.add(4);
+		assertEquals(7, counter.get());
+		counter.reset();
+		assertEquals(0, counter.get());
+	}
+
+}